@@ -155,7 +155,7 @@ public class GameBoard2D extends StackPane
                 {
                     try
                     {
-                        if(positions==null || positions.contains(new Pos((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
+                        if(positions==null || positions.contains(Pos.of((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
                             for (BoardListener l : listeners)
                                 l.setOnCellClick(e, (int)(e.getX()/cell_width), (int)(e.getY()/cell_height));
                     }
@@ -172,7 +172,7 @@ public class GameBoard2D extends StackPane
                 try
                 {
                     if(e.isPrimaryButtonDown()) 
-                        if(positions==null || positions.contains(new Pos((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
+                        if(positions==null || positions.contains(Pos.of((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
                             for (BoardListener l : listeners)
                                 l.setOnPrimaryButtonDown(e, (int)(e.getX()/cell_width), (int)(e.getY()/cell_height));
                 }
@@ -182,7 +182,7 @@ public class GameBoard2D extends StackPane
                 try
                 {
                     if(e.isSecondaryButtonDown())
-                        if(positions==null || positions.contains(new Pos((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
+                        if(positions==null || positions.contains(Pos.of((int)(e.getX()/cell_width),getYtoTInx((int)(e.getY()/cell_height)))))
                             for (BoardListener l : listeners)
                                 l.setOnSecondaryButtonDown(e, (int)(e.getX()/cell_width), (int)(e.getY()/cell_height));
                 }
@@ -503,7 +503,7 @@ public class GameBoard2D extends StackPane
      */
     public Pos convertCoordinatetoPos(int x, int y)
     {
-        return new Pos(x, getYtoTInx(y));
+        return Pos.of(x, getYtoTInx(y));
     }
     
     /**
@@ -533,7 +533,7 @@ public class GameBoard2D extends StackPane
      */
     public void putPiece(String piece, int b, int t)
     {   
-        Pos tmp_pos = new Pos(b, t);
+        Pos tmp_pos = Pos.of(b, t);
         
         if(board_map.containsKey(tmp_pos))
             clearCell(b, getTtoYInx(t));
@@ -558,7 +558,7 @@ public class GameBoard2D extends StackPane
      */
     public void putPiece(String piece, int b, int t, Color piece_firstcolor, Color piece_secondcolor)
     {   
-        Pos tmp_pos = new Pos(b, t);
+        Pos tmp_pos = Pos.of(b, t);
         
         if(board_map.containsKey(tmp_pos))
             clearCell(b, getTtoYInx(t));
@@ -590,7 +590,7 @@ public class GameBoard2D extends StackPane
             return;
         }
         
-        Pos tmp_pos = new Pos(b, t);
+        Pos tmp_pos = Pos.of(b, t);
         
         if(board_map.containsKey(tmp_pos))
             clearCell(b, getTtoYInx(t));
@@ -609,7 +609,7 @@ public class GameBoard2D extends StackPane
      */
     public void removePiece(int b, int t)
     {        
-        Pos tmp_pos = new Pos(b, t);
+        Pos tmp_pos = Pos.of(b, t);
         
         if(board_map.containsKey(tmp_pos))
         {
@@ -658,7 +658,7 @@ public class GameBoard2D extends StackPane
             
             for (int k = 0; k < board_width; k++)
             {     
-                if(positions.contains(new Pos(k, tmp_t)))
+                if(positions.contains(Pos.of(k, tmp_t)))
                 {
                     if((k+i)%2 == 0)
                         board_gc.setFill(evencolor);
@@ -201,6 +201,17 @@ public interface GameRuler<P>
 
     /** Una {@code Situation} rappresenta una situazione di gioco. Gli oggetti
      * {@code Situation} sono immutabili.
+     * <br>
+     * Una situazione può essere rappresentata da una mappa dalle posizioni ai pezzi
+     * (vedi {@link Situation#Situation(Map, int)}) oppure da un array di indici dei
+     * pezzi allineato con le posizioni di una meccanica (vedi
+     * {@link Situation#Situation(Mechanics, byte[], int)}). La seconda è pensata
+     * per le funzioni {@link Next}: una situazione successiva si ottiene copiando
+     * l'array ({@link Mechanics#cells(Situation)}) e cambiando solamente le
+     * posizioni toccate dalla mossa, e {@code equals} e {@code hashCode} lavorano
+     * sull'array. Le due rappresentazioni sono intercambiabili: due situazioni con
+     * lo stesso turno e gli stessi pezzi nelle stesse posizioni sono uguali e
+     * hanno lo stesso hash, qualunque sia la loro rappresentazione.
      * @param <P>  tipo del modello dei pezzi */
     class Situation<P>
     {
@@ -214,9 +225,27 @@ public interface GameRuler<P>
          * pezzo in p.
          * @param p  una posizione (può essere null)
          * @return il pezzo nella posizione p o null, se non c'è un pezzo in p */
-        public P get(Pos p) { return conf.get(p); }
+        public P get(Pos p)
+        {
+            if( this.cells == null )
+                return conf.get(p);
+
+            int i = this.gM.index(p);
+            return i < 0 || this.cells[i] == 0 ? null : this.gM.pieces.get(this.cells[i]-1);
+        }
+
+        public Map<Pos,P> newMap()
+        {
+            if( this.cells == null )
+                return new HashMap<>(conf);
+
+            Map<Pos,P> m = new HashMap<>();
+            for( int i=0 ; i<this.cells.length ; i++ )
+                if( this.cells[i] != 0 )
+                    m.put(this.gM.positions.get(i), this.gM.pieces.get(this.cells[i]-1));
 
-        public Map<Pos,P> newMap() { return new HashMap<>(conf); }
+            return m;
+        }
 
         /** Crea una situazione data la mappa delle disposizioni dei pezzi e il
          * turno di gioco. L'oggetto Situation creato non fa una copia della
@@ -229,21 +258,106 @@ public interface GameRuler<P>
         {
             conf = c;
             turn = t;
+            gM = null;
+            cells = null;
+        }
+
+        /** Crea una situazione dato l'array dei pezzi nelle posizioni della
+         * meccanica gM e il turno di gioco: c[i] è 0 se la i-esima posizione di
+         * {@link Mechanics#positions} è vuota, altrimenti è l'indice del pezzo in
+         * {@link Mechanics#pieces} più 1. Come per la mappa, l'array non è copiato
+         * e non deve essere più modificato.
+         * @param gM  la meccanica del gioco
+         * @param c  i pezzi nelle posizioni di gM
+         * @param t  un indice di turnazione o un intero <= 0 se la situazione è
+         *           finale (vedi {@link Situation#turn}).
+         * @throws NullPointerException se gM o c è null
+         * @throws IllegalArgumentException se la lunghezza di c è diversa dal
+         * numero delle posizioni di gM */
+        public Situation(Mechanics<P> gM, byte[] c, int t)
+        {
+            if( c.length != gM.positions.size() )
+                throw new IllegalArgumentException("L'array non corrisponde alle posizioni");
+
+            conf = null;
+            turn = t;
+            this.gM = gM;
+            cells = c;
         }
 
         @Override
         public boolean equals(Object x)
         {
+            if (x == this) return true;
             if (x == null || x.getClass() != getClass()) return false;
-            Situation s = (Situation)x;
-            return s.turn == turn && Objects.equals(s.conf, conf);
+            Situation<?> s = (Situation<?>)x;
+            if (s.turn != turn) return false;
+            if (cells == null && s.cells == null) return Objects.equals(s.conf, conf);
+            if (s.gM == gM) return Arrays.equals(s.cells, cells);
+
+            // Rappresentazioni diverse, confronta i pezzi posizione per posizione
+            return cells != null ? sameConf(this, s) : sameConf(s, this);
         }
 
         @Override
-        public int hashCode() { return Objects.hash(conf, turn); }
+        public int hashCode()
+        {
+            if( this.cells == null )
+                return Objects.hash(conf, turn);
+
+            // Lo stesso valore di Objects.hash(newMap(), turn), senza creare la mappa
+            int h = this.hash;
+            if( h == 0 )
+            {
+                int np = this.gM.pieces.size(), mh = 0;
+                for( int i=0 ; i<this.cells.length ; i++ )
+                    if( this.cells[i] != 0 )
+                        mh += this.gM.hash_terms[i*np + this.cells[i]-1];
+
+                this.hash = h = 31*(31 + mh) + turn;
+            }
+
+            return h;
+        }
+
+        /** @return il numero di pezzi della situazione */
+        private int size()
+        {
+            if( this.cells == null )
+                return conf.size();
+
+            int n = 0;
+            for( byte c : this.cells )
+                if( c != 0 )
+                    n++;
+
+            return n;
+        }
+
+        /** Confronta i pezzi della situazione a, rappresentata da un array, con
+         * quelli della situazione b, rappresentata in qualsiasi modo */
+        private static boolean sameConf(Situation<?> a, Situation<?> b)
+        {
+            int n = 0;
+            for( int i=0 ; i<a.cells.length ; i++ )
+                if( a.cells[i] != 0 )
+                {
+                    if( !a.gM.pieces.get(a.cells[i]-1).equals(b.get(a.gM.positions.get(i))) )
+                        return false;
+                    n++;
+                }
+
+            return n == b.size();
+        }
 
 
         private final Map<Pos,P> conf;
+        /** La meccanica e l'array dei pezzi, se la situazione non è rappresentata
+         * dalla mappa (altrimenti null) */
+        private final Mechanics<P> gM;
+        private final byte[] cells;
+        /** L'hash calcolato, 0 se non ancora calcolato */
+        private int hash;
     }
 
     /** Una funzione che data una situazione di gioco ritorna le mosse valide e le
@@ -269,6 +383,119 @@ public interface GameRuler<P>
         Map<Move<P>, Situation<P>> get(Situation<P> s);
     }
 
+    /** Un cursore sulle mosse valide di una situazione di gioco, esclusa
+     * {@link Move.Kind#RESIGN}, e sulle corrispondenti prossime situazioni (vedi
+     * {@link LazyNext}). Inizialmente è posizionato prima della prima mossa, ogni
+     * invocazione di {@link Cursor#advance()} lo sposta sulla mossa successiva. La
+     * mossa e la situazione sono create solamente quando sono richieste, quindi chi
+     * si ferma prima della fine non paga per le mosse che non ha visitato. Un
+     * cursore non è thread-safe.
+     * @param <P> tipo del modello dei pezzi */
+    interface Cursor<P>
+    {
+        /** Sposta il cursore sulla prossima mossa.
+         * @return false se non ci sono altre mosse */
+        boolean advance();
+
+        /** @return la mossa su cui è posizionato il cursore
+         * @throws IllegalStateException se il cursore non è su una mossa */
+        Move<P> move();
+
+        /** @return la situazione che si ottiene facendo la mossa su cui è
+         * posizionato il cursore
+         * @throws IllegalStateException se il cursore non è su una mossa */
+        Situation<P> situation();
+
+        /** Ritorna una stima, propria del gioco, di quanto è promettente la mossa
+         * su cui è posizionato il cursore per il giocatore di turno: più è alta, più
+         * la mossa è promettente. I valori sono confrontabili solamente tra mosse
+         * della stessa situazione. L'implementazione di default ritorna 0.
+         * @return la stima della mossa su cui è posizionato il cursore
+         * @throws IllegalStateException se il cursore non è su una mossa */
+        default int hint() { return 0; }
+    }
+
+    /** La versione pigra di {@link Next}: data una situazione di gioco ritorna un
+     * cursore sulle mosse valide e sulle corrispondenti prossime situazioni. Le
+     * mosse sono le stesse della mappa ritornata da {@link Next#get(Situation)}, ma
+     * sono date nell'ordine suggerito dal gioco, prima le più promettenti (vedi
+     * {@link Cursor#hint()}), così che chi cerca una mossa vincente la trovi
+     * presto e non crei le altre situazioni.
+     * @param <P> tipo del modello dei pezzi */
+    @FunctionalInterface
+    interface LazyNext<P>
+    {
+        /** Ritorna un cursore sulle mosse valide, esclusa
+         * {@link Move.Kind#RESIGN}, della situazione di gioco data. Il cursore non
+         * ha mosse se la situazione data è finale. Se la situazione data non è
+         * valida, il comportamento è indefinito.
+         * @param s  una situazione di gioco
+         * @return un cursore sulle mosse valide della situazione data
+         * @throws NullPointerException se s è null */
+        Cursor<P> cursor(Situation<P> s);
+
+        /** Ritorna la versione pigra della funzione data, che visita la mappa delle
+         * prossime situazioni nell'ordine della mappa.
+         * @param next  una funzione {@link Next}
+         * @param <P> tipo del modello dei pezzi
+         * @return la versione pigra di next
+         * @throws NullPointerException se next è null */
+        static <P> LazyNext<P> of(Next<P> next)
+        {
+            Objects.requireNonNull(next);
+
+            return s -> {
+                Iterator<Map.Entry<Move<P>,Situation<P>>> it = next.get(Objects.requireNonNull(s)).entrySet().iterator();
+
+                return new Cursor<P>() {
+                    private Map.Entry<Move<P>,Situation<P>> cur;
+
+                    @Override
+                    public boolean advance()
+                    {
+                        cur = it.hasNext() ? it.next() : null;
+                        return cur != null;
+                    }
+
+                    @Override
+                    public Move<P> move() { return entry().getKey(); }
+
+                    @Override
+                    public Situation<P> situation() { return entry().getValue(); }
+
+                    private Map.Entry<Move<P>,Situation<P>> entry()
+                    {
+                        if( cur == null )
+                            throw new IllegalStateException();
+
+                        return cur;
+                    }
+                };
+            };
+        }
+
+        /** Ritorna la funzione {@link Next} equivalente alla funzione pigra data,
+         * che raccoglie in una mappa immodificabile tutte le mosse del cursore.
+         * @param lazy  una funzione {@link LazyNext}
+         * @param <P> tipo del modello dei pezzi
+         * @return la funzione {@link Next} equivalente
+         * @throws NullPointerException se lazy è null */
+        static <P> Next<P> eager(LazyNext<P> lazy)
+        {
+            Objects.requireNonNull(lazy);
+
+            return s -> {
+                Cursor<P> c = lazy.cursor(Objects.requireNonNull(s));
+                Map<Move<P>,Situation<P>> next = new HashMap<>();
+
+                while( c.advance() )
+                    next.put(c.move(), c.situation());
+
+                return next.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(next);
+            };
+        }
+    }
+
     /** Un oggetto {@code Mechanics} rappresenta la meccanica di un gioco. Ovvero
      * tutte quelle caratteristiche che sono indipendenti dalla particolare partita
      * giocata ma sono comuni a tutte le partite che si possono giocare con un certo
@@ -298,15 +525,118 @@ public interface GameRuler<P>
          * le corrispondenti prossime situazioni. */
         public final Next<P> next;
 
+        /** La versione pigra di {@link Mechanics#next}, null solamente se lo è
+         * anche next */
+        public final LazyNext<P> lazy;
+
         public Mechanics(long t, List<P> pcs, List<Pos> pp, int np, Situation<P> s, Next<P> nx)
+        {
+            this(t, pcs, pp, np, s, nx, null);
+        }
+
+        /** Crea una meccanica con entrambe le versioni della funzione delle
+         * prossime situazioni. Se una delle due è null è ottenuta dall'altra con
+         * {@link LazyNext#of(Next)} o {@link LazyNext#eager(LazyNext)}, così un
+         * gioco può implementare solamente quella pigra.
+         * @param t  il tempo per una mossa (vedi {@link Mechanics#time})
+         * @param pcs  i modelli dei pezzi (vedi {@link Mechanics#pieces})
+         * @param pp  le posizioni della board (vedi {@link Mechanics#positions})
+         * @param np  il numero di giocatori
+         * @param s  la situazione iniziale
+         * @param nx  la funzione delle prossime situazioni o null
+         * @param lx  la sua versione pigra o null */
+        public Mechanics(long t, List<P> pcs, List<Pos> pp, int np, Situation<P> s, Next<P> nx, LazyNext<P> lx)
         {
             time = t;
             pieces = pcs;
             positions = pp;
             this.np = np;
             start = s;
-            next = nx;
+            next = nx != null || lx == null ? nx : LazyNext.eager(lx);
+            lazy = lx != null || nx == null ? lx : LazyNext.of(nx);
+
+            // Le tabelle per le situazioni rappresentate da array
+            if( pp != null && pcs != null )
+            {
+                int mb = 0;
+                for( Pos p : pp )
+                    mb = Math.max(mb, p.b + 1);
+
+                int[] mt = new int[mb];
+                for( Pos p : pp )
+                    mt[p.b] = Math.max(mt[p.b], p.t + 1);
+
+                pos_index = new int[mb][];
+                for( int b=0 ; b<mb ; b++ )
+                {
+                    pos_index[b] = new int[mt[b]];
+                    Arrays.fill(pos_index[b], -1);
+                }
+
+                hash_terms = new int[pp.size()*pcs.size()];
+                for( int i=0 ; i<pp.size() ; i++ )
+                {
+                    pos_index[pp.get(i).b][pp.get(i).t] = i;
+
+                    for( int j=0 ; j<pcs.size() ; j++ )
+                        hash_terms[i*pcs.size() + j] = pp.get(i).hashCode() ^ pcs.get(j).hashCode();
+                }
+            }
+            else
+            {
+                pos_index = null;
+                hash_terms = null;
+            }
         }
+
+        /** Ritorna il pezzo nella i-esima posizione di {@link Mechanics#positions}
+         * della situazione data, codificato come in
+         * {@link Situation#Situation(Mechanics, byte[], int)}. Richiede tempo
+         * costante se la situazione è rappresentata da un array di questa meccanica.
+         * @param s  una situazione del gioco
+         * @param i  l'indice di una posizione
+         * @return 0 se la posizione è vuota, altrimenti l'indice del pezzo più 1 */
+        public int cell(Situation<P> s, int i)
+        {
+            if( s.cells != null && s.gM == this )
+                return s.cells[i];
+
+            return pieces.indexOf(s.get(positions.get(i))) + 1;
+        }
+
+        /** Ritorna un nuovo array con i pezzi della situazione data nelle
+         * posizioni di questa meccanica (vedi {@link Mechanics#cell(Situation, int)}),
+         * da modificare per creare una situazione successiva con
+         * {@link Situation#Situation(Mechanics, byte[], int)}.
+         * @param s  una situazione del gioco
+         * @return l'array dei pezzi della situazione */
+        public byte[] cells(Situation<P> s)
+        {
+            if( s.cells != null && s.gM == this )
+                return s.cells.clone();
+
+            byte[] c = new byte[positions.size()];
+            for( int i=0 ; i<c.length ; i++ )
+                c[i] = (byte)cell(s, i);
+
+            return c;
+        }
+
+        /** @return l'indice della posizione p in positions o -1 se non c'è */
+        private int index(Pos p)
+        {
+            if( p == null || p.b >= pos_index.length || p.t >= pos_index[p.b].length )
+                return -1;
+
+            return pos_index[p.b][p.t];
+        }
+
+        /** Per ogni coordinata di base e trasversale l'indice della posizione in
+         * positions o -1 */
+        private final int[][] pos_index;
+        /** Per ogni posizione i e pezzo j, in i*pieces.size()+j, l'hash della
+         * coppia posizione-pezzo in una mappa */
+        private final int[] hash_terms;
     }
 
     /** Ritorna la meccanica di questo gioco. L'oggetto ritornato è immutabile e
@@ -318,4 +648,93 @@ public interface GameRuler<P>
     {
         throw new UnsupportedOperationException();
     }
+
+    /** Ritorna la chiave di Zobrist della situazione attuale del gioco, calcolata
+     * con la tabella {@link gapp.ulg.game.util.Zobrist} della meccanica del gioco,
+     * cioè la stessa chiave che si ottiene con
+     * {@code new Zobrist<>(mechanics()).key(s)} dove s è la situazione attuale. Due
+     * situazioni uguali hanno la stessa chiave. I giochi che implementano questo
+     * metodo dovrebbero mantenere la chiave aggiornandola in {@link GameRuler#move(Move)}
+     * e {@link GameRuler#unMove()}, in modo che richieda tempo costante, così che i
+     * giocatori possano usarla per indicizzare tabelle delle trasposizioni senza
+     * creare la {@link Situation}. L'implementazione di default lancia una eccezione.
+     * @return la chiave di Zobrist della situazione attuale
+     * @throws UnsupportedOperationException se questo gioco non mantiene la chiave */
+    default long zobristKey()
+    {
+        throw new UnsupportedOperationException("Questo gioco non ha chiavi di Zobrist");
+    }
+
+    /** Ritorna le simmetrie della board (vedi {@link Symmetry}) rispetto alle quali
+     * le regole del gioco sono invarianti, cioè quelle che trasformano ogni
+     * situazione in una situazione con lo stesso esito e le mosse valide trasformate
+     * allo stesso modo. Ad es. per gli m,n,k-game sono tutte quelle della board,
+     * mentre per un gioco in cui i pezzi si muovono in avanti solo quelle che non
+     * scambiano l'alto con il basso. Sono usate per ridurre le situazioni da
+     * analizzare (vedi {@link gapp.ulg.game.util.Symmetries}); quelle non definite
+     * per la board del gioco sono ignorate. L'implementazione di default ritorna
+     * solamente {@link Symmetry#IDENTITY}.
+     * @return l'insieme delle simmetrie del gioco */
+    default Set<Symmetry> symmetries()
+    {
+        return EnumSet.of(Symmetry.IDENTITY);
+    }
+
+    /** Se il gioco non è terminato, esegue una mossa valida scelta a caso in modo
+     * uniforme, esclusa {@link Move.Kind#RESIGN}, e ritorna true. Altrimenti, o se
+     * l'unica mossa valida è l'abbandono, non fa nulla e ritorna false. La mossa
+     * può essere annullata con {@link GameRuler#unMove()}.
+     * <br>
+     * È il passo elementare dei rollouts (partite giocate a caso) e i giochi
+     * dovrebbero ridefinirlo in modo da non creare l'insieme delle mosse valide né
+     * oggetti {@link Move}. L'implementazione di default usa
+     * {@link GameRuler#validMoves()} e {@link GameRuler#move(Move)}.
+     * @param rnd  il generatore di numeri casuali
+     * @return true se è stata eseguita una mossa
+     * @throws NullPointerException se rnd è null */
+    default boolean randomMove(SplittableRandom rnd)
+    {
+        Objects.requireNonNull(rnd);
+
+        if( result() != -1 )
+            return false;
+
+        Set<Move<P>> vm = validMoves();
+        int n = vm.size();
+
+        for( Move<P> m : vm )
+            if( m.kind == Move.Kind.RESIGN )
+                n--;
+
+        if( n <= 0 )
+            return false;
+
+        int i = rnd.nextInt(n);
+
+        for( Move<P> m : vm )
+            if( m.kind != Move.Kind.RESIGN && i-- == 0 )
+                return move(m);
+
+        return false;
+    }
+
+    /** Gioca la partita fino al termine eseguendo mosse scelte a caso con
+     * {@link GameRuler#randomMove(SplittableRandom)} e ritorna il numero di mosse
+     * eseguite, così che la situazione di partenza possa essere ripristinata con
+     * altrettante invocazioni di {@link GameRuler#unMove()} invece che lavorando
+     * su una copia.
+     * @param rnd  il generatore di numeri casuali
+     * @return il numero di mosse eseguite
+     * @throws NullPointerException se rnd è null */
+    default int playout(SplittableRandom rnd)
+    {
+        Objects.requireNonNull(rnd);
+
+        int moves = 0;
+
+        while( randomMove(rnd) )
+            moves++;
+
+        return moves;
+    }
 }
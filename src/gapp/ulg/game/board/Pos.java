@@ -1,16 +1,31 @@
 package gapp.ulg.game.board;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 /** <b>IMPLEMENTARE I METODI SECONDO LE SPECIFICHE DATE NEI JAVADOC. Non modificare
  * le intestazioni dei metodi nè i campi pubblici.</b>
  * <br>
  * Un oggetto Pos rappresenta una posizione in una {@link Board}. Gli oggetti
  * Pos sono immutabili. Per il significato delle coordinate vedere {@link Board} e
- * la documentazione relative agli elementi di {@link Board.System}. */
+ * la documentazione relative agli elementi di {@link Board.System}.
+ * <br>
+ * Le posizioni con coordinate minori di {@link Pos#CACHE_SIZE} sono preallocate e
+ * si ottengono tramite {@link Pos#of(int, int)}, che ritorna sempre la stessa istanza
+ * per le stesse coordinate. */
 public class Pos implements Serializable
 {
+	/** Lato della tabella delle posizioni preallocate (copre tutte le board dei giochi disponibili) */
+	public static final int CACHE_SIZE = 32;
+	/** Tabella delle posizioni preallocate, indicizzata con b*CACHE_SIZE+t */
+	private static final Pos[] CACHE = new Pos[CACHE_SIZE*CACHE_SIZE];
+	
+	static
+	{
+		for( int b=0 ; b<CACHE_SIZE ; b++ )
+			for( int t=0 ; t<CACHE_SIZE ; t++ )
+				CACHE[b*CACHE_SIZE+t] = new Pos(b, t);
+	}
+	
 	/** Le coordinate della posizione, b è la coordinata rispetto all'asse base
      * e t quella relativa all'asse trasversale. */
     public final int b, t;
@@ -18,7 +33,7 @@ public class Pos implements Serializable
     /** Crea una posizione con le coordinate date.
      * @param b  coordinata asse base (non negativa)
      * @param t  coordinata asse trasversale (non negativa)
-     * @throws IllegalArgumentException se una delle coordinate è nagativa */
+     * @throws IllegalArgumentException se una delle coordinate è negativa */
     public Pos(int b, int t)
     {
     	if( b < 0 || t < 0 )
@@ -27,6 +42,24 @@ public class Pos implements Serializable
         this.b = b;
         this.t = t;
     }
+    
+    /** Ritorna la posizione con le coordinate date. Se entrambe le coordinate sono
+     * minori di {@link Pos#CACHE_SIZE} ritorna sempre la stessa istanza
+     * preallocata, altrimenti ne crea una nuova.
+     * @param b  coordinata asse base (non negativa)
+     * @param t  coordinata asse trasversale (non negativa)
+     * @return la posizione con le coordinate date
+     * @throws IllegalArgumentException se una delle coordinate è negativa */
+    public static Pos of(int b, int t)
+    {
+    	if( b < 0 || t < 0 )
+        	throw new IllegalArgumentException();
+    	
+    	if( b < CACHE_SIZE && t < CACHE_SIZE )
+    		return CACHE[b*CACHE_SIZE+t];
+    	
+    	return new Pos(b, t);
+    }
 
     /** Questa posizione è uguale a x se e solo se x è della classe {@link Pos}
      * ed ha le stesse coordinate.
@@ -35,6 +68,9 @@ public class Pos implements Serializable
     @Override
     public boolean equals(Object x)
     {
+    	if( this == x )
+    		return true;
+    	
     	if( x != null && this.getClass() == x.getClass() )
     	{
     		Pos p = (Pos)x;
@@ -50,7 +86,8 @@ public class Pos implements Serializable
     @Override
     public int hashCode()
     {
-    	return Objects.hash(this.b, this.t);
+    	// Stesso valore di Objects.hash(b, t), ma senza boxing e senza array
+    	return 961 + 31*this.b + this.t;
     }
     
     /** Ritorna la posizione rappresentata come stringa.
@@ -60,4 +97,11 @@ public class Pos implements Serializable
     {
     	return "("+this.b+","+this.t+")";
     }
+    
+    /** Dopo la deserializzazione ritorna l'istanza preallocata, se esiste.
+     * @return la posizione con le stesse coordinate */
+    private Object readResolve()
+    {
+    	return of(this.b, this.t);
+    }
 }
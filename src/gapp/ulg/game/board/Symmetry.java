@@ -0,0 +1,81 @@
+package gapp.ulg.game.board;
+
+/** Le simmetrie (isometrie) di una board rettangolare, cioè gli elementi del
+ * gruppo diedrale del quadrato. Una simmetria trasforma le coordinate di una
+ * posizione di una board larga w e alta h in quelle di un'altra posizione della
+ * stessa board. Le rotazioni di 90 gradi e le riflessioni rispetto alle diagonali
+ * sono possibili solamente per board quadrate e nel sistema
+ * {@link Board.System#HEXAGONAL} sono possibili solamente l'identità e la
+ * rotazione di 180 gradi, perché le altre non conservano le adiacenze.
+ * <br>
+ * Un gioco dichiara le simmetrie rispetto alle quali le sue regole sono invarianti
+ * con {@link GameRuler#symmetries()}. */
+public enum Symmetry
+{
+	/** Identità */
+	IDENTITY,
+	/** Rotazione di 90 gradi in senso antiorario */
+	ROT90,
+	/** Rotazione di 180 gradi */
+	ROT180,
+	/** Rotazione di 270 gradi in senso antiorario */
+	ROT270,
+	/** Riflessione che inverte la coordinata di base */
+	FLIP_B,
+	/** Riflessione che inverte la coordinata trasversale */
+	FLIP_T,
+	/** Riflessione rispetto alla diagonale che passa per (0,0) */
+	DIAG,
+	/** Riflessione rispetto all'altra diagonale */
+	ANTI_DIAG;
+
+	/** Ritorna true se questa simmetria è definita per le board con il sistema di
+	 * coordinate e le dimensioni date.
+	 * @param s  un sistema di coordinate
+	 * @param w  larghezza della board
+	 * @param h  altezza della board
+	 * @return true se questa simmetria è definita per la board
+	 * @throws NullPointerException se s è null */
+	public boolean admits(Board.System s, int w, int h)
+	{
+		if( s == null )
+			throw new NullPointerException();
+
+		if( s == Board.System.HEXAGONAL )
+			return this == IDENTITY || this == ROT180;
+
+		switch(this)
+		{
+			case ROT90: case ROT270: case DIAG: case ANTI_DIAG:
+				return w == h;
+			default:
+				return true;
+		}
+	}
+
+	/** Ritorna l'immagine della posizione p tramite questa simmetria, per una
+	 * board larga w e alta h. Se la simmetria non è definita per la board (vedi
+	 * {@link Symmetry#admits(Board.System, int, int)}) o p non è nel rettangolo della
+	 * board, il comportamento è indefinito.
+	 * @param p  una posizione
+	 * @param w  larghezza della board
+	 * @param h  altezza della board
+	 * @return l'immagine di p
+	 * @throws NullPointerException se p è null */
+	public Pos apply(Pos p, int w, int h)
+	{
+		int b = p.b, t = p.t, mb = w-1, mt = h-1;
+
+		switch(this)
+		{
+			case ROT90:     return Pos.of(mt-t, b);
+			case ROT180:    return Pos.of(mb-b, mt-t);
+			case ROT270:    return Pos.of(t, mb-b);
+			case FLIP_B:    return Pos.of(mb-b, t);
+			case FLIP_T:    return Pos.of(b, mt-t);
+			case DIAG:      return Pos.of(t, b);
+			case ANTI_DIAG: return Pos.of(mt-t, mb-b);
+			default:        return p;
+		}
+	}
+}
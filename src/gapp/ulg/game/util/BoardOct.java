@@ -12,6 +12,12 @@ import java.util.*;
  * Gli oggetti BoardOct implementano l'interfaccia {@link Board} per rappresentare
  * board generali con sistema di coordinate {@link System#OCTAGONAL}
  * modificabili.
+ * <br>
+ * La board è densa: i pezzi sono mantenuti in un array di indici di modelli di
+ * pezzo con chiave b*height+t, le posizioni sono istanze preallocate e le adiacenze
+ * sono precalcolate per ogni {@link Board.Dir}. Quindi {@link BoardOct#get(Pos)},
+ * {@link BoardOct#put(Object, Pos)}, {@link BoardOct#adjacent(Pos, Dir)} e
+ * {@link BoardOct#isPos(Pos)} richiedono tempo costante e non allocano memoria.
  * @param <P>  tipo del modello dei pezzi */
 public class BoardOct<P> implements Board<P>
 {
@@ -20,10 +26,29 @@ public class BoardOct<P> implements Board<P>
 	/** Altezza della board */
     private final int height;
     
-    /** Lista delle posizioni della board */
+    /** Lista delle posizioni della board (condivisa tra le copie) */
 	private final List<Pos> positions;
-	/** Mappa che associa ad ogni posizione della board il suo contenuto */ 
-	private Map<Pos,P> pos_map;
+	/** Posizioni della board indicizzate con b*height+t, null per le posizioni escluse (condiviso tra le copie) */
+	private final Pos[] pos_table;
+	/** Adiacenze: in posizione i*8+d c'è l'indice della posizione adiacente a i nella direzione
+	 * di ordinale d, o -1 se non esiste (condiviso tra le copie) */
+	private final int[] adj;
+	
+	/** Contenuto delle posizioni: 0 se vuota, altrimenti l'indice+1 del modello di pezzo in {@link BoardOct#pieces} */
+	private final int[] cells;
+	/** Modelli di pezzo presenti o presenti in passato sulla board */
+	private Object[] pieces;
+	/** Numero di modelli di pezzo in {@link BoardOct#pieces} */
+	private int n_pieces;
+	/** Numero di posizioni occupate */
+	private int occupied;
+	
+	/** Tabella di Zobrist con cui è mantenuta la chiave della board, o null */
+	private Zobrist<P> zobrist;
+	/** Indici delle posizioni nella tabella di Zobrist, per ogni indice b*height+t (condiviso tra le copie) */
+	private int[] zobrist_pos;
+	/** Chiave di Zobrist dei pezzi sulla board */
+	private long zobrist_key;
 	
 	/** Crea una BoardOct con le dimensioni date (può quindi essere rettangolare).
      * Le posizioni della board sono tutte quelle comprese nel rettangolo dato e le
@@ -33,25 +58,7 @@ public class BoardOct<P> implements Board<P>
      * @throws IllegalArgumentException se width <= 0 o height <= 0 */
     public BoardOct(int width, int height)
     {
-    	if( width <= 0 || height <= 0 )
-        	throw new IllegalArgumentException();
-    	
-        this.width = width;
-        this.height = height;
-        this.pos_map = new HashMap<>();
-        
-        List<Pos> pos_temp = new ArrayList<Pos>();
-        
-        // Crea la lista posizioni in un array temporaneo e inizializza la board
-        for( int i=0 ; i<width ; i++ )
-        	for( int j=0 ; j<height ; j++ )
-        	{
-        		Pos p = new Pos(i, j);
-        		pos_temp.add(p);
-        		this.pos_map.put(p, null);
-        	}
-        
-        this.positions = Collections.unmodifiableList(pos_temp);
+    	this(width, height, Collections.emptySet());
     }
 
     /** Crea una BoardOct con le dimensioni date (può quindi essere rettangolare)
@@ -74,24 +81,55 @@ public class BoardOct<P> implements Board<P>
     	
         this.width = width;
         this.height = height;
-        this.pos_map = new HashMap<>();
+        
+        this.pos_table = new Pos[width*height];
+        this.cells = new int[width*height];
+        this.pieces = new Object[4];
+        this.n_pieces = 0;
+        this.occupied = 0;
         
         List<Pos> pos_temp = new ArrayList<Pos>();
         
-        // Crea la lista posizioni in un array temporaneo e inizializza la board
+        // Crea la lista posizioni in un array temporaneo e la tabella delle posizioni
         for( int i=0 ; i<width ; i++ )
         	for( int j=0 ; j<height ; j++ )
         	{
-        		Pos p = new Pos(i, j);
+        		Pos p = Pos.of(i, j);
         		
         		if( !exc.contains(p) )
         		{
         			pos_temp.add(p);
-            		this.pos_map.put(p, null);
+        			this.pos_table[i*height+j] = p;
         		}
         	}
         
         this.positions = Collections.unmodifiableList(pos_temp);
+        
+        // Precalcola le adiacenze di ogni posizione
+        Dir[] dirs = Dir.values();
+        this.adj = new int[width*height*dirs.length];
+        Arrays.fill(this.adj, -1);
+        
+        for( Pos p : this.positions )
+        	for( Dir d : dirs )
+        	{
+        		int b = p.b, t = p.t;
+        		
+        		switch(d)
+            	{
+            		case UP: t++; break;
+            		case DOWN: t--; break;
+            		case LEFT: b--; break;
+            		case RIGHT: b++; break;
+            		case UP_L: b--; t++; break;
+            		case UP_R: b++; t++; break;
+            		case DOWN_L: b--; t--; break;
+            		case DOWN_R: b++; t--; break;
+            	}
+        		
+        		if( b>=0 && b<width && t>=0 && t<height && this.pos_table[b*height+t] != null )
+        			this.adj[(p.b*height+p.t)*dirs.length + d.ordinal()] = b*height+t;
+        	}
     }
     
     /**
@@ -107,12 +145,19 @@ public class BoardOct<P> implements Board<P>
     	this.width = b.width;
     	this.height = b.height;
     	
-    	List<Pos> pos_list = new ArrayList<>();
-    	pos_list.addAll(b.positions());
-        this.positions = Collections.unmodifiableList(pos_list);
+    	// Le posizioni e le adiacenze sono immutabili, quindi sono condivise
+    	this.positions = b.positions;
+    	this.pos_table = b.pos_table;
+    	this.adj = b.adj;
         
-        this.pos_map = new HashMap<>();
-        this.pos_map.putAll(b.pos_map);
+        this.cells = b.cells.clone();
+        this.pieces = b.pieces.clone();
+        this.n_pieces = b.n_pieces;
+        this.occupied = b.occupied;
+        
+        this.zobrist = b.zobrist;
+        this.zobrist_pos = b.zobrist_pos;
+        this.zobrist_key = b.zobrist_key;
     }
 
     @Override
@@ -139,42 +184,14 @@ public class BoardOct<P> implements Board<P>
     	if( p == null || d == null )
         	throw new NullPointerException();
         
-    	if( !this.isPos(p) )
-    		return null;
-    	
-    	int b = p.b;
-    	int t = p.t;
+    	int i = this.index(p);
     	
-    	switch(d)
-    	{
-    		case UP: return this.get_adjacent(b, t+1);
-    		case DOWN: return this.get_adjacent(b, t-1);
-    		case LEFT: return this.get_adjacent(b-1, t);
-    		case RIGHT: return this.get_adjacent(b+1, t);
-    		case UP_L: return this.get_adjacent(b-1, t+1);
-    		case UP_R: return this.get_adjacent(b+1, t+1);
-    		case DOWN_L: return this.get_adjacent(b-1, t-1);
-    		case DOWN_R: return this.get_adjacent(b+1, t-1);
-    		default: return null;
-    	}
-    }
-    
-    /** Trova la posizione adiacente in base alle sue coordinate
-     * @param b valore dell'asse di base
-     * @param t valore dell'asse trasversale
-     * @return se esiste, la posizione adiacente in base alle coordinate, altrimenti null
-     */
-    private Pos get_adjacent(int b, int t)
-    {
-    	if( b<0 || b>=this.width || t<0 || t>=this.height )
+    	if( i < 0 )
     		return null;
     	
-    	Pos p = new Pos(b,t);
+    	int a = this.adj[i*8 + d.ordinal()];
     	
-    	if( this.isPos(p) )
-    		return p;
-    	else
-    		return null;
+    	return a < 0 ? null : this.pos_table[a];
     }
 
     @Override
@@ -182,14 +199,43 @@ public class BoardOct<P> implements Board<P>
     {
     	return this.positions;
     }
-
+    
     @Override
+    public boolean isPos(Pos p)
+    {
+    	if( p == null )
+        	throw new NullPointerException();
+    	
+    	return this.index(p) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+	@Override
     public P get(Pos p)
     {
     	if( p == null )
         	throw new NullPointerException();
         
-    	return this.pos_map.get(p);
+    	int i = this.index(p);
+    	
+    	if( i < 0 || this.cells[i] == 0 )
+    		return null;
+    	
+    	return (P)this.pieces[this.cells[i]-1];
+    }
+    
+    @Override
+    public Set<Pos> get()
+    {
+    	Set<Pos> s = new HashSet<Pos>(this.occupied*2);
+    	
+    	for( int i=0 ; i<this.cells.length && s.size()<this.occupied ; i++ )
+    	{
+    		if( this.cells[i] != 0 )
+    			s.add(this.pos_table[i]);
+    	}
+    	
+    	return Collections.unmodifiableSet(s);
     }
 
     @Override
@@ -203,10 +249,26 @@ public class BoardOct<P> implements Board<P>
         	if( p == null || pm == null )
         		throw new NullPointerException();
         	
-        	if( !this.isPos(p) )
+        	int i = this.index(p);
+        	
+        	if( i < 0 )
         		throw new IllegalArgumentException();
         	
-        	return this.pos_map.put(p, pm);
+        	P old = this.get(p);
+        	
+        	if( old == null )
+        		this.occupied++;
+        	
+        	if( this.zobrist != null )
+        	{
+        		if( old != null )
+        			this.zobrist_key ^= this.zobrist.piece(this.zobrist_pos[i], old);
+        		this.zobrist_key ^= this.zobrist.piece(this.zobrist_pos[i], pm);
+        	}
+        	
+        	this.cells[i] = this.pieceIndex(pm)+1;
+        	
+        	return old;
         }
         else
         	throw new UnsupportedOperationException();
@@ -220,10 +282,24 @@ public class BoardOct<P> implements Board<P>
         	if( p == null )
         		throw new NullPointerException();
         	
-        	if( !this.isPos(p) )
+        	int i = this.index(p);
+        	
+        	if( i < 0 )
         		throw new IllegalArgumentException();
         	
-        	return this.pos_map.remove(p);
+        	P old = this.get(p);
+        	
+        	if( old != null )
+        	{
+        		this.occupied--;
+        		
+        		if( this.zobrist != null )
+        			this.zobrist_key ^= this.zobrist.piece(this.zobrist_pos[i], old);
+        	}
+        	
+        	this.cells[i] = 0;
+        	
+        	return old;
         }
         else
         	throw new UnsupportedOperationException();
@@ -237,4 +313,74 @@ public class BoardOct<P> implements Board<P>
     {
     	return new BoardOct<P>(this);
     }
+    
+    /** Imposta la tabella di Zobrist con cui mantenere la chiave dei pezzi sulla
+     * board, che da questo momento è aggiornata in tempo costante da ogni
+     * {@link BoardOct#put(Object, Pos)} e {@link BoardOct#remove(Pos)}. La tabella
+     * è mantenuta anche dalle copie.
+     * @param z  una tabella di Zobrist per una meccanica con le posizioni di questa board
+     * @throws NullPointerException se z è null */
+    public void setZobrist(Zobrist<P> z)
+    {
+    	Objects.requireNonNull(z);
+    	
+    	this.zobrist = z;
+    	this.zobrist_pos = new int[this.cells.length];
+    	this.zobrist_key = 0;
+    	
+    	for( int i=0 ; i<this.cells.length ; i++ )
+    	{
+    		this.zobrist_pos[i] = this.pos_table[i] == null ? -1 : z.index(this.pos_table[i]);
+    		
+    		if( this.cells[i] != 0 )
+    			this.zobrist_key ^= z.piece(this.zobrist_pos[i], this.get(this.pos_table[i]));
+    	}
+    }
+    
+    /** Ritorna la chiave di Zobrist dei pezzi sulla board (senza il turno).
+     * @return la chiave dei pezzi sulla board
+     * @throws IllegalStateException se non è stata impostata una tabella con
+     * {@link BoardOct#setZobrist(Zobrist)} */
+    public long zobristKey()
+    {
+    	if( this.zobrist == null )
+    		throw new IllegalStateException();
+    	
+    	return this.zobrist_key;
+    }
+    
+    /** Ritorna l'indice b*height+t della posizione p, o -1 se p non è una posizione della board
+     * @param p una posizione (non null)
+     * @return l'indice della posizione p, o -1
+     */
+    private int index(Pos p)
+    {
+    	if( p.b >= this.width || p.t >= this.height )
+    		return -1;
+    	
+    	int i = p.b*this.height + p.t;
+    	
+    	return this.pos_table[i] == null ? -1 : i;
+    }
+    
+    /** Ritorna l'indice del modello di pezzo pm in {@link BoardOct#pieces}, aggiungendolo se non c'è.
+     * I modelli di pezzo usati da un gioco sono pochi, quindi la ricerca è lineare.
+     * @param pm un modello di pezzo
+     * @return l'indice del modello di pezzo
+     */
+    private int pieceIndex(P pm)
+    {
+    	for( int i=0 ; i<this.n_pieces ; i++ )
+    	{
+    		if( this.pieces[i] == pm || this.pieces[i].equals(pm) )
+    			return i;
+    	}
+    	
+    	if( this.n_pieces == this.pieces.length )
+    		this.pieces = Arrays.copyOf(this.pieces, this.n_pieces*2);
+    	
+    	this.pieces[this.n_pieces] = pm;
+    	
+    	return this.n_pieces++;
+    }
 }
@@ -0,0 +1,413 @@
+package gapp.ulg.game.util;
+
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Situation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/** Un livello della visita in ampiezza delle situazioni di un gioco mantenuto su
+ * file, per livelli che non entrano in memoria (vedi
+ * {@link Probe#nextSituations(boolean, gapp.ulg.game.board.GameRuler.Next, Frontier, Path, long)}).
+ * <br>
+ * Il file contiene le codifiche ({@link SitPacker}) delle situazioni del livello,
+ * ognuna di {@link SitPacker#words(Mechanics)} long, ordinate e senza ripetizioni,
+ * quindi la dimensione del file è {@code size()*words*8} byte. Le situazioni si
+ * leggono in streaming con {@link Frontier#forEach(Consumer)}.
+ * <br>
+ * Le codifiche sono ordinate confrontando i long senza segno a partire
+ * dall'ultimo, come in {@link Symmetries#encode(Situation, long[])}.
+ * @param <P>  tipo del modello dei pezzi */
+public final class Frontier<P>
+{
+	/** Dimensione dei buffer dei file */
+	private static final int BUFFER = 1 << 16;
+
+	private final Mechanics<P> gM;
+	private final Path file;
+	private final long size;
+	/** Il minimo e il massimo grado delle situazioni del livello precedente e la
+	 * somma di tutti i gradi, come in {@link Probe.NSResult}. Per un livello creato
+	 * con {@link Frontier#of(Mechanics, Path, Collection)} sono tutti 0. */
+	public final long min, max, sum;
+
+	Frontier(Mechanics<P> gM, Path file, long size, long min, long max, long sum)
+	{
+		this.gM = gM;
+		this.file = file;
+		this.size = size;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+	}
+
+	/** Crea un livello con le situazioni date, scrivendole nel file dato.
+	 * @param gM  la meccanica del gioco
+	 * @param file  il file del livello, se esiste è sovrascritto
+	 * @param situations  le situazioni del livello, anche ripetute
+	 * @param <P>  tipo del modello dei pezzi
+	 * @return il livello
+	 * @throws NullPointerException se un parametro è null
+	 * @throws IllegalStateException se la scrittura del file fallisce */
+	public static <P> Frontier<P> of(Mechanics<P> gM, Path file, Collection<Situation<P>> situations)
+	{
+		Objects.requireNonNull(gM);
+		Objects.requireNonNull(file);
+
+		int w = SitPacker.words(gM);
+		Records buf = new Records(w, situations.size());
+		long[] ext = w > 1 ? new long[w-1] : null;
+
+		for( Situation<P> s : situations )
+		{
+			if( ext != null )
+				Arrays.fill(ext, 0L);
+
+			buf.add(SitPacker.encode(gM, s, ext), ext);
+		}
+
+		buf.sortDistinct();
+
+		try( Writer out = new Writer(file, w) )
+		{
+			buf.writeTo(out);
+			return new Frontier<>(gM, file, out.count, 0, 0, 0);
+		}
+		catch( IOException e ) { throw new IllegalStateException(e); }
+	}
+
+	/** @return la meccanica del gioco */
+	public Mechanics<P> mechanics() { return this.gM; }
+
+	/** @return il file del livello */
+	public Path file() { return this.file; }
+
+	/** @return il numero di situazioni (distinte) del livello */
+	public long size() { return this.size; }
+
+	/** Legge in streaming le situazioni del livello, nell'ordine del file, e per
+	 * ognuna esegue l'azione data.
+	 * @param action  l'azione da eseguire per ogni situazione
+	 * @throws NullPointerException se action è null
+	 * @throws IllegalStateException se la lettura del file fallisce */
+	public void forEach(Consumer<? super Situation<P>> action)
+	{
+		Objects.requireNonNull(action);
+
+		int w = SitPacker.words(this.gM);
+		long[] rec = new long[w], ext = w > 1 ? new long[w-1] : null;
+
+		try( Reader in = new Reader(this.file, w) )
+		{
+			while( in.next(rec) )
+			{
+				if( ext != null )
+					System.arraycopy(rec, 1, ext, 0, w-1);
+
+				action.accept(SitPacker.decode(this.gM, rec[0], ext));
+			}
+		}
+		catch( IOException e ) { throw new IllegalStateException(e); }
+	}
+
+	/** Cancella il file del livello, se esiste.
+	 * @throws IllegalStateException se la cancellazione fallisce */
+	public void delete()
+	{
+		try
+		{
+			Files.deleteIfExists(this.file);
+		}
+		catch( IOException e ) { throw new IllegalStateException(e); }
+	}
+
+	/** Confronta due record di w long, senza segno a partire dall'ultimo long */
+	static int compare(long[] a, int i, long[] b, int j, int w)
+	{
+		for( int k=w-1 ; k>=0 ; k-- )
+			if( a[i+k] != b[j+k] )
+				return Long.compareUnsigned(a[i+k], b[j+k]);
+
+		return 0;
+	}
+
+	/** Buffer in memoria di record di lunghezza fissa, ordinabile senza creare oggetti */
+	static final class Records
+	{
+		final int w;
+		final long[] data;
+		int count;
+
+		Records(int w, int capacity)
+		{
+			this.w = w;
+			this.data = new long[Math.max(1, capacity)*w];
+		}
+
+		/** @return true se il buffer è pieno */
+		boolean full() { return (this.count+1)*this.w > this.data.length; }
+
+		/** Aggiunge un record: il primo long e gli altri (ext può essere null se w è 1) */
+		void add(long first, long[] ext)
+		{
+			int base = this.count*this.w;
+
+			this.data[base] = first;
+			if( ext != null )
+				System.arraycopy(ext, 0, this.data, base+1, this.w-1);
+
+			this.count++;
+		}
+
+		/** Aggiunge il record di indice i dell'array dato */
+		void add(long[] src, int i)
+		{
+			System.arraycopy(src, i*this.w, this.data, this.count*this.w, this.w);
+			this.count++;
+		}
+
+		/** Ordina i record ed elimina i duplicati */
+		void sortDistinct()
+		{
+			if( this.count < 2 )
+				return;
+
+			this.sort(0, this.count-1, new long[this.w]);
+
+			int n = 1;
+			for( int i=1 ; i<this.count ; i++ )
+				if( compare(this.data, i*this.w, this.data, (n-1)*this.w, this.w) != 0 )
+				{
+					if( i != n )
+						System.arraycopy(this.data, i*this.w, this.data, n*this.w, this.w);
+					n++;
+				}
+
+			this.count = n;
+		}
+
+		/** Scrive i record nel file e svuota il buffer */
+		void writeTo(Writer out) throws IOException
+		{
+			for( int i=0 ; i<this.count ; i++ )
+				out.write(this.data, i*this.w);
+
+			this.count = 0;
+		}
+
+		/** Quicksort dei record tra gli indici lo e hi compresi, sulla partizione più
+		 * piccola ricorsivamente e sulla più grande iterativamente */
+		private void sort(int lo, int hi, long[] pivot)
+		{
+			while( hi - lo > 16 )
+			{
+				int mid = (lo + hi) >>> 1;
+
+				// Mediana di tre come pivot
+				if( this.cmp(mid, lo) < 0 ) this.swap(mid, lo);
+				if( this.cmp(hi, lo) < 0 ) this.swap(hi, lo);
+				if( this.cmp(hi, mid) < 0 ) this.swap(hi, mid);
+				System.arraycopy(this.data, mid*this.w, pivot, 0, this.w);
+
+				int i = lo, j = hi;
+				while( i <= j )
+				{
+					while( compare(this.data, i*this.w, pivot, 0, this.w) < 0 ) i++;
+					while( compare(this.data, j*this.w, pivot, 0, this.w) > 0 ) j--;
+
+					if( i <= j )
+						this.swap(i++, j--);
+				}
+
+				if( j - lo < hi - i )
+				{
+					this.sort(lo, j, pivot);
+					lo = i;
+				}
+				else
+				{
+					this.sort(i, hi, pivot);
+					hi = j;
+				}
+			}
+
+			// Insertion sort per gli intervalli piccoli
+			for( int i=lo+1 ; i<=hi ; i++ )
+				for( int j=i ; j>lo && this.cmp(j, j-1) < 0 ; j-- )
+					this.swap(j, j-1);
+		}
+
+		private int cmp(int i, int j) { return compare(this.data, i*this.w, this.data, j*this.w, this.w); }
+
+		private void swap(int i, int j)
+		{
+			for( int k=0 ; k<this.w ; k++ )
+			{
+				long t = this.data[i*this.w+k];
+				this.data[i*this.w+k] = this.data[j*this.w+k];
+				this.data[j*this.w+k] = t;
+			}
+		}
+	}
+
+	/** Scrive record di w long in un file */
+	static final class Writer implements Closeable
+	{
+		private final DataOutputStream out;
+		private final int w;
+		long count;
+
+		Writer(Path file, int w) throws IOException
+		{
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER));
+			this.w = w;
+		}
+
+		void write(long[] src, int off) throws IOException
+		{
+			for( int k=0 ; k<this.w ; k++ )
+				this.out.writeLong(src[off+k]);
+
+			this.count++;
+		}
+
+		@Override
+		public void close() throws IOException { this.out.close(); }
+	}
+
+	/** Legge record di w long da un file */
+	static final class Reader implements Closeable
+	{
+		private final DataInputStream in;
+		private final int w;
+
+		Reader(Path file, int w) throws IOException
+		{
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER));
+			this.w = w;
+		}
+
+		/** Legge il prossimo record in dst
+		 * @return false se il file è finito */
+		boolean next(long[] dst) throws IOException
+		{
+			try
+			{
+				dst[0] = this.in.readLong();
+			}
+			catch( EOFException e ) { return false; }
+
+			for( int k=1 ; k<this.w ; k++ )
+				dst[k] = this.in.readLong();
+
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException { this.in.close(); }
+	}
+
+	/** Ritorna il massimo numero di file fusi insieme da
+	 * {@link Frontier#merge(List, Path, int, int)} perché i buffer dei file aperti,
+	 * compreso quello del file scritto, occupino al più memory byte
+	 * @param memory  massimo numero di byte dei buffer
+	 * @return il numero di file, almeno 2 */
+	static int fanIn(long memory)
+	{
+		return (int)Math.max(2, Math.min(Integer.MAX_VALUE, memory/BUFFER - 1));
+	}
+
+	/** Fonde i file dati, ognuno ordinato e senza ripetizioni, nel file out
+	 * eliminando i duplicati tra file diversi. Sono aperti al più fanIn file alla
+	 * volta: finché i file sono più di fanIn, i primi fanIn sono fusi in un file
+	 * temporaneo nella directory di out, che li sostituisce in fondo alla lista runs,
+	 * e sono cancellati. Quindi alla fine, anche in caso di eccezione, in runs ci
+	 * sono tutti e soli i file temporanei ancora da cancellare.
+	 * @return il numero di record scritti */
+	static long merge(List<Path> runs, Path out, int w, int fanIn) throws IOException
+	{
+		Path dir = out.toAbsolutePath().getParent();
+
+		while( runs.size() > fanIn )
+		{
+			Path run = Files.createTempFile(dir, "frontier", ".run");
+			runs.add(run);
+			List<Path> group = runs.subList(0, fanIn);
+
+			merge_pass(group, run, w);
+
+			for( Path p : group )
+				Files.delete(p);
+			group.clear();
+		}
+
+		return merge_pass(runs, out, w);
+	}
+
+	/** Fonde i file dati, tutti aperti insieme, nel file out
+	 * @return il numero di record scritti */
+	private static long merge_pass(List<Path> runs, Path out, int w) throws IOException
+	{
+		List<Reader> readers = new ArrayList<>();
+		PriorityQueue<long[]> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+			int c = compare(a, 0, b, 0, w);
+			return c != 0 ? c : Long.compare(a[w], b[w]);
+		});
+
+		try( Writer writer = new Writer(out, w) )
+		{
+			// Ogni elemento dello heap è un record seguito dall'indice del suo file
+			for( Path run : runs )
+			{
+				Reader r = new Reader(run, w);
+				long[] rec = new long[w+1];
+
+				readers.add(r);
+				rec[w] = readers.size()-1;
+
+				if( r.next(rec) )
+					heap.add(rec);
+			}
+
+			long[] last = null;
+
+			while( !heap.isEmpty() )
+			{
+				long[] rec = heap.poll();
+
+				if( last == null || compare(rec, 0, last, 0, w) != 0 )
+				{
+					writer.write(rec, 0);
+
+					if( last == null )
+						last = new long[w];
+					System.arraycopy(rec, 0, last, 0, w);
+				}
+
+				if( readers.get((int)rec[w]).next(rec) )
+					heap.add(rec);
+			}
+
+			return writer.count;
+		}
+		finally
+		{
+			for( Reader r : readers )
+				r.close();
+		}
+	}
+}
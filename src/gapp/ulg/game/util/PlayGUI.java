@@ -14,6 +14,8 @@ import static gapp.ulg.game.util.PlayerGUI.MoveChooser;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -35,6 +37,15 @@ public class PlayGUI<P>
     private long max_block_time;
     private ExecutorService confinement_thread;
     
+    /** Flag che indica la modalità condivisa (vedi {@link PlayGUI#PlayGUI(Observer, long, boolean)}) */
+    private final boolean shared;
+    /** Crea il thread di confinamento e quelli di controllo del tempo */
+    private final ThreadFactory thread_factory;
+    /** Pool creati per i giocatori della partita in corso, da terminare alla sua fine */
+    private volatile List<ExecutorService> player_pools = new ArrayList<>();
+    /** Esecutore delle notifiche parallele delle mosse ai giocatori o null se sono sequenziali */
+    private volatile ExecutorService notify_pool;
+    
     // Variabili da usare solo nel thread di confinamento
     private volatile GameFactory<GameRuler<PieceModel<Species>>> game_factory;
     private volatile List<PlayerFactory<Player<PieceModel<Species>>, GameRuler<PieceModel<Species>>>> player_factories;
@@ -145,13 +156,44 @@ public class PlayGUI<P>
      * @throws NullPointerException se {@code obs} è null
      */
     public PlayGUI(Observer<P> obs, long maxBlockTime)
+    {
+        this(obs, maxBlockTime, false);
+    }
+    
+    /**
+     * Crea un oggetto {@link PlayGUI} come {@link PlayGUI#PlayGUI(Observer, long)},
+     * ma se {@code shared} è true lo fa funzionare in <i>modalità condivisa</i>,
+     * pensata per ospitare molte partite contemporanee nella stessa JVM:
+     * <br>
+     * - il thread di confinamento, in cui gira anche il ciclo della partita, e i
+     * thread che notificano i timeout sono virtual thread, se la JVM li supporta
+     * (vedi {@link Utils#VIRTUAL_THREAD_FACTORY}), quindi non occupano un thread del
+     * sistema operativo mentre sono bloccati;
+     * <br>
+     * - i giocatori ricevono con {@link Player#threads(int, ForkJoinPool, ExecutorService)}
+     * un {@link ForkJoinPool} e un esecutore in background condivisi da tutte le
+     * partite in modalità condivisa, ognuno con un thread per processore, invece di
+     * pool creati per ogni giocatore. Quindi {@code fjpSize} e {@code bgExecSize}
+     * di {@link PlayGUI#play(long, long, long, int, int, int)} se > 0 permettono
+     * l'uso dei pool condivisi ma non ne determinano la dimensione.
+     *
+     * @param obs          un osservatore del gioco
+     * @param maxBlockTime tempo massimo in millisecondi di attesa per un blocco
+     *                     del thread di confinamento, se < 0, significa nessun
+     *                     limite di tempo
+     * @param shared       true per la modalità condivisa
+     * @throws NullPointerException se {@code obs} è null
+     */
+    public PlayGUI(Observer<P> obs, long maxBlockTime, boolean shared)
     {
         if(obs == null)
             throw new NullPointerException();
         
         this.observer = obs;
         this.max_block_time = maxBlockTime;
-        this.confinement_thread = Executors.newSingleThreadExecutor(Utils.DAEMON_THREAD_FACTORY);
+        this.shared = shared;
+        this.thread_factory = shared ? Utils.VIRTUAL_THREAD_FACTORY : Utils.DAEMON_THREAD_FACTORY;
+        this.confinement_thread = Executors.newSingleThreadExecutor(this.thread_factory);
     }
     
     /**
@@ -811,6 +853,41 @@ public class PlayGUI<P>
         }
     }
     
+    /**
+     * Imposta come sono comunicate le mosse durante le partite. Se {@code parallel}
+     * è false (il default), a ogni mossa {@link Player#moved(int, Move)} è invocato
+     * per un giocatore alla volta e poi è invocato {@link Observer#moved(int, Move)},
+     * ognuno con il suo limite di tempo. Se invece è true, i metodi
+     * {@link Player#moved(int, Move)} di tutti i giocatori sono invocati
+     * contemporaneamente, ognuno in un thread ausiliario, mentre
+     * {@link Observer#moved(int, Move)} è invocato nel thread di confinamento, e
+     * tutte le invocazioni hanno un'unica scadenza: {@code timeout} di
+     * {@link PlayGUI#play(long, long, long, int, int, int)} millisecondi dall'inizio
+     * delle notifiche. Il giocatore che non termina entro la scadenza è squalificato
+     * come nel caso sequenziale.
+     * <br>
+     * Le invocazioni di un giocatore avvengono comunque una alla volta e ognuna
+     * vede gli effetti delle precedenti, quindi anche giocatori non thread-safe
+     * possono essere usati, ma {@link Player#moved(int, Move)} non è invocato nel
+     * thread di confinamento.
+     *
+     * @param parallel true per comunicare le mosse in parallelo
+     * @throws IllegalStateException se c'è una partita in corso
+     */
+    public void setParallelNotify(boolean parallel)
+    {
+        if(this.is_match_in_progress)
+            throw new IllegalStateException();
+        
+        if(parallel && this.notify_pool == null)
+            this.notify_pool = Executors.newCachedThreadPool(this.thread_factory);
+        else if(!parallel && this.notify_pool != null)
+        {
+            this.notify_pool.shutdown();
+            this.notify_pool = null;
+        }
+    }
+    
     
     /**
      * Inizia una partita con un gioco fabbricato dalla GameFactory impostata e i
@@ -909,15 +986,29 @@ public class PlayGUI<P>
         
         this.is_match_in_progress = false;
         this.confinement_thread.shutdownNow();
+        this.shutDownPlayerPools();
         this.game_ruler = null;
         this.game_factory = null;
         this.player_factories = null;
         this.player_names = null;
         
-        this.confinement_thread = Executors.newSingleThreadExecutor(Utils.DAEMON_THREAD_FACTORY);
+        this.confinement_thread = Executors.newSingleThreadExecutor(this.thread_factory);
         return true;
     }
     
+    /**
+     * Termina i pool creati per i giocatori dell'ultima partita. I pool condivisi
+     * della modalità condivisa e il Common Pool non sono mai terminati.
+     */
+    private void shutDownPlayerPools()
+    {
+        List<ExecutorService> pools = this.player_pools;
+        this.player_pools = new ArrayList<>();
+        
+        for(ExecutorService pool : pools)
+            pool.shutdownNow();
+    }
+    
     /**
      * Esegue le operazioni necessarie per iniziare una partita.
      * Chiamata dal thread di confinamento.
@@ -933,7 +1024,8 @@ public class PlayGUI<P>
                                 long timeout)
     {
         this.players = new ArrayList<>();
-        AsyncController async_controller = new AsyncController(this::onControllerThreadTimeout);
+        this.shutDownPlayerPools();
+        TimeoutController timeout_controller = new TimeoutController(this::onControllerThreadTimeout);
         
         try
         {
@@ -943,49 +1035,65 @@ public class PlayGUI<P>
                 if(factory == null)
                     continue;
                 
-                async_controller.startTimer(timeout, 0, "Time out newPlayer");
+                timeout_controller.startTimer(timeout, 0, "Time out newPlayer");
                 Player<PieceModel<PieceModel.Species>> player = factory.newPlayer(this.game_factory,
                                                                                   this.player_names[i]);
-                async_controller.stopTimer();
+                timeout_controller.stopTimer();
                 
-                ForkJoinPool fjp = forkjoinpool_thread_count == 0 ? null
-                                                                  : (forkjoinpool_thread_count > 0 ? new ForkJoinPool(forkjoinpool_thread_count)
-                                                                                                   : ForkJoinPool.commonPool());
-                ExecutorService executor = background_thread_count == 0 ? null
-                                                                        : (background_thread_count > 0 ? Executors.newFixedThreadPool(background_thread_count)
-                                                                                                       : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+                ForkJoinPool fjp;
+                ExecutorService executor;
+                if(this.shared)
+                {
+                    fjp = forkjoinpool_thread_count == 0 ? null
+                                                         : (forkjoinpool_thread_count > 0 ? SharedPools.FJP : ForkJoinPool.commonPool());
+                    executor = background_thread_count == 0 ? null : SharedPools.BG_EXEC;
+                }
+                else
+                {
+                    fjp = forkjoinpool_thread_count == 0 ? null
+                                                         : (forkjoinpool_thread_count > 0 ? new ForkJoinPool(forkjoinpool_thread_count)
+                                                                                          : ForkJoinPool.commonPool());
+                    executor = background_thread_count == 0 ? null
+                                                            : (background_thread_count > 0 ? Executors.newFixedThreadPool(background_thread_count, Utils.DAEMON_THREAD_FACTORY)
+                                                                                           : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), Utils.DAEMON_THREAD_FACTORY));
+                    
+                    if(forkjoinpool_thread_count > 0)
+                        this.player_pools.add(fjp);
+                    if(executor != null)
+                        this.player_pools.add(executor);
+                }
                 player.threads(get_move_max_threads, fjp, executor);
                 this.players.add(player);
             }
         }
         catch(Exception e)
         {
-            async_controller.shutDown();
+            timeout_controller.shutDown();
             throw new IllegalStateException(e);
         }
         
         try
         {
-            async_controller.startTimer(timeout, 0, "Time out setPlayerNames");
+            timeout_controller.startTimer(timeout, 0, "Time out setPlayerNames");
             this.game_factory.setPlayerNames(this.player_names);
-            async_controller.stopTimer();
+            timeout_controller.stopTimer();
             
-            async_controller.startTimer(timeout, 0, "Time out newGame");
+            timeout_controller.startTimer(timeout, 0, "Time out newGame");
             this.game_ruler = game_factory.newGame();
-            async_controller.stopTimer();
+            timeout_controller.stopTimer();
             
             for(int i = 0; i < this.players.size(); ++i)
             {
                 Player<PieceModel<PieceModel.Species>> player = this.players.get(i);
                 
-                async_controller.startTimer(timeout, i + 1, "Time out setGame");
+                timeout_controller.startTimer(timeout, i + 1, "Time out setGame");
                 player.setGame(this.game_ruler.copy());
-                async_controller.stopTimer();
+                timeout_controller.stopTimer();
             }
             
-            async_controller.startTimer(timeout, 0, "Time out setGame observer");
+            timeout_controller.startTimer(timeout, 0, "Time out setGame observer");
             this.observer.setGame((GameRuler<P>)this.game_ruler.copy());
-            async_controller.stopTimer();
+            timeout_controller.stopTimer();
         }
         catch(Exception e)
         {
@@ -993,7 +1101,7 @@ public class PlayGUI<P>
         }
         finally
         {
-            async_controller.shutDown();
+            timeout_controller.shutDown();
         }
     }
     
@@ -1009,7 +1117,7 @@ public class PlayGUI<P>
                                  long timeout,
                                  long minimum_turn_duration)
     {
-        AsyncController async_controller = new AsyncController(this::onControllerThreadTimeout);
+        TimeoutController timeout_controller = new TimeoutController(this::onControllerThreadTimeout);
         
         try
         {
@@ -1028,9 +1136,9 @@ public class PlayGUI<P>
                 if(get_move_wait_time >= 0)
                     get_move_wait_time += move_choice_tolerance;
                 
-                async_controller.startTimer(get_move_wait_time, current_player_id, "Move choice timed out");
+                timeout_controller.startTimer(get_move_wait_time, current_player_id, "Move choice timed out");
                 Move<PieceModel<PieceModel.Species>> move = current_player.getMove();
-                async_controller.stopTimer();
+                timeout_controller.stopTimer();
     
     
                 // Enforce a minimum turn duration. Do not delay for interactive players
@@ -1046,23 +1154,31 @@ public class PlayGUI<P>
                 
                 
                 // Execute move
-                async_controller.startTimer(timeout, current_player_id, "Move execution in GameRuler timed out");
+                timeout_controller.startTimer(timeout, current_player_id, "Move execution in GameRuler timed out");
                 this.game_ruler.move(move);
-                async_controller.stopTimer();
+                timeout_controller.stopTimer();
                 
-                for(int i = 0; i < this.players.size(); ++i)
+                ExecutorService notify_pool = this.notify_pool;
+                if(notify_pool != null && this.players.size() > 1)
                 {
-                    Player<PieceModel<PieceModel.Species>> player = this.players.get(i);
+                    this.notifyMovedInParallel(notify_pool, timeout_controller, timeout, current_player_id, move);
+                }
+                else
+                {
+                    for(int i = 0; i < this.players.size(); ++i)
+                    {
+                        Player<PieceModel<PieceModel.Species>> player = this.players.get(i);
+                        
+                        timeout_controller.startTimer(timeout, i + 1, String.format("Move execution of player %d timed out", i + 1));
+                        player.moved(current_player_id, move);
+                        timeout_controller.stopTimer();
+                    }
                     
-                    async_controller.startTimer(timeout, i + 1, String.format("Move execution of player %d timed out", i + 1));
-                    player.moved(current_player_id, move);
-                    async_controller.stopTimer();
+                    timeout_controller.startTimer(timeout, 0, "Move execution in GameRuler timed out");
+                    this.observer.moved(current_player_id, (Move<P>)move);
+                    timeout_controller.stopTimer();
                 }
                 
-                async_controller.startTimer(timeout, 0, "Move execution in GameRuler timed out");
-                this.observer.moved(current_player_id, (Move<P>)move);
-                async_controller.stopTimer();
-                
                 match_result = this.game_ruler.result();
             }
         }
@@ -1071,7 +1187,74 @@ public class PlayGUI<P>
         }
         finally
         {
-            async_controller.shutDown();
+            timeout_controller.shutDown();
+            this.shutDownPlayerPools();
+        }
+    }
+    
+    /**
+     * Comunica la mossa a tutti i giocatori in parallelo, ognuno in un thread di
+     * {@code notify_pool}, e all'observer nel thread di confinamento, con un'unica
+     * scadenza per tutte le invocazioni. Chiamata dal thread di confinamento.
+     *
+     * @param notify_pool        Esecutore delle notifiche ai giocatori
+     * @param timeout_controller Controller del timeout dell'observer
+     * @param timeout            Tempo a disposizione per tutte le notifiche, se <= 0 nessun limite
+     * @param player_id          Turno del giocatore che ha eseguito la mossa
+     * @param move               La mossa eseguita
+     */
+    private void notifyMovedInParallel(ExecutorService notify_pool,
+                                       TimeoutController timeout_controller,
+                                       long timeout,
+                                       int player_id,
+                                       Move<PieceModel<PieceModel.Species>> move)
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<Future<?>> futures = new ArrayList<>();
+        
+        try
+        {
+            for(Player<PieceModel<PieceModel.Species>> player : this.players)
+                futures.add(notify_pool.submit(() -> player.moved(player_id, move)));
+            
+            timeout_controller.startTimer(timeout, 0, "Move execution in GameRuler timed out");
+            this.observer.moved(player_id, (Move<P>)move);
+            timeout_controller.stopTimer();
+            
+            for(int i = 0; i < futures.size(); ++i)
+            {
+                Future<?> future = futures.get(i);
+                long remaining = timeout > 0 ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) : -1;
+                
+                try
+                {
+                    try
+                    {
+                        getFutureResult(future, remaining);
+                    }
+                    catch(TimeoutException e)
+                    {
+                        // Come nel caso sequenziale, notifica il timeout e attende comunque il giocatore
+                        if(this.is_match_in_progress)
+                            this.onControllerThreadTimeout(i + 1, String.format("Move execution of player %d timed out", i + 1));
+                        future.get();
+                    }
+                }
+                catch(ExecutionException e)
+                {
+                    if(e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException)e.getCause();
+                    if(e.getCause() instanceof Error)
+                        throw (Error)e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        }
+        finally
+        {
+            for(Future<?> future : futures)
+                future.cancel(true);
         }
     }
     
@@ -1090,170 +1273,168 @@ public class PlayGUI<P>
     
     
     /**
-     * Implementa il thread di controllo del timeout delle funzioni di una partita
+     * Controlla il timeout delle funzioni di una partita. Tutti i controller della
+     * JVM condividono un solo thread di servizio ({@link TimeoutController#SERVICE}),
+     * e armare e disarmare un timer sono operazioni lock-free che non risvegliano
+     * tale thread: il timer armato è un oggetto immutabile in un
+     * {@link AtomicReference} e il thread di servizio controlla la scadenza solo
+     * all'istante in cui è stato programmato un controllo. Se a quell'istante il
+     * timer è stato riarmato con una scadenza successiva, il controllo è
+     * riprogrammato, quindi finché i timeout sono uguali ogni controller programma
+     * al più un controllo per durata del timeout.
      */
-    private class AsyncController
+    private class TimeoutController
     {
-        private Thread thread;
+        /** Timer armato: scadenza in nanosecondi, turno del giocatore e messaggio */
+        private final class Armed
+        {
+            final long deadline;
+            final int player_id;
+            final String message;
+            
+            Armed(long deadline, int player_id, String message)
+            {
+                this.deadline = deadline;
+                this.player_id = player_id;
+                this.message = message;
+            }
+        }
+        
         private final BiConsumer<Integer, String> timeout_callback;
         
-        private volatile long timeout;
-        private volatile int current_player_id;
-        private volatile String timeout_message;
+        /** Il timer armato o null se è in stato di stop */
+        private final AtomicReference<Armed> armed = new AtomicReference<>();
+        /** Istante (in nanosecondi) del prossimo controllo programmato, 0 se non ce n'è uno */
+        private final AtomicLong check_at = new AtomicLong();
         
-        private volatile boolean is_running;
         private volatile boolean is_shut_down;
         
         /**
-         * Crea il thread (demone) di controllo e ci fa partire un timer in stato di stop.
-         * In caso di timeout invoca timeout_callback dal thread di controllo.
+         * Crea il controller con il timer in stato di stop.
+         * In caso di timeout invoca timeout_callback in un nuovo thread (demone).
          *
          * @param timeout_callback Parametri: turno di un player, messaggio informativo.
          *                         Puo' essere null.
          */
-        public AsyncController(BiConsumer<Integer, String> timeout_callback)
+        public TimeoutController(BiConsumer<Integer, String> timeout_callback)
         {
             this.timeout_callback = timeout_callback;
-            this.is_running = false;
-            
-            this.thread = new Thread(this::execute);
-            this.thread.setDaemon(true);
-            this.thread.start();
         }
         
         /**
-         * Notifica il thread di controllo di iniziare a misurare il tempo.
+         * Inizia a misurare il tempo.
          * Se il timer non e' in stato di stop, non fa niente.
-         * Se il timer e' stato ucciso, non fa niente.
+         * Se il controller e' stato terminato, non fa niente.
          * Se il parametro timeout <= 0, non fa niente (equivalente a non andare mai in timeout)
          *
          * @param timeout         Il tempo da attendere prima di notificare l'observer del timeout.
          * @param player_turn     Il turno del giocatore che causa il timeout. Viene passato all'observer.
          * @param timeout_message Il messaggio che informa sulla causa del timeout. Viene passato all'observer.
          */
-        synchronized public void startTimer(long timeout, int player_turn, String timeout_message)
+        public void startTimer(long timeout, int player_turn, String timeout_message)
         {
             if(timeout <= 0)
                 return;
-            
             if(this.is_shut_down)
                 return;
-            if(this.is_running)
-                return;
             
-            this.timeout = timeout;
-            this.current_player_id = player_turn;
-            this.timeout_message = timeout_message;
+            Armed a = new Armed(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout), player_turn, timeout_message);
             
-            this.is_running = true;
-            
-            this.notify();
+            if(this.armed.compareAndSet(null, a))
+                this.schedule(a.deadline);
         }
         
         /**
-         * Notifica il thread di controllo di smettere di misurare il tempo.
+         * Smette di misurare il tempo.
          * Non e' garantito che stoppare il timer non causi un timeout.
          * Chiamare questa funzione senza avere avviato il timer non ha nessun effetto.
          */
-        synchronized public void stopTimer()
+        public void stopTimer()
         {
-            if(this.is_shut_down)
-                return;
-            if(this.is_running == false)
-                return;
-            
-            this.is_running = false;
-            
-            this.notify();
+            this.armed.set(null);
         }
         
         /**
-         * Blocca il timer e causa la terminazione del thread di controllo.
-         * Se e' gia' stato ucciso, non succede nulla.
+         * Blocca il timer e disattiva il controller.
+         * Se e' gia' stato terminato, non succede nulla.
          */
-        synchronized public void shutDown()
+        public void shutDown()
         {
-            if(this.is_shut_down)
-                return;
-            
-            this.is_running = false;
             this.is_shut_down = true;
-            
-            this.notify();
+            this.armed.set(null);
         }
         
         /**
-         * Sta in attesa finche' non viene richiesto di misurare del tempo.
-         * Questo metodo parte alla construzione dell'oggetto e gira su un
-         * thread demone indipendente
-         * Per fermare il thread e' necessario chiamare shutDown
+         * Programma un controllo all'istante dato, a meno che ce ne sia gia' uno
+         * programmato non dopo tale istante.
+         *
+         * @param at istante del controllo in nanosecondi
          */
-        synchronized private void execute()
+        private void schedule(long at)
         {
-            try
+            while(true)
             {
-                ON_SHUTDOWN:
-                while(this.is_shut_down == false)
+                long pending = this.check_at.get();
+                
+                if(pending != 0 && pending - at <= 0)
+                    return;
+                
+                if(this.check_at.compareAndSet(pending, at))
                 {
-                    // aspetta finche' non viene chiamata startTimer o shutDown
-                    while(this.is_running == false)
-                    {
-                        this.wait();
-                        
-                        // se il risveglio viene da shutDown, si esce
-                        if(this.is_shut_down)
-                        {
-                            break ON_SHUTDOWN;
-                        }
-                    }
-                    
-                    
-                    long remaining_time = this.timeout;
-                    long start_time = System.currentTimeMillis();
-                    
-                    while(remaining_time > 0)
-                    {
-                        this.wait(remaining_time);
-                        
-                        long elapsed_time = System.currentTimeMillis() - start_time;
-                        remaining_time = this.timeout - elapsed_time;
-                        
-                        if(remaining_time > 0) // risveglio a caso oppure notificato
-                        {
-                            if(this.is_running) // risveglio a caso
-                            {
-                                continue;
-                            }
-                            else // risveglio notificato
-                            {
-                                break;
-                            }
-                        }
-                        else // risveglio per timeout
-                        {
-                            this.is_running = false;
-                            
-                            // per essere sicuri che un timeout a partita finita non rompe qualcosa
-                            // dovrebbe essere impossibile, ma non si sa mai
-                            if(is_match_in_progress)
-                            {
-                                if(this.timeout_callback != null)
-                                {
-                                    this.timeout_callback.accept(this.current_player_id, this.timeout_message);
-                                }
-                            }
-                            break;
-                        }
-                    }
+                    SERVICE.schedule(() -> this.check(at), at - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    return;
                 }
             }
-            catch(InterruptedException ignored)
+        }
+        
+        /**
+         * Eseguito dal thread di servizio all'istante programmato: se il timer
+         * armato e' scaduto, lo porta in stato di stop e notifica il timeout,
+         * altrimenti programma il controllo alla sua scadenza.
+         *
+         * @param at istante per cui era stato programmato il controllo
+         */
+        private void check(long at)
+        {
+            // Un controllo piu' recente e anticipato lo sostituisce
+            if(!this.check_at.compareAndSet(at, 0))
+                return;
+            
+            Armed a = this.armed.get();
+            if(a == null)
+                return;
+            
+            if(System.nanoTime() - a.deadline < 0)
+            {
+                this.schedule(a.deadline);
+                return;
+            }
+            
+            // per essere sicuri che un timeout a partita finita non rompe qualcosa
+            if(this.armed.compareAndSet(a, null) && is_match_in_progress && this.timeout_callback != null)
             {
-                
+                // il callback puo' bloccare, quindi non gira nel thread di servizio
+                thread_factory.newThread(() -> this.timeout_callback.accept(a.player_id, a.message)).start();
             }
         }
     }
     
+    /** Thread di servizio di tutti i {@link TimeoutController} della JVM */
+    private static final ScheduledExecutorService SERVICE = Executors.newSingleThreadScheduledExecutor(Utils.DAEMON_THREAD_FACTORY);
+    
+    
+    /**
+     * Pool condivisi dai giocatori di tutte le partite in modalità condivisa, creati
+     * alla prima partita che li usa. I thread sono daemon e i pool non sono mai
+     * terminati.
+     */
+    private static final class SharedPools
+    {
+        static final ForkJoinPool FJP = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        static final ExecutorService BG_EXEC = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                                            Utils.DAEMON_THREAD_FACTORY);
+    }
+    
     
     /**
      * Utility per fare il get di un Future senza peroccuparsi di timeout negativi
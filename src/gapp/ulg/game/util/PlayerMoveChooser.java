@@ -580,7 +580,7 @@ public class PlayerMoveChooser<P> implements MoveChooser<P>
 		    			    	}
 	    			    	}
 	    			    	
-	    			    	pp[i] = new Pos(b, t);
+	    			    	pp[i] = Pos.of(b, t);
 	    			    	i++;
 	    				}
 	    				
@@ -962,7 +962,7 @@ public class PlayerMoveChooser<P> implements MoveChooser<P>
 		    			    	}
 	    			    	}
 	    			    	
-	    			    	board.put(new Pos(b,t), board.get(p));
+	    			    	board.put(Pos.of(b,t), board.get(p));
 	    			    	board.remove(p);
 	    				}
 	    			}
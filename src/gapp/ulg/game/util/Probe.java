@@ -1,22 +1,26 @@
 package gapp.ulg.game.util;
 
 import gapp.ulg.game.board.GameRuler;
-import gapp.ulg.game.board.Pos;
 import gapp.ulg.game.board.GameRuler.Situation;
 
 import static gapp.ulg.game.board.GameRuler.Next;
 import static gapp.ulg.game.board.GameRuler.Mechanics;
 
-import java.math.BigInteger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
 
 /** <b>IMPLEMENTARE I METODI INDICATI CON "DA IMPLEMENTARE" SECONDO LE SPECIFICHE
@@ -25,14 +29,20 @@ import java.util.function.Function;
  * Metodi per analizzare giochi */
 public class Probe
 {
+	/** Numero di situazioni di partenza espanse insieme da
+	 * {@link Probe#nextSituations(boolean, Next, Frontier, Path, long)} */
+	private static final int BATCH = 1024;
+	
     /** Un oggetto {@code EncS} è la codifica compatta di una situazione di gioco
      * {@link GameRuler.Situation}. È utile per mantenere in memoria insiemi con
      * moltissime situazioni minimizzando la memoria richiesta.
      * @param <P>  tipo del modello dei pezzi */
     public static class EncS<P>
     {
-    	/** Array di byte che rappresenta una situazione codificata */
-    	public final byte[] encoded;
+    	/** Primo long della codifica a bit impacchettati (vedi {@link SitPacker}) */
+    	public final long encoded;
+    	/** Long successivi al primo, null se la situazione sta in un solo long */
+    	public final long[] encoded_ext;
     	
     	/** Crea una codifica compatta della situazione data relativa al gioco la
          * cui meccanica è specificata. La codifica è compatta almeno quanto quella
@@ -44,12 +54,24 @@ public class Probe
          * @param s  una situazione dello stesso gioco */
         public EncS(Mechanics<P> gM, Situation<P> s)
         {
-        	BigInteger enc = BigInteger.ZERO, base = BigInteger.valueOf(gM.pieces.size()+1);
+        	int words = SitPacker.words(gM);
         	
-        	for( Pos p : gM.positions )
-        		enc = enc.multiply(base).add(BigInteger.valueOf(gM.pieces.indexOf(s.get(p))+1));
+        	this.encoded_ext = words > 1 ? new long[words-1] : null;
+        	this.encoded = SitPacker.encode(gM, s, this.encoded_ext);
+        }
+
+        /** Crea la codifica compatta canonica della situazione data rispetto alle
+         * simmetrie date (vedi {@link Symmetries#encode(Situation, long[])}), così
+         * che situazioni simmetriche abbiano codifiche uguali. La decodifica ritorna
+         * la situazione simmetrica che rappresenta quella data.
+         * @param sym  le simmetrie del gioco
+         * @param s  una situazione dello stesso gioco */
+        public EncS(Symmetries<P> sym, Situation<P> s)
+        {
+        	int words = SitPacker.words(sym.mechanics());
         	
-        	this.encoded = enc.multiply(BigInteger.valueOf(2*gM.np+1)).add(BigInteger.valueOf(s.turn+gM.np)).toByteArray();
+        	this.encoded_ext = words > 1 ? new long[words-1] : null;
+        	this.encoded = sym.encode(s, this.encoded_ext);
         }
 
         /** Ritorna la situazione codificata da questo oggetto. Se {@code gM} è null
@@ -59,22 +81,7 @@ public class Probe
          * @return la situazione codificata da questo oggetto */
         public Situation<P> decode(Mechanics<P> gM)
         {
-        	BigInteger base = BigInteger.valueOf(gM.pieces.size()+1);
-            BigInteger[] div_result = new BigInteger(this.encoded).divideAndRemainder(BigInteger.valueOf(2*gM.np+1));
-            
-            Map<Pos, P> conf_map = new HashMap<>();
-            int remainder, turn = div_result[1].intValue()-gM.np;
-            
-            for( int i = gM.positions.size()-1 ; i >= 0 ; i-- )
-            {
-            	div_result = div_result[0].divideAndRemainder(base);
-            	remainder = div_result[1].intValue();
-                
-                if (remainder > 0)
-                	conf_map.put(gM.positions.get(i), gM.pieces.get(remainder-1));
-            }
-            
-            return new Situation<>(conf_map, turn);
+        	return SitPacker.decode(gM, this.encoded, this.encoded_ext);
         }
 
         /** Questa oggetto è uguale a {@code x} se e solo se {@code x} è della stessa
@@ -90,7 +97,7 @@ public class Probe
             {
             	EncS<?> other = (EncS<?>)x;
             	
-            	return Arrays.equals(this.encoded, other.encoded);
+            	return this.encoded == other.encoded && Arrays.equals(this.encoded_ext, other.encoded_ext);
             }
         	
         	return false;
@@ -101,7 +108,7 @@ public class Probe
         @Override
         public int hashCode()
         {
-        	return Arrays.hashCode(this.encoded);
+        	return 31*Long.hashCode(this.encoded) + Arrays.hashCode(this.encoded_ext);
         }
     }
     
@@ -155,10 +162,12 @@ public class Probe
     	long min=Integer.MAX_VALUE, max=Integer.MIN_VALUE, sum=0, size;
     	
     	List<S> result;
-    	Set<S> next = new HashSet<>();
+    	Set<S> next;
     	
     	if(!parallel)
     	{
+    		next = new HashSet<>();
+    		
     		for( S start_situation : start)
         	{
     			result = getNextSetEncoded(start_situation, nextF, dec, enc);
@@ -183,57 +192,332 @@ public class Probe
     	}
     	else
     	{
-    		List<ForkJoinTask<List<S>>> tasks = new ArrayList<>();
-        	
-        	// Per ogni situazione di partenza, ottengo le situazioni successive
-        	for( S start_situation : start)
-        	{
-        		tasks.add(ForkJoinTask.adapt( () -> getNextSetEncoded(start_situation, nextF, dec, enc) ));
-        	}
+    		// I task inseriscono direttamente nell'insieme concorrente e si dividono le situazioni di partenza
+    		Thread caller = Thread.currentThread();
+    		next = ConcurrentHashMap.newKeySet();
+    		long threshold = Math.max(1, start.size() / (8L*ForkJoinPool.getCommonPoolParallelism()));
     		
-        	if( Thread.currentThread().isInterrupted() )
+    		NextTask<P,S> root = new NextTask<>(start.spliterator(), threshold, caller, nextF, dec, enc, next);
+    		long[] stats;
+    		
+    		try
     		{
-        		tasks.forEach( (tt) -> tt.cancel(true) );
-        		return null;
+    			stats = root.invoke();
     		}
-        	
-        	try
-        	{
-        		for( ForkJoinTask<List<S>> t : ForkJoinTask.invokeAll(tasks) )
-            	{
-        			result = t.join();
-        			
-        			if( Thread.currentThread().isInterrupted() || result==null )
-        			{
-        				tasks.forEach( (tt) -> tt.cancel(true) );
-        				return null;
-        			}
-        			
-        			// Aggiorno l'insieme finale con quello parziale
-            		next.addAll(result);
-            		
-            		// Numero mosse possibili per la situazione attuale (grado della situazione)
-        			size = result.size();
-            		
-            		// Aggiorno il grado minimo, massimo, e la somma dei gradi
-            		if( size<min )
-            			min = size;
-            		if( size>max )
-            			max = size;
-            		
-            		sum += size;
-            	}
-        	}
-        	catch( CancellationException e )
-        	{
-        		tasks.forEach( (tt) -> tt.cancel(true) );
-        		return null;
-        	}
+    		catch( CancellationException e ) { return null; }
+    		
+    		if( caller.isInterrupted() || stats == null )
+    			return null;
+    		
+    		min = stats[0];
+    		max = stats[1];
+    		sum = stats[2];
     	}
     	
     	return new NSResult<>(next, min, max, sum);
     }
     
+    /** Versione in streaming di {@link Probe#nextSituations(boolean, Next, Function, Function, Set)}
+     * per livelli che non entrano in memoria: le situazioni di partenza sono lette
+     * dal file del livello {@code start} e le prossime situazioni sono scritte nel
+     * file {@code next}, ordinate e senza ripetizioni, che può essere usato come
+     * livello di partenza dell'invocazione successiva.
+     * <br>
+     * Le codifiche delle prossime situazioni sono accumulate in un buffer di al più
+     * {@code memory} byte, in cui sono ordinate ed è eliminato ogni duplicato quando
+     * si riempie. Se il buffer resta pieno per più di metà, è scritto in un file
+     * temporaneo nella directory di {@code next}, e alla fine i file temporanei sono
+     * fusi eliminando i duplicati (ordinamento esterno), in più passate se i buffer
+     * di lettura di tutti i file insieme occuperebbero più di {@code memory} byte.
+     * Quindi la memoria usata non dipende dalla dimensione dei livelli, ma solo da
+     * {@code memory}.
+     * <br>
+     * Se il thread è interrotto, il metodo ritorna null dopo aver cancellato i file
+     * temporanei e il file {@code next}.
+     * @param parallel  se true le situazioni di partenza sono espanse in parallelo
+     * @param nextF  la funzione che ritorna le prossime situazioni di una situazione
+     * @param start  il livello delle situazioni di partenza
+     * @param next  il file del prossimo livello, se esiste è sovrascritto
+     * @param memory  massimo numero di byte del buffer delle codifiche
+     * @param <P>  tipo del modello dei pezzi
+     * @return il livello delle prossime situazioni, con le statistiche sui gradi
+     * delle situazioni di partenza, o null se l'esecuzione è interrotta
+     * @throws NullPointerException se un parametro è null
+     * @throws IllegalStateException se la lettura o la scrittura di un file fallisce */
+    public static <P> Frontier<P> nextSituations(boolean parallel, Next<P> nextF, Frontier<P> start, Path next, long memory)
+    {
+    	Mechanics<P> gM = start.mechanics();
+    	int w = SitPacker.words(gM);
+    	
+    	Frontier.Records buf = new Frontier.Records(w, (int)Math.min(Integer.MAX_VALUE/w, Math.max(BATCH, memory/(8L*w))));
+    	List<Path> runs = new ArrayList<>();
+    	Path dir = next.toAbsolutePath().getParent();
+    	long min=Integer.MAX_VALUE, max=Integer.MIN_VALUE, sum=0;
+    	boolean done = false;
+    	
+    	try
+    	{
+    		try( Frontier.Reader in = new Frontier.Reader(start.file(), w) )
+    		{
+    			long[] batch = new long[BATCH*w], rec = new long[w];
+    			
+    			for( boolean more=true ; more ; )
+    			{
+    				// Legge un blocco di situazioni di partenza
+    				int n = 0;
+    				while( n < BATCH && (more = in.next(rec)) )
+    					System.arraycopy(rec, 0, batch, (n++)*w, w);
+    				
+    				long[][] children = expand(parallel, nextF, gM, batch, n);
+    				
+    				if( Thread.currentThread().isInterrupted() || children == null )
+    					return null;
+    				
+    				for( long[] c : children )
+    				{
+    					// Numero di prossime situazioni (grado della situazione)
+    					long size = c.length/w;
+    					
+    					if( size<min )
+    						min = size;
+    					if( size>max )
+    						max = size;
+    					
+    					sum += size;
+    					
+    					for( int k=0 ; k<size ; k++ )
+    					{
+    						if( buf.full() )
+    						{
+    							// Elimina i duplicati in memoria e scrive su file solo se serve spazio
+    							buf.sortDistinct();
+    							
+    							if( 2*buf.count*w > buf.data.length )
+    							{
+    								Path run = Files.createTempFile(dir, "frontier", ".run");
+    								runs.add(run);
+    								
+    								try( Frontier.Writer out = new Frontier.Writer(run, w) )
+    								{
+    									buf.writeTo(out);
+    								}
+    							}
+    						}
+    						
+    						buf.add(c, k);
+    					}
+    				}
+    			}
+    		}
+    		
+    		buf.sortDistinct();
+    		long size;
+    		
+    		if( runs.isEmpty() )
+    		{
+    			try( Frontier.Writer out = new Frontier.Writer(next, w) )
+    			{
+    				buf.writeTo(out);
+    				size = out.count;
+    			}
+    		}
+    		else
+    		{
+    			Path run = Files.createTempFile(dir, "frontier", ".run");
+    			runs.add(run);
+    			
+    			try( Frontier.Writer out = new Frontier.Writer(run, w) )
+    			{
+    				buf.writeTo(out);
+    			}
+    			
+    			size = Frontier.merge(runs, next, w, Frontier.fanIn(memory));
+    		}
+    		
+    		done = !Thread.currentThread().isInterrupted();
+    		return done ? new Frontier<>(gM, next, size, min, max, sum) : null;
+    	}
+    	catch( IOException e ) { throw new IllegalStateException(e); }
+    	finally
+    	{
+    		try
+    		{
+    			for( Path run : runs )
+    				Files.deleteIfExists(run);
+    			
+    			if( !done )
+    				Files.deleteIfExists(next);
+    		}
+    		catch( IOException e ) { throw new IllegalStateException(e); }
+    	}
+    }
+    
+    /** Espande un blocco di situazioni codificate, ognuna di w long consecutivi.
+     * @param parallel se true le situazioni sono espanse in parallelo
+     * @param nextF la funzione che ritorna le prossime situazioni di una situazione
+     * @param gM la meccanica del gioco
+     * @param batch le codifiche delle situazioni
+     * @param n numero di situazioni nel blocco
+     * @return per ogni situazione le codifiche delle prossime situazioni, una di
+     * seguito all'altra, o null se il thread è interrotto */
+    private static <P> long[][] expand(boolean parallel, Next<P> nextF, Mechanics<P> gM, long[] batch, int n)
+    {
+    	long[][] res = new long[n][];
+    	// I task del pool controllano l'interruzione del thread chiamante, non la propria
+    	Thread caller = Thread.currentThread();
+    	
+    	if( !parallel )
+    	{
+    		for( int i=0 ; i<n ; i++ )
+    			if( (res[i] = expand(nextF, gM, batch, i, caller)) == null )
+    				return null;
+    		
+    		return res;
+    	}
+    	
+    	List<ForkJoinTask<long[]>> tasks = new ArrayList<>();
+    	for( int i=0 ; i<n ; i++ )
+    	{
+    		int index = i;
+    		tasks.add(ForkJoinTask.adapt( () -> expand(nextF, gM, batch, index, caller) ));
+    	}
+    	
+    	try
+    	{
+    		ForkJoinTask.invokeAll(tasks);
+    		
+    		for( int i=0 ; i<n ; i++ )
+    			if( (res[i] = tasks.get(i).join()) == null )
+    				return null;
+    	}
+    	catch( CancellationException e )
+    	{
+    		tasks.forEach( (tt) -> tt.cancel(true) );
+    		return null;
+    	}
+    	
+    	return res;
+    }
+    
+    /** @return le codifiche delle prossime situazioni della situazione di indice i
+     * del blocco, una di seguito all'altra, o null se il thread caller è interrotto */
+    private static <P> long[] expand(Next<P> nextF, Mechanics<P> gM, long[] batch, int i, Thread caller)
+    {
+    	if( caller.isInterrupted() )
+    		return null;
+    	
+    	int w = SitPacker.words(gM);
+    	long[] ext = w > 1 ? Arrays.copyOfRange(batch, i*w+1, (i+1)*w) : null;
+    	
+    	Collection<Situation<P>> next = nextF.get(SitPacker.decode(gM, batch[i*w], ext)).values();
+    	long[] res = new long[next.size()*w];
+    	int k = 0;
+    	
+    	for( Situation<P> s : next )
+    	{
+    		if( ext != null )
+    			Arrays.fill(ext, 0L);
+    		
+    		res[k] = SitPacker.encode(gM, s, ext);
+    		if( ext != null )
+    			System.arraycopy(ext, 0, res, k+1, w-1);
+    		
+    		k += w;
+    	}
+    	
+    	return res;
+    }
+    
+    /** Task della versione parallela di {@link Probe#nextSituations(boolean, Next, Function, Function, Set)}:
+     * divide le sue situazioni di partenza finché sono più della soglia, cedendo le
+     * metà ad altri task che i thread liberi possono rubare, poi espande le
+     * rimanenti inserendo le prossime situazioni nell'insieme condiviso. Ritorna il
+     * minimo e il massimo grado e la somma dei gradi delle sue situazioni, combinati
+     * con quelli dei task ceduti, o null se il thread chiamante è interrotto. */
+    @SuppressWarnings("serial")
+    private static class NextTask<P,S> extends RecursiveTask<long[]>
+    {
+    	private final Spliterator<S> start;
+    	private final long threshold;
+    	private final Thread caller;
+    	private final Next<P> nextF;
+    	private final Function<S,Situation<P>> dec;
+    	private final Function<Situation<P>,S> enc;
+    	private final Set<S> next;
+    	
+    	NextTask(Spliterator<S> start, long threshold, Thread caller, Next<P> nextF,
+    	         Function<S,Situation<P>> dec, Function<Situation<P>,S> enc, Set<S> next)
+    	{
+    		this.start = start;
+    		this.threshold = threshold;
+    		this.caller = caller;
+    		this.nextF = nextF;
+    		this.dec = dec;
+    		this.enc = enc;
+    		this.next = next;
+    	}
+    	
+    	@Override
+    	protected long[] compute()
+    	{
+    		List<NextTask<P,S>> forked = new ArrayList<>();
+    		Spliterator<S> half;
+    		
+    		while( this.start.estimateSize() > this.threshold && (half = this.start.trySplit()) != null )
+    		{
+    			NextTask<P,S> t = new NextTask<>(half, this.threshold, this.caller, this.nextF, this.dec, this.enc, this.next);
+    			t.fork();
+    			forked.add(t);
+    		}
+    		
+    		// Minimo, massimo e somma dei gradi
+    		long[] stats = {Integer.MAX_VALUE, Integer.MIN_VALUE, 0};
+    		boolean[] interrupted = {false};
+    		
+    		while( !interrupted[0] && this.start.tryAdvance( (s) -> {
+    			if( this.caller.isInterrupted() )
+    			{
+    				interrupted[0] = true;
+    				return;
+    			}
+    			
+    			long size = 0;
+    			for( Situation<P> next_s : this.nextF.get(this.dec.apply(s)).values() )
+    			{
+    				this.next.add(this.enc.apply(next_s));
+    				size++;
+    			}
+    			
+    			stats[0] = Math.min(stats[0], size);
+    			stats[1] = Math.max(stats[1], size);
+    			stats[2] += size;
+    		}) );
+    		
+    		if( interrupted[0] )
+    		{
+    			forked.forEach( (tt) -> tt.cancel(true) );
+    			return null;
+    		}
+    		
+    		for( int i=forked.size()-1 ; i>=0 ; i-- )
+    		{
+    			long[] other = forked.get(i).join();
+    			
+    			if( other == null )
+    			{
+    				forked.forEach( (tt) -> tt.cancel(true) );
+    				return null;
+    			}
+    			
+    			stats[0] = Math.min(stats[0], other[0]);
+    			stats[1] = Math.max(stats[1], other[1]);
+    			stats[2] += other[2];
+    		}
+    		
+    		return stats;
+    	}
+    }
+    
     /** Metodo statico che da una situazione codificata restituisce l'insieme delle prossime situazioni (sempre codificate)
      * @param start situazione codificata
      * @param nextF la funzione che ritorna le prossime situazioni di una situazione
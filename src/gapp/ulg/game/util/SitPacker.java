@@ -0,0 +1,177 @@
+package gapp.ulg.game.util;
+
+import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Situation;
+
+/** Codifica a bit impacchettati delle situazioni di gioco, usata da {@link Probe.EncS},
+ * dai livelli su file di {@link Frontier} e, tramite la codifica canonica di
+ * {@link Symmetries}, dalle chiavi di {@link gapp.ulg.play.TranspositionTable} e
+ * quindi dalle strategie di {@link gapp.ulg.play.OptimalStrategy}.
+ * <br>
+ * Una situazione è codificata in una sequenza di long: nei bit meno significativi
+ * c'è il turno (spostato di np per renderlo non negativo), seguito da un campo di
+ * larghezza fissa per ogni posizione di {@link Mechanics#positions}, nello stesso
+ * ordine, che contiene 0 se la posizione è vuota o l'indice del pezzo in
+ * {@link Mechanics#pieces} più 1. Il primo long è restituito a parte, gli eventuali
+ * altri sono scritti in un array, così le situazioni che stanno in 64 bit (ad es.
+ * quelle degli m,n,k-game piccoli) non richiedono array. */
+public final class SitPacker
+{
+	private SitPacker() {}
+
+	/** @param gM  la meccanica di un gioco
+	 * @return il numero di bit usati per codificare una posizione */
+	public static int cellBits(Mechanics<?> gM)
+	{
+		return 32 - Integer.numberOfLeadingZeros(gM.pieces.size());
+	}
+
+	/** @param gM  la meccanica di un gioco
+	 * @return il numero di bit usati per codificare il turno */
+	public static int turnBits(Mechanics<?> gM)
+	{
+		return 32 - Integer.numberOfLeadingZeros(2*gM.np);
+	}
+
+	/** @param gM  la meccanica di un gioco
+	 * @return il numero di long necessari per codificare una situazione del gioco */
+	public static int words(Mechanics<?> gM)
+	{
+		return Math.max(1, (turnBits(gM) + gM.positions.size()*cellBits(gM) + 63) >>> 6);
+	}
+
+	/** Ritorna il turno di una situazione codificata senza decodificarla.
+	 * @param gM  la meccanica del gioco a cui appartiene la situazione
+	 * @param first  il primo long della codifica
+	 * @return il turno della situazione (vedi {@link Situation#turn}) */
+	public static int turn(Mechanics<?> gM, long first)
+	{
+		return (int)(first & ((1L << turnBits(gM)) - 1)) - gM.np;
+	}
+
+	/** Ritorna un'impronta degli elementi della meccanica da cui dipende la codifica:
+	 * il numero di giocatori, le posizioni e i pezzi, nel loro ordine. Due meccaniche
+	 * con la stessa impronta codificano (quasi certamente) le situazioni allo stesso
+	 * modo, quindi è utile per controllare che delle situazioni codificate salvate
+	 * siano compatibili con un gioco.
+	 * @param gM  la meccanica di un gioco
+	 * @return l'impronta della meccanica */
+	public static long fingerprint(Mechanics<?> gM)
+	{
+		long h = mix(0xCBF29CE484222325L, gM.np);
+
+		h = mix(h, gM.positions.size());
+		for( Pos p : gM.positions )
+			h = mix(mix(h, p.b), p.t);
+
+		h = mix(h, gM.pieces.size());
+		for( Object pm : gM.pieces )
+			h = mix(h, String.valueOf(pm).hashCode());
+
+		return h;
+	}
+
+	/** Codifica la situazione data. Se i parametri non sono tra loro compatibili il
+	 * comportamento è indefinito.
+	 * @param gM  la meccanica di un gioco
+	 * @param s  una situazione dello stesso gioco
+	 * @param ext  array di lunghezza {@link SitPacker#words(Mechanics)}-1 azzerato in
+	 *             cui sono scritti i long successivi al primo (null se ne basta uno)
+	 * @return il primo long della codifica */
+	public static <P> long encode(Mechanics<P> gM, Situation<P> s, long[] ext)
+	{
+		int cb = cellBits(gM), off = turnBits(gM), n = gM.positions.size();
+		long first = s.turn + gM.np;
+
+		for( int i=0 ; i<n ; i++, off+=cb )
+		{
+			long v = gM.cell(s, i);
+
+			if( v == 0 )
+				continue;
+
+			int w = off >>> 6, r = off & 63;
+
+			if( w == 0 )
+				first |= v << r;
+			else
+				ext[w-1] |= v << r;
+
+			// Il campo è a cavallo di due long
+			if( r+cb > 64 )
+				ext[w] |= v >>> (64-r);
+		}
+
+		return first;
+	}
+
+	/** Codifica una situazione data tramite il turno e i campi delle posizioni:
+	 * cells[i] è 0 se la i-esima posizione di {@link Mechanics#positions} è vuota,
+	 * altrimenti è l'indice del pezzo in {@link Mechanics#pieces} più 1. La codifica
+	 * è la stessa di {@link SitPacker#encode(Mechanics, Situation, long[])}.
+	 * @param gM  la meccanica di un gioco
+	 * @param turn  il turno della situazione (vedi {@link Situation#turn})
+	 * @param cells  i campi delle posizioni
+	 * @param ext  array di lunghezza {@link SitPacker#words(Mechanics)}-1 azzerato in
+	 *             cui sono scritti i long successivi al primo (null se ne basta uno)
+	 * @return il primo long della codifica */
+	public static long encode(Mechanics<?> gM, int turn, int[] cells, long[] ext)
+	{
+		int cb = cellBits(gM), off = turnBits(gM), n = cells.length;
+		long first = turn + gM.np;
+
+		for( int i=0 ; i<n ; i++, off+=cb )
+		{
+			long v = cells[i];
+
+			if( v == 0 )
+				continue;
+
+			int w = off >>> 6, r = off & 63;
+
+			if( w == 0 )
+				first |= v << r;
+			else
+				ext[w-1] |= v << r;
+
+			if( r+cb > 64 )
+				ext[w] |= v >>> (64-r);
+		}
+
+		return first;
+	}
+
+	/** Decodifica una situazione codificata con {@link SitPacker#encode(Mechanics, Situation, long[])}.
+	 * @param gM  la meccanica del gioco a cui appartiene la situazione
+	 * @param first  il primo long della codifica
+	 * @param ext  i long successivi al primo (null se non ci sono)
+	 * @return la situazione decodificata, rappresentata da un array (vedi
+	 * {@link Situation#Situation(Mechanics, byte[], int)}) */
+	public static <P> Situation<P> decode(Mechanics<P> gM, long first, long[] ext)
+	{
+		int cb = cellBits(gM), off = turnBits(gM), n = gM.positions.size();
+		long mask = (1L << cb) - 1;
+
+		byte[] cells = new byte[n];
+
+		for( int i=0 ; i<n ; i++, off+=cb )
+		{
+			int w = off >>> 6, r = off & 63;
+			long v = (w == 0 ? first : ext[w-1]) >>> r;
+
+			if( r+cb > 64 )
+				v |= ext[w] << (64-r);
+
+			cells[i] = (byte)(v & mask);
+		}
+
+		return new Situation<>(gM, cells, turn(gM, first));
+	}
+
+	/** Passo della funzione hash FNV-1a applicato a un intero */
+	private static long mix(long h, int v)
+	{
+		return (h ^ v) * 0x100000001B3L;
+	}
+}
@@ -0,0 +1,237 @@
+package gapp.ulg.game.util;
+
+import gapp.ulg.game.board.Board;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.board.Symmetry;
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Situation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/** Canonicalizzazione delle situazioni di un gioco rispetto alle sue simmetrie.
+ * <br>
+ * Il gruppo delle simmetrie è quello generato dalle simmetrie dichiarate dal gioco
+ * ({@link GameRuler#symmetries()}) che sono definite per la sua board, in base a
+ * {@link Board#width()}, {@link Board#height()} e {@link Board#system()}, e che
+ * trasformano le posizioni della meccanica in posizioni della meccanica. Ogni
+ * simmetria del gruppo è rappresentata come una permutazione degli indici delle
+ * posizioni di {@link Mechanics#positions}.
+ * <br>
+ * La codifica canonica di una situazione è la minima tra le codifiche
+ * ({@link SitPacker}) delle sue immagini tramite le simmetrie del gruppo, quindi
+ * situazioni simmetriche, che hanno lo stesso esito, hanno la stessa codifica
+ * canonica. Usandola al posto di {@link SitPacker#encode(Mechanics, Situation, long[])}
+ * le tabelle delle situazioni si riducono fino a 8 volte. Un oggetto Symmetries è
+ * immutabile e può essere condiviso tra più thread.
+ * @param <P>  tipo del modello dei pezzi */
+public final class Symmetries<P>
+{
+	/** Meccanica del gioco */
+	private final Mechanics<P> gM;
+	/** Simmetrie del gruppo */
+	private final Set<Symmetry> group;
+	/** Permutazioni distinte del gruppo, la prima è l'identità: perms[k][i] è l'indice dell'immagine della posizione i */
+	private final int[][] perms;
+
+	/** Crea la canonicalizzazione per la meccanica data rispetto al gruppo generato
+	 * dalle simmetrie date che sono definite per la board data.
+	 * @param gM  la meccanica di un gioco
+	 * @param board  una board del gioco
+	 * @param declared  le simmetrie rispetto alle quali il gioco è invariante
+	 * @throws NullPointerException se un parametro è null */
+	public Symmetries(Mechanics<P> gM, Board<?> board, Set<Symmetry> declared)
+	{
+		Objects.requireNonNull(gM);
+		Objects.requireNonNull(board);
+		Objects.requireNonNull(declared);
+
+		this.gM = gM;
+
+		int w = board.width(), h = board.height();
+		Map<Pos, Integer> index = new HashMap<>();
+		for( int i=0 ; i<gM.positions.size() ; i++ )
+			index.put(gM.positions.get(i), i);
+
+		// Simmetrie della board che trasformano le posizioni in posizioni
+		Map<Symmetry, int[]> candidates = new EnumMap<>(Symmetry.class);
+		for( Symmetry y : Symmetry.values() )
+		{
+			int[] perm = y.admits(board.system(), w, h) ? permutation(y, gM.positions, index, w, h) : null;
+
+			if( perm != null )
+				candidates.put(y, perm);
+		}
+
+		EnumSet<Symmetry> g = EnumSet.of(Symmetry.IDENTITY);
+		for( Symmetry y : declared )
+			if( candidates.containsKey(y) )
+				g.add(y);
+
+		// Chiusura rispetto alla composizione, altrimenti il minimo non sarebbe canonico
+		for( boolean grown=true ; grown ; )
+		{
+			grown = false;
+
+			for( Symmetry a : EnumSet.copyOf(g) )
+				for( Symmetry b : EnumSet.copyOf(g) )
+				{
+					int[] pa = candidates.get(a), pb = candidates.get(b), c = new int[pa.length];
+
+					for( int i=0 ; i<c.length ; i++ )
+						c[i] = pa[pb[i]];
+
+					for( Map.Entry<Symmetry, int[]> e : candidates.entrySet() )
+						if( Arrays.equals(e.getValue(), c) )
+						{
+							grown |= g.add(e.getKey());
+							break;
+						}
+				}
+		}
+
+		List<int[]> distinct = new ArrayList<>();
+		for( Symmetry y : g )
+		{
+			int[] perm = candidates.get(y);
+			boolean seen = false;
+
+			for( int[] d : distinct )
+				seen |= Arrays.equals(d, perm);
+
+			if( !seen )
+				distinct.add(perm);
+		}
+
+		this.group = Collections.unmodifiableSet(g);
+		this.perms = distinct.toArray(new int[0][]);
+	}
+
+	/** Crea la canonicalizzazione per il gioco dato, rispetto alle simmetrie
+	 * dichiarate dal gioco e definite per la sua board.
+	 * @param g  un gioco
+	 * @param <P>  tipo del modello dei pezzi
+	 * @return la canonicalizzazione per il gioco
+	 * @throws NullPointerException se g è null
+	 * @throws UnsupportedOperationException se il gioco non ha la meccanica */
+	public static <P> Symmetries<P> of(GameRuler<P> g)
+	{
+		Objects.requireNonNull(g);
+
+		return new Symmetries<>(g.mechanics(), g.getBoard(), g.symmetries());
+	}
+
+	/** @return la meccanica del gioco */
+	public Mechanics<P> mechanics() { return this.gM; }
+
+	/** @return l'insieme immodificabile delle simmetrie del gruppo */
+	public Set<Symmetry> group() { return this.group; }
+
+	/** @return le simmetrie del gruppo come maschera di bit, il bit i è quello
+	 * della simmetria con ordinale i */
+	public int mask()
+	{
+		int m = 0;
+
+		for( Symmetry y : this.group )
+			m |= 1 << y.ordinal();
+
+		return m;
+	}
+
+	/** @return il numero di permutazioni distinte delle posizioni nel gruppo, cioè
+	 * il massimo numero di situazioni con la stessa codifica canonica */
+	public int size() { return this.perms.length; }
+
+	/** Codifica la situazione data con la codifica canonica, cioè la minima tra le
+	 * codifiche delle sue immagini tramite le simmetrie del gruppo. Il formato è lo
+	 * stesso di {@link SitPacker#encode(Mechanics, Situation, long[])} e la codifica
+	 * canonica decodificata dà la situazione simmetrica che la rappresenta.
+	 * @param s  una situazione del gioco
+	 * @param ext  array di lunghezza {@link SitPacker#words(Mechanics)}-1 azzerato in
+	 *             cui sono scritti i long successivi al primo (null se ne basta uno)
+	 * @return il primo long della codifica canonica */
+	public long encode(Situation<P> s, long[] ext)
+	{
+		if( this.perms.length == 1 )
+			return SitPacker.encode(this.gM, s, ext);
+
+		int n = this.gM.positions.size();
+		int[] cells = new int[n], img = new int[n];
+
+		for( int i=0 ; i<n ; i++ )
+			cells[i] = this.gM.cell(s, i);
+
+		long[] cand = ext != null ? new long[ext.length] : null;
+		long best = 0;
+
+		for( int k=0 ; k<this.perms.length ; k++ )
+		{
+			int[] perm = this.perms[k];
+
+			for( int i=0 ; i<n ; i++ )
+				img[perm[i]] = cells[i];
+
+			if( cand != null )
+				Arrays.fill(cand, 0L);
+
+			long c = SitPacker.encode(this.gM, s.turn, img, cand);
+
+			if( k == 0 || less(c, cand, best, ext) )
+			{
+				best = c;
+
+				if( cand != null )
+					System.arraycopy(cand, 0, ext, 0, cand.length);
+			}
+		}
+
+		return best;
+	}
+
+	/** @return la permutazione degli indici delle posizioni data dalla simmetria y
+	 * o null se y trasforma qualche posizione in una che non è tra le posizioni */
+	private static int[] permutation(Symmetry y, List<Pos> positions, Map<Pos, Integer> index, int w, int h)
+	{
+		int[] perm = new int[positions.size()];
+
+		for( int i=0 ; i<perm.length ; i++ )
+		{
+			Integer j;
+
+			try
+			{
+				j = index.get(y.apply(positions.get(i), w, h));
+			}
+			catch( IllegalArgumentException e ) { return null; }
+
+			if( j == null )
+				return null;
+
+			perm[i] = j;
+		}
+
+		return perm;
+	}
+
+	/** @return true se la codifica (a, a_ext) è minore della codifica (b, b_ext),
+	 * confrontando i long senza segno a partire dall'ultimo */
+	private static boolean less(long a, long[] a_ext, long b, long[] b_ext)
+	{
+		if( a_ext != null )
+			for( int k=a_ext.length-1 ; k>=0 ; k-- )
+				if( a_ext[k] != b_ext[k] )
+					return Long.compareUnsigned(a_ext[k], b_ext[k]) < 0;
+
+		return Long.compareUnsigned(a, b) < 0;
+	}
+}
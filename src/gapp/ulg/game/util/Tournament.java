@@ -0,0 +1,713 @@
+package gapp.ulg.game.util;
+
+import gapp.ulg.game.GameFactory;
+import gapp.ulg.game.Param;
+import gapp.ulg.game.PlayerFactory;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.PieceModel;
+import gapp.ulg.game.board.PieceModel.Species;
+import gapp.ulg.game.board.Player;
+import gapp.ulg.games.GameFactories;
+import gapp.ulg.play.PlayerFactories;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Un {@code Tournament} gioca senza GUI un torneo tra giocatori fabbricati dalle
+ * {@link PlayerFactory} di {@link PlayerFactories} su uno o più giochi a due
+ * giocatori fabbricati dalle {@link GameFactory} di {@link GameFactories}. Ogni
+ * incontro tra due partecipanti consiste in due partite per ogni gioco, una per
+ * ciascun ordine di turnazione. Gli accoppiamenti sono a girone all'italiana
+ * ({@link Pairing#ROUND_ROBIN}) o a sistema svizzero ({@link Pairing#SWISS}).
+ * <br>
+ * Le partite indipendenti sono giocate in parallelo da un pool di thread. Ogni
+ * partita usa un thread più quelli concessi ai giocatori con
+ * {@link Player#threads(int, ForkJoinPool, ExecutorService)}, quindi il numero di
+ * partite contemporanee è il budget di thread del torneo diviso per il costo di
+ * una partita (vedi {@link Tournament#concurrency()}).
+ * <br>
+ * Un giocatore che lancia un'eccezione, ritorna una mossa non valida o supera il
+ * tempo limite del gioco ({@link GameRuler.Mechanics#time}) più la tolleranza è
+ * squalificato, cioè perde la partita come se si fosse arreso. A differenza di
+ * {@link PlayGUI} il tempo è controllato dopo che {@link Player#getMove()} ritorna.
+ * <br>
+ * Le fabbriche non sono thread-safe, quindi ogni fabbrica è usata da un thread
+ * alla volta; i GameRuler e i Player invece sono creati per ogni partita e usati
+ * solamente nel thread della partita.
+ */
+public class Tournament
+{
+    /** Tipi di accoppiamento dei partecipanti */
+    public enum Pairing
+    {
+        /** Ogni turno tutti i partecipanti si incontrano tra loro */
+        ROUND_ROBIN,
+        /** Ogni turno i partecipanti sono ordinati per punteggio e ognuno incontra il
+         * primo dei successivi che non ha ancora incontrato. Se i partecipanti sono
+         * dispari, l'ultimo che non l'ha ancora avuto riceve un turno di riposo che
+         * vale una vittoria. */
+        SWISS
+    }
+
+    /** Punteggio Elo iniziale */
+    public static final double INITIAL_ELO = 1500;
+    /** Fattore K dell'aggiornamento dei punteggi Elo */
+    public static final double ELO_K = 16;
+
+    /** Risultato di una partita */
+    public static final class Match
+    {
+        /** Nome del gioco */
+        public final String game;
+        /** Nomi dei partecipanti in ordine di turnazione */
+        public final String first, second;
+        /** Esito: 0 patta, 1 o 2 l'indice di turnazione del vincitore */
+        public final int result;
+        /** Indice di turnazione del giocatore squalificato o 0 */
+        public final int forfeit;
+        /** Descrizione della squalifica o null */
+        public final String reason;
+        /** Numero di mosse giocate */
+        public final int moves;
+        /** Durata della partita in millisecondi */
+        public final long millis;
+        /** Indice del turno, a partire da 0 */
+        public final int round;
+
+        private final int index;
+
+        private Match(int round, int index, String game, String first, String second, int result, int forfeit, String reason, int moves, long millis)
+        {
+            this.round = round;
+            this.index = index;
+            this.game = game;
+            this.first = first;
+            this.second = second;
+            this.result = result;
+            this.forfeit = forfeit;
+            this.reason = reason;
+            this.moves = moves;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString()
+        {
+            String res = this.result == 0 ? "patta" : "vince " + (this.result == 1 ? this.first : this.second);
+
+            return this.game + ": " + this.first + " - " + this.second + ", " + res +
+                (this.forfeit > 0 ? " (" + this.reason + ")" : "") + ", " + this.moves + " mosse, " + this.millis + " ms";
+        }
+    }
+
+    /** Statistiche di un partecipante */
+    public static final class Standing
+    {
+        /** Nome del partecipante */
+        public final String name;
+
+        private int wins, draws, losses, forfeits, byes;
+        private double elo = INITIAL_ELO;
+        private long moves, move_nanos, max_move_nanos;
+
+        private Standing(String name) { this.name = name; }
+
+        /** @return numero di partite vinte */
+        public int wins() { return this.wins; }
+        /** @return numero di partite patte */
+        public int draws() { return this.draws; }
+        /** @return numero di partite perse, comprese quelle perse per squalifica */
+        public int losses() { return this.losses; }
+        /** @return numero di partite perse per squalifica */
+        public int forfeits() { return this.forfeits; }
+        /** @return numero di turni di riposo (solo nel sistema svizzero) */
+        public int byes() { return this.byes; }
+        /** @return punti: 1 per vittoria o turno di riposo, 1/2 per patta */
+        public double points() { return this.wins + this.byes + this.draws/2.0; }
+        /** @return punteggio Elo */
+        public double elo() { return this.elo; }
+        /** @return numero di mosse scelte */
+        public long moves() { return this.moves; }
+        /** @return tempo medio di una mossa in millisecondi */
+        public double meanMoveMillis() { return this.moves == 0 ? 0 : this.move_nanos/1e6/this.moves; }
+        /** @return tempo massimo di una mossa in millisecondi */
+        public double maxMoveMillis() { return this.max_move_nanos/1e6; }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%-24s %4d %4d %4d %7.1f %7.1f %10.2f %10.2f", this.name, this.wins, this.draws,
+                this.losses, this.points(), this.elo, this.meanMoveMillis(), this.maxMoveMillis());
+        }
+    }
+
+    /** Partecipante: nome e fabbrica dei suoi giocatori */
+    private static final class Entry
+    {
+        final String name;
+        final PlayerFactory<Player<PieceModel<Species>>, GameRuler<PieceModel<Species>>> factory;
+        final Standing standing;
+        final Set<Entry> met = new HashSet<>();
+
+        Entry(String name, PlayerFactory<Player<PieceModel<Species>>, GameRuler<PieceModel<Species>>> factory)
+        {
+            this.name = name;
+            this.factory = factory;
+            this.standing = new Standing(name);
+        }
+    }
+
+    /** Partita da giocare */
+    private static final class Pairs
+    {
+        final int round, index;
+        final GameFactory<GameRuler<PieceModel<Species>>> game;
+        final Entry first, second;
+
+        Pairs(int round, int index, GameFactory<GameRuler<PieceModel<Species>>> game, Entry first, Entry second)
+        {
+            this.round = round;
+            this.index = index;
+            this.game = game;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private final int threads, max_th, fjp_size, bg_exec_size;
+    private final long tol;
+    private final List<GameFactory<GameRuler<PieceModel<Species>>>> games = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Match> matches = new ArrayList<>();
+
+    /**
+     * Crea un torneo senza giochi e senza partecipanti. I parametri sui thread hanno
+     * lo stesso significato di quelli di {@link PlayGUI#play(long, long, long, int, int, int)}
+     * e sono comunicati a ogni giocatore prima di ogni partita.
+     *
+     * @param threads    budget di thread del torneo, cioè il massimo numero di thread
+     *                   usati contemporaneamente dalle partite e dai giocatori
+     * @param tol        massimo numero di millisecondi di tolleranza per le mosse, se
+     *                   <= 0, allora nessuna tolleranza
+     * @param maxTh      massimo numero di thread addizionali permessi per
+     *                   {@link Player#getMove()}, se < 0, nessun limite è imposto
+     * @param fjpSize    numero di thread per il {@link ForkJoinPool} di ogni giocatore,
+     *                   se == 0, non è permesso alcun pool, se invece è < 0, possono
+     *                   usare anche {@link ForkJoinPool#commonPool() Common Pool}
+     * @param bgExecSize numero di thread permessi per esecuzioni in background, se
+     *                   == 0, non sono permessi, se invece è < 0, non c'è alcun
+     *                   vincolo
+     * @throws IllegalArgumentException se {@code threads} è < 1
+     */
+    public Tournament(int threads, long tol, int maxTh, int fjpSize, int bgExecSize)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException();
+
+        this.threads = threads;
+        this.tol = tol > 0 ? tol : 0;
+        this.max_th = maxTh;
+        this.fjp_size = fjpSize;
+        this.bg_exec_size = bgExecSize;
+    }
+
+    /**
+     * Aggiunge un gioco al torneo.
+     *
+     * @param name   nome di una GameFactory di {@link GameFactories}
+     * @param params coppie nome, valore dei parametri della GameFactory da impostare
+     * @throws NullPointerException     se {@code name} è null
+     * @throws IllegalArgumentException se non esiste una GameFactory di nome
+     *                                  {@code name}, se non ammette due giocatori, se un parametro non esiste o
+     *                                  il suo valore non è ammesso
+     */
+    public void addGame(String name, Object... params)
+    {
+        GameFactory<GameRuler<PieceModel<Species>>> gF = GameFactories.getBoardFactory(name);
+
+        if(gF.minPlayers() > 2 || gF.maxPlayers() < 2)
+            throw new IllegalArgumentException();
+
+        set_params(gF.params(), params);
+        this.games.add(gF);
+    }
+
+    /**
+     * Aggiunge un partecipante al torneo. La PlayerFactory deve poter giocare tutti
+     * i giochi aggiunti al torneo, se la sua strategia deve essere calcolata (vedi
+     * {@link PlayerFactory.Play#TRY_COMPUTE}) è calcolata adesso.
+     *
+     * @param name   nome del partecipante
+     * @param fName  nome di una PlayerFactory di {@link PlayerFactories}
+     * @param dir    la directory della PlayerFactory o null
+     * @param params coppie nome, valore dei parametri della PlayerFactory da impostare
+     * @throws NullPointerException     se {@code name} o {@code fName} è null
+     * @throws IllegalArgumentException se esiste già un partecipante di nome
+     *                                  {@code name}, se non esiste una PlayerFactory di nome {@code fName}, se
+     *                                  un parametro non esiste o il suo valore non è ammesso
+     * @throws IllegalStateException    se la PlayerFactory non può giocare uno dei
+     *                                  giochi del torneo
+     */
+    public void addPlayer(String name, String fName, Path dir, Object... params)
+    {
+        Objects.requireNonNull(name);
+
+        for(Entry e : this.entries)
+            if(e.name.equals(name))
+                throw new IllegalArgumentException();
+
+        PlayerFactory<Player<PieceModel<Species>>, GameRuler<PieceModel<Species>>> pF = PlayerFactories.getBoardFactory(fName);
+        pF.setDir(dir);
+        set_params(pF.params(), params);
+
+        for(GameFactory<GameRuler<PieceModel<Species>>> gF : this.games)
+        {
+            PlayerFactory.Play play = pF.canPlay(gF);
+
+            if(play == PlayerFactory.Play.TRY_COMPUTE && pF.tryCompute(gF, false, null) == null)
+                play = pF.canPlay(gF);
+            if(play != PlayerFactory.Play.YES)
+                throw new IllegalStateException(fName + " cannot play " + gF.name());
+        }
+
+        this.entries.add(new Entry(name, pF));
+    }
+
+    /**
+     * @return il numero di thread usati da una partita nel caso peggiore: quello
+     * della partita, quelli addizionali e del {@link ForkJoinPool} del giocatore di
+     * turno e quelli in background di entrambi i giocatori. Un limite assente conta
+     * come il numero di processori.
+     */
+    public int cost()
+    {
+        int cpus = Runtime.getRuntime().availableProcessors();
+
+        return 1 + (this.max_th < 0 ? cpus : this.max_th) + (this.fjp_size < 0 ? cpus : this.fjp_size) +
+            2 * (this.bg_exec_size < 0 ? cpus : this.bg_exec_size);
+    }
+
+    /** @return il numero di partite giocate contemporaneamente, almeno 1 */
+    public int concurrency()
+    {
+        return Math.max(1, this.threads / this.cost());
+    }
+
+    /**
+     * Gioca il numero di turni dato del torneo e ritorna la classifica. Ogni turno
+     * è giocato completamente prima di accoppiare i partecipanti per il turno
+     * successivo. Le statistiche si accumulano tra più invocazioni e i punteggi Elo
+     * sono aggiornati nell'ordine in cui le partite sono state programmate, quindi
+     * non dipendono dall'ordine in cui terminano.
+     *
+     * @param pairing  tipo di accoppiamento
+     * @param rounds   numero di turni
+     * @param listener se non è null, riceve il risultato di ogni partita appena
+     *                 termina, un risultato alla volta
+     * @return la classifica, ordinata per punti e poi per punteggio Elo
+     * @throws NullPointerException     se {@code pairing} è null
+     * @throws IllegalArgumentException se {@code rounds} è < 0
+     * @throws IllegalStateException    se non ci sono giochi o ci sono meno di due
+     *                                  partecipanti
+     * @throws InterruptedException     se il thread è interrotto, in tal caso le partite
+     *                                  in corso sono interrotte e il turno in corso non è conteggiato
+     */
+    public List<Standing> play(Pairing pairing, int rounds, Consumer<Match> listener) throws InterruptedException
+    {
+        Objects.requireNonNull(pairing);
+
+        if(rounds < 0)
+            throw new IllegalArgumentException();
+        if(this.games.isEmpty() || this.entries.size() < 2)
+            throw new IllegalStateException();
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.concurrency(), Utils.DAEMON_THREAD_FACTORY);
+
+        try
+        {
+            for(int r = 0; r < rounds; ++r)
+            {
+                List<Pairs> schedule = pairing == Pairing.ROUND_ROBIN ? this.round_robin(r) : this.swiss(r);
+                List<Future<Match>> futures = new ArrayList<>();
+
+                for(Pairs p : schedule)
+                    futures.add(pool.submit(() -> {
+                        Match m = this.play_match(p);
+
+                        if(listener != null)
+                            synchronized(listener)
+                            {
+                                listener.accept(m);
+                            }
+
+                        return m;
+                    }));
+
+                List<Match> played = new ArrayList<>();
+                for(Future<Match> f : futures)
+                {
+                    try
+                    {
+                        played.add(f.get());
+                    }
+                    catch(ExecutionException e)
+                    {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+
+                played.sort(Comparator.comparingInt(m -> m.index));
+                for(int i = 0; i < played.size(); ++i)
+                    this.record(played.get(i), schedule.get(i));
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return this.standings();
+    }
+
+    /** @return la classifica attuale, ordinata per punti e poi per punteggio Elo */
+    public List<Standing> standings()
+    {
+        List<Standing> list = new ArrayList<>();
+
+        for(Entry e : this.entries)
+            list.add(e.standing);
+
+        list.sort(Comparator.comparingDouble(Standing::points).thenComparingDouble(Standing::elo).reversed());
+        return list;
+    }
+
+    /** @return la lista immodificabile delle partite giocate, in ordine di programmazione */
+    public List<Match> matches()
+    {
+        return Collections.unmodifiableList(this.matches);
+    }
+
+    /** @return la classifica come tabella di testo, una riga per partecipante */
+    public String report()
+    {
+        StringBuilder sb = new StringBuilder(String.format("%-24s %4s %4s %4s %7s %7s %10s %10s%n",
+            "Giocatore", "V", "P", "S", "Punti", "Elo", "ms/mossa", "max ms"));
+
+        for(Standing s : this.standings())
+            sb.append(s).append(String.format("%n"));
+
+        return sb.toString();
+    }
+
+    /**
+     * Gioca una partita, gira su un thread del pool.
+     *
+     * @param p la partita da giocare
+     * @return il risultato della partita
+     */
+    private Match play_match(Pairs p) throws InterruptedException
+    {
+        long start = System.currentTimeMillis();
+        Entry[] seats = {p.first, p.second};
+        List<Player<PieceModel<Species>>> players = new ArrayList<>();
+        List<ForkJoinPool> pools = new ArrayList<>();
+        List<ExecutorService> executors = new ArrayList<>();
+        GameRuler<PieceModel<Species>> gr;
+        String game_name;
+
+        // Le fabbriche sono condivise tra le partite, sempre nell'ordine gioco, giocatore
+        synchronized(p.game)
+        {
+            p.game.setPlayerNames(p.first.name, p.second.name);
+            gr = p.game.newGame();
+            game_name = gr.name();
+
+            for(Entry e : seats)
+                synchronized(e.factory)
+                {
+                    players.add(e.factory.newPlayer(p.game, e.name));
+                }
+        }
+
+        long move_time = -1;
+        try
+        {
+            move_time = gr.mechanics().time;
+        }
+        catch(UnsupportedOperationException ignored)
+        {
+        }
+
+        // seat è l'indice di turnazione del giocatore di cui si sta invocando un metodo, 0 se nessuno
+        int forfeit = 0, moves = 0, seat = 0;
+        String reason = null;
+        long[] nanos = new long[2], max_nanos = new long[2];
+        int[] count = new int[2];
+
+        try
+        {
+            for(int i = 0; i < players.size(); ++i)
+            {
+                Player<PieceModel<Species>> player = players.get(i);
+                ForkJoinPool fjp = this.fjp_size == 0 ? null : (this.fjp_size > 0 ? new ForkJoinPool(this.fjp_size) : ForkJoinPool.commonPool());
+                ExecutorService executor = this.bg_exec_size == 0 ? null
+                    : Executors.newFixedThreadPool(this.bg_exec_size > 0 ? this.bg_exec_size : Runtime.getRuntime().availableProcessors(), Utils.DAEMON_THREAD_FACTORY);
+
+                if(fjp != null && fjp != ForkJoinPool.commonPool())
+                    pools.add(fjp);
+                if(executor != null)
+                    executors.add(executor);
+
+                seat = i + 1;
+                player.threads(this.max_th, fjp, executor);
+                player.setGame(gr.copy());
+                seat = 0;
+            }
+
+            while(gr.result() == -1)
+            {
+                int turn = gr.turn();
+                Move<PieceModel<Species>> move;
+
+                long t0 = System.nanoTime();
+                try
+                {
+                    move = players.get(turn - 1).getMove();
+                }
+                catch(RuntimeException e)
+                {
+                    move = null;
+                    reason = "getMove: " + e;
+                }
+                long elapsed = System.nanoTime() - t0;
+
+                if(Thread.currentThread().isInterrupted())
+                    throw new InterruptedException();
+
+                nanos[turn - 1] += elapsed;
+                max_nanos[turn - 1] = Math.max(max_nanos[turn - 1], elapsed);
+                count[turn - 1]++;
+
+                if(move != null && move_time > 0 && elapsed / 1000000 > move_time + this.tol)
+                {
+                    move = null;
+                    reason = "Move choice timed out";
+                }
+
+                if(move != null)
+                {
+                    try
+                    {
+                        // Una mossa non valida termina la partita con la sconfitta di chi l'ha fatta
+                        if(!gr.move(move))
+                        {
+                            forfeit = turn;
+                            reason = "Invalid move";
+                            break;
+                        }
+                    }
+                    catch(RuntimeException e)
+                    {
+                        move = null;
+                        reason = "Invalid move " + e;
+                    }
+                }
+
+                // Squalifica: il giocatore si arrende
+                if(move == null)
+                {
+                    if(reason == null)
+                        reason = "getMove returned null";
+
+                    forfeit = turn;
+                    gr.move(new Move<>(Move.Kind.RESIGN));
+                    break;
+                }
+
+                moves++;
+
+                for(int i = 0; i < players.size(); ++i)
+                {
+                    seat = i + 1;
+                    players.get(i).moved(turn, move);
+                }
+                seat = 0;
+            }
+        }
+        catch(RuntimeException e)
+        {
+            // Un'eccezione di threads, setGame o moved squalifica il giocatore che l'ha lanciata (o, se
+            // l'ha lanciata il gioco, quello di turno), se la partita è ancora in corso
+            if(gr.result() == -1)
+            {
+                forfeit = seat != 0 ? seat : gr.turn();
+                reason = e.toString();
+            }
+        }
+        finally
+        {
+            pools.forEach(ForkJoinPool::shutdownNow);
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+
+        synchronized(this)
+        {
+            for(int i = 0; i < 2; ++i)
+            {
+                Standing s = seats[i].standing;
+
+                s.moves += count[i];
+                s.move_nanos += nanos[i];
+                s.max_move_nanos = Math.max(s.max_move_nanos, max_nanos[i]);
+            }
+        }
+
+        // Il giocatore squalificato perde anche se non è quello di turno
+        int result = forfeit != 0 ? 3 - forfeit : gr.result();
+
+        return new Match(p.round, p.index, game_name, p.first.name, p.second.name, result, forfeit, reason, moves,
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Registra il risultato di una partita e aggiorna i punteggi Elo. Invocato nel
+     * thread del torneo, in ordine di programmazione.
+     *
+     * @param m il risultato della partita
+     * @param p la partita programmata
+     */
+    private void record(Match m, Pairs p)
+    {
+        Standing a = p.first.standing, b = p.second.standing;
+        double score_a = m.result == 1 ? 1 : (m.result == 2 ? 0 : 0.5);
+
+        if(m.result == 0)
+        {
+            a.draws++;
+            b.draws++;
+        }
+        else
+        {
+            Standing w = m.result == 1 ? a : b, l = m.result == 1 ? b : a;
+
+            w.wins++;
+            l.losses++;
+            if(m.forfeit > 0)
+                l.forfeits++;
+        }
+
+        double expected_a = 1 / (1 + Math.pow(10, (b.elo - a.elo) / 400));
+        a.elo += ELO_K * (score_a - expected_a);
+        b.elo -= ELO_K * (score_a - expected_a);
+
+        p.first.met.add(p.second);
+        p.second.met.add(p.first);
+        this.matches.add(m);
+    }
+
+    /**
+     * @param round indice del turno
+     * @return le partite di un turno del girone all'italiana
+     */
+    private List<Pairs> round_robin(int round)
+    {
+        List<Pairs> schedule = new ArrayList<>();
+
+        for(int i = 0; i < this.entries.size(); ++i)
+            for(int j = i + 1; j < this.entries.size(); ++j)
+                this.add_pairs(schedule, round, this.entries.get(i), this.entries.get(j));
+
+        return schedule;
+    }
+
+    /**
+     * @param round indice del turno
+     * @return le partite di un turno del sistema svizzero
+     */
+    private List<Pairs> swiss(int round)
+    {
+        List<Entry> ranked = new ArrayList<>(this.entries);
+        ranked.sort(Comparator.comparingDouble((Entry e) -> e.standing.points()).thenComparingDouble(e -> e.standing.elo()).reversed());
+
+        // Turno di riposo all'ultimo in classifica che non l'ha ancora avuto
+        if(ranked.size() % 2 == 1)
+        {
+            Entry bye = ranked.get(ranked.size() - 1);
+
+            for(int i = ranked.size() - 1; i >= 0; --i)
+                if(ranked.get(i).standing.byes == 0)
+                {
+                    bye = ranked.get(i);
+                    break;
+                }
+
+            ranked.remove(bye);
+            bye.standing.byes++;
+        }
+
+        List<Pairs> schedule = new ArrayList<>();
+
+        while(!ranked.isEmpty())
+        {
+            Entry a = ranked.remove(0), b = ranked.get(0);
+
+            for(Entry e : ranked)
+                if(!a.met.contains(e))
+                {
+                    b = e;
+                    break;
+                }
+
+            ranked.remove(b);
+            this.add_pairs(schedule, round, a, b);
+        }
+
+        return schedule;
+    }
+
+    /** Aggiunge le partite dell'incontro tra a e b: due per ogni gioco, alternando l'ordine di turnazione */
+    private void add_pairs(List<Pairs> schedule, int round, Entry a, Entry b)
+    {
+        for(GameFactory<GameRuler<PieceModel<Species>>> gF : this.games)
+        {
+            schedule.add(new Pairs(round, schedule.size(), gF, a, b));
+            schedule.add(new Pairs(round, schedule.size(), gF, b, a));
+        }
+    }
+
+    /** Imposta i parametri dati come coppie nome, valore */
+    private static void set_params(List<Param<?>> params, Object... kv)
+    {
+        if(kv.length % 2 != 0)
+            throw new IllegalArgumentException();
+
+        for(int i = 0; i < kv.length; i += 2)
+        {
+            Param<?> param = null;
+
+            for(Param<?> p : params)
+                if(p.name().equals(kv[i]))
+                    param = p;
+
+            if(param == null)
+                throw new IllegalArgumentException(Arrays.toString(kv));
+
+            param.set(kv[i + 1]);
+        }
+    }
+}
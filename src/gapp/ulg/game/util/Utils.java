@@ -26,6 +26,28 @@ public class Utils
         result.setDaemon(true);
         return result;
     };
+    
+    /**
+     * ThreadFactory che genera virtual thread, se la JVM li supporta (Java 21 o
+     * successive), altrimenti daemon thread come {@link Utils#DAEMON_THREAD_FACTORY}.
+     * Utile per i thread che passano la maggior parte del tempo bloccati.
+     */
+    static public final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+    
+    /** @return la ThreadFactory dei virtual thread ottenuta per riflessione, o
+     * {@link Utils#DAEMON_THREAD_FACTORY} se non sono supportati */
+    private static ThreadFactory virtualThreadFactory()
+    {
+    	try
+    	{
+    		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+    		return (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    	}
+    	catch( ReflectiveOperationException | RuntimeException e )
+    	{
+    		return DAEMON_THREAD_FACTORY;
+    	}
+    }
 	
 	/** Dato un tempo di partenza e un limite di tempo (entrambi in millisecondi), controlla se esso è stato superato.
 	 * Se il limite di tempo è <= 0, si assume che non ci sia alcun limite.
@@ -239,7 +261,7 @@ public class Utils
 			{
 	        	for( int j=0; j<board.width() ; j++ )
 	        	{
-	        		p = new Pos(j, i);
+	        		p = Pos.of(j, i);
 	        		
 	        		pm = board.get(p);
 	        		
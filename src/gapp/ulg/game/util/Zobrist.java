@@ -0,0 +1,133 @@
+package gapp.ulg.game.util;
+
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Situation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/** Tabella di numeri casuali per l'hashing di Zobrist delle situazioni di un gioco.
+ * <br>
+ * La chiave di una situazione è lo XOR di un numero per ogni coppia (posizione,
+ * pezzo) presente sulla board e di un numero per il turno (vedi
+ * {@link Situation#turn}). Quindi una mossa aggiorna la chiave in tempo costante,
+ * facendo lo XOR dei numeri dei pezzi tolti e messi, e l'unMove la ripristina
+ * allo stesso modo.
+ * <br>
+ * I numeri sono generati a partire da {@link SitPacker#fingerprint(Mechanics)},
+ * quindi due meccaniche con le stesse posizioni e gli stessi pezzi hanno la
+ * stessa tabella, anche in esecuzioni diverse. Un oggetto Zobrist è immutabile e
+ * può essere condiviso tra le copie di un gioco e tra più thread.
+ * @param <P>  tipo del modello dei pezzi */
+public final class Zobrist<P>
+{
+	/** Posizioni della meccanica */
+	private final List<Pos> positions;
+	/** Pezzi della meccanica */
+	private final List<P> pieces;
+	/** Numero di giocatori */
+	private final int np;
+	/** Indici delle posizioni in {@link Zobrist#positions} */
+	private final Map<Pos, Integer> pos_index;
+	/** Numeri delle coppie (posizione, pezzo): in posizione i*pieces.size()+j c'è quello della posizione i e del pezzo j */
+	private final long[] piece_keys;
+	/** Numeri dei turni: in posizione t+np c'è quello del turno t */
+	private final long[] turn_keys;
+
+	/** Crea la tabella per la meccanica data
+	 * @param gM  la meccanica di un gioco
+	 * @throws NullPointerException se gM è null */
+	public Zobrist(Mechanics<P> gM)
+	{
+		Objects.requireNonNull(gM);
+
+		this.positions = gM.positions;
+		this.pieces = gM.pieces;
+		this.np = gM.np;
+
+		this.pos_index = new HashMap<>();
+		for( int i=0 ; i<this.positions.size() ; i++ )
+			this.pos_index.put(this.positions.get(i), i);
+
+		SplittableRandom rnd = new SplittableRandom(SitPacker.fingerprint(gM));
+
+		this.piece_keys = new long[this.positions.size()*this.pieces.size()];
+		for( int i=0 ; i<this.piece_keys.length ; i++ )
+			this.piece_keys[i] = rnd.nextLong();
+
+		this.turn_keys = new long[2*this.np+1];
+		for( int i=0 ; i<this.turn_keys.length ; i++ )
+			this.turn_keys[i] = rnd.nextLong();
+	}
+
+	/** @param p  una posizione
+	 * @return l'indice di p nelle posizioni della meccanica, o -1 se p non c'è */
+	public int index(Pos p)
+	{
+		Integer i = this.pos_index.get(p);
+
+		return i == null ? -1 : i;
+	}
+
+	/** Ritorna il numero della coppia (posizione, pezzo) dati per indice.
+	 * @param pos  indice della posizione nelle posizioni della meccanica
+	 * @param piece  indice del pezzo nei pezzi della meccanica
+	 * @return il numero della coppia */
+	public long piece(int pos, int piece)
+	{
+		return this.piece_keys[pos*this.pieces.size() + piece];
+	}
+
+	/** Ritorna il numero del pezzo pm nella posizione di indice pos.
+	 * @param pos  indice della posizione nelle posizioni della meccanica
+	 * @param pm  un pezzo
+	 * @return il numero della coppia, o 0 se pm non è un pezzo della meccanica */
+	public long piece(int pos, P pm)
+	{
+		int j = this.pieces.indexOf(pm);
+
+		return j < 0 ? 0 : this.piece(pos, j);
+	}
+
+	/** @param t  un turno di una situazione (vedi {@link Situation#turn})
+	 * @return il numero del turno */
+	public long turn(int t)
+	{
+		return this.turn_keys[t + this.np];
+	}
+
+	/** Ritorna il numero del turno della situazione attuale del gioco dato: il
+	 * giocatore di turno se il gioco non è terminato, 0 per la patta e -w per la
+	 * vittoria del giocatore w.
+	 * @param g  un gioco con questa meccanica
+	 * @return il numero del turno */
+	public long turn(GameRuler<P> g)
+	{
+		int r = g.result();
+
+		return this.turn( r == -1 ? g.turn() : -r );
+	}
+
+	/** Calcola da zero la chiave di una situazione.
+	 * @param s  una situazione di un gioco con questa meccanica
+	 * @return la chiave della situazione */
+	public long key(Situation<P> s)
+	{
+		long k = this.turn(s.turn);
+
+		for( int i=0 ; i<this.positions.size() ; i++ )
+		{
+			P pm = s.get(this.positions.get(i));
+
+			if( pm != null )
+				k ^= this.piece(i, pm);
+		}
+
+		return k;
+	}
+}
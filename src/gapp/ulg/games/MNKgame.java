@@ -1,11 +1,11 @@
 package gapp.ulg.games;
 
 import gapp.ulg.game.board.*;
-import gapp.ulg.game.board.Board.Dir;
 import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 import java.util.*;
 
@@ -49,6 +49,8 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
     
     /** Board di Othello */
 	private final BoardOct<PieceModel<Species>> board;
@@ -68,6 +70,15 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
 	/** Lista delle mosse fatte in precedenza */
 	private List<Move<PieceModel<Species>>> history;
 	
+	/** Mosse di aggiunta di un pezzo, per ogni giocatore e per ogni posizione
+	 * nell'ordine di {@link Board#positions()} (condivise tra le copie) */
+	private final Move<PieceModel<Species>>[][] add_moves;
+	/** Contatori delle linee della board, per controllare vittorie e patte */
+	private final LineCounters lines;
+	/** Vicinanza di ogni posizione al centro della board e indici delle posizioni
+	 * in ordine di vicinanza decrescente (condivise tra le copie) */
+	private final int[] move_weight, move_order;
+	
 	/** Crea un {@code MNKgame} con le impostazioni date.
      * @param time  tempo in millisecondi per fare una mossa, se <= 0 significa nessun
      *              limite
@@ -110,11 +121,39 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	
     	this.history = new ArrayList<>();
     	
+    	this.add_moves = this.createAddMoves();
+    	this.lines = new LineCounters(m, n, k);
+    	
         // Definisco la situazione iniziale
     	this.start_situation = this.getSituation();
     	
-    	// Definisco la meccanica del gioco
-    	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, this::next_situation);
+    	// Le posizioni in ordine di vicinanza al centro decrescente, per il cursore delle mosse valide
+    	List<Pos> positions = this.board.positions();
+    	int max_b = 0, max_t = 0;
+    	for( Pos p : positions )
+    	{
+    		max_b = Math.max(max_b, p.b);
+    		max_t = Math.max(max_t, p.t);
+    	}
+    	this.move_weight = new int[positions.size()];
+    	Integer[] order = new Integer[positions.size()];
+    	for( int i=0 ; i<order.length ; i++ )
+    	{
+    		Pos p = positions.get(i);
+    		this.move_weight[i] = max_b + max_t - Math.abs(2*p.b - max_b) - Math.abs(2*p.t - max_t);
+    		order[i] = i;
+    	}
+    	Arrays.sort(order, (a, b) -> Integer.compare(this.move_weight[b], this.move_weight[a]));
+    	this.move_order = new int[order.length];
+    	for( int i=0 ; i<order.length ; i++ )
+    		this.move_order[i] = order[i];
+    	
+    	// Definisco la meccanica del gioco, la funzione next è ottenuta da quella pigra
+    	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, positions, 2, start_situation, null, this::next_cursor);
+    	
+    	// La chiave di Zobrist dei pezzi è mantenuta dalla board
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	this.board.setZobrist(this.zobrist);
     }
     
     /**
@@ -142,10 +181,16 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	this.ally_piece = mnk.ally_piece;
     	
     	this.history = new ArrayList<>(mnk.history);
+    	this.add_moves = mnk.add_moves;
+    	this.lines = new LineCounters(mnk.lines);
+    	this.move_weight = mnk.move_weight;
+    	this.move_order = mnk.move_order;
     	
     	this.start_situation = mnk.start_situation;
     	
     	this.mechanics = mnk.mechanics;
+    	
+    	this.zobrist = mnk.zobrist;
     }
 
     /** Il nome rispetta il formato:
@@ -232,32 +277,7 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	// Se la mossa è una ACTION eseguila, altrimenti termina il gioco dando la vittoria all'altro giocatore
     	if( m.kind == Kind.ACTION )
     	{
-    		// Esegui ADD
-			Pos add_position = m.actions.get(0).pos.get(0);
-			this.board.put(this.ally_piece, add_position);
-			
-			// Aggiungo la mossa alla history
-			this.history.add(m);
-			
-			if( this.checkVictory() )
-			{
-				// Se un giocatore ha vinto, chiudo il gioco
-				this.game_result = this.current_turn;
-			}
-			else if( this.canPlayFurther(1) || this.canPlayFurther(2) )
-			{
-				// Se si può ancora giocare, passo il turno al giocatore successivo
-				this.current_turn = 3 - this.current_turn;
-				
-				// Aggiorna il tipo di pezzo alleato e nemico
-		    	this.ally_piece = this.current_turn == 1 ? this.black_disc : this.white_disc;
-		    	this.enemy_piece = this.current_turn == 1 ? this.white_disc : this.black_disc;
-			}
-			else
-			{
-				// Se la patta è l'unica fine possibile, allora termina subito con una patta
-				this.game_result = 0;
-			}
+    		this.play(m);
     	}
     	else
     	{
@@ -269,6 +289,32 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	return true;
     }
 
+    /** Sceglie a caso una posizione vuota e usa le mosse precalcolate per ogni
+     * posizione, senza creare l'insieme delle mosse valide né oggetti {@link Move}. */
+    @Override
+    public boolean randomMove(SplittableRandom rnd)
+    {
+    	Objects.requireNonNull(rnd);
+    	
+    	if( this.game_result != -1 )
+    		return false;
+    	
+    	// Durante il gioco la history contiene solo le aggiunte di pezzi
+    	List<Pos> positions = this.board.positions();
+    	int empty = positions.size() - this.history.size();
+    	if( empty <= 0 )
+    		return false;
+    	
+    	int i = rnd.nextInt(empty), j = 0;
+    	for( ; ; j++ )
+    		if( this.board.get(positions.get(j)) == null && i-- == 0 )
+    			break;
+    	
+    	this.play(this.add_moves[this.current_turn-1][j]);
+    	
+    	return true;
+    }
+    
     @Override
     public boolean unMove()
     {
@@ -285,6 +331,7 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     		
     		// Annullala
 			this.board.remove( m.actions.get(0).pos.get(0) );
+			this.lines.remove(this.cell(m.actions.get(0).pos.get(0)), this.black_disc.equals(m.actions.get(0).piece) ? 0 : 1);
 			
 			// Se il gioco è già attivo
 			if( this.result() == -1 )
@@ -330,11 +377,12 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
         	throw new IllegalStateException();
     	
     	Set<Move<PieceModel<Species>>> moves_set = new HashSet<>();
+    	List<Pos> positions = this.board.positions();
     	
-    	for( Pos p : this.board.positions() )
+    	for( int i=0 ; i<positions.size() ; i++ )
         {
-    		if( this.board.get(p) == null )
-    			moves_set.add( new Move<>(new Action<>(p, this.ally_piece) ));
+    		if( this.board.get(positions.get(i)) == null )
+    			moves_set.add( this.add_moves[this.current_turn-1][i] );
         }
     	
     	if( !moves_set.isEmpty() )
@@ -343,200 +391,95 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	return Collections.unmodifiableSet( moves_set );
     }
     
-    /** Versione generica di validMoves */
-    private Set<Move<PieceModel<Species>>> validMoves(Map<Pos,PieceModel<Species>> board_map, PieceModel<Species> ally)
-    {
-    	Set<Move<PieceModel<Species>>> moves_set = new HashSet<>();
-    	
-    	for( Pos p : this.board.positions() )
-        {
-    		if( board_map.get(p) == null )
-    			moves_set.add( new Move<>(new Action<>(p, ally) ));
-        }
-    	
-    	return moves_set;
-    }
-
     @Override
     public GameRuler<PieceModel<Species>> copy() { return new MNKgame(this); }
 
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
-    /** Verifica se il giocatore attuale ha vinto 
-     * @return true se il giocatore attuale ha vinto, false altrimenti
+    @Override
+    public long zobristKey() { return this.board.zobristKey() ^ this.zobrist.turn(this); }
+    
+    /** Le regole non dipendono dall'orientamento della board: tutte le simmetrie
+     * della board (quelle definite per m x n) trasformano le linee in linee. */
+    @Override
+    public Set<Symmetry> symmetries() { return EnumSet.allOf(Symmetry.class); }
+    
+    /** Esegue una mossa di tipo {@link Kind#ACTION} valida del giocatore di turno:
+     * aggiunge il pezzo, controlla se la partita è terminata e altrimenti passa il turno.
+     * @param m la mossa
      */
-    private boolean checkVictory()
+    private void play(Move<PieceModel<Species>> m)
     {
-    	if( this.history.size()<this.k )
-    		return false;
-    	
-    	Pos p_search;
-    	int line_lenght;
-    	
-    	// Per ogni posizione della board occupata...
-    	for( Pos p : this.board.get() )
-    	{
-    		// ...da un pezzo alleato...
-    		if( this.ally_piece.equals(this.board.get(p)) )
-    		{
-	    		// ...e per ogni direzione di adiacenza
-	    		for( Dir d : Dir.values() )
-	        	{
-	    			line_lenght = 1;
-	    			p_search = this.board.adjacent(p, d);
-	    			
-	    			// Per ogni posizione della board nella medesima direzione occupata da un pezzo alleato...
-	    			while( p_search != null && this.ally_piece.equals(this.board.get(p_search)) )
-	    			{
-	    				// Incrementa la linea e continua la ricerca
-	    				line_lenght++;
-	    				p_search = this.board.adjacent(p_search, d);
-	    			}
-	    			
-	    			if( line_lenght >= this.k )
-	    				return true;
-	        	}
-    		}
-    	}
-    	
-    	return false;
+		// Esegui ADD
+		Pos add_position = m.actions.get(0).pos.get(0);
+		this.board.put(this.ally_piece, add_position);
+		
+		// Aggiungo la mossa alla history
+		this.history.add(m);
+		
+		if( this.lines.put(this.cell(add_position), this.current_turn-1) )
+		{
+			// Se un giocatore ha vinto, chiudo il gioco
+			this.game_result = this.current_turn;
+		}
+		else if( this.canPlayFurther(this.lines, this.history.size(), 1) || this.canPlayFurther(this.lines, this.history.size(), 2) )
+		{
+			// Se si può ancora giocare, passo il turno al giocatore successivo
+			this.current_turn = 3 - this.current_turn;
+			
+			// Aggiorna il tipo di pezzo alleato e nemico
+	    	this.ally_piece = this.current_turn == 1 ? this.black_disc : this.white_disc;
+	    	this.enemy_piece = this.current_turn == 1 ? this.white_disc : this.black_disc;
+		}
+		else
+		{
+			// Se la patta è l'unica fine possibile, allora termina subito con una patta
+			this.game_result = 0;
+		}
     }
     
-    /** Verifica se il giocatore attuale ha vinto (versione generica)
-     * @param board_map mappa che rappresenta la board
-     * @param ally modello di pezzo del giocatore attuale
-     * @return true se il giocatore attuale ha vinto, false altrimenti
+    /** Crea le mosse di aggiunta di un pezzo per ogni giocatore e per ogni posizione
+     * @return le mosse, indicizzate con il giocatore (da 0) e l'indice della posizione
      */
-    private boolean checkVictory(Map<Pos,PieceModel<Species>> board_map, PieceModel<Species> ally)
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+	private Move<PieceModel<Species>>[][] createAddMoves()
     {
-    	if( board_map.size()<this.k )
-    		return false;
+    	List<Pos> positions = this.board.positions();
+    	Move<PieceModel<Species>>[][] mm = new Move[2][positions.size()];
     	
-    	Pos p_search;
-    	int line_lenght;
-    	
-    	// Per ogni posizione della board occupata...
-    	for( Pos p : board_map.keySet() )
+    	for( int i=0 ; i<positions.size() ; i++ )
     	{
-    		// ...da un pezzo alleato...
-    		if( ally.equals(board_map.get(p)) )
-    		{
-	    		// ...e per ogni direzione di adiacenza
-	    		for( Dir d : Dir.values() )
-	        	{
-	    			line_lenght = 1;
-	    			p_search = this.board.adjacent(p, d);
-	    			
-	    			// Per ogni posizione della board nella medesima direzione occupata da un pezzo alleato...
-	    			while( p_search != null && ally.equals(board_map.get(p_search)) )
-	    			{
-	    				// Incrementa la linea e continua la ricerca
-	    				line_lenght++;
-	    				p_search = this.board.adjacent(p_search, d);
-	    			}
-	    			
-	    			if( line_lenght >= this.k )
-	    				return true;
-	        	}
-    		}
+    		mm[0][i] = new Move<>(new Action<>(positions.get(i), this.black_disc));
+    		mm[1][i] = new Move<>(new Action<>(positions.get(i), this.white_disc));
     	}
     	
-    	return false;
+    	return mm;
     }
     
-    /** Verifica se nell'attuale situazione del gioco un dato giocatore può ancora vincere
-     * @param player indice del giocatore
-     * @return true se è possibile giocare ancora, false altrimenti
+    /** Ritorna l'indice di una posizione, nell'ordine di {@link Board#positions()}
+     * @param p una posizione della board
+     * @return l'indice della posizione
      */
-    private boolean canPlayFurther(int player)
-    {
-    	if( this.history.size()<this.k )
-    		return true;
-    	
-    	if( this.history.size()==this.m*this.n )
-    		return false;
-    	
-    	int free_spaces = (this.m*this.n)-this.history.size();
-    	int player_free_spaces;
-    	
-    	// Calcolo quante caselle può ancora riempire il giocatore selezionato
-    	if( free_spaces%2 == 0 )
-    		player_free_spaces = free_spaces/2;
-    	else
-    		player_free_spaces = player==1 ? (free_spaces/2)+1 : (free_spaces/2);
-    	
-    	// Se non ci sono posizioni vuote, allora può solo finire con una patta
-    	if( player_free_spaces==0 )
-    		return false;
-    	
-    	PieceModel<Species> pos_content, piece_adjacent, enemy = player == 1 ? this.white_disc : this.black_disc;
-    	Pos p_search;
-    	int line_lenght, available;
-    	
-    	// Per ogni posizione della board ...
-    	for( Pos p : this.board.positions() )
-    	{
-    		pos_content = this.board.get(p);
-    		
-    		// ...vuota o con un pezzo alleato...
-    		if( !enemy.equals(pos_content) )
-    		{
-    			// ...e per ogni direzione di adiacenza
-	    		for( Dir d : Dir.values() )
-	        	{
-	    			line_lenght = 1;
-	    			
-	    			// Se la posizione di partenza è vuota, si usa subito una posizione
-	    			available = pos_content==null ? player_free_spaces-1 : player_free_spaces;
-	    			
-	    			p_search = this.board.adjacent(p, d);
-	    			
-	    			// Per ogni posizione della board nella medesima direzione...
-	    			while( p_search != null )
-	    			{
-	    				// ...verifica il contenuto della posizione
-	    				piece_adjacent = this.board.get(p_search);
-	    				
-	    				// Se la posizione è vuota, posso usarla solo se ho pezzi disponibili
-	    				if( piece_adjacent==null )
-	    				{
-	    					if( available>0 )
-	    						available--;
-	    					else
-	    						break;
-	    				}
-	    				else if( enemy.equals(piece_adjacent) ) // Se nella posizione c'è una pedina nemica, termina
-	    					break;
-	    				
-	    				// Se la pedina è alleata, aumenta la lunghezza della linea e continua la ricerca
-	    				line_lenght++;
-	    				p_search = this.board.adjacent(p_search, d);
-	    			}
-	    			
-	    			if( line_lenght >= this.k )
-	    				return true;
-	        	}
-    		}
-    	}
-    	
-    	return false;
-    }
+    private int cell(Pos p) { return p.b*this.n + p.t; }
     
-    /** Verifica se nell'attuale situazione del gioco un dato giocatore può ancora vincere (versione generica)
-     * @param board_map mappa che rappresenta la board
+    /** Verifica se in una situazione del gioco un dato giocatore può ancora vincere,
+     * cioè se c'è una linea senza pedine nemiche le cui posizioni vuote possono essere
+     * riempite con le pedine che il giocatore può ancora porre.
+     * @param lines contatori delle linee della situazione
+     * @param pieces numero di pezzi sulla board
      * @param player indice del giocatore
      * @return true se è possibile giocare ancora, false altrimenti
      */
-    private boolean canPlayFurther(Map<Pos,PieceModel<Species>> board_map, int player)
+    private boolean canPlayFurther(LineCounters lines, int pieces, int player)
     {
-    	if( board_map.size()<this.k )
+    	if( pieces<this.k )
     		return true;
     	
-    	if( board_map.size()==this.m*this.n )
+    	if( pieces==this.m*this.n )
     		return false;
     	
-    	int free_spaces = (this.m*this.n)-board_map.size();
+    	int free_spaces = (this.m*this.n)-pieces;
     	int player_free_spaces;
     	
     	// Calcolo quante caselle può ancora riempire il giocatore selezionato
@@ -549,57 +492,7 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
     	if( player_free_spaces==0 )
     		return false;
     	
-    	PieceModel<Species> pos_content, piece_adjacent, enemy = player==1 ? this.white_disc : this.black_disc;
-    	Pos p_search;
-    	int line_lenght, available;
-    	
-    	// Per ogni posizione della board ...
-    	for( Pos p : this.board.positions() )
-    	{
-    		pos_content = board_map.get(p);
-    		
-    		// ...vuota o con un pezzo alleato...
-    		if( !enemy.equals(pos_content) )
-    		{
-    			// ...e per ogni direzione di adiacenza
-	    		for( Dir d : Dir.values() )
-	        	{
-	    			line_lenght = 1;
-	    			
-	    			// Se la posizione di partenza è vuota, si usa subito una posizione
-	    			available = pos_content==null ? player_free_spaces-1 : player_free_spaces;
-	    			
-	    			p_search = this.board.adjacent(p, d);
-	    			
-	    			// Per ogni posizione della board nella medesima direzione...
-	    			while( p_search != null )
-	    			{
-	    				// ...verifica il contenuto della posizione
-	    				piece_adjacent = board_map.get(p_search);
-	    				
-	    				// Se la posizione è vuota, posso usarla solo se ho pezzi disponibili
-	    				if( piece_adjacent==null )
-	    				{
-	    					if( available>0 )
-	    						available--;
-	    					else
-	    						break;
-	    				}
-	    				else if( enemy.equals(piece_adjacent) ) // Se nella posizione c'è una pedina nemica, termina
-	    					break;
-	    				
-	    				// Se la pedina è alleata, aumenta la lunghezza della linea e continua la ricerca
-	    				line_lenght++;
-	    				p_search = this.board.adjacent(p_search, d);
-	    			}
-	    			
-	    			if( line_lenght >= this.k )
-	    				return true;
-	        	}
-    		}
-    	}
-    	
-    	return false;
+    	return lines.canComplete(player-1, player_free_spaces);
     }
 
 	/**
@@ -620,45 +513,322 @@ public class MNKgame implements GameRuler<PieceModel<Species>>
         return new Situation<>(c, situation_turn);
     }
     
-    /**Funzione che restituisce la mappa delle situazioni successive*/
-    private Map<Move<PieceModel<Species>>, Situation<PieceModel<Species>>> next_situation(Situation<PieceModel<Species>> s)
+    /** Ritorna un cursore sulle mosse valide della situazione data (vedi
+     * {@link Mechanics#lazy}), che visita prima le mosse vincenti e poi le altre a
+     * partire dal centro della board (vedi {@link MNKgame#move_order}).
+     * @param s una situazione di gioco
+     * @return il cursore sulle mosse valide
+     * @throws NullPointerException se s è null */
+    private Cursor<PieceModel<Species>> next_cursor(Situation<PieceModel<Species>> s)
     {
-    	Objects.requireNonNull(s);
-		
-		if(s.turn <= 0)
-			return Collections.emptyMap();
-		
-		Map<Move<PieceModel<Species>>, Situation<PieceModel<Species>>> possibilites = new HashMap<>();
-		Map<Pos, PieceModel<Species>> next_board;
-		PieceModel<Species> ally = s.turn==1 ? this.black_disc : this.white_disc;
-		int next_turn;
-		
-		for(Move<PieceModel<Species>> move : validMoves(s.newMap(), ally))
-		{
-			next_board = s.newMap();
-			
-			// Esegue ADD
-			next_board.put(move.actions.get(0).pos.get(0), move.actions.get(0).piece);
-			
-			if( this.checkVictory(next_board, ally) )
-			{
-				// Se un giocatore ha vinto, chiudo il gioco
-				next_turn = -s.turn;
-			}
-			else if( this.canPlayFurther(next_board, 1) || this.canPlayFurther(next_board, 2) )
-			{
-				// Se si può ancora giocare, passo il turno al giocatore successivo
-				next_turn = 3 - s.turn;
-			}
-			else
-			{
-				// Se la patta è l'unica fine possibile, allora termina subito con una patta
-				next_turn = 0;
-			}
-			
-			possibilites.put(move, new Situation<>(next_board, next_turn));
-		}
-		
-		return Collections.unmodifiableMap(possibilites);
-	};
+    	return new NextCursor(Objects.requireNonNull(s));
+    }
+    
+    /** Cursore sulle mosse valide di una situazione. I turni delle prossime
+     * situazioni sono calcolati alla creazione con i contatori delle linee, che
+     * sono economici, mentre le situazioni sono create solamente quando sono
+     * richieste. */
+    private final class NextCursor implements Cursor<PieceModel<Species>>
+    {
+    	private final int turn;
+    	private final byte[] cells;
+    	/** Le posizioni delle mosse nell'ordine del cursore, prima quelle vincenti */
+    	private final int[] seq;
+    	/** Per ogni posizione vuota, il turno della situazione che si ottiene ponendovi una pedina */
+    	private final int[] next_turns;
+    	/** Il numero di mosse vincenti, all'inizio di seq */
+    	private final int wins;
+    	
+    	/** Indice in seq della mossa attuale */
+    	private int i = -1;
+    	private Situation<PieceModel<Species>> next;
+    	
+    	NextCursor(Situation<PieceModel<Species>> s)
+    	{
+    		this.turn = s.turn;
+    		
+    		if( s.turn <= 0 )
+    		{
+    			this.cells = null;
+    			this.seq = new int[0];
+    			this.next_turns = null;
+    			this.wins = 0;
+    			return;
+    		}
+    		
+    		this.cells = mechanics.cells(s);
+    		this.next_turns = new int[this.cells.length];
+    		int pieces = 0, w = 0;
+    		
+    		// Contatori delle linee della situazione data, i pezzi della meccanica sono nell'ordine dei turni
+    		LineCounters s_lines = lines.empty();
+    		for( int c=0 ; c<this.cells.length ; c++ )
+    		{
+    			if( this.cells[c] != 0 )
+    			{
+    				s_lines.put(c, this.cells[c]-1);
+    				pieces++;
+    			}
+    		}
+    		
+    		for( int c : move_order )
+    		{
+    			if( this.cells[c] != 0 )
+    				continue;
+    			
+    			// Esegue ADD sui contatori, controlla le linee che passano per la posizione e lo annulla
+    			if( s_lines.put(c, s.turn-1) )
+    			{
+    				// Se un giocatore ha vinto, chiudo il gioco
+    				this.next_turns[c] = -s.turn;
+    				w++;
+    			}
+    			else if( canPlayFurther(s_lines, pieces+1, 1) || canPlayFurther(s_lines, pieces+1, 2) )
+    			{
+    				// Se si può ancora giocare, passo il turno al giocatore successivo
+    				this.next_turns[c] = 3 - s.turn;
+    			}
+    			else
+    			{
+    				// Se la patta è l'unica fine possibile, allora termina subito con una patta
+    				this.next_turns[c] = 0;
+    			}
+    			s_lines.remove(c, s.turn-1);
+    		}
+    		
+    		// Prima le mosse vincenti, poi le altre, entrambe nell'ordine di move_order
+    		this.seq = new int[this.cells.length - pieces];
+    		this.wins = w;
+    		int a = 0, b = w;
+    		for( int c : move_order )
+    			if( this.cells[c] == 0 )
+    				this.seq[this.next_turns[c] == -s.turn ? a++ : b++] = c;
+    	}
+    	
+    	@Override
+    	public boolean advance()
+    	{
+    		this.next = null;
+    		
+    		if( this.i < this.seq.length )
+    			this.i++;
+    		
+    		return this.i < this.seq.length;
+    	}
+    	
+    	@Override
+    	public Move<PieceModel<Species>> move()
+    	{
+    		int c = this.pos();
+    		
+    		return add_moves[this.turn-1][c];
+    	}
+    	
+    	@Override
+    	public Situation<PieceModel<Species>> situation()
+    	{
+    		int c = this.pos();
+    		
+    		if( this.next == null )
+    		{
+    			byte[] next_board = this.cells.clone();
+    			next_board[c] = (byte)this.turn;
+    			
+    			this.next = new Situation<>(mechanics, next_board, this.next_turns[c]);
+    		}
+    		
+    		return this.next;
+    	}
+    	
+    	@Override
+    	public int hint()
+    	{
+    		int c = this.pos();
+    		
+    		return this.i < this.wins ? this.cells.length : move_weight[c];
+    	}
+    	
+    	/** @return la posizione della mossa attuale */
+    	private int pos()
+    	{
+    		if( this.i < 0 || this.i >= this.seq.length )
+    			throw new IllegalStateException();
+    		
+    		return this.seq[this.i];
+    	}
+    }
+    
+    /** Contatori delle linee di una board di un m,n,k-game. Una linea è una sequenza
+     * di k posizioni consecutive in orizzontale, in verticale o in diagonale. Per
+     * ogni linea è mantenuto il numero di pedine di ogni giocatore e per ogni giocatore
+     * il numero di linee senza pedine dell'avversario (linee aperte) con c pedine del
+     * giocatore, per ogni c. Porre o togliere una pedina aggiorna solamente le linee
+     * che passano per la sua posizione, che sono al più 4k, e il controllo delle linee
+     * ancora completabili richiede al più k+1 passi, indipendentemente dalla
+     * dimensione della board. I giocatori sono indicati con 0 (nero) e 1 (bianco). */
+    private static final class LineCounters
+    {
+    	/** Lunghezza delle linee */
+    	private final int k;
+    	/** Per ogni posizione, gli indici delle linee che la contengono (condivisi tra le copie) */
+    	private final int[][] cell_lines;
+    	/** Numero di pedine di ogni giocatore in ogni linea: count[g][l] */
+    	private final int[][] count;
+    	/** Numero di linee aperte per ogni giocatore con c sue pedine: open[g][c] */
+    	private final int[][] open;
+    	
+    	/** Crea i contatori di una board m x n vuota
+    	 * @param m larghezza della board
+    	 * @param n altezza della board
+    	 * @param k lunghezza delle linee
+    	 */
+    	LineCounters(int m, int n, int k)
+    	{
+    		this(k, create_lines(m, n, k), lines_count(m, n, k));
+    	}
+    	
+    	/** Crea i contatori di una board vuota con le linee date
+    	 * @param k lunghezza delle linee
+    	 * @param cell_lines per ogni posizione, gli indici delle linee che la contengono
+    	 * @param n_lines numero di linee
+    	 */
+    	private LineCounters(int k, int[][] cell_lines, int n_lines)
+    	{
+    		this.k = k;
+    		this.cell_lines = cell_lines;
+    		this.count = new int[2][n_lines];
+    		this.open = new int[2][k+1];
+    		this.open[0][0] = this.open[1][0] = n_lines;
+    	}
+    	
+    	/** Crea una copia dei contatori dati
+    	 * @param lc i contatori da copiare
+    	 */
+    	LineCounters(LineCounters lc)
+    	{
+    		this.k = lc.k;
+    		this.cell_lines = lc.cell_lines;
+    		this.count = new int[][] { lc.count[0].clone(), lc.count[1].clone() };
+    		this.open = new int[][] { lc.open[0].clone(), lc.open[1].clone() };
+    	}
+    	
+    	/** @return i contatori della board vuota, con le stesse linee */
+    	LineCounters empty() { return new LineCounters(this.k, this.cell_lines, this.count[0].length); }
+    	
+    	/** Aggiorna i contatori ponendo una pedina del giocatore g nella posizione data
+    	 * @param cell indice della posizione
+    	 * @param g giocatore
+    	 * @return true se la pedina completa una linea del giocatore
+    	 */
+    	boolean put(int cell, int g)
+    	{
+    		int o = 1-g;
+    		boolean complete = false;
+    		
+    		for( int l : this.cell_lines[cell] )
+    		{
+    			int c = this.count[g][l], co = this.count[o][l];
+    			
+    			// La linea resta aperta per il giocatore con una pedina in più
+    			if( co == 0 )
+    			{
+    				this.open[g][c]--;
+    				this.open[g][c+1]++;
+    			}
+    			
+    			// La linea non è più aperta per l'avversario
+    			if( c == 0 )
+    				this.open[o][co]--;
+    			
+    			this.count[g][l] = c+1;
+    			
+    			if( c+1 == this.k )
+    				complete = true;
+    		}
+    		
+    		return complete;
+    	}
+    	
+    	/** Aggiorna i contatori togliendo una pedina del giocatore g dalla posizione data
+    	 * @param cell indice della posizione
+    	 * @param g giocatore
+    	 */
+    	void remove(int cell, int g)
+    	{
+    		int o = 1-g;
+    		
+    		for( int l : this.cell_lines[cell] )
+    		{
+    			int c = --this.count[g][l], co = this.count[o][l];
+    			
+    			if( co == 0 )
+    			{
+    				this.open[g][c+1]--;
+    				this.open[g][c]++;
+    			}
+    			
+    			if( c == 0 )
+    				this.open[o][co]++;
+    		}
+    	}
+    	
+    	/** Ritorna true se il giocatore g ha una linea aperta che può completare con al
+    	 * più free pedine
+    	 * @param g giocatore
+    	 * @param free numero di pedine che il giocatore può ancora porre
+    	 * @return true se il giocatore può ancora completare una linea
+    	 */
+    	boolean canComplete(int g, int free)
+    	{
+    		for( int c=this.k ; c>=0 && this.k-c <= free ; c-- )
+    			if( this.open[g][c] > 0 )
+    				return true;
+    		
+    		return false;
+    	}
+    	
+    	/** @return il numero di linee di una board m x n */
+    	private static int lines_count(int m, int n, int k)
+    	{
+    		// Orizzontali, verticali e le due diagonali
+    		int h = Math.max(0, m-k+1), v = Math.max(0, n-k+1);
+    		
+    		return h*n + m*v + 2*h*v;
+    	}
+    	
+    	/** Calcola le linee di una board m x n
+    	 * @return per ogni posizione, nell'ordine di {@link Board#positions()}, gli indici delle linee che la contengono
+    	 */
+    	private static int[][] create_lines(int m, int n, int k)
+    	{
+    		List<List<Integer>> lists = new ArrayList<>();
+    		for( int i=0 ; i<m*n ; i++ )
+    			lists.add(new ArrayList<>());
+    		
+    		// Direzioni: orizzontale, verticale e le due diagonali
+    		int[][] dirs = { {1,0}, {0,1}, {1,1}, {1,-1} };
+    		int l = 0;
+    		
+    		for( int[] d : dirs )
+    			for( int sb=0 ; sb<m ; sb++ )
+    				for( int st=0 ; st<n ; st++ )
+    				{
+    					int eb = sb + d[0]*(k-1), et = st + d[1]*(k-1);
+    					
+    					if( eb<0 || eb>=m || et<0 || et>=n )
+    						continue;
+    					
+    					for( int j=0 ; j<k ; j++ )
+    						lists.get((sb + d[0]*j)*n + st + d[1]*j).add(l);
+    					
+    					l++;
+    				}
+    		
+    		int[][] cell_lines = new int[m*n][];
+    		for( int i=0 ; i<m*n ; i++ )
+    			cell_lines[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+    		
+    		return cell_lines;
+    	}
+    }
 }
@@ -1,14 +1,13 @@
 package gapp.ulg.games;
 
 import gapp.ulg.game.board.*;
-import gapp.ulg.game.board.Board.Dir;
 import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 import java.util.*;
-import java.util.function.Function;
 
 /** <b>IMPLEMENTARE I METODI SECONDO LE SPECIFICHE DATE NEI JAVADOC. Non modificare
  * le intestazioni dei metodi.</b>
@@ -43,7 +42,12 @@ import java.util.function.Function;
  * ha la possibilità di muovere o quando la board è piena, si contano le pedine e si
  * assegna la vittoria a chi ne ha il maggior numero. Per ulteriori informazioni si
  * può consultare
- * <a href="https://it.wikipedia.org/wiki/Othello_(gioco)">Othello</a> */
+ * <a href="https://it.wikipedia.org/wiki/Othello_(gioco)">Othello</a>
+ * <br>
+ * Internamente lo stato del gioco è mantenuto in bitboard (vedi
+ * {@link OthelloBitboard}) e le mosse valide sono calcolate con shift e maschere.
+ * Gli oggetti {@link Move}, la {@link Board} ritornata da {@link Othello#getBoard()}
+ * e le {@link GameRuler.Situation} sono creati solamente quando sono richiesti. */
 public class Othello implements GameRuler<PieceModel<Species>>
 {
     /** Limite di tempo per una mossa */
@@ -64,24 +68,45 @@ public class Othello implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
+	/** Stima statica di ogni posizione (vedi {@link Othello#weight(int, int)}) e
+	 * indici delle posizioni in ordine di stima decrescente (condivise tra le copie) */
+	private final int[] move_weight, move_order;
     
-    /** Board di Othello */
-	private final BoardOct<PieceModel<Species>> board;
-	/** View immodificabile della Board di Othello */
-	private final Board<PieceModel<Species>> board_view;
+	/** Geometria delle bitboard (condivisa tra le copie) */
+	private final OthelloBitboard bits;
+    /** Board vuota usata solo per posizioni e adiacenze (condivisa tra le copie) */
+	private final BoardOct<PieceModel<Species>> geometry;
+	/** View immodificabile della Board di Othello, creata alla prima richiesta */
+	private Board<PieceModel<Species>> board_view;
+	
+	/** Bitboard delle pedine nere */
+	private final long[] black;
+	/** Bitboard delle pedine bianche */
+	private final long[] white;
+	/** Bitboard delle posizioni in cui può muovere il giocatore di turno */
+	private final long[] moves;
     
     /** Stato corrente del gioco */
     private int game_result = -1;
     /** Indice del giocatore di turno */
     private int current_turn = 1;
     
-    /** Tipo di pezzo alleato per il giocatore di turno */
-    private PieceModel<Species> ally_piece;
-    /** Tipo di pezzo nemico per il giocatore di turno */
-    private PieceModel<Species> enemy_piece;
+    /** Chiave di Zobrist delle pedine sulla board */
+    private long zobrist_key;
     
-    /** Lista delle mosse fatte in precedenza */
-	private List<Move<PieceModel<Species>>> history;
+    /** Pila degli stati precedenti alle mosse fatte: per ogni mossa le bitboard nere,
+     * le bitboard bianche, l'indice di turnazione e la chiave di Zobrist delle pedine */
+	private long[] history;
+	/** Numero di stati nella pila {@link Othello#history} */
+	private int history_size;
+	
+	/** Insieme delle mosse valide nella situazione attuale, calcolato alla prima richiesta */
+	private Set<Move<PieceModel<Species>>> valid_moves;
+	
+	/** Array di appoggio per i calcoli sulle bitboard */
+	private final long[] tmp_empty, tmp1, tmp2, tmp_flips;
 	
 	/** Crea un GameRuler per fare una partita a Othello, equivalente a
      * {@link Othello#Othello(long, int, String, String) Othello(0,8,p1,p2)}.
@@ -90,36 +115,7 @@ public class Othello implements GameRuler<PieceModel<Species>>
      * @throws NullPointerException se p1 o p2 è null */
     public Othello(String p1, String p2)
     {
-    	Objects.requireNonNull(p1);
-    	Objects.requireNonNull(p2);
-    	
-    	// Tempo per una mossa
-    	this.time = -1;
-    	// Dimensione board
-    	this.size = 8;
-    	// Lista dei giocatori
-    	this.players = Collections.unmodifiableList(Arrays.asList(p1, p2));
-    	
-    	this.board = new BoardOct<>(8,8);
-    	this.board_view = Utils.UnmodifiableBoard(this.board);
-    	
-    	// Mette i 4 pezzi iniziali al centro della board
-    	this.board.put( this.black_disc, new Pos(3,3) );
-    	this.board.put( this.black_disc, new Pos(4,4) );
-    	this.board.put( this.white_disc, new Pos(3,4) );
-    	this.board.put( this.white_disc, new Pos(4,3) );
-    	
-    	// Inizia il nero
-    	this.ally_piece = this.black_disc;
-    	this.enemy_piece = this.white_disc;
-    	
-    	this.history = new ArrayList<>();
-    	
-    	// Salvo la situazione iniziale
-    	this.start_situation = this.getSituation();
-    	
-    	// Definisco la meccanica del gioco
-    	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, this::next_situation);
+    	this(-1, 8, p1, p2);
     }
 
     /** Crea un GameRuler per fare una partita a Othello.
@@ -145,30 +141,59 @@ public class Othello implements GameRuler<PieceModel<Species>>
     	// Lista dei giocatori
     	this.players = Collections.unmodifiableList(Arrays.asList(p1, p2));
     	
-    	this.board = new BoardOct<>(this.size,this.size);
-    	this.board_view = Utils.UnmodifiableBoard(this.board);
+    	this.bits = new OthelloBitboard(this.size);
+    	this.geometry = new BoardOct<>(this.size,this.size);
+    	
+    	this.black = this.bits.create();
+    	this.white = this.bits.create();
+    	this.moves = this.bits.create();
+    	
+    	this.tmp_empty = this.bits.create();
+    	this.tmp1 = this.bits.create();
+    	this.tmp2 = this.bits.create();
+    	this.tmp_flips = this.bits.create();
     	
     	// Coordinate dei pezzi centrali
     	int cord1 = this.size/2-1;
     	int cord2 = this.size/2;
     	
     	// Mette i 4 pezzi iniziali al centro della board
-    	this.board.put( this.black_disc, new Pos(cord1,cord1) );
-    	this.board.put( this.black_disc, new Pos(cord2,cord2) );
-    	this.board.put( this.white_disc, new Pos(cord1,cord2) );
-    	this.board.put( this.white_disc, new Pos(cord2,cord1) );
+    	OthelloBitboard.set(this.black, cord1*this.size+cord1);
+    	OthelloBitboard.set(this.black, cord2*this.size+cord2);
+    	OthelloBitboard.set(this.white, cord1*this.size+cord2);
+    	OthelloBitboard.set(this.white, cord2*this.size+cord1);
     	
     	// Inizia il nero
-    	this.ally_piece = this.black_disc;
-    	this.enemy_piece = this.white_disc;
+    	this.update_moves();
     	
-    	this.history = new ArrayList<>();
+    	this.history = new long[8*(2*this.bits.words+2)];
+    	this.history_size = 0;
     	
     	// Salvo la situazione iniziale
     	this.start_situation = this.getSituation();
     	
-    	// Definisco la meccanica del gioco
-    	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, this::next_situation);
+    	// Le posizioni in ordine di stima decrescente, per il cursore delle mosse valide
+    	this.move_weight = new int[this.size*this.size];
+    	Integer[] order = new Integer[this.move_weight.length];
+    	for( int i=0 ; i<order.length ; i++ )
+    	{
+    		this.move_weight[i] = weight(i, this.size);
+    		order[i] = i;
+    	}
+    	Arrays.sort(order, (a, b) -> Integer.compare(this.move_weight[b], this.move_weight[a]));
+    	this.move_order = new int[order.length];
+    	for( int i=0 ; i<order.length ; i++ )
+    		this.move_order[i] = order[i];
+    	
+    	// Definisco la meccanica del gioco, la funzione next è ottenuta da quella pigra
+    	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.geometry.positions(), 2, start_situation, null, this::next_cursor);
+    	
+    	// Le posizioni della meccanica sono nell'ordine dei bit delle bitboard
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	for( int i = this.bits.nextSetBit(this.black, 0) ; i >= 0 ; i = this.bits.nextSetBit(this.black, i+1) )
+    		this.zobrist_key ^= this.zobrist.piece(i, 0);
+    	for( int i = this.bits.nextSetBit(this.white, 0) ; i >= 0 ; i = this.bits.nextSetBit(this.white, i+1) )
+    		this.zobrist_key ^= this.zobrist.piece(i, 1);
     }
     
     /**
@@ -184,19 +209,33 @@ public class Othello implements GameRuler<PieceModel<Species>>
     	this.size = ot.size;
     	this.players = ot.players;
     	
-    	this.board = ot.board.copy();
-    	this.board_view = Utils.UnmodifiableBoard(this.board);
+    	this.bits = ot.bits;
+    	this.geometry = ot.geometry;
+    	
+    	this.black = ot.black.clone();
+    	this.white = ot.white.clone();
+    	this.moves = ot.moves.clone();
+    	
+    	this.tmp_empty = this.bits.create();
+    	this.tmp1 = this.bits.create();
+    	this.tmp2 = this.bits.create();
+    	this.tmp_flips = this.bits.create();
     	
     	this.game_result = ot.game_result;
     	this.current_turn = ot.current_turn;
     	
-    	this.enemy_piece = ot.enemy_piece;
-    	this.ally_piece = ot.ally_piece;
+    	this.history = ot.history.clone();
+    	this.history_size = ot.history_size;
     	
-    	this.history = new ArrayList<>(ot.history);
+    	// L'insieme delle mosse valide è immodificabile, quindi può essere condiviso
+    	this.valid_moves = ot.valid_moves;
     	
     	this.start_situation = ot.start_situation;
     	this.mechanics = ot.mechanics;
+    	this.zobrist = ot.zobrist;
+    	this.zobrist_key = ot.zobrist_key;
+    	this.move_weight = ot.move_weight;
+    	this.move_order = ot.move_order;
     }
 
     /** Il nome rispetta il formato:
@@ -243,7 +282,39 @@ public class Othello implements GameRuler<PieceModel<Species>>
     }
 
     @Override
-    public Board<PieceModel<Species>> getBoard() { return this.board_view; }
+    public Board<PieceModel<Species>> getBoard()
+    {
+    	if( this.board_view == null )
+    	{
+    		this.board_view = new Board<PieceModel<Species>>()
+	    		{
+	    			@Override
+		            public System system() { return geometry.system(); }
+		            @Override
+		            public int width() { return size; }
+		            @Override
+		            public int height() { return size; }
+		            @Override
+		            public Pos adjacent(Pos p, Dir d) { return geometry.adjacent(p, d); }
+		            @Override
+		            public List<Pos> positions() { return geometry.positions(); }
+		            @Override
+		            public boolean isPos(Pos p) { return index(Objects.requireNonNull(p)) >= 0; }
+		            @Override
+		            public PieceModel<Species> get(Pos p)
+		            {
+		            	int i = index(Objects.requireNonNull(p));
+		            	
+		            	if( i < 0 )
+		            		return null;
+		            	
+		            	return OthelloBitboard.get(black, i) ? black_disc : (OthelloBitboard.get(white, i) ? white_disc : null);
+		            }
+	    		};
+    	}
+    	
+    	return this.board_view;
+    }
 
     /** Se il giocatore di turno non ha nessuna mossa valida il turno è
      * automaticamente passato all'altro giocatore. Ma se anche l'altro giuocatore
@@ -268,33 +339,24 @@ public class Othello implements GameRuler<PieceModel<Species>>
     		throw new IllegalStateException();
     	
     	// Se la mossa non è valida, da la vittoria ll'altro giocatore e ritorna false
-    	if( !isValid(m) )
+    	int sq = this.validIndex(m);
+    	if( sq == -1 )
     	{
     		this.game_result = 3 - this.current_turn;
     		return false;
     	}
     	
+    	// Salva lo stato attuale per l'unMove
+    	this.push_state();
+    	this.valid_moves = null;
+    	
     	// Se la mossa è una ACTION eseguila, altrimenti termina il gioco dando la vittoria all'altro giocatore
     	if( m.kind == Kind.ACTION )
     	{
-    		// Esegui ADD
-			Pos add_position = m.actions.get(0).pos.get(0);
-			this.board.put(this.ally_piece, add_position);
-			
-			// Esegui SWAP
-			for( Pos p : m.actions.get(1).pos )
-				this.board.put(this.ally_piece, p);
-			
-			// Aggiungo la mossa alla history
-			this.history.add(m);
-			
-			// Passo il turno al giocatore successivo
-			this.update_turn();
+    		this.play(sq);
     	}
     	else
     	{
-    		this.history.add(new Move<>(Kind.RESIGN));
-    		
     		this.game_result = 3 - this.current_turn;
     	}
     	
@@ -304,37 +366,22 @@ public class Othello implements GameRuler<PieceModel<Species>>
     @Override
     public boolean unMove()
     {
-    	if( this.history.isEmpty() )
+    	if( this.history_size == 0 )
         	return false;
         
-    	// Recupero l'ultima mossa fatta
-    	Move<PieceModel<Species>> m = this.history.get(this.history.size()-1);
+    	// Ripristina lo stato precedente all'ultima mossa fatta
+    	int words = this.bits.words;
+    	int base = (--this.history_size) * (2*words+2);
     	
-    	if( m.kind == Kind.ACTION )
-    	{
-    		// Se è una ACTION, annullala
-    		
-    		this.remove_action();
-    	}
-    	else if( m.kind == Kind.PASS )
-    	{
-    		// Se è una PASS, rimuovila (insieme ad un altra eventuale PASS) e annulla la ACTION che c'è prima
-    		
-    		this.previous_turn();
-    		
-    		if( this.history.get(this.history.size()-1).kind == Kind.PASS )
-    			this.history.remove(this.history.size()-1);
-    		
-    		this.remove_action();
-    	}
-    	else
-    	{
-    		// Altrimenti è una RESIGN, quindi rimuovila (non serve tornare al turno precedente)
-    		this.history.remove(this.history.size()-1);
-    	}
+    	System.arraycopy(this.history, base, this.black, 0, words);
+    	System.arraycopy(this.history, base+words, this.white, 0, words);
+    	this.current_turn = (int)this.history[base+2*words];
+    	this.zobrist_key = this.history[base+2*words+1];
     	
 		// Il gioco è attivo
 		this.game_result = -1;
+		this.update_moves();
+		this.valid_moves = null;
 		
     	return true;
     }
@@ -360,45 +407,20 @@ public class Othello implements GameRuler<PieceModel<Species>>
     	if( this.game_result != -1 )
         	throw new IllegalStateException();
     	
+    	if( this.valid_moves != null )
+    		return this.valid_moves;
+    	
     	Set<Move<PieceModel<Species>>> moves_set = new HashSet<>();
     	
-    	Pos p_search;
-    	Set<Pos> swap_set, swap_set_dir;
+    	long[] own = this.current_turn == 1 ? this.black : this.white;
+    	long[] opp = this.current_turn == 1 ? this.white : this.black;
+    	PieceModel<Species> ally = this.current_turn == 1 ? this.black_disc : this.white_disc;
     	
-    	// Per ogni posizione...
-    	for( Pos p_add : this.board.positions() )
+    	// Crea una mossa per ogni posizione in cui il giocatore di turno può muovere
+    	for( int sq = this.bits.nextSetBit(this.moves, 0) ; sq >= 0 ; sq = this.bits.nextSetBit(this.moves, sq+1) )
     	{
-    		// ...vuota...
-    		if( this.board.get(p_add) != null )
-    			continue;
-    		
-			swap_set = new HashSet<>();
-			
-			// ...cerca in ogni direzione una pedina avversaria adiacente
-        	for( Dir d : Dir.values() )
-        	{
-        		swap_set_dir = new HashSet<>();
-        		
-        		p_search = this.board.adjacent(p_add, d);
-    				
-				// Fino a quando trovi pedine avversarie contigue...
-				while( p_search != null && this.enemy_piece.equals(this.board.get(p_search)) )
-				{
-					// ...metti le loro posizioni nell'insieme e cercane altre nella stessa direzione
-					swap_set_dir.add(p_search);
-					p_search = this.board.adjacent(p_search, d);
-				}
-    				
-				// Se l'ultima posizione trovata è nella board e contiene un pezzo alleato, allora vuol dire che 
-				// tra le due pedine alleate trovate c'è una fila continua di pedine avversarie che possono essere girate.
-				// Inserisce quindi in swap_set tutte le posizioni trovate.
-				if( p_search != null && this.ally_piece.equals(this.board.get(p_search))  )
-					swap_set.addAll(swap_set_dir);
-        	}
-        	
-        	// Se ci sono pedine da girare, allora crea la mossa
-        	if( !swap_set.isEmpty() )
-        		moves_set.add( new Move<>( new Action<>(p_add, this.ally_piece), new Action<>(this.ally_piece, swap_set.toArray(new Pos[swap_set.size()])) ) );
+    		this.bits.flips(own, opp, sq, this.tmp_flips);
+    		moves_set.add(this.createMove(sq, this.tmp_flips, ally));
     	}
     	
     	// Se non sono state trovate mosse, ritorna un insieme vuoto
@@ -407,71 +429,45 @@ public class Othello implements GameRuler<PieceModel<Species>>
         
         moves_set.add(new Move<>(Kind.RESIGN));
         
-        return Collections.unmodifiableSet(moves_set);
+        this.valid_moves = Collections.unmodifiableSet(moves_set);
+        
+        return this.valid_moves;
     }
     
-    /** Versione di validMoves che funziona in modo indipendente dall'oggetto attuale
-     * @param free_pos inseieme delle posizioni libere
-     * @param b_get funzione per ottenere il contenuto di una posizione
-     * @param t turno attuale
-     * @return l'insieme delle mosse valide
-     */
-    private Set<Move<PieceModel<Species>>> validMoves(Function<Pos,PieceModel<Species>> b_get, int t)
+    /** Controlla la validità della mossa direttamente sulle bitboard, senza creare
+     * l'insieme delle mosse valide. */
+    @Override
+    public boolean isValid(Move<PieceModel<Species>> m)
     {
-    	Set<Move<PieceModel<Species>>> moves_set = new HashSet<>();
+    	Objects.requireNonNull(m);
     	
-    	Pos p_search;
-    	Set<Pos> swap_set, swap_set_dir;
-    	PieceModel<Species> ally, enemy;
+    	if( this.game_result != -1 )
+    		throw new IllegalStateException();
     	
-    	// Setta i pezzi alleati e nemici
-    	if(t==1)
-    	{
-    		ally = this.black_disc;
-    		enemy = this.white_disc;
-    	}
-    	else
-    	{
-    		ally = this.white_disc;
-    		enemy = this.black_disc;
-    	}
+    	return this.validIndex(m) != -1;
+    }
+    
+    /** Sceglie la posizione direttamente dalla bitboard delle mosse del giocatore di
+     * turno, senza creare l'insieme delle mosse valide né oggetti {@link Move}. */
+    @Override
+    public boolean randomMove(SplittableRandom rnd)
+    {
+    	Objects.requireNonNull(rnd);
     	
-    	// Per ogni posizione libera...
-    	for( Pos p_add : this.board.positions() )
-    	{
-			if(b_get.apply(p_add)!=null)
-				continue;
-    		
-    		swap_set = new HashSet<>();
-			
-			// ...cerca in ogni direzione una pedina avversaria adiacente
-        	for( Dir d : Dir.values() )
-        	{
-        		swap_set_dir = new HashSet<>();
-        		
-        		p_search = this.board.adjacent(p_add, d);
-    				
-				// Fino a quando trovi pedine avversarie contigue...
-				while( p_search != null && enemy.equals(b_get.apply(p_search)) )
-				{
-					// ...metti le loro posizioni nell'insieme e cercane altre nella stessa direzione
-					swap_set_dir.add(p_search);
-					p_search = this.board.adjacent(p_search, d);
-				}
-    				
-				// Se l'ultima posizione trovata è nella board e contiene un pezzo alleato, allora vuol dire che 
-				// tra le due pedine alleate trovate c'è una fila continua di pedine avversarie che possono essere girate.
-				// Inserisce quindi in swap_set tutte le posizioni trovate.
-				if( p_search != null && ally.equals(b_get.apply(p_search))  )
-					swap_set.addAll(swap_set_dir);
-        	}
-        	
-        	// Se ci sono pedine da girare, allora crea la mossa
-        	if( !swap_set.isEmpty() )
-        		moves_set.add( new Move<>( new Action<>(p_add, ally), new Action<>(ally, swap_set.toArray(new Pos[swap_set.size()])) ) );
-    	}
+    	if( this.game_result != -1 )
+    		return false;
+    	
+    	int n = OthelloBitboard.count(this.moves);
+    	if( n == 0 )
+    		return false;
+    	
+    	int sq = this.bits.nthSetBit(this.moves, rnd.nextInt(n));
+    	
+    	this.push_state();
+    	this.valid_moves = null;
+    	this.play(sq);
     	
-        return moves_set;
+    	return true;
     }
     
     @Override
@@ -481,9 +477,9 @@ public class Othello implements GameRuler<PieceModel<Species>>
     		throw new IllegalArgumentException();
     	
     	if( i == 1 )
-        	return this.board.get(this.black_disc).size();
+        	return OthelloBitboard.count(this.black);
         else
-        	return this.board.get(this.white_disc).size();
+        	return OthelloBitboard.count(this.white);
     }
 
     @Override
@@ -492,36 +488,155 @@ public class Othello implements GameRuler<PieceModel<Species>>
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
-    /** Aggiorna l'indice del giocatore attuale e successivo, 
-     * e quale tipo di pezzo è il nemico e quale è l'alleato */
+    @Override
+    public long zobristKey() { return this.zobrist_key ^ this.zobrist.turn(this); }
+    
+    /** Le regole non dipendono dall'orientamento della board, quindi valgono tutte
+     * le simmetrie della board quadrata. */
+    @Override
+    public Set<Symmetry> symmetries() { return EnumSet.allOf(Symmetry.class); }
+    
+    /** Ritorna l'indice di bit della posizione p, o -1 se p non è nella board
+     * @param p una posizione
+     * @return l'indice di bit della posizione p, o -1
+     */
+    private int index(Pos p)
+    {
+    	return ( p.b < this.size && p.t < this.size ) ? p.b*this.size + p.t : -1;
+    }
+    
+    /** Verifica che m sia una mossa valida nella situazione attuale.
+     * @param m una mossa
+     * @return -1 se la mossa non è valida, l'indice della posizione in cui si mette la
+     * pedina se è una mossa di tipo ACTION, altrimenti un intero >= 0 (RESIGN)
+     */
+    private int validIndex(Move<PieceModel<Species>> m)
+    {
+    	if( m.kind == Kind.RESIGN )
+    		return OthelloBitboard.isEmpty(this.moves) ? -1 : 0;
+    	
+    	if( m.kind != Kind.ACTION || m.actions.size() != 2 )
+    		return -1;
+    	
+    	Action<PieceModel<Species>> add = m.actions.get(0), swap = m.actions.get(1);
+    	PieceModel<Species> ally = this.current_turn == 1 ? this.black_disc : this.white_disc;
+    	
+    	if( add.kind != Action.Kind.ADD || swap.kind != Action.Kind.SWAP || !ally.equals(add.piece) || !ally.equals(swap.piece) )
+    		return -1;
+    	
+    	int sq = this.index(add.pos.get(0));
+    	
+    	if( sq < 0 || !OthelloBitboard.get(this.moves, sq) )
+    		return -1;
+    	
+    	// Le pedine girate devono essere esattamente quelle dell'azione SWAP
+    	long[] own = this.current_turn == 1 ? this.black : this.white;
+    	long[] opp = this.current_turn == 1 ? this.white : this.black;
+    	this.bits.flips(own, opp, sq, this.tmp_flips);
+    	
+    	if( swap.pos.size() != OthelloBitboard.count(this.tmp_flips) )
+    		return -1;
+    	
+    	for( Pos p : swap.pos )
+    	{
+    		int i = this.index(p);
+    		
+    		if( i < 0 || !OthelloBitboard.get(this.tmp_flips, i) )
+    			return -1;
+    	}
+    	
+    	return sq;
+    }
+    
+    /** Crea la mossa che mette una pedina nella posizione sq e gira le pedine flips
+     * @param sq indice della posizione della nuova pedina
+     * @param flips pedine da girare
+     * @param ally modello di pezzo del giocatore che muove
+     * @return la mossa
+     */
+    private Move<PieceModel<Species>> createMove(int sq, long[] flips, PieceModel<Species> ally)
+    {
+    	List<Pos> positions = this.geometry.positions();
+    	Pos[] swap_pos = new Pos[OthelloBitboard.count(flips)];
+    	
+    	int k = 0;
+    	for( int i = this.bits.nextSetBit(flips, 0) ; i >= 0 ; i = this.bits.nextSetBit(flips, i+1) )
+    		swap_pos[k++] = positions.get(i);
+    	
+    	return new Move<>( new Action<>(positions.get(sq), ally), new Action<>(ally, swap_pos) );
+    }
+    
+    /** Mette una pedina del giocatore di turno nella posizione sq (che deve essere
+     * una mossa valida), gira le pedine imprigionate e passa il turno.
+     * @param sq indice della posizione della nuova pedina
+     */
+    private void play(int sq)
+    {
+    	long[] own = this.current_turn == 1 ? this.black : this.white;
+    	long[] opp = this.current_turn == 1 ? this.white : this.black;
+    	
+    	int own_piece = this.current_turn-1, opp_piece = 2-this.current_turn;
+    	
+    	this.bits.flips(own, opp, sq, this.tmp_flips);
+    	
+    	OthelloBitboard.or(own, this.tmp_flips);
+    	OthelloBitboard.andNot(opp, this.tmp_flips);
+    	OthelloBitboard.set(own, sq);
+    	
+    	// Aggiorna la chiave di Zobrist con la nuova pedina e quelle girate
+    	this.zobrist_key ^= this.zobrist.piece(sq, own_piece);
+    	for( int i = this.bits.nextSetBit(this.tmp_flips, 0) ; i >= 0 ; i = this.bits.nextSetBit(this.tmp_flips, i+1) )
+    		this.zobrist_key ^= this.zobrist.piece(i, own_piece) ^ this.zobrist.piece(i, opp_piece);
+    	
+    	// Passo il turno al giocatore successivo
+    	this.update_turn();
+    }
+    
+    /** Salva nella pila {@link Othello#history} lo stato attuale */
+    private void push_state()
+    {
+    	int words = this.bits.words, stride = 2*words+2;
+    	
+    	if( (this.history_size+1)*stride > this.history.length )
+    		this.history = Arrays.copyOf(this.history, this.history.length*2);
+    	
+    	int base = this.history_size*stride;
+    	
+    	System.arraycopy(this.black, 0, this.history, base, words);
+    	System.arraycopy(this.white, 0, this.history, base+words, words);
+    	this.history[base+2*words] = this.current_turn;
+    	this.history[base+2*words+1] = this.zobrist_key;
+    	
+    	this.history_size++;
+    }
+    
+    /** Aggiorna la bitboard delle posizioni in cui può muovere il giocatore di turno */
+    private void update_moves()
+    {
+    	if( this.current_turn == 1 )
+    		this.bits.moves(this.black, this.white, this.moves, this.tmp_empty, this.tmp1, this.tmp2);
+    	else
+    		this.bits.moves(this.white, this.black, this.moves, this.tmp_empty, this.tmp1, this.tmp2);
+    }
+    
+    /** Aggiorna l'indice del giocatore attuale. Se il giocatore non ha mosse valide
+     * passa il turno, e se non ne ha neanche l'altro chiude il gioco. */
     private void update_turn()
     {
     	// Aggiorna l'indice del giocatore attuale
     	this.current_turn = 3 - this.current_turn;
-    	
-    	// Aggiorna il tipo di pezzo alleato e nemico
-    	this.ally_piece = this.current_turn == 1 ? this.black_disc : this.white_disc;
-    	this.enemy_piece = this.current_turn == 1 ? this.white_disc : this.black_disc;
+    	this.update_moves();
     	
     	// Se non ci sono mosse valide
-    	if( this.validMoves().isEmpty() )
+    	if( OthelloBitboard.isEmpty(this.moves) )
     	{
     		// Il giocatore passa il turno
-    		this.history.add(new Move<>(Kind.PASS));
-    		
-    		// Riaggiorna l'indice del giocatore attuale
         	this.current_turn = 3 - this.current_turn;
-        	
-        	// Riaggiorna il tipo di pezzo alleato e nemico
-        	this.ally_piece = this.current_turn == 1 ? this.black_disc : this.white_disc;
-        	this.enemy_piece = this.current_turn == 1 ? this.white_disc : this.black_disc;
+        	this.update_moves();
         	
         	// Se non ci sono ancora mosse valide, chiudi il gioco
-        	if( this.validMoves().isEmpty() )
-        	{
-        		this.history.add(new Move<>(Kind.PASS));
+        	if( OthelloBitboard.isEmpty(this.moves) )
         		this.close_game();
-        	}
     	}
     }
     
@@ -541,47 +656,6 @@ public class Othello implements GameRuler<PieceModel<Species>>
     		this.game_result = 2;
     }
     
-    /** Rimuove l'ultima mossa dalla history e ripristina l'indice di turnazione precedente
-     * e lo stato precedente del pezzo alleato e nemico */
-    private void previous_turn()
-    {
-    	// Rimuovo l'ultima mossa dalla history
-    	this.history.remove(this.history.size()-1);
-    	
-    	// Ripristina il turno precedente
-		this.current_turn = this.current_turn == 1 ? 2 : 1;
-    	
-		// Ripristina il settaggio precedente dei pezzi alleati e nemici
-    	this.ally_piece = this.current_turn == 1 ? this.black_disc : this.white_disc;
-    	this.enemy_piece = this.current_turn == 1 ? this.white_disc : this.black_disc;
-    }
-    
-    /** Se l'ultima mossa della history è una ACTION, la annulla e la rimuove, tornando allo stato precedente.
-     * In caso contrario, il comportamento è errato (non ci sono controlli per ridurre i tempi).
-     */
-    private void remove_action()
-    {
-    	Move<PieceModel<Species>> m = this.history.get(this.history.size()-1);
-    	
-    	// Remove ADD, e ottiene il tipo della pedina rimossa
-		Pos add_position = m.actions.get(0).pos.get(0);
-		PieceModel<Species> pm = this.board.remove(add_position);
-		
-		// Remove SWAP: se il pezzo rimosso era nero, 
-		// fai diventare le pedine bianche, e viceversa
-		if( this.black_disc.equals(pm) )
-			pm = this.white_disc;
-		else
-			pm = this.black_disc;
-		
-		// Inverti lo swap
-		for( Pos p : m.actions.get(1).pos )
-			this.board.put(pm, p);
-		
-		// Rimuove la mossa dalla history e ripristina stato precedente
-		this.previous_turn();
-    }
-    
     /**
      * Ritorna l'oggetto {@code Situation} relativo allo stato attuale del gioco
      * @return l'oggetto {@code Situation} relativo allo stato attuale del gioco
@@ -589,10 +663,12 @@ public class Othello implements GameRuler<PieceModel<Species>>
     private Situation<PieceModel<Species>> getSituation()
     {
         Map<Pos,PieceModel<Species>> c = new HashMap<>();
+        List<Pos> positions = this.geometry.positions();
         
-        for (Pos p : this.board.positions() )
-            if (this.board.get(p) != null)
-            	c.put(p, this.board.get(p));
+        for( int i = this.bits.nextSetBit(this.black, 0) ; i >= 0 ; i = this.bits.nextSetBit(this.black, i+1) )
+        	c.put(positions.get(i), this.black_disc);
+        for( int i = this.bits.nextSetBit(this.white, 0) ; i >= 0 ; i = this.bits.nextSetBit(this.white, i+1) )
+        	c.put(positions.get(i), this.white_disc);
         
         // Se la situazione è finale, ritorna l'opposto del risultato, altrimenti l'indice del turno corrente
         int situation_turn = this.game_result == -1 ? this.current_turn : -this.game_result;
@@ -600,68 +676,192 @@ public class Othello implements GameRuler<PieceModel<Species>>
         return new Situation<>(c, situation_turn);
     }
     
-    /**Funzione che restituisce la mappa delle situazioni successive*/
-	private Map<Move<PieceModel<Species>>, Situation<PieceModel<Species>>> next_situation(Situation<PieceModel<Species>> s)
+    /** Ritorna un cursore sulle mosse valide della situazione data (vedi
+     * {@link Mechanics#lazy}), che le visita a partire da quelle nelle posizioni
+     * più promettenti (vedi {@link Othello#move_order}).
+     * @param s una situazione di gioco
+     * @return il cursore sulle mosse valide
+     * @throws NullPointerException se s è null */
+	private Cursor<PieceModel<Species>> next_cursor(Situation<PieceModel<Species>> s)
 	{
-		Objects.requireNonNull(s);
+		return new NextCursor(Objects.requireNonNull(s));
+	}
+	
+	/** Ritorna la stima statica della posizione sq: 4 per gli angoli, 3 per le altre
+	 * posizioni del bordo, 2 per quelle interne, 1 per quelle del bordo adiacenti a un
+	 * angolo e 0 per quelle in diagonale a un angolo, che di solito lo concedono
+	 * all'avversario.
+	 * @param sq indice di una posizione
+	 * @param size dimensione della board
+	 * @return la stima della posizione */
+	private static int weight(int sq, int size)
+	{
+		int r = sq / size, c = sq % size;
+		int dr = Math.min(r, size-1-r), dc = Math.min(c, size-1-c);
 		
-		if(s.turn <= 0)
-			return Collections.emptyMap();
+		if( dr == 0 && dc == 0 )
+			return 4;
+		if( dr <= 1 && dc <= 1 )
+			return dr + dc == 1 ? 1 : 0;
 		
-		Map<Move<PieceModel<Species>>, Situation<PieceModel<Species>>> possibilites = new HashMap<>();
-		Map<Pos, PieceModel<Species>> next_board;
-		Action<PieceModel<Species>> swap, add;
-		int next_turn, score_black, score_white;
+		return dr == 0 || dc == 0 ? 3 : 2;
+	}
+	
+	/** Cursore sulle mosse valide di una situazione, nell'ordine di
+	 * {@link Othello#move_order}. La funzione può essere invocata da più thread,
+	 * quindi ogni cursore usa bitboard proprie. La mossa e la prossima situazione
+	 * sono calcolate solamente quando sono richieste. */
+	private final class NextCursor implements Cursor<PieceModel<Species>>
+	{
+		private final int turn;
+		private final PieceModel<Species> ally;
+		/** I pezzi della meccanica sono nell'ordine dei turni */
+		private final byte ally_cell;
+		private final byte[] cells;
+		private final long[] own, opp, vm, flips;
+		private final long[] next_own, next_opp, next_vm, t_empty, t1, t2;
+		
+		/** Indice in move_order della prossima posizione da controllare */
+		private int k;
+		/** Posizione della mossa attuale, -1 se il cursore non è su una mossa */
+		private int sq = -1;
+		private Move<PieceModel<Species>> move;
+		private Situation<PieceModel<Species>> next;
 		
-		for(Move<PieceModel<Species>> move : validMoves(s::get, s.turn))
+		NextCursor(Situation<PieceModel<Species>> s)
 		{
-			next_board = s.newMap();
+			OthelloBitboard bb = bits;
+			
+			this.turn = s.turn;
+			this.ally = s.turn == 1 ? black_disc : white_disc;
+			this.ally_cell = (byte)s.turn;
+			this.own = bb.create(); this.opp = bb.create(); this.vm = bb.create(); this.flips = bb.create();
+			this.next_own = bb.create(); this.next_opp = bb.create(); this.next_vm = bb.create();
+			this.t_empty = bb.create(); this.t1 = bb.create(); this.t2 = bb.create();
+			
+			if( s.turn <= 0 )
+			{
+				this.cells = null;
+				this.k = move_order.length;
+				return;
+			}
 			
-			// Esegue ADD
-			add = move.actions.get(0);
-			next_board.put(add.pos.get(0), add.piece);
+			// Decodifica la situazione nelle bitboard del giocatore di turno e dell'avversario
+			this.cells = mechanics.cells(s);
+			for( int i=0 ; i<bb.n ; i++ )
+				if( this.cells[i] != 0 )
+					OthelloBitboard.set(this.cells[i] == this.ally_cell ? this.own : this.opp, i);
 			
-			// Esegue SWAP
-			swap = move.actions.get(1);
-			for(Pos p : swap.pos)
-				next_board.put(p, swap.piece);
+			bb.moves(this.own, this.opp, this.vm, this.t_empty, this.t1, this.t2);
 			
-			next_turn = 3 - s.turn;
+			if( OthelloBitboard.isEmpty(this.vm) )
+				this.k = move_order.length;
+		}
+		
+		@Override
+		public boolean advance()
+		{
+			this.move = null;
+			this.next = null;
+			
+			while( this.k < move_order.length )
+			{
+				int q = move_order[this.k++];
+				
+				if( OthelloBitboard.get(this.vm, q) )
+				{
+					this.sq = q;
+					bits.flips(this.own, this.opp, q, this.flips);
+					return true;
+				}
+			}
+			
+			this.sq = -1;
+			return false;
+		}
+		
+		@Override
+		public Move<PieceModel<Species>> move()
+		{
+			this.check();
+			
+			if( this.move == null )
+				this.move = createMove(this.sq, this.flips, this.ally);
+			
+			return this.move;
+		}
+		
+		@Override
+		public Situation<PieceModel<Species>> situation()
+		{
+			this.check();
+			
+			if( this.next == null )
+				this.next = this.play();
+			
+			return this.next;
+		}
+		
+		@Override
+		public int hint()
+		{
+			this.check();
+			
+			return move_weight[this.sq];
+		}
+		
+		private void check()
+		{
+			if( this.sq < 0 )
+				throw new IllegalStateException();
+		}
+		
+		/** @return la situazione che si ottiene facendo la mossa attuale */
+		private Situation<PieceModel<Species>> play()
+		{
+			OthelloBitboard bb = bits;
+			int next_turn, score_own, score_opp;
+			
+			// Esegue ADD e SWAP su una copia dei pezzi
+			byte[] next_board = this.cells.clone();
+			next_board[this.sq] = this.ally_cell;
+			for( int i = bb.nextSetBit(this.flips, 0) ; i >= 0 ; i = bb.nextSetBit(this.flips, i+1) )
+				next_board[i] = this.ally_cell;
+			
+			// ...e sulle bitboard
+			System.arraycopy(this.own, 0, this.next_own, 0, bb.words);
+			System.arraycopy(this.opp, 0, this.next_opp, 0, bb.words);
+			OthelloBitboard.or(this.next_own, this.flips);
+			OthelloBitboard.set(this.next_own, this.sq);
+			OthelloBitboard.andNot(this.next_opp, this.flips);
+			
+			next_turn = 3 - this.turn;
 			
 			// Una vittoria non è possibile con meno di 10 pedine sulla board (da Othello 6x6 in poi)
-			if( next_board.size()>=10 )
+			if( OthelloBitboard.count(this.next_own) + OthelloBitboard.count(this.next_opp) >= 10 )
 			{
-				if(validMoves(next_board::get, next_turn).isEmpty())
+				bb.moves(this.next_opp, this.next_own, this.next_vm, this.t_empty, this.t1, this.t2);
+				
+				if( OthelloBitboard.isEmpty(this.next_vm) )
 				{
 					next_turn = 3 - next_turn;
 					
-					if(validMoves(next_board::get, next_turn).isEmpty())
+					bb.moves(this.next_own, this.next_opp, this.next_vm, this.t_empty, this.t1, this.t2);
+					
+					if( OthelloBitboard.isEmpty(this.next_vm) )
 					{
-						score_black=0;
-						score_white=0;
+						score_own = OthelloBitboard.count(this.next_own);
+						score_opp = OthelloBitboard.count(this.next_opp);
 						
-						for(PieceModel<Species> p : next_board.values())
-						{
-							if( this.black_disc.equals(p) )
-								score_black++;
-							else
-								score_white++;
-						}
-						
-						if(score_black==score_white)
+						if( score_own == score_opp )
 							next_turn = 0;
-						else if(score_black>score_white)
-							next_turn = -1;
 						else
-							next_turn = -2;
+							next_turn = score_own > score_opp ? -this.turn : -(3 - this.turn);
 					}
-					
 				}
 			}
 			
-			possibilites.put(move, new Situation<>(next_board, next_turn));
+			return new Situation<>(mechanics, next_board, next_turn);
 		}
-		
-		return Collections.unmodifiableMap(possibilites);
 	}
 }
@@ -0,0 +1,335 @@
+package gapp.ulg.games;
+
+import gapp.ulg.game.board.Board;
+import gapp.ulg.game.board.Board.Dir;
+
+/**
+ * Geometria e operazioni su bitboard per una board quadrata di Othello.
+ * <br>
+ * Una bitboard è un array di {@link OthelloBitboard#words} long in cui la posizione
+ * (b,t) corrisponde al bit di indice b*size+t, cioè lo stesso ordine di
+ * {@link Board#positions()}. Le board 6x6 e 8x8 stanno in un solo long, la 10x10 in
+ * due e la 12x12 in tre.
+ * <br>
+ * Un oggetto OthelloBitboard è immutabile e può essere condiviso tra più thread, i
+ * metodi che richiedono array di appoggio li ricevono come parametri per evitare
+ * allocazioni.
+ */
+final class OthelloBitboard
+{
+	/** Lato della board */
+	final int size;
+	/** Numero di posizioni della board */
+	final int n;
+	/** Numero di long usati da una bitboard */
+	final int words;
+	/** Bitboard con tutte le posizioni della board */
+	final long[] full;
+
+	/** Spostamento dell'indice di bit per ogni direzione (indicizzato con {@link Dir#ordinal()}) */
+	private final int[] step;
+	/** Maschere delle posizioni valide dopo uno spostamento in ogni direzione (evitano i "giri" di colonna) */
+	private final long[][] dir_mask;
+	/** Tabella delle adiacenze: in posizione i*8+d c'è l'indice adiacente a i in direzione d, o -1 */
+	private final int[] adj;
+
+	/** Crea la geometria di una board size x size
+	 * @param size lato della board
+	 * @throws IllegalArgumentException se size <= 0
+	 */
+	OthelloBitboard(int size)
+	{
+		if( size <= 0 )
+			throw new IllegalArgumentException();
+
+		this.size = size;
+		this.n = size*size;
+		this.words = (this.n+63)/64;
+
+		this.full = new long[this.words];
+		for( int i=0 ; i<this.n ; i++ )
+			set(this.full, i);
+
+		Dir[] dirs = Dir.values();
+		this.step = new int[dirs.length];
+		this.dir_mask = new long[dirs.length][];
+		this.adj = new int[this.n*dirs.length];
+
+		for( Dir d : dirs )
+		{
+			int db = delta_b(d), dt = delta_t(d);
+
+			this.step[d.ordinal()] = db*size + dt;
+
+			// Dopo lo spostamento sono ammesse solo le posizioni raggiungibili senza uscire dalla board
+			long[] mask = new long[this.words];
+			for( int b=0 ; b<size ; b++ )
+				for( int t=0 ; t<size ; t++ )
+				{
+					int sb = b-db, st = t-dt;
+
+					if( sb>=0 && sb<size && st>=0 && st<size )
+						set(mask, b*size+t);
+				}
+			this.dir_mask[d.ordinal()] = mask;
+
+			for( int b=0 ; b<size ; b++ )
+				for( int t=0 ; t<size ; t++ )
+				{
+					int ab = b+db, at = t+dt;
+
+					this.adj[(b*size+t)*dirs.length + d.ordinal()] = ( ab>=0 && ab<size && at>=0 && at<size ) ? ab*size+at : -1;
+				}
+		}
+	}
+
+	/** @return una nuova bitboard vuota */
+	long[] create() { return new long[this.words]; }
+
+	/** Ritorna l'indice adiacente a i nella direzione di ordinale d, o -1 se non esiste
+	 * @param i indice di una posizione
+	 * @param d ordinale di una direzione
+	 * @return l'indice adiacente o -1
+	 */
+	int adjacent(int i, int d) { return this.adj[i*8 + d]; }
+
+	/** Sposta tutti i bit di src di una posizione nella direzione di ordinale d e mette il risultato
+	 * in dst (può essere lo stesso array di src). I bit che escono dalla board sono scartati.
+	 * @param src bitboard di partenza
+	 * @param d ordinale di una direzione
+	 * @param dst bitboard risultato
+	 */
+	void shift(long[] src, int d, long[] dst)
+	{
+		int k = this.step[d];
+		long[] mask = this.dir_mask[d];
+
+		if( k > 0 )
+		{
+			int w = k >>> 6, r = k & 63;
+
+			for( int i=this.words-1 ; i>=0 ; i-- )
+			{
+				long v = i-w >= 0 ? src[i-w] << r : 0L;
+				if( r != 0 && i-w-1 >= 0 )
+					v |= src[i-w-1] >>> (64-r);
+				dst[i] = v & mask[i];
+			}
+		}
+		else
+		{
+			k = -k;
+			int w = k >>> 6, r = k & 63;
+
+			for( int i=0 ; i<this.words ; i++ )
+			{
+				long v = i+w < this.words ? src[i+w] >>> r : 0L;
+				if( r != 0 && i+w+1 < this.words )
+					v |= src[i+w+1] << (64-r);
+				dst[i] = v & mask[i];
+			}
+		}
+	}
+
+	/** Calcola con shift e maschere la bitboard delle posizioni dove il giocatore che possiede own
+	 * può mettere una pedina.
+	 * @param own pedine del giocatore di turno
+	 * @param opp pedine dell'avversario
+	 * @param out bitboard risultato
+	 * @param empty array di appoggio
+	 * @param t1 array di appoggio
+	 * @param t2 array di appoggio
+	 */
+	void moves(long[] own, long[] opp, long[] out, long[] empty, long[] t1, long[] t2)
+	{
+		for( int i=0 ; i<this.words ; i++ )
+		{
+			empty[i] = this.full[i] & ~(own[i] | opp[i]);
+			out[i] = 0L;
+		}
+
+		for( int d=0 ; d<8 ; d++ )
+		{
+			// Pedine avversarie contigue a una pedina alleata nella direzione d...
+			this.shift(own, d, t1);
+			and(t1, opp);
+
+			for( int j=0 ; j<this.size-3 ; j++ )
+			{
+				this.shift(t1, d, t2);
+				and(t2, opp);
+				or(t1, t2);
+			}
+
+			// ...seguite da una posizione vuota
+			this.shift(t1, d, t2);
+			and(t2, empty);
+			or(out, t2);
+		}
+	}
+
+	/** Calcola le pedine girate mettendo una pedina del giocatore che possiede own nella posizione sq.
+	 * @param own pedine del giocatore di turno
+	 * @param opp pedine dell'avversario
+	 * @param sq indice della posizione in cui si mette la pedina
+	 * @param out bitboard delle pedine girate (vuota se la mossa non è valida)
+	 */
+	void flips(long[] own, long[] opp, int sq, long[] out)
+	{
+		clear(out);
+
+		for( int d=0 ; d<8 ; d++ )
+		{
+			int j = this.adj[sq*8 + d], cnt = 0;
+
+			while( j >= 0 && get(opp, j) )
+			{
+				j = this.adj[j*8 + d];
+				cnt++;
+			}
+
+			if( cnt > 0 && j >= 0 && get(own, j) )
+			{
+				for( int k=this.adj[sq*8 + d] ; k != j ; k=this.adj[k*8 + d] )
+					set(out, k);
+			}
+		}
+	}
+
+	/** Ritorna l'indice del primo bit a 1 di bb a partire da from, o -1 se non c'è
+	 * @param bb una bitboard
+	 * @param from indice di partenza
+	 * @return l'indice del primo bit a 1 o -1
+	 */
+	int nextSetBit(long[] bb, int from)
+	{
+		int w = from >>> 6;
+
+		if( w >= this.words )
+			return -1;
+
+		long v = bb[w] & (-1L << (from & 63));
+
+		while( true )
+		{
+			if( v != 0 )
+				return (w << 6) + Long.numberOfTrailingZeros(v);
+
+			if( ++w >= this.words )
+				return -1;
+
+			v = bb[w];
+		}
+	}
+
+	/** Ritorna l'indice del k-esimo bit a 1 di bb (contando da 0), o -1 se bb ha
+	 * meno di k+1 bit a 1
+	 * @param bb una bitboard
+	 * @param k numero di bit a 1 da saltare
+	 * @return l'indice del k-esimo bit a 1 o -1
+	 */
+	int nthSetBit(long[] bb, int k)
+	{
+		for( int w=0 ; w<this.words ; w++ )
+		{
+			long v = bb[w];
+			int c = Long.bitCount(v);
+
+			if( k >= c )
+			{
+				k -= c;
+				continue;
+			}
+
+			// Toglie i k bit a 1 meno significativi
+			for( ; k > 0 ; k-- )
+				v &= v-1;
+
+			return (w << 6) + Long.numberOfTrailingZeros(v);
+		}
+
+		return -1;
+	}
+
+	/* ----------------------- Operazioni su bitboard ----------------------- */
+
+	/** @return true se il bit i di bb è a 1 */
+	static boolean get(long[] bb, int i) { return (bb[i >>> 6] & (1L << i)) != 0; }
+
+	/** Mette a 1 il bit i di bb */
+	static void set(long[] bb, int i) { bb[i >>> 6] |= 1L << i; }
+
+	/** Mette a 0 il bit i di bb */
+	static void unset(long[] bb, int i) { bb[i >>> 6] &= ~(1L << i); }
+
+	/** Mette a 0 tutti i bit di bb */
+	static void clear(long[] bb)
+	{
+		for( int i=0 ; i<bb.length ; i++ )
+			bb[i] = 0L;
+	}
+
+	/** dst = dst & src */
+	static void and(long[] dst, long[] src)
+	{
+		for( int i=0 ; i<dst.length ; i++ )
+			dst[i] &= src[i];
+	}
+
+	/** dst = dst | src */
+	static void or(long[] dst, long[] src)
+	{
+		for( int i=0 ; i<dst.length ; i++ )
+			dst[i] |= src[i];
+	}
+
+	/** dst = dst & ~src */
+	static void andNot(long[] dst, long[] src)
+	{
+		for( int i=0 ; i<dst.length ; i++ )
+			dst[i] &= ~src[i];
+	}
+
+	/** @return il numero di bit a 1 di bb */
+	static int count(long[] bb)
+	{
+		int c = 0;
+
+		for( long v : bb )
+			c += Long.bitCount(v);
+
+		return c;
+	}
+
+	/** @return true se bb non ha bit a 1 */
+	static boolean isEmpty(long[] bb)
+	{
+		for( long v : bb )
+			if( v != 0 )
+				return false;
+
+		return true;
+	}
+
+	/** @return lo spostamento lungo l'asse di base della direzione d */
+	private static int delta_b(Dir d)
+	{
+		switch(d)
+		{
+			case LEFT: case UP_L: case DOWN_L: return -1;
+			case RIGHT: case UP_R: case DOWN_R: return 1;
+			default: return 0;
+		}
+	}
+
+	/** @return lo spostamento lungo l'asse trasversale della direzione d */
+	private static int delta_t(Dir d)
+	{
+		switch(d)
+		{
+			case DOWN: case DOWN_L: case DOWN_R: return -1;
+			case UP: case UP_L: case UP_R: return 1;
+			default: return 0;
+		}
+	}
+}
@@ -0,0 +1,459 @@
+package gapp.ulg.play;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.Move.Kind;
+import gapp.ulg.game.board.Player;
+import gapp.ulg.game.util.Utils;
+
+/** Un oggetto {@code AlphaBetaPlayer} è un giocatore per giochi con due giocatori
+ * che sceglie le mosse con una ricerca negamax con potatura alfa-beta.
+ * <br>
+ * La ricerca è ad approfondimento iterativo (iterative deepening): esegue ricerche
+ * complete di profondità 1, 2, ... fino alla profondità massima, o finché non
+ * scade il limite di tempo per una mossa ({@link GameRuler.Mechanics#time}) o il
+ * thread è interrotto. In questi ultimi casi ritorna la migliore mossa dell'ultima
+ * ricerca completata. Le mosse della radice sono ordinate in base ai valori della
+ * ricerca precedente, così la prima mossa esaminata è quella della variante
+ * principale e le altre possono essere esaminate con finestra nulla (principal
+ * variation search), ripetendo la ricerca con la finestra completa solo se una
+ * mossa si rivela migliore. Nei nodi interni sono provate per prime le mosse che
+ * hanno causato un taglio in nodi della stessa profondità (killer moves).
+ * <br>
+ * La ricerca lavora sul {@link GameRuler} del giocatore eseguendo e annullando le
+ * mosse con {@link GameRuler#move(Move)} e {@link GameRuler#unMove()}, senza copie.
+ * Le situazioni non terminali alla profondità massima sono valutate da un
+ * {@link Evaluator}. Un giocatore che resta di turno dopo la propria mossa (ad es.
+ * perché l'avversario passa in Othello) è gestito senza scambiare i punti di vista.
+ * <br>
+ * Se il gioco mantiene la chiave di Zobrist ({@link GameRuler#zobristKey()}), i
+ * valori e le migliori mosse delle situazioni già cercate sono mantenuti in una
+ * tabella delle trasposizioni indicizzata con la chiave, che è conservata tra una
+ * mossa e l'altra.
+ * @param <P>  tipo del modello dei pezzi */
+public class AlphaBetaPlayer<P> implements Player<P>
+{
+	/** Valore di una vittoria alla radice, le vittorie più lontane valgono meno */
+	private static final int WIN = 1000000;
+	/** Valore maggiore di qualsiasi valutazione */
+	private static final int INF = WIN+1;
+	/** Massima profondità gestita dalla tabella delle killer moves */
+	private static final int MAX_PLY = 128;
+	/** Ogni quanti nodi controllare tempo e interruzione */
+	private static final int CHECK_NODES = 256;
+	/** Numero di entrate della tabella delle trasposizioni (potenza di 2) */
+	private static final int TT_SIZE = 1 << 16;
+	/** Tipi di valore di un'entrata della tabella: esatto, limite inferiore e superiore */
+	private static final byte EXACT = 1, LOWER = 2, UPPER = 3;
+
+	/** Eccezione usata per abbandonare la ricerca, preallocata e senza stack trace */
+	@SuppressWarnings("serial")
+	private static final class SearchAborted extends RuntimeException
+	{
+		private SearchAborted() { super(null, null, false, false); }
+	}
+	private static final SearchAborted ABORTED = new SearchAborted();
+
+	/** Nome del giocatore */
+	private final String name;
+	/** Profondità massima della ricerca */
+	private final int maxDepth;
+	/** Funzione di valutazione, se null è scelta in base al gioco */
+	private final Evaluator<P> fixed_evaluator;
+
+	/** {@link GameRuler} del gioco */
+	private GameRuler<P> g;
+	/** Funzione di valutazione usata per il gioco attuale */
+	private Evaluator<P> evaluator;
+	/** Limite di tempo per una mossa (millisecondi) */
+	private long time;
+
+	/** Tempo di inizio della ricerca attuale */
+	private long start_time;
+	/** Nodi visitati dalla ricerca attuale */
+	private long nodes;
+	/** Se true l'ultima iterazione ha valutato almeno una situazione non terminale */
+	private boolean depth_cut;
+	/** Due killer moves per ogni profondità */
+	private Move<P>[][] killers;
+
+	/** Tabella delle trasposizioni: chiavi di Zobrist, null se il gioco non le mantiene */
+	private long[] tt_keys;
+	/** Tabella delle trasposizioni: valori */
+	private int[] tt_values;
+	/** Tabella delle trasposizioni: profondità residua della ricerca che ha calcolato il valore */
+	private byte[] tt_depths;
+	/** Tabella delle trasposizioni: tipo del valore ({@link AlphaBetaPlayer#EXACT}, ...), 0 se vuota */
+	private byte[] tt_flags;
+	/** Tabella delle trasposizioni: migliore mossa trovata */
+	private Move<P>[] tt_moves;
+
+	/** Crea un {@code AlphaBetaPlayer} che usa la funzione di valutazione data da
+	 * {@link Evaluators#forGame(GameRuler)} per il gioco impostato.
+	 * @param name  il nome del giocatore
+	 * @param maxDepth  profondità massima della ricerca, se < 1 è inteso 1
+	 * @throws NullPointerException se {@code name} è null */
+	public AlphaBetaPlayer(String name, int maxDepth)
+	{
+		this(name, maxDepth, null);
+	}
+
+	/** Crea un {@code AlphaBetaPlayer} con una funzione di valutazione data.
+	 * @param name  il nome del giocatore
+	 * @param maxDepth  profondità massima della ricerca, se < 1 è inteso 1
+	 * @param evaluator  la funzione di valutazione, se null è scelta con
+	 *                   {@link Evaluators#forGame(GameRuler)} per il gioco impostato
+	 * @throws NullPointerException se {@code name} è null */
+	public AlphaBetaPlayer(String name, int maxDepth, Evaluator<P> evaluator)
+	{
+		Objects.requireNonNull(name);
+
+		this.name = name;
+		this.maxDepth = Math.min(maxDepth<1 ? 1 : maxDepth, MAX_PLY-1);
+		this.fixed_evaluator = evaluator;
+	}
+
+	@Override
+	public String name() { return this.name; }
+
+	@Override
+	public void setGame(GameRuler<P> g)
+	{
+		Objects.requireNonNull(g);
+
+		if( g.result() != -1 )
+			throw new IllegalArgumentException();
+
+		this.g = g;
+		this.evaluator = this.fixed_evaluator != null ? this.fixed_evaluator : Evaluators.forGame(g);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Move<P>[][] killers = new Move[MAX_PLY][2];
+		this.killers = killers;
+
+		// La tabella delle trasposizioni è usata solo se il gioco mantiene la chiave di Zobrist
+		boolean zobrist = true;
+		try
+		{
+			g.zobristKey();
+		}
+		catch( UnsupportedOperationException e )
+		{
+			zobrist = false;
+		}
+
+		this.tt_keys = zobrist ? new long[TT_SIZE] : null;
+		this.tt_values = zobrist ? new int[TT_SIZE] : null;
+		this.tt_depths = zobrist ? new byte[TT_SIZE] : null;
+		this.tt_flags = zobrist ? new byte[TT_SIZE] : null;
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Move<P>[] tt_moves = zobrist ? new Move[TT_SIZE] : null;
+		this.tt_moves = tt_moves;
+
+		// Ottiene il limite di tempo per una mossa (aggiungendo un margine)
+		long t = this.g.mechanics().time;
+		this.time = t <= 0 ? 0 : t - 60;
+	}
+
+	@Override
+	public void moved(int i, Move<P> m)
+	{
+		Objects.requireNonNull(m);
+
+		if( g == null || g.result() != -1 )
+			throw new IllegalStateException();
+
+		g.isPlaying(i);
+
+		if( !g.isValid(m) )
+			throw new IllegalArgumentException();
+
+		g.move(m);
+	}
+
+	@Override
+	public Move<P> getMove()
+	{
+		// Se non c'è un gioco impostato, c'è ma è terminato,
+		// o se questo non e' il turno del giocatore, solleva l'eccezione
+		if( this.g==null || this.g.result()!=-1 || !this.g.players().get(this.g.turn()-1).equals(this.name) )
+			throw new IllegalStateException();
+
+		this.start_time = System.currentTimeMillis();
+		this.nodes = 0;
+
+		List<Move<P>> root = this.moves(0);
+		if( root.isEmpty() )
+			return new Move<>(Kind.RESIGN);
+
+		Move<P> best = root.get(0);
+		if( root.size() == 1 )
+			return best;
+
+		int turn = this.g.turn();
+		Map<Move<P>, Integer> values = new HashMap<>();
+
+		for( int depth=1 ; depth<=this.maxDepth ; depth++ )
+		{
+			this.depth_cut = false;
+
+			// Ordina le mosse in base ai valori dell'iterazione precedente
+			if( !values.isEmpty() )
+				root.sort( (a, b) -> Integer.compare(values.get(b), values.get(a)) );
+
+			try
+			{
+				int alpha = -INF, best_value = -INF;
+				Move<P> iter_best = root.get(0);
+
+				for( int j=0 ; j<root.size() ; j++ )
+				{
+					Move<P> m = root.get(j);
+					int v;
+
+					if( j == 0 )
+						v = this.child(m, turn, depth, 0, alpha, INF);
+					else
+					{
+						v = this.child(m, turn, depth, 0, alpha, alpha+1);
+						if( v > alpha )
+							v = this.child(m, turn, depth, 0, alpha, INF);
+					}
+
+					values.put(m, v);
+
+					if( v > best_value )
+					{
+						best_value = v;
+						iter_best = m;
+					}
+					if( v > alpha )
+						alpha = v;
+				}
+
+				best = iter_best;
+
+				// Vittoria o sconfitta certa, o albero esplorato fino in fondo
+				if( Math.abs(best_value) >= WIN-MAX_PLY || !this.depth_cut )
+					break;
+			}
+			catch( SearchAborted e )
+			{
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	/** Ritorna il valore della situazione attuale per il giocatore di turno
+	 * (negamax con potatura alfa-beta e principal variation search).
+	 * @param depth  profondità residua
+	 * @param ply  distanza dalla radice
+	 * @param alpha  limite inferiore della finestra
+	 * @param beta  limite superiore della finestra
+	 * @return il valore della situazione */
+	private int search(int depth, int ply, int alpha, int beta)
+	{
+		int turn = this.g.turn();
+
+		if( depth == 0 || ply >= MAX_PLY-1 )
+		{
+			this.depth_cut = true;
+			int v = this.evaluator.evaluate(this.g, turn);
+			return Math.max(-Evaluator.MAX_VALUE, Math.min(Evaluator.MAX_VALUE, v));
+		}
+
+		// Cerca la situazione nella tabella delle trasposizioni
+		long key = 0;
+		int slot = -1, alpha0 = alpha;
+		Move<P> tt_move = null;
+
+		if( this.tt_keys != null )
+		{
+			key = this.g.zobristKey();
+			slot = (int)(key ^ (key >>> 32)) & (TT_SIZE-1);
+
+			if( this.tt_flags[slot] != 0 && this.tt_keys[slot] == key )
+			{
+				tt_move = this.tt_moves[slot];
+
+				if( this.tt_depths[slot] >= depth )
+				{
+					int v = from_tt(this.tt_values[slot], ply);
+					byte f = this.tt_flags[slot];
+
+					// Il valore può derivare da una ricerca limitata in profondità
+					this.depth_cut = true;
+
+					if( f == EXACT || (f == LOWER && v >= beta) || (f == UPPER && v <= alpha) )
+						return v;
+				}
+			}
+		}
+
+		List<Move<P>> moves = this.moves(ply);
+		if( moves.isEmpty() )
+			return 0;
+
+		// La migliore mossa della tabella è provata per prima
+		if( tt_move != null )
+		{
+			int j = moves.indexOf(tt_move);
+
+			if( j > 0 )
+			{
+				moves.set(j, moves.get(0));
+				moves.set(0, tt_move);
+			}
+		}
+
+		int best = -INF;
+		Move<P> best_move = null;
+		boolean first = true;
+
+		for( Move<P> m : moves )
+		{
+			int v;
+
+			if( first )
+			{
+				v = this.child(m, turn, depth, ply, alpha, beta);
+				first = false;
+			}
+			else
+			{
+				v = this.child(m, turn, depth, ply, alpha, alpha+1);
+				if( v > alpha && v < beta )
+					v = this.child(m, turn, depth, ply, v, beta);
+			}
+
+			if( v > best )
+			{
+				best = v;
+				best_move = m;
+			}
+			if( v > alpha )
+				alpha = v;
+			if( alpha >= beta )
+			{
+				this.killer(ply, m);
+				break;
+			}
+		}
+
+		if( slot >= 0 )
+		{
+			this.tt_keys[slot] = key;
+			this.tt_values[slot] = to_tt(best, ply);
+			this.tt_depths[slot] = (byte)depth;
+			this.tt_flags[slot] = best <= alpha0 ? UPPER : (best >= beta ? LOWER : EXACT);
+			this.tt_moves[slot] = best_move;
+		}
+
+		return best;
+	}
+
+	/** Esegue la mossa m, valuta la situazione risultante dal punto di vista di
+	 * mover e annulla la mossa.
+	 * @param m  la mossa
+	 * @param mover  indice di turnazione del giocatore che esegue la mossa
+	 * @param depth  profondità residua prima della mossa
+	 * @param ply  distanza dalla radice prima della mossa
+	 * @param alpha  limite inferiore della finestra (per mover)
+	 * @param beta  limite superiore della finestra (per mover)
+	 * @return il valore della mossa per mover */
+	private int child(Move<P> m, int mover, int depth, int ply, int alpha, int beta)
+	{
+		if( ++this.nodes % CHECK_NODES == 0 &&
+			(Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(this.start_time, this.time)) )
+			throw ABORTED;
+
+		this.g.move(m);
+
+		try
+		{
+			int r = this.g.result();
+
+			if( r == 0 )
+				return 0;
+			if( r != -1 )
+				return r == mover ? WIN-ply-1 : -(WIN-ply-1);
+
+			// Se il turno non cambia, il punto di vista resta lo stesso
+			if( this.g.turn() == mover )
+				return this.search(depth-1, ply+1, alpha, beta);
+			else
+				return -this.search(depth-1, ply+1, -beta, -alpha);
+		}
+		finally
+		{
+			this.g.unMove();
+		}
+	}
+
+	/** Ritorna le mosse valide nella situazione attuale, esclusa
+	 * {@link Move.Kind#RESIGN}, con le killer moves della profondità data in testa.
+	 * @param ply  distanza dalla radice
+	 * @return la lista delle mosse */
+	private List<Move<P>> moves(int ply)
+	{
+		List<Move<P>> moves = new ArrayList<>();
+		Move<P>[] k = this.killers[ply];
+		int front = 0;
+
+		for( Move<P> m : this.g.validMoves() )
+		{
+			if( m.kind == Kind.RESIGN )
+				continue;
+
+			moves.add(m);
+
+			if( m.equals(k[0]) || m.equals(k[1]) )
+			{
+				moves.set(moves.size()-1, moves.get(front));
+				moves.set(front++, m);
+			}
+		}
+
+		return moves;
+	}
+
+	/** Ritorna il valore da mettere nella tabella delle trasposizioni: le vittorie
+	 * sono rese relative alla situazione invece che alla radice */
+	private static int to_tt(int v, int ply)
+	{
+		if( v >= WIN-MAX_PLY )
+			return v + ply;
+		if( v <= -(WIN-MAX_PLY) )
+			return v - ply;
+		return v;
+	}
+
+	/** Inversa di {@link AlphaBetaPlayer#to_tt(int, int)} */
+	private static int from_tt(int v, int ply)
+	{
+		if( v >= WIN-MAX_PLY )
+			return v - ply;
+		if( v <= -(WIN-MAX_PLY) )
+			return v + ply;
+		return v;
+	}
+
+	/** Registra m come killer move della profondità data */
+	private void killer(int ply, Move<P> m)
+	{
+		Move<P>[] k = this.killers[ply];
+
+		if( !m.equals(k[0]) )
+		{
+			k[1] = k[0];
+			k[0] = m;
+		}
+	}
+}
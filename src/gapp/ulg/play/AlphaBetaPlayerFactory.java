@@ -0,0 +1,120 @@
+package gapp.ulg.play;
+
+import gapp.ulg.game.GameFactory;
+import gapp.ulg.game.Param;
+import gapp.ulg.game.PlayerFactory;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Player;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/** Una AlphaBetaPlayerFactory è una fabbrica di {@link AlphaBetaPlayer}. La
+ * funzione di valutazione usata dai giocatori è quella data da
+ * {@link Evaluators#forGame(GameRuler)}, a meno che non ne sia impostata una con
+ * {@link AlphaBetaPlayerFactory#setEvaluator(Evaluator)}.
+ * @param <P>  tipo del modello dei pezzi */
+public class AlphaBetaPlayerFactory<P> implements PlayerFactory<Player<P>,GameRuler<P>>
+{
+	/** Possibili valori del parametro "Max depth" */
+	private final List<Integer> depth_values = Arrays.asList(1,2,4,6,8,10,12,20,40);
+
+	/** Lista dei parametri */
+	private final List<Param<?>> params;
+
+	/** Funzione di valutazione dei giocatori creati, se null è scelta in base al gioco */
+	private Evaluator<P> evaluator;
+
+	/** Parametro "Max depth" */
+	private final Param<Integer> depth = new Param<Integer>() {
+		/** Valore del parametro "Max depth" */
+		private Integer value = 6;
+
+		@Override
+	    public String name(){ return "Max depth"; }
+
+	    @Override
+	    public String prompt() { return "Maximum search depth"; }
+
+	    @Override
+	    public List<Integer> values() { return depth_values; }
+
+	    @Override
+	    public void set(Object v)
+	    {
+	    	if( v instanceof Integer && depth_values.contains(v) )
+				this.value = (Integer)v;
+			else
+				throw new IllegalArgumentException();
+	    }
+
+	    @Override
+	    public Integer get() { return this.value; }
+	};
+
+	/** Crea una fabbrica di {@code Player} per creare giocatori del tipo AlphaBetaPlayer */
+	public AlphaBetaPlayerFactory()
+	{
+		this.params = Collections.unmodifiableList( Arrays.asList(this.depth) );
+		this.evaluator = null;
+	}
+
+	@Override
+    public String name() { return "Alpha-Beta Search Player"; }
+
+    @Override
+    public void setDir(Path dir) { }
+
+    /** Imposta la funzione di valutazione dei giocatori creati da questa fabbrica.
+     * @param evaluator  la funzione di valutazione, se null è usata quella data da
+     *                   {@link Evaluators#forGame(GameRuler)} */
+    public void setEvaluator(Evaluator<P> evaluator) { this.evaluator = evaluator; }
+
+    /** Ritorna una lista con il seguente parametro:
+     * <pre>
+     *     - name: "Max depth"
+     *     - prompt: "Maximum search depth"
+     *     - values: [1,2,4,6,8,10,12,20,40]
+     *     - default: 6
+     * </pre>
+     * @return la lista con il parametro */
+    @Override
+    public List<Param<?>> params()
+    {
+        return this.params;
+    }
+
+    /** Ritorna {@link Play#YES} per i giochi con al più due giocatori,
+     * {@link Play#NO} per gli altri. */
+    @Override
+    public Play canPlay(GameFactory<? extends GameRuler<P>> gF)
+    {
+    	Objects.requireNonNull(gF);
+        return gF.maxPlayers() > 2 ? Play.NO : Play.YES;
+    }
+
+    @Override
+    public String tryCompute(GameFactory<? extends GameRuler<P>> gF, boolean parallel,
+                             Supplier<Boolean> interrupt)
+    {
+    	Objects.requireNonNull(gF);
+        return null;
+    }
+
+    /** Ritorna un {@link AlphaBetaPlayer} che rispetta i parametri impostati
+     * {@link AlphaBetaPlayerFactory#params()} e il nome specificato. */
+    @Override
+    public Player<P> newPlayer(GameFactory<? extends GameRuler<P>> gF, String name)
+    {
+    	if (this.canPlay(gF) != Play.YES)
+    		throw new IllegalStateException();
+
+    	Objects.requireNonNull(name);
+
+        return new AlphaBetaPlayer<>(name, this.depth.get(), this.evaluator);
+    }
+}
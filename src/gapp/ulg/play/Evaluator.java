@@ -0,0 +1,26 @@
+package gapp.ulg.play;
+
+import gapp.ulg.game.board.GameRuler;
+
+/** Un {@code Evaluator} è una funzione di valutazione euristica delle situazioni di
+ * gioco non terminali, usata da {@link AlphaBetaPlayer} quando la ricerca raggiunge
+ * la profondità massima. Alcune implementazioni per giochi specifici sono in
+ * {@link Evaluators}.
+ * @param <P>  tipo del modello dei pezzi */
+@FunctionalInterface
+public interface Evaluator<P>
+{
+	/** Massimo valore assoluto che può ritornare una valutazione, i valori oltre
+	 * questo limite sono troncati (quelli più grandi sono riservati alle vittorie) */
+	int MAX_VALUE = 100000;
+
+	/** Valuta la situazione attuale del gioco dal punto di vista del giocatore con
+	 * indice di turnazione i. Il valore è positivo se la situazione è favorevole al
+	 * giocatore, negativo se è favorevole all'avversario. Il metodo può usare solo
+	 * metodi del {@link GameRuler} che non ne modificano lo stato, oppure deve
+	 * ripristinarlo prima di ritornare.
+	 * @param g  un gioco non terminato
+	 * @param i  indice di turnazione di un giocatore
+	 * @return la valutazione della situazione per il giocatore i */
+	int evaluate(GameRuler<P> g, int i);
+}
@@ -0,0 +1,161 @@
+package gapp.ulg.play;
+
+import gapp.ulg.game.board.Board;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.PieceModel;
+import gapp.ulg.game.board.PieceModel.Species;
+import gapp.ulg.game.board.Pos;
+
+import java.util.Objects;
+
+/** Funzioni di valutazione ({@link Evaluator}) per i giochi disponibili e una
+ * generica per tutti gli altri. */
+public final class Evaluators
+{
+	private Evaluators() {}
+
+	/** Ritorna la funzione di valutazione più adatta al gioco dato, scelta in base
+	 * al nome del gioco: {@link Evaluators#othello()} per Othello,
+	 * {@link Evaluators#mnk()} per gli m,n,k-game e {@link Evaluators#score(GameRuler)}
+	 * per tutti gli altri.
+	 * @param g  un gioco
+	 * @param <P>  tipo del modello dei pezzi
+	 * @return la funzione di valutazione per il gioco
+	 * @throws NullPointerException se g è null */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <P> Evaluator<P> forGame(GameRuler<P> g)
+	{
+		Objects.requireNonNull(g);
+
+		String name = g.name();
+
+		if( name.matches("Othello\\d+x\\d+") )
+			return (Evaluator)othello();
+
+		if( name.matches("\\d+,\\d+,\\d+-game") )
+			return (Evaluator)mnk();
+
+		return score(g);
+	}
+
+	/** Ritorna una funzione di valutazione per Othello che combina, in ordine di
+	 * importanza, gli angoli occupati, la mobilità del giocatore di turno e la
+	 * differenza del numero di pedine (disc parity).
+	 * @return la funzione di valutazione */
+	public static Evaluator<PieceModel<Species>> othello()
+	{
+		return (g, i) -> {
+			Board<PieceModel<Species>> b = g.getBoard();
+			String own = color(g, i);
+			int last = b.width()-1;
+
+			// Angoli: non possono più essere girati
+			int corners = corner(b, Pos.of(0, 0), own) + corner(b, Pos.of(0, last), own) +
+			              corner(b, Pos.of(last, 0), own) + corner(b, Pos.of(last, last), own);
+
+			// Mobilità: è nota solo quella del giocatore di turno
+			int mobility = 0;
+			for( Move<PieceModel<Species>> m : g.validMoves() )
+				if( m.kind == Move.Kind.ACTION )
+					mobility++;
+			if( g.turn() != i )
+				mobility = -mobility;
+
+			int parity = (int)(g.score(i) - g.score(3-i));
+
+			return 25*corners + 5*mobility + parity;
+		};
+	}
+
+	/** Ritorna una funzione di valutazione per gli m,n,k-game che conta le linee
+	 * aperte, cioè le sequenze di K posizioni allineate che contengono pezzi di un
+	 * solo giocatore. Ogni linea aperta vale il quadrato del numero di pezzi che
+	 * contiene, positivo se sono del giocatore e negativo se sono dell'avversario.
+	 * @return la funzione di valutazione */
+	public static Evaluator<PieceModel<Species>> mnk()
+	{
+		return (g, i) -> {
+			Board<PieceModel<Species>> b = g.getBoard();
+			String own = color(g, i);
+			int w = b.width(), h = b.height(), k = g.getParam("K", Integer.class);
+			int value = 0;
+
+			// Direzioni: orizzontale, verticale e le due diagonali
+			int[][] dirs = { {1,0}, {0,1}, {1,1}, {1,-1} };
+
+			for( int[] d : dirs )
+				for( int sb=0 ; sb<w ; sb++ )
+					for( int st=0 ; st<h ; st++ )
+					{
+						int eb = sb + d[0]*(k-1), et = st + d[1]*(k-1);
+
+						if( eb<0 || eb>=w || et<0 || et>=h )
+							continue;
+
+						int n_own = 0, n_opp = 0;
+						for( int j=0 ; j<k && (n_own == 0 || n_opp == 0) ; j++ )
+						{
+							PieceModel<Species> pm = b.get(Pos.of(sb + d[0]*j, st + d[1]*j));
+
+							if( pm == null )
+								continue;
+							if( pm.color.equals(own) )
+								n_own++;
+							else
+								n_opp++;
+						}
+
+						if( n_opp == 0 )
+							value += n_own*n_own;
+						else if( n_own == 0 )
+							value -= n_opp*n_opp;
+					}
+
+			return value;
+		};
+	}
+
+	/** Ritorna una funzione di valutazione generica che usa la differenza tra il
+	 * punteggio ({@link GameRuler#score(int)}) del giocatore e quello migliore tra
+	 * gli avversari. Se il gioco non prevede punteggi, la funzione ritorna sempre 0
+	 * e la ricerca distingue solamente vittorie, sconfitte e patte.
+	 * @param g  un gioco
+	 * @param <P>  tipo del modello dei pezzi
+	 * @return la funzione di valutazione */
+	public static <P> Evaluator<P> score(GameRuler<P> g)
+	{
+		try
+		{
+			g.score(1);
+		}
+		catch( UnsupportedOperationException e )
+		{
+			return (gR, i) -> 0;
+		}
+
+		return (gR, i) -> {
+			double best_opp = Double.NEGATIVE_INFINITY;
+
+			for( int j=1 ; j<=gR.players().size() ; j++ )
+				if( j != i )
+					best_opp = Math.max(best_opp, gR.score(j));
+
+			return (int)Math.round(gR.score(i) - best_opp);
+		};
+	}
+
+	/** @return il colore dei pezzi del giocatore con indice di turnazione i */
+	private static <P> String color(GameRuler<P> g, int i)
+	{
+		return g.color(g.players().get(i-1));
+	}
+
+	/** @return 1 se in p c'è un pezzo di colore own, -1 se c'è un altro pezzo, 0 se è vuota */
+	private static int corner(Board<PieceModel<Species>> b, Pos p, String own)
+	{
+		PieceModel<Species> pm = b.get(p);
+
+		return pm == null ? 0 : (pm.color.equals(own) ? 1 : -1);
+	}
+}
@@ -1,11 +1,12 @@
 package gapp.ulg.play;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -14,6 +15,11 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import gapp.ulg.game.board.*;
 import gapp.ulg.game.board.Move.Kind;
@@ -42,6 +48,20 @@ import gapp.ulg.game.util.Utils;
  * compiere è calcolato così <i>R = ceil(RPM/M)</i>, cioè la parte intera superiore
  * della divisione decimale del numero di rollout per mossa <i>RPM</i> diviso il
  * numero <i>M</i> di mosse possibili (è sempre esclusa {@link Move.Kind#RESIGN}).
+ * <br>
+ * In alternativa, se creato con {@link MCTSPlayer#MCTSPlayer(String, int, boolean, boolean)},
+ * un {@code MCTSPlayer} usa una vera ricerca UCT (Upper Confidence bounds applied
+ * to Trees). Il giocatore mantiene un albero delle situazioni esplorate, con il
+ * numero di visite e la somma degli esiti dei rollouts di ogni nodo. Ogni
+ * iterazione scende dalla radice scegliendo il figlio con UCB1 massimo, espande
+ * una nuova mossa, esegue un rollout e aggiorna le statistiche dei nodi del
+ * cammino. Le iterazioni sono al più <i>RPM</i> e si fermano prima se scade il
+ * limite di tempo per una mossa ({@link GameRuler.Mechanics#time}). Infine sceglie
+ * la mossa più visitata. Tra una mossa e l'altra l'albero non è scartato: in
+ * {@link MCTSPlayer#moved(int, Move)} la radice scende nel sottoalbero della mossa
+ * eseguita, così le statistiche già raccolte sono riusate. Se la ricerca è
+ * parallela, più thread eseguono iterazioni sullo stesso albero, con statistiche
+ * atomiche e virtual loss.
  * @param <P>  tipo del modello dei pezzi */
 public class MCTSPlayer<P> implements Player<P>
 {
@@ -57,6 +77,10 @@ public class MCTSPlayer<P> implements Player<P>
 	private final int rpm;
 	/** Flag per ricerca parallela delle mosse */
 	private final boolean parallel;
+	/** Flag per la ricerca UCT con albero persistente */
+	private final boolean uct;
+	/** Radice dell'albero della ricerca UCT, corrisponde alla situazione attuale di {@link MCTSPlayer#g} */
+	private Node<P> root;
     
 	/** Flag per segnalare la presenza o meno di limiti all'esecuzione parallela */
 	private boolean threadLimits;
@@ -88,6 +112,160 @@ public class MCTSPlayer<P> implements Player<P>
     	}
     }
     
+    /** Nodo dell'albero della ricerca UCT. Rappresenta la situazione ottenuta
+     * eseguendo {@link Node#move} nella situazione del nodo padre.
+     * <br>
+     * L'albero può essere percorso e ampliato da più thread contemporaneamente
+     * senza lock: le mosse del nodo e l'array dei figli sono pubblicati insieme una
+     * volta sola con un CAS, così chi vede le mosse vede anche i figli, ogni
+     * figlio è creato dal thread che ne riserva l'indice con un incremento atomico
+     * e le statistiche sono contatori atomici. Il numero di visite è incrementato
+     * già durante la discesa (virtual loss), così i thread che scendono insieme
+     * tendono a scegliere rami diversi.
+     * @param <P>  tipo del modello dei pezzi
+     */
+    private static class Node<P>
+    {
+    	/** Mossa che porta in questo nodo (null per la radice iniziale) */
+    	final Move<P> move;
+    	/** Indice di turnazione del giocatore che ha eseguito la mossa */
+    	final int mover;
+    	
+    	/** Mosse valide e figli del nodo, null se il nodo non è mai stato raggiunto */
+    	final AtomicReference<Expansion<P>> expansion = new AtomicReference<>();
+    	/** Numero di indici di mosse riservati per l'espansione */
+    	final AtomicInteger expanded = new AtomicInteger();
+    	
+    	/** Numero di visite, comprese quelle dei thread che stanno ancora scendendo */
+    	final AtomicInteger visits = new AtomicInteger();
+    	/** Somma degli esiti dei rollouts per {@link Node#mover} in mezzi punti: 2 vittoria, 1 patta, 0 sconfitta */
+    	final AtomicLong points = new AtomicLong();
+    	
+    	/** Crea un nodo non ancora visitato
+    	 * @param move mossa che porta nel nodo
+    	 * @param mover indice di turnazione del giocatore che ha eseguito la mossa
+    	 */
+    	Node(Move<P> move, int mover)
+    	{
+    		this.move = move;
+    		this.mover = mover;
+    	}
+    	
+    	/** Imposta le mosse del nodo se non sono già state impostate da un altro thread
+    	 * @param mm mosse valide nella situazione del nodo
+    	 * @return le mosse del nodo
+    	 */
+    	List<Move<P>> init(List<Move<P>> mm)
+    	{
+    		this.expansion.compareAndSet(null, new Expansion<>(mm));
+    		
+    		return this.expansion.get().moves;
+    	}
+    	
+    	/** @return i figli del nodo, o null se il nodo non è mai stato raggiunto */
+    	AtomicReferenceArray<Node<P>> children()
+    	{
+    		Expansion<P> e = this.expansion.get();
+    		
+    		return e == null ? null : e.children;
+    	}
+    	
+    	/** Espande una mossa non ancora espansa, se esiste.
+    	 * @param turn indice di turnazione del giocatore di turno nel nodo
+    	 * @return il nuovo figlio o null se tutte le mosse sono state espanse
+    	 */
+    	Node<P> expand(int turn)
+    	{
+    		Expansion<P> e = this.expansion.get();
+    		List<Move<P>> mm = e.moves;
+    		
+    		if( this.expanded.get() >= mm.size() )
+    			return null;
+    		
+    		int i = this.expanded.getAndIncrement();
+    		if( i >= mm.size() )
+    			return null;
+    		
+    		Node<P> c = new Node<>(mm.get(i), turn);
+    		c.visits.incrementAndGet();
+    		e.children.set(i, c);
+    		
+    		return c;
+    	}
+    	
+    	/** @return il figlio raggiunto con la mossa m, o null se non è stato espanso */
+    	Node<P> child(Move<P> m)
+    	{
+    		AtomicReferenceArray<Node<P>> cc = this.children();
+    		
+    		for( int i=0 ; cc != null && i<cc.length() ; i++ )
+    		{
+    			Node<P> c = cc.get(i);
+    			
+    			if( c != null && c.move.equals(m) )
+    				return c;
+    		}
+    		
+    		return null;
+    	}
+    	
+    	/** Ritorna il figlio con UCB1 massimo e ne incrementa le visite
+    	 * @return il figlio scelto o null se nessun figlio è ancora pubblicato
+    	 */
+    	Node<P> select()
+    	{
+    		AtomicReferenceArray<Node<P>> cc = this.expansion.get().children;
+    		double log_n = Math.log(Math.max(1, this.visits.get())), best_v = Double.NEGATIVE_INFINITY;
+    		Node<P> best = null;
+    		
+    		for( int i=0 ; i<cc.length() ; i++ )
+    		{
+    			Node<P> c = cc.get(i);
+    			
+    			if( c == null )
+    				continue;
+    			
+    			int n = Math.max(1, c.visits.get());
+    			double v = c.points.get()/(2.0*n) + UCT_C*Math.sqrt(log_n/n);
+    			
+    			if( v > best_v )
+    			{
+    				best_v = v;
+    				best = c;
+    			}
+    		}
+    		
+    		if( best != null )
+    			best.visits.incrementAndGet();
+    		
+    		return best;
+    	}
+    }
+    
+    /** Mosse valide di un {@link Node} in ordine di espansione e i suoi figli:
+     * l'i-esimo figlio corrisponde all'i-esima mossa (null finché non è espanso)
+     * @param <P>  tipo del modello dei pezzi
+     */
+    private static final class Expansion<P>
+    {
+    	final List<Move<P>> moves;
+    	final AtomicReferenceArray<Node<P>> children;
+    	
+    	Expansion(List<Move<P>> mm)
+    	{
+    		this.moves = mm;
+    		this.children = new AtomicReferenceArray<>(mm.size());
+    	}
+    }
+    
+    /** Generatore di numeri casuali per i rollouts, uno per thread */
+    private static final ThreadLocal<SplittableRandom> RANDOM = ThreadLocal.withInitial(SplittableRandom::new);
+    /** Ogni quante mosse di un rollout controllare interruzione e timeout */
+    private static final int ROLLOUT_CHECK = 32;
+    
+    /** Costante di esplorazione della formula UCB1 */
+    private static final double UCT_C = Math.sqrt(2);
+    
     /** Task eseguito da un ForkJoinPool per scegliere una mossa da un insieme di mosse valide tramite la strategia MCTS.
      * @param <P> tipo del modello dei pezzi
      */
@@ -243,12 +421,31 @@ public class MCTSPlayer<P> implements Player<P>
      *                  di sfruttare il parallelismo della macchina
      * @throws NullPointerException se {@code name} è null */
     public MCTSPlayer(String name, int rpm, boolean parallel)
+    {
+        this(name, rpm, parallel, false);
+    }
+    
+    /** Crea un {@code MCTSPlayer} con un limite dato sul numero di rollouts per
+     * mossa, che può usare la ricerca UCT con albero persistente.
+     *
+     * @param name  il nome del giocatore
+     * @param rpm   limite sul numero di rollouts per mossa, se < 1 è inteso 1
+     * @param parallel  se true la ricerca della mossa da fare è eseguita cercando
+     *                  di sfruttare il parallelismo della macchina
+     * @param uct  se true usa la ricerca UCT, in cui rpm è il numero massimo di
+     *             iterazioni (e quindi di rollouts) per ogni mossa, e se anche
+     *             parallel è true le iterazioni sono eseguite in parallelo
+     *             sullo stesso albero
+     * @throws NullPointerException se {@code name} è null */
+    public MCTSPlayer(String name, int rpm, boolean parallel, boolean uct)
     {
         Objects.requireNonNull(name);
         
     	this.name = name;
         this.rpm = rpm<1 ? 1 : rpm;
         this.parallel = parallel;
+        this.uct = uct;
+        this.root = null;
         
         this.threadLimits = false;
         this.maxTh = -1;
@@ -268,6 +465,7 @@ public class MCTSPlayer<P> implements Player<P>
     		throw new IllegalArgumentException();
         
     	this.g = g;
+    	this.root = null;
     	
     	// Ottiene il limite di tempo per una mossa (aggiungendo un margine)
     	long t = this.g.mechanics().time;
@@ -288,6 +486,10 @@ public class MCTSPlayer<P> implements Player<P>
     		throw new IllegalArgumentException();
     	
     	g.move(m);
+    	
+    	// Riusa il sottoalbero della mossa eseguita, se è stato esplorato
+    	if( this.root != null )
+    		this.root = this.root.child(m);
     }
     
     @Override
@@ -300,6 +502,9 @@ public class MCTSPlayer<P> implements Player<P>
     	
     	long start_time = System.currentTimeMillis();
     	
+    	if( this.uct )
+    		return this.uctSearch(start_time);
+    	
     	// Recupero l'insieme delle mosse valide, ne faccio una copia, ed escluso la mossa RESIGN
     	Set<Move<P>> vm = new HashSet<>();
     	vm.addAll(this.g.validMoves());
@@ -389,7 +594,220 @@ public class MCTSPlayer<P> implements Player<P>
     	this.bgExec = bgExec;
     }
     
-    /** Esegue un dato numero di rollouts data una mossa da eseguire (lavorando su una copia del {@link GameRuler}).
+    /** Sceglie la mossa con la ricerca UCT, usando e aggiornando l'albero
+     * {@link MCTSPlayer#root}. Se il flag parallel è true la ricerca è parallela
+     * sull'albero (tree-parallel): più thread, ognuno con una copia del
+     * {@link GameRuler}, eseguono iterazioni sullo stesso albero finché non sono
+     * esaurite le iterazioni o scade il tempo. I thread usati rispettano i limiti
+     * impostati con {@link MCTSPlayer#threads(int, ForkJoinPool, ExecutorService)},
+     * nello stesso modo della ricerca a rollouts piatti.
+     * @param start_time tempo di inizio (per controllare il timeout)
+     * @return la mossa più visitata della radice
+     */
+    private Move<P> uctSearch(long start_time)
+    {
+    	if( this.root == null )
+    		this.root = new Node<>(null, 0);
+    	
+    	Node<P> uct_root = this.root;
+    	AtomicInteger budget = new AtomicInteger(this.rpm);
+    	AtomicBoolean stop = new AtomicBoolean();
+    	
+    	ExecutorService exec_pool = null;
+    	boolean new_pool = false;
+    	int workers = 0;
+    	
+    	if( !this.parallel || ( this.threadLimits && this.maxTh==0 && this.fjp==null && this.bgExec==null ) )
+    		workers = 0;
+    	else if( !this.threadLimits )
+    	{
+    		exec_pool = ForkJoinPool.commonPool();
+    		workers = ForkJoinPool.commonPool().getParallelism();
+    	}
+    	else if( this.maxTh!=0 || this.bgExec!=null )
+    	{
+    		if( this.maxTh<0 )
+    		{
+    			new_pool = true;
+    			workers = Runtime.getRuntime().availableProcessors();
+    			exec_pool = Executors.newFixedThreadPool(workers);
+    		}
+    		else if( this.bgExec==null )
+    		{
+    			new_pool = true;
+    			workers = this.maxTh;
+    			exec_pool = Executors.newFixedThreadPool(workers);
+    		}
+    		else
+    		{
+    			exec_pool = this.bgExec;
+    			workers = this.maxTh>0 ? this.maxTh : Runtime.getRuntime().availableProcessors();
+    		}
+    	}
+    	else
+    	{
+    		exec_pool = this.fjp;
+    		workers = this.fjp.getParallelism();
+    	}
+    	
+    	// Lancia i thread ausiliari, poi lavora anche il thread attuale
+    	List<Future<?>> tasks = new ArrayList<>();
+    	for( int i=0 ; i<workers ; i++ )
+    	{
+    		GameRuler<P> gR = this.g.copy();
+    		tasks.add( exec_pool.submit( () -> uctIterations(uct_root, gR, budget, stop, start_time, this.time) ) );
+    	}
+    	
+    	uctIterations(uct_root, this.g.copy(), budget, stop, start_time, this.time);
+    	
+    	try
+    	{
+    		for( Future<?> t : tasks )
+    			t.get();
+    	}
+    	catch( InterruptedException | ExecutionException | CancellationException e )
+    	{
+    		stop.set(true);
+    		tasks.forEach( (tt) -> tt.cancel(true) );
+    	}
+    	
+    	if( new_pool )
+    		exec_pool.shutdownNow();
+    	
+    	// Sceglie la mossa più visitata
+    	Node<P> best = null;
+    	AtomicReferenceArray<Node<P>> cc = uct_root.children();
+    	for( int i=0 ; cc != null && i<cc.length() ; i++ )
+    	{
+    		Node<P> c = cc.get(i);
+    		
+    		if( c != null && (best == null || c.visits.get() > best.visits.get()) )
+    			best = c;
+    	}
+    	
+    	if( best != null )
+    		return best.move;
+    	
+    	return playableMoves(this.g, null).get(0);
+    }
+    
+    /** Esegue iterazioni UCT sull'albero con radice data finché ci sono iterazioni
+     * disponibili, non scade il tempo e nessun thread ha chiesto di fermarsi, anche
+     * durante una simulazione, che in tal caso non è contata nelle statistiche (le
+     * visite contate durante la discesa sono annullate). Il
+     * {@link GameRuler} scende nell'albero e torna alla radice con {@link GameRuler#unMove()}.
+     * @param root radice dell'albero
+     * @param gR copia del {@link GameRuler} nella situazione della radice, usata solo da questo thread
+     * @param budget iterazioni rimaste, condivise tra i thread
+     * @param stop flag per fermare tutti i thread
+     * @param start_time tempo di inizio (per controllare il timeout)
+     * @param timeout tempo limite (in millisecondi)
+     */
+    private static <P> void uctIterations(Node<P> root, GameRuler<P> gR, AtomicInteger budget, AtomicBoolean stop,
+    		long start_time, long timeout)
+    {
+    	SplittableRandom rnd = RANDOM.get();
+    	List<Node<P>> path = new ArrayList<>();
+    	
+    	while( budget.getAndDecrement() > 0 )
+    	{
+    		if( stop.get() || Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(start_time, timeout) )
+    		{
+    			stop.set(true);
+    			return;
+    		}
+    		
+    		// Selezione ed espansione
+    		Node<P> n = root;
+    		int depth = 0;
+    		
+    		n.visits.incrementAndGet();
+    		path.clear();
+    		path.add(n);
+    		
+    		while( gR.result() == -1 )
+    		{
+    			if( n.expansion.get() == null )
+    				n.init(playableMoves(gR, rnd));
+    			
+    			// Espande una nuova mossa se possibile, altrimenti scende nel figlio migliore
+    			Node<P> c = n.expand(gR.turn());
+    			boolean leaf = c != null;
+    			
+    			if( c == null )
+    				c = n.select();
+    			
+    			if( c == null )
+    				break;
+    			
+    			gR.move(c.move);
+    			depth++;
+    			path.add(c);
+    			
+    			if( leaf )
+    				break;
+    			
+    			n = c;
+    		}
+    		
+    		// Simulazione, controllando periodicamente interruzione e timeout come execRollout
+    		int moves = 0;
+    		boolean aborted = false;
+    		
+    		while( gR.randomMove(rnd) )
+    		{
+    			if( (++moves % ROLLOUT_CHECK) == 0 && (stop.get() || Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(start_time, timeout)) )
+    			{
+    				aborted = true;
+    				break;
+    			}
+    		}
+    		
+    		// Aggiornamento delle statistiche (le visite sono già state contate in discesa),
+    		// oppure annullamento delle visite della discesa se la simulazione è interrotta
+    		int result = gR.result();
+    		for( Node<P> p : path )
+    		{
+    			if( aborted )
+    				p.visits.decrementAndGet();
+    			else if( result == 0 || result == -1 )
+    				p.points.addAndGet(1);
+    			else if( result == p.mover )
+    				p.points.addAndGet(2);
+    		}
+    		
+    		// Torna alla situazione della radice
+    		for( int j=depth+moves ; j>0 ; j-- )
+    			gR.unMove();
+    		
+    		if( aborted )
+    		{
+    			stop.set(true);
+    			return;
+    		}
+    	}
+    }
+    
+    /** Ritorna le mosse valide nella situazione attuale di gR, esclusa {@link Move.Kind#RESIGN}.
+     * @param gR {@link GameRuler} del gioco
+     * @param rnd se non è null, le mosse sono mescolate
+     * @return la lista delle mosse
+     */
+    private static <P> List<Move<P>> playableMoves(GameRuler<P> gR, SplittableRandom rnd)
+    {
+    	List<Move<P>> moves = new ArrayList<>(gR.validMoves());
+    	
+    	moves.remove(new Move<>(Kind.RESIGN));
+    	
+    	if( rnd != null )
+    		for( int i=moves.size()-1 ; i>0 ; i-- )
+    			Collections.swap(moves, i, rnd.nextInt(i+1));
+    	
+    	return moves;
+    }
+    
+    /** Esegue un dato numero di rollouts data una mossa da eseguire (lavorando su una copia del {@link GameRuler},
+     * che è riportata alla situazione di partenza con {@link GameRuler#unMove()} dopo ogni rollout).
      * @param g {@link GameRuler} dove eseguire i rollouts
      * @param m mossa da eseguire prima di fare i rollouts
      * @param rollouts numero di rollouts da eseguire
@@ -427,7 +845,7 @@ public class MCTSPlayer<P> implements Player<P>
     		if( Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(start_time, timeout) )
     			return null;
 			
-    		score = execRollout(gR.copy(), turn, start_time, timeout);
+    		score = execRollout(gR, turn, start_time, timeout);
     		
     		if( score == Integer.MIN_VALUE )
     			return null;
@@ -438,41 +856,40 @@ public class MCTSPlayer<P> implements Player<P>
     	return new RolloutResult<>(m, sum);
     }
     
-    /** Esegue un rollout, controllando periodicamente interruzione e timeout, ritornandone il risultato.
-     * @param gR copia del {@link GameRuler} dove eseguire il rollout
+    /** Esegue un rollout con {@link GameRuler#randomMove(SplittableRandom)}, controllando periodicamente
+     * interruzione e timeout, ritornandone il risultato. Al termine annulla le mosse eseguite, riportando
+     * gR alla situazione di partenza.
+     * @param gR {@link GameRuler} dove eseguire il rollout
      * @param turn turno del giocatore attuale (per controllare il risultato)
      * @param start_time tempo di inizio (per controllare il timeout)
      * @param timeout tempo limite (in millisecondi)
      * @return risultato del rollout, o Integer.MIN_VALUE in caso di interruzione e/o timeout
      */
-    @SuppressWarnings("unchecked")
 	private static <P> int execRollout(GameRuler<P> gR, int turn, long start_time, long timeout)
     {
-    	Set<Move<P>> vm = null;
-    	Move<P>[] arr_moves = null;
-    	
-    	Random rand = new Random();
-    	int i;
+    	SplittableRandom rnd = RANDOM.get();
+    	int moves = 0, score;
+    	boolean aborted = false;
     	
-    	while( gR.result() == -1 )
+    	while( gR.randomMove(rnd) )
     	{
-    		if( Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(start_time, timeout) )
-    			return Integer.MIN_VALUE;
-    		
-    		vm = gR.validMoves();
-    		arr_moves = vm.toArray( new Move[vm.size()] );
-        	
-        	do
-        	{
-        		i = rand.nextInt(arr_moves.length);
-        	}while( arr_moves[i].kind == Kind.RESIGN );
-        	
-        	gR.move(arr_moves[i]);
+    		if( (++moves % ROLLOUT_CHECK) == 0 && (Thread.currentThread().isInterrupted() || Utils.timeoutExceeded(start_time, timeout)) )
+    		{
+    			aborted = true;
+    			break;
+    		}
     	}
     	
-    	if( gR.result() == 0)
-    		return 0;
+    	if( aborted )
+    		score = Integer.MIN_VALUE;
+    	else if( gR.result() == 0 || gR.result() == -1 )
+    		score = 0;
     	else
-    		return gR.result()==turn ? 1 : -1;
+    		score = gR.result()==turn ? 1 : -1;
+    	
+    	for( ; moves > 0 ; moves-- )
+    		gR.unMove();
+    	
+    	return score;
     }
 }
@@ -21,9 +21,9 @@ import java.util.function.Supplier;
 public class MCTSPlayerFactory<P> implements PlayerFactory<Player<P>,GameRuler<P>>
 {
 	/** Possibili valori del parametro "Rollouts" */
-	private final List<Integer> rollout_values = Arrays.asList(1,10,50,100,200,500,1000);
+	private final List<Integer> rollout_values = Arrays.asList(1,10,50,100,200,500,1000,5000,10000);
 	/** Possibili valori del parametro "Time" */
-	private final List<String> execution_values = Arrays.asList("Sequential","Parallel");
+	private final List<String> execution_values = Arrays.asList("Sequential","Parallel","UCT","Parallel UCT");
 	
 	/** Lista dei parametri */
 	private final List<Param<?>> params;
@@ -99,14 +99,17 @@ public class MCTSPlayerFactory<P> implements PlayerFactory<Player<P>,GameRuler<P
      * Primo parametro
      *     - name: "Rollouts"
      *     - prompt: "Number of rollouts per move"
-     *     - values: [1,10,50,100,200,500,1000]
+     *     - values: [1,10,50,100,200,500,1000,5000,10000]
      *     - default: 50
      * Secondo parametro
      *     - name: "Execution"
      *     - prompt: "Threaded execution"
-     *     - values: ["Sequential","Parallel"]
+     *     - values: ["Sequential","Parallel","UCT","Parallel UCT"]
      *     - default: "Sequential"
      * </pre>
+     * Con "UCT" il giocatore usa la ricerca UCT con albero persistente (vedi
+     * {@link MCTSPlayer}) e "Rollouts" è il numero massimo di iterazioni per mossa,
+     * con "Parallel UCT" la stessa ricerca è eseguita in parallelo sull'albero.
      * @return la lista con i due parametri */
     @Override
     public List<Param<?>> params()
@@ -139,6 +142,8 @@ public class MCTSPlayerFactory<P> implements PlayerFactory<Player<P>,GameRuler<P
         
     	Objects.requireNonNull(name);
     	
-        return new MCTSPlayer<>(name, Integer.parseInt(String.valueOf(this.rollouts.get())), String.valueOf(this.execution.get()).equals("Parallel") );
+        String exec = String.valueOf(this.execution.get());
+        
+        return new MCTSPlayer<>(name, Integer.parseInt(String.valueOf(this.rollouts.get())), exec.startsWith("Parallel"), exec.endsWith("UCT") );
     }
 }
@@ -117,7 +117,7 @@ public class OptimalPlayer<P> implements Player<P>
         	throw new IllegalStateException();
     	
     	// Ottengo la mossa migliore applicando la strategia
-    	return this.strategy.move(OptimalPlayer.toSituation(this.g), this.g.mechanics().next);
+    	return this.strategy.moveLazy(OptimalPlayer.toSituation(this.g), this.g.mechanics().lazy);
     }
 
     /** Metodo statico per ottenere la {@link Situation} attuale da un {@link GameRuler}.
@@ -1,36 +1,39 @@
 package gapp.ulg.play;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 import gapp.ulg.game.GameFactory;
 import gapp.ulg.game.Param;
 import gapp.ulg.game.PlayerFactory;
 import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.GameRuler.Cursor;
+import gapp.ulg.game.board.GameRuler.LazyNext;
 import gapp.ulg.game.board.GameRuler.Mechanics;
 import gapp.ulg.game.board.GameRuler.Next;
 import gapp.ulg.game.board.GameRuler.Situation;
 import gapp.ulg.game.board.Move;
 import gapp.ulg.game.board.Player;
-import gapp.ulg.play.OptimalStrategy.SitEnc;
+import gapp.ulg.game.util.SitPacker;
+import gapp.ulg.game.util.Symmetries;
 import gapp.ulg.play.OptimalStrategy.Winner;
 
 /** <b>IMPLEMENTARE I METODI SECONDO LE SPECIFICHE DATE NEI JAVADOC. Non modificare
@@ -56,6 +59,20 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
          *              gioco, cioè quella di {@link GameRuler.Mechanics#next}.
          * @return la mossa (ottimale) nella situazione di gioco specificata */
         Move<P> move(Situation<P> s, Next<P> next);
+
+        /** Come {@link Strategy#move(Situation, Next)} ma con la versione pigra
+         * della funzione delle prossime situazioni, cioè quella di
+         * {@link GameRuler.Mechanics#lazy}, così che la strategia possa fermarsi
+         * alla prima mossa vincente senza creare le altre situazioni.
+         * L'implementazione di default raccoglie tutte le mosse con
+         * {@link LazyNext#eager(LazyNext)}.
+         * @param s  una situazione di gioco
+         * @param next  la versione pigra della funzione delle prossime situazioni
+         * @return la mossa (ottimale) nella situazione di gioco specificata */
+        default Move<P> moveLazy(Situation<P> s, LazyNext<P> next)
+        {
+            return this.move(s, LazyNext.eager(next));
+        }
     }
     
     /** Non segue i link dei file e delle directory */
@@ -63,11 +80,21 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
 	/** Directory delle strategie */
 	private Path strategies_dir;
 	
+	/** Numero magico all'inizio dei file di strategia ("ULGS") */
+	static final int FILE_MAGIC = 0x53474C55;
+	/** Versione del formato dei file di strategia */
+	static final int FILE_VERSION = 2;
+	
 	/** Lista delle strategie */
 	private List<OptimalStrategy<P>> strategies;
+	/** Numero di slot della tabella delle trasposizioni usata per calcolare le strategie */
+	private int table_capacity = TranspositionTable.DEFAULT_CAPACITY;
     
-	/** Possibili valori del parametro "Time" */
-	private final List<String> execution_values = Arrays.asList("Sequential","Parallel");
+	/** Numero di situazioni espanse dall'ultimo calcolo di una strategia */
+	private long nodes_visited;
+	
+	/** Possibili valori del parametro "Execution" */
+	private final List<String> execution_values = Arrays.asList("Sequential","Parallel","Retrograde","Ordered");
 	
 	/** Lista dei parametri */
 	private final List<Param<?>> params;
@@ -126,13 +153,35 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
         	this.strategies_dir = dir;
     }
 
+    /** Imposta il numero iniziale di slot della tabella delle trasposizioni usata
+     * per calcolare le strategie. La tabella può contenere al più i 3/4 degli slot,
+     * se durante il calcolo si riempie, il calcolo ricomincia con una tabella 8 volte
+     * più grande, fino a {@link TranspositionTable#maxCapacity(int)} slot, oltre i
+     * quali {@link OptimalPlayerFactory#tryCompute} ritorna "OUT OF MEMORY". Il
+     * default è {@link TranspositionTable#DEFAULT_CAPACITY}.
+     * @param capacity  numero iniziale di slot
+     * @throws IllegalArgumentException se capacity <= 0 */
+    public void setTableCapacity(int capacity)
+    {
+    	if( capacity <= 0 )
+    		throw new IllegalArgumentException();
+    	
+    	this.table_capacity = capacity;
+    }
+
     /** Ritorna una lista con il seguente parametro:
      * <pre>
      *     - name: "Execution"
      *     - prompt: "Threaded execution"
-     *     - values: ["Sequential","Parallel"]
+     *     - values: ["Sequential","Parallel","Retrograde","Ordered"]
      *     - default: "Sequential"
      * </pre>
+     * Con il valore "Retrograde" la strategia è calcolata con l'analisi retrograda
+     * iterativa di {@link RetrogradeSolver}, che non usa la ricorsione e calcola i
+     * valori di tutte le situazioni raggiungibili. Con il valore "Ordered" è
+     * calcolata da {@link OrderedSolver}, che è sequenziale e visita le prossime
+     * situazioni in un ordine euristico con le mosse killer, per espandere meno
+     * situazioni (vedi {@link OptimalPlayerFactory#nodesVisited()}).
      * @return la lista con il parametro */
     @Override
     public List<Param<?>> params()
@@ -140,6 +189,18 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
         return this.params;
     }
 
+    /** Ritorna il numero di situazioni espanse, cioè di cui sono state generate le
+     * prossime situazioni, dall'ultima invocazione di
+     * {@link OptimalPlayerFactory#tryCompute}, anche se il calcolo è stato
+     * interrotto. Se la tabella delle trasposizioni si è riempita, conta solamente
+     * l'ultimo tentativo. Ritorna 0 se la strategia non è stata calcolata, ad es.
+     * perché era già nota. Serve a confrontare i valori del parametro "Execution".
+     * @return il numero di situazioni espanse */
+    public long nodesVisited()
+    {
+    	return this.nodes_visited;
+    }
+
     /** Ritorna {@link Play#YES} se conosce già la strategia ottimale per il gioco
      * specificato o perché è in un file (nella directory impostata con
      * {@link OptimalPlayerFactory#setDir(Path)}) o perché è in memoria, altrimenti
@@ -208,6 +269,7 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     public String tryCompute(GameFactory<? extends GameRuler<P>> gF, boolean parallel,
                              Supplier<Boolean> interrupt)
     {
+    	this.nodes_visited = 0;
     	Play play_check = canPlay(gF);
     	
     	if( play_check == Play.YES )
@@ -223,29 +285,66 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     	GameRuler<P> gR = gF.newGame();
     	Mechanics<P> gM = gR.mechanics();
     	
+    	// Le situazioni simmetriche hanno lo stesso valore e condividono lo slot della tabella
+    	Symmetries<P> sym = Symmetries.of(gR);
+    	
+    	// Contatori delle situazioni espanse dal calcolo in corso
+    	LongAdder nodes = new LongAdder();
+    	RetrogradeSolver<P> retrograde = null;
+    	OrderedSolver<P> ordered = null;
+    	
     	try
     	{
-    		Map<SitEnc<P>,Winner> strategy_map;
+    		TranspositionTable table = null;
     		
-    		if(parallel)
+    		if( this.execution.get().equals("Retrograde") )
     		{
-    			Map<SitEnc<P>,Winner> conc_strategy_map = new ConcurrentHashMap<>();
-    			computeStrategyParallel(conc_strategy_map, gM.start, new SitEnc<>(gM, gM.start), gM, interrupt);
-    			strategy_map = new HashMap<>(conc_strategy_map);
+    			retrograde = new RetrogradeSolver<>(sym, parallel, interrupt);
+    			table = retrograde.solve();
     		}
-    		else
+    		
+    		// Se la tabella si riempie, ricomincia il calcolo con una tabella 8 volte più grande
+    		int words = SitPacker.words(gM);
+    		
+    		for( long capacity = this.table_capacity ; table == null ; capacity <<= 3 )
     		{
-    			strategy_map = new HashMap<>();
-    			computeStrategy(strategy_map, gM.start, new SitEnc<>(gM, gM.start), gM, interrupt);
+    			if( capacity > TranspositionTable.maxCapacity(words) )
+    				return "OUT OF MEMORY";
+    			
+    			TranspositionTable t = new TranspositionTable(words, (int)capacity);
+    			nodes.reset();
+    			
+    			try
+    			{
+    				if( this.execution.get().equals("Ordered") )
+    				{
+    					ordered = new OrderedSolver<>(sym, t, interrupt);
+    					ordered.solve(gM.start);
+    				}
+    				else if( parallel )
+    				{
+    					// Se i task sono stati annullati per l'interruzione, la situazione iniziale resta senza valore
+    					if( computeStrategyParallel(t, gM.start, sym, interrupt, nodes) == null )
+    						throw new NullPointerException();
+    				}
+    				else
+    					computeStrategy(t, gM.start, sym, interrupt, nodes);
+    				
+    				table = t;
+    			}
+    			catch( TranspositionTable.FullException e ) {}
     		}
     		
+    		// Mantiene in memoria solo lo spazio necessario alle situazioni calcolate
+    		table = table.compact();
+    		
     		// Aggiunge la strategia nella lista
-    		this.strategies.add(new OptimalStrategy<>(gM, gR.name(), strategy_map));
+    		this.strategies.add(new OptimalStrategy<>(sym, gR.name(), table));
     		
     		// Tenta di salvare la strategia su un file (se fallisce, non fa nulla)
     		try
         	{
-    			this.saveStrategy(gR.name(), strategy_map);
+    			this.saveStrategy(gR.name(), sym, table);
         	}
     		catch( IllegalStateException e ) {}
     		
@@ -253,21 +352,30 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     	}
     	catch( NullPointerException e ) { return "INTERRUPTED"; }
     	catch( OutOfMemoryError | StackOverflowError e ) { return "OUT OF MEMORY"; }
+    	finally
+    	{
+    		this.nodes_visited = retrograde != null ? retrograde.nodes() : ordered != null ? ordered.nodes() : nodes.sum();
+    	}
     }
     
-    /** Metodo che tenta di calcolare la strategia ottimale, inserendola nella mappa data come parametro.
-     * @param strategy mappa della strategia ottimale
+    /** Metodo che tenta di calcolare la strategia ottimale, inserendola nella tabella data come parametro.
+     * @param table tabella della strategia ottimale
      * @param s situazione iniziale
-     * @param s_enc situazione iniziale codificata
-     * @param next funzione per ottenere le prossime situazioni
+     * @param sym simmetrie del gioco, le situazioni sono codificate con la codifica canonica
      * @param interr supplier di interrupt
+     * @param nodes contatore delle situazioni espanse
+     * @return il valore della situazione iniziale
      * @throws NullPointerException in caso di interruzione
      */
-    private void computeStrategy(Map<SitEnc<P>, Winner> strategy, Situation<P> s, SitEnc<P> s_enc, Mechanics<P> gM, Supplier<Boolean> interr)
+    private Winner computeStrategy(TranspositionTable table, Situation<P> s, Symmetries<P> sym, Supplier<Boolean> interr, LongAdder nodes)
     {
+    	long[] s_ext = table.words > 1 ? new long[table.words-1] : null;
+    	long s_enc = sym.encode(s, s_ext);
+    	
     	// Caso base: la situazione è già stata calcolata
-    	if(strategy.containsKey(s_enc))
-    		return;
+    	Winner result = table.get(s_enc, s_ext);
+    	if( result != null )
+    		return result;
     	
     	// Controllo se è stato interrotto
     	if( interr!=null && interr.get() )
@@ -276,147 +384,144 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     	// Caso base: situazione finale
     	if( s.turn <= 0 )
     	{
-    		switch(s.turn)
-    		{
-    			case 0: strategy.put(s_enc, Winner.NONE);
-    				break;
-    			case -1: strategy.put(s_enc, Winner.PLAYER_A);
-					break;
-    			case -2: strategy.put(s_enc, Winner.PLAYER_B);
-					break;
-    		}
-    		
-    		return;
+    		result = final_winner(s.turn);
+    		table.put(s_enc, s_ext, result);
+    		return result;
     	}
     	
-    	// Passo induttivo: calcolo la situazione ricorsivamente
+    	// Passo induttivo: calcolo la situazione ricorsivamente, le prossime situazioni
+    	// sono create solo fino alla prima vincente
     	Winner prec_result, att_player = s.turn==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
-    	SitEnc<P> next_enc;
     	boolean patta=false;
     	
-		for( Situation<P> next_situation : gM.next.get(s).values() )
+    	nodes.increment();
+    	Cursor<P> next = sym.mechanics().lazy.cursor(s);
+		while( next.advance() )
     	{
-			next_enc = new SitEnc<>(gM, next_situation);
-			
-			computeStrategy(strategy, next_situation, next_enc, gM, interr);
+			prec_result = computeStrategy(table, next.situation(), sym, interr, nodes);
 			
-			prec_result = strategy.get(next_enc);
 			if(prec_result == att_player)
 			{
-				strategy.put(s_enc, att_player);
-				return;
+				table.put(s_enc, s_ext, att_player);
+				return att_player;
 			}
 			else if(prec_result == Winner.NONE)
 				patta = true;
     	}
 		
-		if(patta)
-			strategy.put(s_enc, Winner.NONE);
-		else
-			strategy.put(s_enc, s.turn==1 ? Winner.PLAYER_B : Winner.PLAYER_A);
+		result = patta ? Winner.NONE : (s.turn==1 ? Winner.PLAYER_B : Winner.PLAYER_A);
+		table.put(s_enc, s_ext, result);
+		return result;
     }
     
-    /** Metodo che tenta di calcolare la strategia ottimale sfruttando il parallelismo, inserendola nella mappa data come parametro.
-     * @param strategy mappa della strategia ottimale
+    /** Metodo che tenta di calcolare la strategia ottimale sfruttando il parallelismo, inserendola nella tabella data come parametro.
+     * @param table tabella della strategia ottimale
      * @param s situazione iniziale
-     * @param s_enc situazione iniziale codificata
-     * @param next funzione per ottenere le prossime situazioni
+     * @param sym simmetrie del gioco, le situazioni sono codificate con la codifica canonica
      * @param interr supplier di interrupt
+     * @param nodes contatore delle situazioni espanse
+     * @return il valore della situazione iniziale o null se il calcolo è stato annullato
      * @throws NullPointerException in caso di interruzione
      */
-    private void computeStrategyParallel(Map<SitEnc<P>, Winner> strategy, Situation<P> s, SitEnc<P> s_enc, Mechanics<P> gM, Supplier<Boolean> interr)
+    private Winner computeStrategyParallel(TranspositionTable table, Situation<P> s, Symmetries<P> sym, Supplier<Boolean> interr, LongAdder nodes)
     {
     	// Controllo se è stato interrotto
     	if( Thread.currentThread().isInterrupted() || (interr!=null && interr.get()) )
     		throw new NullPointerException();
     	
+    	long[] s_ext = table.words > 1 ? new long[table.words-1] : null;
+    	long s_enc = sym.encode(s, s_ext);
+    	
     	// Caso base: situazione già calcolata
-    	if( !strategy.containsKey(s_enc) )
+    	Winner result = table.get(s_enc, s_ext);
+    	if( result != null )
+    		return result;
+    	
+    	// Caso base: situazione finale
+    	if( s.turn <= 0 )
     	{
-    		// Caso base: situazione finale
-        	if( s.turn <= 0 )
-        	{
-        		switch(s.turn)
-        		{
-        			case 0: strategy.put(s_enc, Winner.NONE);
-        				break;
-        			case -1: strategy.put(s_enc, Winner.PLAYER_A);
-    					break;
-        			case -2: strategy.put(s_enc, Winner.PLAYER_B);
-    					break;
-        		}
-        	}
-        	else
-        	{
-        		List<ForkJoinTask<Winner>> tasks = new ArrayList<>();
-        		
-        		for( Situation<P> next_situation : gM.next.get(s).values() )
-        		{
-        			tasks.add(ForkJoinTask.adapt( () -> {
-        				if( Thread.currentThread().isInterrupted() || (interr!=null && interr.get()) )
-        				{
-        					tasks.forEach( (tt) -> tt.cancel(true) );
-        					throw new NullPointerException();
-        				}
-        				
-        				SitEnc<P> next_enc = new SitEnc<>(gM, next_situation);
-        				
-        				if( strategy.containsKey(s_enc) )
-        				{
-            				tasks.forEach( (tt) -> tt.cancel(true) );
-            				return null;
-            			}
-        				
-        				computeStrategyParallel(strategy, next_situation, next_enc, gM, interr);
-        				
-        				if( strategy.containsKey(s_enc) )
-        				{
-            				tasks.forEach( (tt) -> tt.cancel(true) );
-            				return null;
-            			}
-        				else
-        					return strategy.get(next_enc);
-        				
-        				}).fork());
-        		}
-        		
-        		Winner prevision, att_player = s.turn==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
-        		boolean patta = false;
-        		
-        		for( ForkJoinTask<Winner> t : tasks )
-        		{
-        			try
-        			{
-        				prevision = t.join();
-            			
-            			if( prevision == null )
-            			{
-            				tasks.forEach( (tt) -> tt.cancel(true) );
-            				return;
-            			}
-            			if( prevision == att_player )
-            			{
-            				strategy.put(s_enc, att_player);
-            				tasks.forEach( (tt) -> tt.cancel(true) );
-            				return;
-            			}
-                		else if( prevision == Winner.NONE )
-                			patta = true;
-        			}
-        			catch( CancellationException e )
-        			{
-        				tasks.forEach( (tt) -> tt.cancel(true) );
-        				return;
-        			}
-        			
-        		}
-        		
-        		if(patta)
-        			strategy.put(s_enc, Winner.NONE);
-				else
-					strategy.put(s_enc, s.turn==1 ? Winner.PLAYER_B : Winner.PLAYER_A);
-        	}
+    		result = final_winner(s.turn);
+    		table.put(s_enc, s_ext, result);
+    		return result;
+    	}
+    	
+    	List<ForkJoinTask<Winner>> tasks = new ArrayList<>();
+    	
+    	nodes.increment();
+    	for( Situation<P> next_situation : sym.mechanics().next.get(s).values() )
+    	{
+    		tasks.add(ForkJoinTask.adapt( () -> {
+    			if( Thread.currentThread().isInterrupted() || (interr!=null && interr.get()) )
+    			{
+    				tasks.forEach( (tt) -> tt.cancel(true) );
+    				throw new NullPointerException();
+    			}
+    			
+    			if( table.get(s_enc, s_ext) != null )
+    			{
+    				tasks.forEach( (tt) -> tt.cancel(true) );
+    				return null;
+    			}
+    			
+    			Winner next_result = computeStrategyParallel(table, next_situation, sym, interr, nodes);
+    			
+    			if( table.get(s_enc, s_ext) != null )
+    			{
+    				tasks.forEach( (tt) -> tt.cancel(true) );
+    				return null;
+    			}
+    			else
+    				return next_result;
+    			
+    			}).fork());
     	}
+    	
+    	Winner prevision, att_player = s.turn==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
+    	boolean patta = false;
+    	
+    	for( ForkJoinTask<Winner> t : tasks )
+    	{
+    		try
+    		{
+    			prevision = t.join();
+    			
+    			if( prevision == null )
+    			{
+    				tasks.forEach( (tt) -> tt.cancel(true) );
+    				return table.get(s_enc, s_ext);
+    			}
+    			if( prevision == att_player )
+    			{
+    				table.put(s_enc, s_ext, att_player);
+    				tasks.forEach( (tt) -> tt.cancel(true) );
+    				return att_player;
+    			}
+    			else if( prevision == Winner.NONE )
+    				patta = true;
+    		}
+    		catch( CancellationException e )
+    		{
+    			tasks.forEach( (tt) -> tt.cancel(true) );
+    			return table.get(s_enc, s_ext);
+    		}
+    	}
+    	
+    	result = patta ? Winner.NONE : (s.turn==1 ? Winner.PLAYER_B : Winner.PLAYER_A);
+    	table.put(s_enc, s_ext, result);
+    	return result;
+    }
+    
+    /** Ritorna il vincitore di una situazione finale
+     * @param turn turno di una situazione finale
+     * @return il vincitore */
+    private static Winner final_winner(int turn)
+    {
+    	switch(turn)
+		{
+			case -1: return Winner.PLAYER_A;
+			case -2: return Winner.PLAYER_B;
+			default: return Winner.NONE;
+		}
     }
     
     /** Se il metodo {@link OptimalPlayerFactory#canPlay(GameFactory)} ritorna
@@ -434,7 +539,7 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     	// I nomi sono già stati settati nel metodo canPlay
     	GameRuler<P> gR = gF.newGame();
     	
-    	OptimalStrategy<P> strategy = this.getStrategy(gR.name(), gR.mechanics());
+    	OptimalStrategy<P> strategy = this.getStrategy(gR.name(), Symmetries.of(gR));
     	
     	// Il flag del parallelismo non è unato, poiché per il getMove non vengono mai usati threads addizionali
     	
@@ -443,11 +548,11 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     
     /** Cerca una strategia disponibile per un gioco (in memoria o nei file)
      * @param gName nome del gioco
-     * @param gM meccanica del gioco
+     * @param sym simmetrie del gioco
      * @return la strategia ottimale
      * @throws IllegalStateException in caso di file non trovato o errori di conversione
      */
-    private OptimalStrategy<P> getStrategy(String gName, Mechanics<P> gM)
+    private OptimalStrategy<P> getStrategy(String gName, Symmetries<P> sym)
     {
     	// Cerca tra le strategie in memoria
     	for(OptimalStrategy<P> s : this.strategies)
@@ -455,55 +560,128 @@ public class OptimalPlayerFactory<P> implements PlayerFactory<Player<P>,GameRule
     			return s;
     	
     	// Se non c'è in memoria, cerca un file che la contenga
-		return this.loadStrategy(gName, gM);
+		return this.loadStrategy(gName, sym);
     }
     
-    /** Ritorna una strategia letta da un file .dat, dato il nome del gioco.
+    /** Ritorna una strategia letta da un file .dat, dato il nome del gioco. Il file
+     * è mappato in memoria e la strategia usa direttamente la tabella contenuta nel
+     * file, senza copiarla nello heap (vedi {@link OptimalPlayerFactory#saveStrategy}
+     * per il formato).
      * @param gName nome del gioco
-     * @param gM meccanica del gioco
+     * @param sym simmetrie del gioco
      * @return la strategia letta dal file
-     * @throws IllegalStateException in caso di file non trovato o errori di conversione
+     * @throws IllegalStateException in caso di file non trovato, di formato non valido
+     * o di file relativo a un altro gioco o calcolato con altre simmetrie
      */
-    @SuppressWarnings("unchecked")
-	private OptimalStrategy<P> loadStrategy(String gName, Mechanics<P> gM)
+	private OptimalStrategy<P> loadStrategy(String gName, Symmetries<P> sym)
     {
+    	Mechanics<P> gM = sym.mechanics();
+    	
     	if( this.strategies_dir==null )
     		throw new IllegalStateException();
     	
     	Path file = Paths.get(this.strategies_dir.toString(), "strategy_"+gName+".dat");
     	
-    	try( ObjectInputStream in = new ObjectInputStream(new FileInputStream(file.toFile())) )
+    	try( FileChannel ch = FileChannel.open(file, StandardOpenOption.READ) )
     	{
-    		Map<SitEnc<P>,Winner> strategy_map = (Map<SitEnc<P>,Winner>) in.readObject();
+    		// La mappatura resta valida anche dopo la chiusura del canale
+    		MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    		map.order(TranspositionTable.ORDER);
+    		
+    		byte[] name = gName.getBytes(StandardCharsets.UTF_8);
+    		int header = header_size(name.length);
+    		
+    		if( map.remaining() < header || map.getInt(0) != FILE_MAGIC || map.getInt(4) != FILE_VERSION ||
+    			map.getLong(8) != SitPacker.fingerprint(gM) || map.getInt(16) != SitPacker.words(gM) ||
+    			map.getInt(20) != SitPacker.cellBits(gM) || map.getInt(24) != SitPacker.turnBits(gM) ||
+    			map.getInt(36) != sym.mask() || map.getInt(40) != name.length )
+    			throw new IllegalStateException();
+    		
+    		for( int i=0 ; i<name.length ; i++ )
+    			if( map.get(44+i) != name[i] )
+    				throw new IllegalStateException();
     		
-    		OptimalStrategy<P> strategy = new OptimalStrategy<>(gM, gName, strategy_map);
+    		map.position(header);
+    		TranspositionTable table = TranspositionTable.view(map, map.getInt(16), map.getInt(28), map.getInt(32));
+    		
+    		OptimalStrategy<P> strategy = new OptimalStrategy<>(sym, gName, table);
     		
     		this.strategies.add(strategy);
     		
     		return strategy;
 		}
-    	catch(ClassNotFoundException | IOException e)
+    	catch( IOException | IllegalArgumentException e )
     	{
     		throw new IllegalStateException();
 		}
     }
     
-    /** Salva una strategia in un file .dat, usando un nome specificato.
+    /** Salva una strategia in un file .dat, usando un nome specificato. Il file
+     * (little-endian) contiene un'intestazione seguita dagli slot della tabella della
+     * strategia, così come sono in memoria:
+     * <pre>
+     *     0   int    {@link OptimalPlayerFactory#FILE_MAGIC}
+     *     4   int    {@link OptimalPlayerFactory#FILE_VERSION}
+     *     8   long   impronta della meccanica ({@link SitPacker#fingerprint})
+     *     16  int    long per chiave ({@link SitPacker#words})
+     *     20  int    bit per posizione ({@link SitPacker#cellBits})
+     *     24  int    bit per il turno ({@link SitPacker#turnBits})
+     *     28  int    numero di slot della tabella
+     *     32  int    numero di situazioni nella tabella
+     *     36  int    simmetrie della codifica canonica ({@link Symmetries#mask()})
+     *     40  int    lunghezza n del nome del gioco in UTF-8
+     *     44  n byte nome del gioco, seguito da zeri fino a un multiplo di 8
+     *         slot della tabella
+     * </pre>
+     * Il file è scritto prima con un nome temporaneo e poi rinominato, così un file
+     * parziale non è mai letto al posto di quello completo.
      * @param gName nome del gioco
-     * @param strategy_map mappa della strategia da salvare
-     * @throws IllegalStateException in caso di file non trovato o errori di conversione
+     * @param sym simmetrie del gioco
+     * @param table tabella della strategia da salvare
      */
-	private void saveStrategy(String gName, Map<SitEnc<P>,Winner> strategy_map)
+	private void saveStrategy(String gName, Symmetries<P> sym, TranspositionTable table)
     {
     	if( this.strategies_dir==null )
     		return;
 		
 		Path file = Paths.get(this.strategies_dir.toString(), "strategy_"+gName+".dat");
+		Path tmp = Paths.get(this.strategies_dir.toString(), "strategy_"+gName+".tmp");
+		
+		byte[] name = gName.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(header_size(name.length)).order(TranspositionTable.ORDER);
+		
+		Mechanics<P> gM = sym.mechanics();
+		
+		header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putLong(SitPacker.fingerprint(gM));
+		header.putInt(table.words).putInt(SitPacker.cellBits(gM)).putInt(SitPacker.turnBits(gM));
+		header.putInt(table.capacity).putInt(table.size()).putInt(sym.mask()).putInt(name.length).put(name);
+		header.clear();
     	
-    	try( ObjectOutputStream in = new ObjectOutputStream(new FileOutputStream(file.toFile())) )
+    	try( FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE) )
     	{
-    		in.writeObject(strategy_map);
+    		while( header.hasRemaining() )
+    			ch.write(header);
+    		
+    		table.writeSlots(ch);
 		}
-    	catch(IOException e){}
+    	catch(IOException e)
+    	{
+    		try { Files.deleteIfExists(tmp); } catch(IOException e2) {}
+    		return;
+    	}
+    	
+    	try
+    	{
+    		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    	}
+    	catch(IOException e) {}
+    }
+    
+    /** Ritorna la dimensione dell'intestazione di un file di strategia
+     * @param name_length lunghezza del nome del gioco in byte
+     * @return la dimensione dell'intestazione, multiplo di 8 */
+    private static int header_size(int name_length)
+    {
+    	return (44 + name_length + 7) & ~7;
     }
 }
@@ -1,15 +1,13 @@
 package gapp.ulg.play;
 
-import java.io.Serializable;
-import java.math.BigInteger;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import gapp.ulg.game.board.Move;
-import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.util.Symmetries;
 import gapp.ulg.play.OptimalPlayerFactory.Strategy;
+import gapp.ulg.game.board.GameRuler.Cursor;
+import gapp.ulg.game.board.GameRuler.LazyNext;
 import gapp.ulg.game.board.GameRuler.Mechanics;
 import gapp.ulg.game.board.GameRuler.Next;
 import gapp.ulg.game.board.GameRuler.Situation;
@@ -17,62 +15,6 @@ import gapp.ulg.game.board.GameRuler.Situation;
 /** Implementazione di una strategia */
 public class OptimalStrategy<P> implements Strategy<P>
 {
-	/** Versione Serializzabile di una strategia codificata (clone di EncS) */
-	@SuppressWarnings("serial")
-	public static class SitEnc<P> implements Serializable
-	{
-		private final byte[] encoded;
-		
-		public SitEnc(Mechanics<P> gM, Situation<P> s)
-		{
-			BigInteger enc = BigInteger.ZERO, base = BigInteger.valueOf(gM.pieces.size()+1);
-        	
-        	for( Pos p : gM.positions )
-        		enc = enc.multiply(base).add(BigInteger.valueOf(gM.pieces.indexOf(s.get(p))+1));
-        	
-        	this.encoded = enc.multiply(BigInteger.valueOf(2*gM.np+1)).add(BigInteger.valueOf(s.turn+gM.np)).toByteArray();
-		}
-		
-		public Situation<P> decode(Mechanics<P> gM)
-		{
-			BigInteger base = BigInteger.valueOf(gM.pieces.size()+1);
-            BigInteger[] div_result = new BigInteger(this.encoded).divideAndRemainder(BigInteger.valueOf(2*gM.np+1));
-            
-            Map<Pos, P> conf_map = new HashMap<>();
-            int remainder, turn = div_result[1].intValue()-gM.np;
-            
-            for( int i = gM.positions.size()-1 ; i >= 0 ; i-- )
-            {
-            	div_result = div_result[0].divideAndRemainder(base);
-            	remainder = div_result[1].intValue();
-                
-                if (remainder > 0)
-                	conf_map.put(gM.positions.get(i), gM.pieces.get(remainder-1));
-            }
-            
-            return new Situation<>(conf_map, turn);
-		}
-		
-		@Override
-        public boolean equals(Object x)
-        {
-            if( x!=null && this.getClass() == x.getClass() )
-            {
-            	SitEnc<?> other = (SitEnc<?>)x;
-            	
-            	return Arrays.equals(this.encoded, other.encoded);
-            }
-        	
-        	return false;
-        }
-		
-        @Override
-        public int hashCode()
-        {
-        	return Arrays.hashCode(this.encoded);
-        }
-	}
-	
 	/** Possibili vincitori di un gioco */
     public enum Winner
     {
@@ -83,25 +25,28 @@ public class OptimalStrategy<P> implements Strategy<P>
 	
     /** Nome del gioco per cui vale questa strategia */
 	private final String name;
-	/** Mappa dellla strategia */
-	private final Map<SitEnc<P>,Winner> strategy;
+	/** Tabella della strategia, con i valori delle situazioni */
+	private final TranspositionTable strategy;
 	/** Meccanica del gioco */
 	private final Mechanics<P> gM;
+	/** Simmetrie del gioco, la tabella contiene le codifiche canoniche */
+	private final Symmetries<P> sym;
 	
-	/** Crea una strategia ottimale con il nome, la meccanica del gioco, e la mappa della strategia
-	 * @param gM meccanica del gioco
+	/** Crea una strategia ottimale con il nome, le simmetrie del gioco, e la tabella della strategia
+	 * @param sym simmetrie del gioco, con cui sono codificate le situazioni nella tabella
 	 * @param name nome del gioco
-	 * @param strategy mappa contenente la strategia
+	 * @param strategy tabella contenente la strategia
 	 */
-	public OptimalStrategy(Mechanics<P> gM, String name, Map<SitEnc<P>,Winner> strategy)
+	public OptimalStrategy(Symmetries<P> sym, String name, TranspositionTable strategy)
     {
 		Objects.requireNonNull(name);
 		Objects.requireNonNull(strategy);
-		Objects.requireNonNull(gM);
+		Objects.requireNonNull(sym);
 		
 		this.name = name;
     	this.strategy = strategy;
-    	this.gM = gM;
+    	this.gM = sym.mechanics();
+    	this.sym = sym;
     }
 	
 	@Override
@@ -109,6 +54,15 @@ public class OptimalStrategy<P> implements Strategy<P>
 	
     @Override
     public Move<P> move(Situation<P> s, Next<P> next)
+    {
+    	return this.moveLazy(s, LazyNext.of(next));
+    }
+	
+    /** Visita le mosse nell'ordine del cursore e si ferma alla prima vincente,
+     * senza creare le situazioni delle mosse successive. Tra le mosse patte, non
+     * calcolate o perdenti sceglie la prima, cioè la più promettente per il gioco. */
+    @Override
+    public Move<P> moveLazy(Situation<P> s, LazyNext<P> next)
     {
     	// Il limite di tempo per una mossa non è controllato, poiché ci mette sempre meno di un secondo
     	
@@ -118,20 +72,24 @@ public class OptimalStrategy<P> implements Strategy<P>
     	Winner prediction, att_player = s.turn==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
     	Move<P> mossa_patta = null, lose = null, unknown = null;
     	
-    	Map<Move<P>, Situation<P>> next_map = next.get(s);
+    	Cursor<P> cursor = next.cursor(s);
+    	long[] ext = this.strategy.words > 1 ? new long[this.strategy.words-1] : null;
     	
-		for( Map.Entry<Move<P>, Situation<P>> entry : next_map.entrySet() )
+		while( cursor.advance() )
 		{
-			prediction = this.strategy.get(new SitEnc<>(this.gM, entry.getValue()));
+			if( ext != null )
+				Arrays.fill(ext, 0L);
+			
+			prediction = this.strategy.get(this.sym.encode(cursor.situation(), ext), ext);
 			
 			if( prediction == att_player )
-				return entry.getKey();
-			else if( prediction == Winner.NONE )
-				mossa_patta = entry.getKey();
-			else if( prediction == null )
-				unknown = entry.getKey();
-			else
-				lose = entry.getKey();
+				return cursor.move();
+			else if( prediction == Winner.NONE && mossa_patta == null )
+				mossa_patta = cursor.move();
+			else if( prediction == null && unknown == null )
+				unknown = cursor.move();
+			else if( prediction != Winner.NONE && prediction != null && lose == null )
+				lose = cursor.move();
 		}
 		
 		if( mossa_patta==null )
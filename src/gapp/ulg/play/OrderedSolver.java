@@ -0,0 +1,231 @@
+package gapp.ulg.play;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.GameRuler.Cursor;
+import gapp.ulg.game.board.GameRuler.LazyNext;
+import gapp.ulg.game.board.GameRuler.Situation;
+import gapp.ulg.game.util.Symmetries;
+import gapp.ulg.play.OptimalStrategy.Winner;
+
+/** Calcolo ricorsivo dei valori delle situazioni di un gioco con due giocatori,
+ * come quello sequenziale di {@link OptimalPlayerFactory}, ma con le prossime
+ * situazioni visitate in un ordine che anticipa i tagli. Una situazione vale
+ * "vince x", dove x è il giocatore di turno, appena una prossima situazione vale
+ * "vince x" e le altre non sono più visitate, quindi conviene trovarla subito:
+ * <pre>
+ *     - le prossime situazioni finali o già nella tabella sono valutate per prime,
+ *       senza ricorsione
+ *     - poi quelle delle mosse killer della stessa profondità, cioè delle ultime
+ *       due mosse che vi hanno prodotto un taglio
+ *     - poi le altre in ordine crescente di numero di risposte dell'avversario,
+ *       che è il numero di prova iniziale della situazione nella proof-number
+ *       search: meno risposte ha l'avversario, meno situazioni servono per
+ *       dimostrare la vittoria. A parità di risposte, in ordine decrescente di
+ *       stima del gioco ({@link Cursor#hint()}).
+ * </pre>
+ * Mentre conta le risposte dell'avversario, se nella prossima situazione muove
+ * l'avversario e la prima risposta (la più promettente per il gioco) porta a una
+ * situazione finale in cui l'avversario vince, la prossima situazione vale subito
+ * "vince y", dove y è l'avversario, senza ricorsione. Se invece il giocatore di
+ * turno muove ancora perché l'avversario deve passare, le risposte sono sue e la
+ * scorciatoia non vale.
+ * <br>
+ * Le situazioni sono codificate con la codifica canonica rispetto alle simmetrie
+ * del gioco ({@link Symmetries}). Come nel calcolo sequenziale, nella tabella ci
+ * sono i valori di tutte le situazioni necessarie alla strategia, comprese le
+ * situazioni finali delle mosse vincenti. */
+class OrderedSolver<P>
+{
+	private final Symmetries<P> sym;
+	private final LazyNext<P> lazy;
+	private final TranspositionTable table;
+	private final Supplier<Boolean> interr;
+
+	/** Per ogni profondità le ultime due mosse che hanno prodotto un taglio, la più
+	 * recente nella prima colonna */
+	private final List<Move<?>[]> killers = new ArrayList<>();
+	/** Numero di situazioni espanse */
+	private long nodes;
+
+	/** Crea un risolutore per il gioco con le simmetrie date
+	 * @param sym simmetrie del gioco
+	 * @param table tabella in cui inserire i valori delle situazioni
+	 * @param interr supplier di interrupt (può essere null)
+	 */
+	OrderedSolver(Symmetries<P> sym, TranspositionTable table, Supplier<Boolean> interr)
+	{
+		this.sym = sym;
+		this.lazy = sym.mechanics().lazy;
+		this.table = table;
+		this.interr = interr;
+	}
+
+	/** Calcola il valore della situazione data, inserendo nella tabella i valori
+	 * delle situazioni visitate.
+	 * @param s situazione iniziale
+	 * @return il valore della situazione
+	 * @throws NullPointerException in caso di interruzione
+	 * @throws TranspositionTable.FullException se la tabella è piena
+	 */
+	Winner solve(Situation<P> s)
+	{
+		long[] ext = this.table.words > 1 ? new long[this.table.words-1] : null;
+
+		return this.solve(s, this.sym.encode(s, ext), ext, 0);
+	}
+
+	/** @return il numero di situazioni espanse, cioè di cui sono state generate le
+	 * prossime situazioni, escluse quelle generate solo per contare le risposte */
+	long nodes() { return this.nodes; }
+
+	private Winner solve(Situation<P> s, long enc, long[] ext, int depth)
+	{
+		// Caso base: la situazione è già stata calcolata
+		Winner result = this.table.get(enc, ext);
+		if( result != null )
+			return result;
+
+		// Controllo se è stato interrotto
+		if( this.interr!=null && this.interr.get() )
+			throw new NullPointerException();
+
+		// Caso base: situazione finale
+		if( s.turn <= 0 )
+		{
+			result = final_winner(s.turn);
+			this.table.put(enc, ext, result);
+			return result;
+		}
+
+		this.nodes++;
+
+		Winner att_player = s.turn==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
+		Winner opp_player = s.turn==1 ? Winner.PLAYER_B : Winner.PLAYER_A;
+		boolean patta = false;
+
+		// Prima passata: valuta le prossime situazioni finali o già calcolate
+		List<Child<P>> open = new ArrayList<>();
+		Cursor<P> next = this.lazy.cursor(s);
+		while( next.advance() )
+		{
+			Child<P> c = new Child<>(next.situation(), next.move(), next.hint(), open.size(), this.table.words);
+			c.enc = this.sym.encode(c.s, c.ext);
+
+			Winner v = this.table.get(c.enc, c.ext);
+			if( v == null && c.s.turn <= 0 )
+			{
+				v = final_winner(c.s.turn);
+				this.table.put(c.enc, c.ext, v);
+			}
+
+			if( v == att_player )
+				return this.cut(enc, ext, att_player, depth, c.move);
+			else if( v == Winner.NONE )
+				patta = true;
+			else if( v == null )
+				open.add(c);
+		}
+
+		// Conta le risposte dell'avversario e controlla se la più promettente vince subito
+		for( int i=0 ; i<open.size() ; i++ )
+		{
+			Child<P> c = open.get(i);
+			Cursor<P> reply = this.lazy.cursor(c.s);
+
+			while( reply.advance() )
+			{
+				if( c.replies++ == 0 && c.s.turn == 3 - s.turn && reply.situation().turn <= 0 && final_winner(reply.situation().turn) == opp_player )
+				{
+					long[] r_ext = this.table.words > 1 ? new long[this.table.words-1] : null;
+					this.table.put(this.sym.encode(reply.situation(), r_ext), r_ext, opp_player);
+					this.table.put(c.enc, c.ext, opp_player);
+
+					open.remove(i--);
+					break;
+				}
+			}
+		}
+
+		// Ordina le prossime situazioni ancora senza valore: killer, numero di risposte, stima
+		Move<?>[] killer = depth < this.killers.size() ? this.killers.get(depth) : null;
+		for( Child<P> c : open )
+			c.rank = killer == null ? 2 : c.move.equals(killer[0]) ? 0 : c.move.equals(killer[1]) ? 1 : 2;
+
+		open.sort( (a, b) -> a.rank != b.rank ? Integer.compare(a.rank, b.rank)
+				: a.replies != b.replies ? Integer.compare(a.replies, b.replies)
+				: a.hint != b.hint ? Integer.compare(b.hint, a.hint)
+				: Integer.compare(a.index, b.index) );
+
+		// Passo induttivo: calcolo le prossime situazioni ricorsivamente
+		for( Child<P> c : open )
+		{
+			Winner v = this.solve(c.s, c.enc, c.ext, depth+1);
+
+			if( v == att_player )
+				return this.cut(enc, ext, att_player, depth, c.move);
+			else if( v == Winner.NONE )
+				patta = true;
+		}
+
+		result = patta ? Winner.NONE : opp_player;
+		this.table.put(enc, ext, result);
+		return result;
+	}
+
+	/** Inserisce nella tabella la vittoria del giocatore di turno e registra la
+	 * mossa che l'ha prodotta come killer della profondità data
+	 * @return il valore della situazione */
+	private Winner cut(long enc, long[] ext, Winner w, int depth, Move<P> m)
+	{
+		this.table.put(enc, ext, w);
+
+		while( this.killers.size() <= depth )
+			this.killers.add(new Move<?>[2]);
+
+		Move<?>[] killer = this.killers.get(depth);
+		if( !m.equals(killer[0]) )
+		{
+			killer[1] = killer[0];
+			killer[0] = m;
+		}
+
+		return w;
+	}
+
+	/** Ritorna il vincitore di una situazione finale
+	 * @param turn turno di una situazione finale
+	 * @return il vincitore */
+	private static Winner final_winner(int turn)
+	{
+		switch(turn)
+		{
+			case -1: return Winner.PLAYER_A;
+			case -2: return Winner.PLAYER_B;
+			default: return Winner.NONE;
+		}
+	}
+
+	/** Una prossima situazione con la mossa che la produce e i dati per ordinarla */
+	private static final class Child<P>
+	{
+		final Situation<P> s;
+		final Move<P> move;
+		final int hint, index;
+		final long[] ext;
+		long enc;
+		int replies, rank;
+
+		Child(Situation<P> s, Move<P> move, int hint, int index, int words)
+		{
+			this.s = s;
+			this.move = move;
+			this.hint = hint;
+			this.index = index;
+			this.ext = words > 1 ? new long[words-1] : null;
+		}
+	}
+}
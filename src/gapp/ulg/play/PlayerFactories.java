@@ -63,5 +63,6 @@ public class PlayerFactories {
         boardFactories.put("Random Player", RandPlayerFactory.class);
         boardFactories.put("Monte-Carlo Tree Search Player", MCTSPlayerFactory.class);
         boardFactories.put("Optimal Player", OptimalPlayerFactory.class);
+        boardFactories.put("Alpha-Beta Search Player", AlphaBetaPlayerFactory.class);
     }
 }
@@ -0,0 +1,437 @@
+package gapp.ulg.play;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Next;
+import gapp.ulg.game.board.GameRuler.Situation;
+import gapp.ulg.game.util.Probe;
+import gapp.ulg.game.util.Probe.EncS;
+import gapp.ulg.game.util.Probe.NSResult;
+import gapp.ulg.game.util.SitPacker;
+import gapp.ulg.game.util.Symmetries;
+import gapp.ulg.play.OptimalStrategy.Winner;
+
+/** Calcolo iterativo dei valori delle situazioni di un gioco con due giocatori
+ * tramite analisi retrograda.
+ * <br>
+ * Prima sono enumerate, livello per livello con {@link Probe#nextSituations}, tutte
+ * le situazioni raggiungibili, ognuna con un indice, e sono memorizzati in array di
+ * interi gli archi verso le prossime situazioni e quelli inversi. Poi i valori sono
+ * propagati all'indietro a partire dalle situazioni finali: una situazione vale
+ * "vince x" appena una prossima situazione vale "vince x", dove x è il giocatore di
+ * turno, altrimenti quando tutte le prossime situazioni hanno un valore (contate
+ * con un contatore per situazione) vale "patta" se almeno una vale "patta" e "vince
+ * y" altrimenti. Le situazioni che restano senza valore (possibili solo se il grafo
+ * delle situazioni ha cicli) valgono "patta".
+ * <br>
+ * Le situazioni sono codificate con la codifica canonica rispetto alle simmetrie
+ * del gioco ({@link Symmetries}), quindi è enumerata una sola situazione per ogni
+ * classe di situazioni simmetriche, che hanno tutte lo stesso valore.
+ * <br>
+ * Lo stack usato non dipende dalla profondità del gioco e la memoria richiesta è
+ * proporzionale al numero di situazioni e di mosse. */
+class RetrogradeSolver<P>
+{
+	/** Valore non ancora calcolato */
+	private static final byte UNKNOWN = -1;
+	/** Flag di una situazione non risolta con almeno una prossima situazione in patta */
+	private static final byte DRAW_SEEN = -2;
+
+	private final Mechanics<P> gM;
+	private final boolean parallel;
+	private final Supplier<Boolean> interr;
+	private final Function<EncS<P>,Situation<P>> dec;
+	private final Function<Situation<P>,EncS<P>> enc;
+
+	/** Indice delle situazioni enumerate */
+	private final SitIndex index;
+	/** Archi verso le prossime situazioni: quelli della situazione i vanno da succ_start[i] a succ_start[i+1] */
+	private IntList succ_start, succ;
+	/** Numero di situazioni espanse */
+	private long nodes;
+
+	/** Crea un risolutore per il gioco con le simmetrie date
+	 * @param sym simmetrie del gioco
+	 * @param parallel se true l'enumerazione delle situazioni sfrutta il parallelismo
+	 * @param interr supplier di interrupt (può essere null)
+	 */
+	RetrogradeSolver(Symmetries<P> sym, boolean parallel, Supplier<Boolean> interr)
+	{
+		Mechanics<P> gM = sym.mechanics();
+
+		this.gM = gM;
+		this.parallel = parallel;
+		this.interr = interr;
+		this.dec = e -> e.decode(gM);
+		this.enc = s -> new EncS<>(sym, s);
+		this.index = new SitIndex(SitPacker.words(gM));
+	}
+
+	/** Calcola i valori di tutte le situazioni raggiungibili dalla situazione iniziale.
+	 * @return la tabella con i valori delle situazioni
+	 * @throws NullPointerException in caso di interruzione
+	 * @throws OutOfMemoryError se le situazioni sono troppe per la tabella
+	 */
+	TranspositionTable solve()
+	{
+		this.enumerate();
+
+		byte[] values = this.propagate();
+
+		int n = this.index.size();
+		long capacity = Math.max(16, n+(n >>> 1)+1L);
+		if( capacity > TranspositionTable.maxCapacity(this.index.words) )
+			throw new OutOfMemoryError();
+
+		TranspositionTable table = new TranspositionTable(this.index.words, (int)capacity);
+		long[] ext = this.index.words > 1 ? new long[this.index.words-1] : null;
+		Winner[] winners = Winner.values();
+
+		for( int i=0 ; i<n ; i++ )
+			table.put(this.index.key(i, ext), ext, winners[values[i]]);
+
+		return table;
+	}
+
+	/** Enumera le situazioni raggiungibili livello per livello e memorizza gli archi.
+	 * Le situazioni di un livello hanno indici consecutivi, quindi gli archi sono
+	 * aggiunti nell'ordine degli indici delle situazioni di partenza.
+	 * @throws NullPointerException in caso di interruzione
+	 */
+	private void enumerate()
+	{
+		// Per ogni situazione espansa, le prossime situazioni codificate
+		Map<EncS<P>,List<EncS<P>>> children = new ConcurrentHashMap<>();
+		Next<P> recording = s -> {
+			Map<Move<P>,Situation<P>> next = this.gM.next.get(s);
+			List<EncS<P>> list = new ArrayList<>(next.size());
+
+			for( Situation<P> ns : next.values() )
+				list.add(this.enc.apply(ns));
+
+			children.put(this.enc.apply(s), list);
+			return next;
+		};
+
+		this.succ_start = new IntList();
+		this.succ = new IntList();
+
+		List<EncS<P>> level = new ArrayList<>();
+		level.add(this.enc.apply(this.gM.start));
+		this.index.add(level.get(0));
+
+		while( !level.isEmpty() )
+		{
+			this.check_interrupt();
+
+			// Solo le situazioni non finali hanno prossime situazioni
+			Set<EncS<P>> expand = new HashSet<>();
+			for( EncS<P> e : level )
+				if( SitPacker.turn(this.gM, e.encoded) > 0 )
+					expand.add(e);
+
+			List<EncS<P>> next_level = new ArrayList<>();
+			this.nodes += expand.size();
+
+			if( !expand.isEmpty() )
+			{
+				NSResult<EncS<P>> result = Probe.nextSituations(this.parallel, recording, this.dec, this.enc, expand);
+
+				if( result == null )
+					throw new NullPointerException();
+
+				for( EncS<P> e : result.next )
+					if( this.index.add(e) )
+						next_level.add(e);
+			}
+
+			for( EncS<P> e : level )
+			{
+				this.succ_start.add(this.succ.size());
+
+				List<EncS<P>> list = children.remove(e);
+				if( list != null )
+					for( EncS<P> c : list )
+						this.succ.add(this.index.get(c));
+			}
+
+			level = next_level;
+		}
+
+		this.succ_start.add(this.succ.size());
+	}
+
+	/** Propaga i valori all'indietro dalle situazioni finali.
+	 * @return per ogni situazione l'ordinale del suo {@link Winner}
+	 * @throws NullPointerException in caso di interruzione
+	 */
+	private byte[] propagate()
+	{
+		int n = this.index.size();
+		int[] start = this.succ_start.array(), edges = this.succ.array();
+
+		// Archi inversi: le situazioni che precedono i vanno da pred_start[i] a pred_start[i+1]
+		int[] pred_start = new int[n+1];
+		for( int k=0 ; k<this.succ.size() ; k++ )
+			pred_start[edges[k]+1]++;
+		for( int i=0 ; i<n ; i++ )
+			pred_start[i+1] += pred_start[i];
+
+		int[] pred = new int[this.succ.size()], fill = Arrays.copyOf(pred_start, n);
+		for( int i=0 ; i<n ; i++ )
+			for( int k=start[i] ; k<start[i+1] ; k++ )
+				pred[fill[edges[k]]++] = i;
+		fill = null;
+
+		this.check_interrupt();
+
+		// Numero di prossime situazioni senza valore, turni e valori
+		int[] count = new int[n], queue = new int[n];
+		byte[] turn = new byte[n], values = new byte[n];
+		int head = 0, tail = 0;
+		Winner[] winners = Winner.values();
+		long[] ext = this.index.words > 1 ? new long[this.index.words-1] : null;
+
+		for( int i=0 ; i<n ; i++ )
+		{
+			int t = SitPacker.turn(this.gM, this.index.key(i, ext));
+
+			turn[i] = (byte)t;
+			count[i] = start[i+1] - start[i];
+			values[i] = UNKNOWN;
+
+			if( t <= 0 )
+			{
+				values[i] = (byte)final_winner(t).ordinal();
+				queue[tail++] = i;
+			}
+		}
+
+		while( head < tail )
+		{
+			if( (head & 0xFFFF) == 0 )
+				this.check_interrupt();
+
+			int c = queue[head++];
+			Winner w = winners[values[c]];
+
+			for( int k=pred_start[c] ; k<pred_start[c+1] ; k++ )
+			{
+				int p = pred[k];
+
+				if( values[p] >= 0 )
+					continue;
+
+				Winner mover = turn[p]==1 ? Winner.PLAYER_A : Winner.PLAYER_B;
+
+				if( w == mover )
+				{
+					values[p] = (byte)mover.ordinal();
+					queue[tail++] = p;
+				}
+				else
+				{
+					if( w == Winner.NONE )
+						values[p] = DRAW_SEEN;
+
+					if( --count[p] == 0 )
+					{
+						values[p] = (byte)(values[p] == DRAW_SEEN ? Winner.NONE : (turn[p]==1 ? Winner.PLAYER_B : Winner.PLAYER_A)).ordinal();
+						queue[tail++] = p;
+					}
+				}
+			}
+		}
+
+		// Situazioni in un ciclo senza esito forzato
+		for( int i=0 ; i<n ; i++ )
+			if( values[i] < 0 )
+				values[i] = (byte)Winner.NONE.ordinal();
+
+		return values;
+	}
+
+	/** @return il numero di situazioni espanse, cioè di cui sono state generate le
+	 * prossime situazioni, anche se il calcolo è stato interrotto */
+	long nodes() { return this.nodes; }
+
+	/** @throws NullPointerException se il calcolo è stato interrotto */
+	private void check_interrupt()
+	{
+		if( Thread.currentThread().isInterrupted() || (this.interr!=null && this.interr.get()) )
+			throw new NullPointerException();
+	}
+
+	/** Ritorna il vincitore di una situazione finale
+	 * @param turn turno di una situazione finale
+	 * @return il vincitore */
+	private static Winner final_winner(int turn)
+	{
+		switch(turn)
+		{
+			case -1: return Winner.PLAYER_A;
+			case -2: return Winner.PLAYER_B;
+			default: return Winner.NONE;
+		}
+	}
+
+	/** Lista di interi ridimensionabile */
+	private static final class IntList
+	{
+		private int[] data = new int[1024];
+		private int size = 0;
+
+		void add(int v)
+		{
+			if( this.size == this.data.length )
+			{
+				if( this.size == Integer.MAX_VALUE-8 )
+					throw new OutOfMemoryError();
+
+				this.data = Arrays.copyOf(this.data, (int)Math.min(Integer.MAX_VALUE-8, 2L*this.size));
+			}
+
+			this.data[this.size++] = v;
+		}
+
+		int size() { return this.size; }
+
+		/** @return l'array interno (valido fino a size) */
+		int[] array() { return this.data; }
+	}
+
+	/** Indice delle situazioni codificate: assegna a ogni situazione un intero
+	 * progressivo e mantiene le codifiche in un unico array di long, con una tabella
+	 * a indirizzamento aperto per la ricerca. */
+	private static final class SitIndex
+	{
+		/** Numero di long di una codifica */
+		final int words;
+
+		/** Codifiche, la situazione i occupa i long da i*words a (i+1)*words */
+		private long[] keys;
+		/** Tabella a indirizzamento aperto degli indici + 1 (0 indica uno slot vuoto) */
+		private int[] slots;
+		private int size = 0;
+
+		SitIndex(int words)
+		{
+			this.words = words;
+			this.keys = new long[1024*words];
+			this.slots = new int[2048];
+		}
+
+		int size() { return this.size; }
+
+		/** Aggiunge una situazione se non è presente
+		 * @return true se la situazione è stata aggiunta */
+		boolean add(EncS<?> e)
+		{
+			if( this.find(e) >= 0 )
+				return false;
+
+			if( 2L*(this.size+1) > this.slots.length )
+				this.rehash();
+
+			if( (long)(this.size+1)*this.words > this.keys.length )
+			{
+				if( this.keys.length == Integer.MAX_VALUE-8 )
+					throw new OutOfMemoryError();
+
+				this.keys = Arrays.copyOf(this.keys, (int)Math.min(Integer.MAX_VALUE-8, 2L*this.keys.length));
+			}
+
+			int base = this.size*this.words;
+			this.keys[base] = e.encoded;
+			for( int k=1 ; k<this.words ; k++ )
+				this.keys[base+k] = e.encoded_ext[k-1];
+
+			this.insert(this.size);
+			this.size++;
+
+			return true;
+		}
+
+		/** @return l'indice della situazione (deve essere presente) */
+		int get(EncS<?> e) { return this.find(e); }
+
+		/** Copia in ext i long della codifica della situazione i successivi al primo
+		 * @return il primo long della codifica */
+		long key(int i, long[] ext)
+		{
+			int base = i*this.words;
+
+			for( int k=1 ; k<this.words ; k++ )
+				ext[k-1] = this.keys[base+k];
+
+			return this.keys[base];
+		}
+
+		/** @return l'indice della situazione o -1 se non c'è */
+		private int find(EncS<?> e)
+		{
+			int mask = this.slots.length-1;
+
+			for( int j=this.hash(e.encoded, e.encoded_ext, 0) & mask ; this.slots[j] != 0 ; j=(j+1) & mask )
+			{
+				int i = this.slots[j]-1, base = i*this.words;
+				boolean eq = this.keys[base] == e.encoded;
+
+				for( int k=1 ; eq && k<this.words ; k++ )
+					eq = this.keys[base+k] == e.encoded_ext[k-1];
+
+				if( eq )
+					return i;
+			}
+
+			return -1;
+		}
+
+		/** Inserisce nella tabella l'indice di una situazione già presente in keys */
+		private void insert(int i)
+		{
+			int mask = this.slots.length-1, j = this.hash(this.keys[i*this.words], this.keys, i*this.words+1) & mask;
+
+			while( this.slots[j] != 0 )
+				j = (j+1) & mask;
+
+			this.slots[j] = i+1;
+		}
+
+		private void rehash()
+		{
+			if( this.slots.length >= (1 << 30) )
+				throw new OutOfMemoryError();
+
+			this.slots = new int[this.slots.length*2];
+
+			for( int i=0 ; i<this.size ; i++ )
+				this.insert(i);
+		}
+
+		/** @return l'hash della codifica con primo long first e gli altri in ext a partire da off */
+		private int hash(long first, long[] ext, int off)
+		{
+			long h = first * 0x9E3779B97F4A7C15L;
+
+			for( int k=1 ; k<this.words ; k++ )
+				h = (h ^ ext[off+k-1]) * 0x9E3779B97F4A7C15L;
+
+			h ^= h >>> 33;
+			h *= 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+
+			return (int)h;
+		}
+	}
+}
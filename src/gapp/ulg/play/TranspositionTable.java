@@ -0,0 +1,345 @@
+package gapp.ulg.play;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gapp.ulg.game.util.SitPacker;
+import gapp.ulg.play.OptimalStrategy.Winner;
+
+/** Tabella delle trasposizioni usata per calcolare e mantenere le strategie ottimali.
+ * <br>
+ * La tabella è un array di slot, di capacità fissa (potenza di 2), in memoria
+ * off-heap (un {@link ByteBuffer} diretto) con indirizzamento aperto e scansione
+ * lineare. Le chiavi sono le codifiche a bit impacchettati di {@link SitPacker}
+ * ({@link TranspositionTable#words} long per chiave). Ogni slot è formato da un long
+ * di controllo, che contiene lo stato dello slot e il {@link Winner} in 2 bit,
+ * seguito dai long della chiave. I long sono sempre little-endian, così gli slot
+ * possono essere scritti su file e poi usati direttamente da un buffer mappato in
+ * memoria (vedi {@link TranspositionTable#view(ByteBuffer, int, int, int)}).
+ * <br>
+ * Gli inserimenti sono lock-free: uno slot vuoto è riservato con un CAS sul long di
+ * controllo, poi è scritta la chiave e infine è pubblicato il valore. Quindi la
+ * tabella può essere usata da più thread contemporaneamente. Se la tabella si
+ * riempie oltre il fattore di carico massimo è lanciata {@link TranspositionTable.FullException}. */
+public final class TranspositionTable
+{
+	/** Eccezione lanciata quando la tabella è piena, così chi la usa può ricominciare
+	 * con una tabella più grande senza confonderla con altri errori */
+	@SuppressWarnings("serial")
+	public static final class FullException extends IllegalStateException
+	{
+		public FullException() { super("Transposition table full"); }
+	}
+
+	/** Capacità iniziale di default (numero di slot) */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** Stato di uno slot vuoto */
+	private static final long EMPTY = 0;
+	/** Stato di uno slot riservato di cui si sta scrivendo la chiave */
+	private static final long BUSY = 1;
+	/** Stato di uno slot con chiave e valore validi (il valore è nei 2 bit successivi) */
+	private static final long READY = 2;
+
+	/** Ordine dei byte dei long degli slot */
+	public static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** Accesso atomico ai long del buffer */
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+
+	private static final Winner[] WINNERS = Winner.values();
+
+	/** Numero di long di una chiave */
+	public final int words;
+	/** Numero di slot */
+	public final int capacity;
+
+	/** Numero massimo di chiavi inseribili */
+	private final int max_size;
+	/** Numero di long di uno slot */
+	private final int stride;
+	/** Memoria della tabella */
+	private final ByteBuffer buf;
+	/** Numero di chiavi inserite */
+	private final AtomicInteger size;
+
+	/** Crea una tabella vuota.
+	 * @param words  numero di long di una chiave (vedi {@link SitPacker#words})
+	 * @param capacity  numero minimo di slot (è arrotondato alla potenza di 2 successiva)
+	 * @throws IllegalArgumentException se words <= 0, capacity <= 0 o
+	 * capacity > {@link TranspositionTable#maxCapacity(int)} */
+	public TranspositionTable(int words, int capacity)
+	{
+		if( words <= 0 || capacity <= 0 || capacity > maxCapacity(words) )
+			throw new IllegalArgumentException();
+
+		this.words = words;
+		this.stride = words+1;
+		this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity-1) << 1;
+		this.max_size = this.capacity - (this.capacity >>> 2);
+		this.size = new AtomicInteger();
+
+		// Il buffer è allineato a 8 byte per poter usare il CAS sui long
+		int bytes = 8*this.stride*this.capacity;
+		this.buf = ByteBuffer.allocateDirect(bytes+8).alignedSlice(8).limit(bytes).slice().order(ORDER);
+	}
+
+	/** Crea una tabella che usa direttamente gli slot contenuti nel buffer dato */
+	private TranspositionTable(ByteBuffer slots, int words, int capacity, int size)
+	{
+		this.words = words;
+		this.stride = words+1;
+		this.capacity = capacity;
+		this.max_size = this.capacity - (this.capacity >>> 2);
+		this.size = new AtomicInteger(size);
+		this.buf = slots;
+	}
+
+	/** Ritorna una tabella che usa come slot direttamente il contenuto del buffer
+	 * dato, senza copiarlo, ad esempio un buffer mappato su un file scritto con
+	 * {@link TranspositionTable#writeSlots(WritableByteChannel)}. Se il buffer è in
+	 * sola lettura, anche la tabella lo è.
+	 * @param slots  buffer con gli slot, dalla posizione al limite
+	 * @param words  numero di long di una chiave
+	 * @param capacity  numero di slot
+	 * @param size  numero di chiavi presenti negli slot
+	 * @return la tabella
+	 * @throws IllegalArgumentException se i parametri non sono coerenti con il
+	 * contenuto del buffer o se gli slot non sono allineati a 8 byte */
+	public static TranspositionTable view(ByteBuffer slots, int words, int capacity, int size)
+	{
+		if( words <= 0 || capacity <= 0 || Integer.bitCount(capacity) != 1 || capacity > maxCapacity(words) ||
+			size < 0 || size > capacity || slots.remaining() != 8L*(words+1)*capacity || slots.alignmentOffset(slots.position(), 8) != 0 )
+			throw new IllegalArgumentException();
+
+		return new TranspositionTable(slots.slice().order(ORDER), words, capacity, size);
+	}
+
+	/** Ritorna il massimo numero di slot di una tabella con chiavi di words long,
+	 * limitato dalla dimensione massima di un {@link ByteBuffer}.
+	 * @param words  numero di long di una chiave
+	 * @return il massimo numero di slot (una potenza di 2) */
+	public static int maxCapacity(int words)
+	{
+		return Integer.highestOneBit((Integer.MAX_VALUE-8) / (8*(words+1)));
+	}
+
+	/** @return il numero di chiavi nella tabella */
+	public int size() { return this.size.get(); }
+
+	/** Ritorna il valore associato alla chiave data.
+	 * @param first  primo long della chiave
+	 * @param ext  long successivi al primo (null se words == 1)
+	 * @return il valore associato alla chiave o null se la chiave non c'è */
+	public Winner get(long first, long[] ext)
+	{
+		int mask = this.capacity-1;
+
+		for( int i=hash(first, ext) & mask, n=0 ; n<this.capacity ; i=(i+1) & mask, n++ )
+		{
+			int base = i*this.stride*8;
+			long c = this.control(base);
+
+			if( c == EMPTY )
+				return null;
+
+			if( this.keyEquals(base, first, ext) )
+				return WINNERS[(int)(c >>> 2)];
+		}
+
+		return null;
+	}
+
+	/** Associa il valore dato alla chiave data, sostituendo l'eventuale valore
+	 * precedente.
+	 * @param first  primo long della chiave
+	 * @param ext  long successivi al primo (null se words == 1)
+	 * @param w  il valore
+	 * @throws FullException se la tabella è piena
+	 * @throws java.nio.ReadOnlyBufferException se la tabella è in sola lettura */
+	public void put(long first, long[] ext, Winner w)
+	{
+		int mask = this.capacity-1;
+		long value = READY | ((long)w.ordinal() << 2);
+
+		for( int i=hash(first, ext) & mask, n=0 ; n<this.capacity ; i=(i+1) & mask, n++ )
+		{
+			int base = i*this.stride*8;
+			long c = (long)LONGS.getAcquire(this.buf, base);
+
+			if( c == EMPTY )
+			{
+				if( this.size.incrementAndGet() > this.max_size )
+				{
+					this.size.decrementAndGet();
+					throw new FullException();
+				}
+
+				if( LONGS.compareAndSet(this.buf, base, EMPTY, BUSY) )
+				{
+					this.buf.putLong(base+8, first);
+					for( int k=1 ; k<this.words ; k++ )
+						this.buf.putLong(base+8+8*k, ext[k-1]);
+
+					LONGS.setRelease(this.buf, base, value);
+					return;
+				}
+
+				// Un altro thread ha riservato lo slot, potrebbe essere la stessa chiave
+				this.size.decrementAndGet();
+				c = this.control(base);
+			}
+			else if( c == BUSY )
+				c = this.control(base);
+
+			if( this.keyEquals(base, first, ext) )
+			{
+				LONGS.setRelease(this.buf, base, value);
+				return;
+			}
+		}
+
+		throw new FullException();
+	}
+
+	/** Funzione che riceve le entrate di una tabella */
+	@FunctionalInterface
+	public interface Visitor
+	{
+		/** @param first  primo long della chiave
+		 * @param ext  long successivi al primo (array riusato tra le chiamate, null se words == 1)
+		 * @param w  il valore associato alla chiave */
+		void visit(long first, long[] ext, Winner w);
+	}
+
+	/** Visita tutte le entrate della tabella. Non deve essere invocato mentre altri
+	 * thread inseriscono chiavi.
+	 * @param v  la funzione che riceve le entrate */
+	public void forEach(Visitor v)
+	{
+		long[] ext = this.words > 1 ? new long[this.words-1] : null;
+
+		for( int i=0 ; i<this.capacity ; i++ )
+		{
+			int base = i*this.stride*8;
+			long c = this.buf.getLong(base);
+
+			if( c == EMPTY )
+				continue;
+
+			for( int k=1 ; k<this.words ; k++ )
+				ext[k-1] = this.buf.getLong(base+8+8*k);
+
+			v.visit(this.buf.getLong(base+8), ext, WINNERS[(int)(c >>> 2)]);
+		}
+	}
+
+	/** Ritorna una copia di questa tabella con il numero minimo di slot necessari a
+	 * mantenere le chiavi presenti. Utile per mantenere in memoria una strategia
+	 * calcolata con una tabella molto grande.
+	 * @return una copia compatta della tabella */
+	public TranspositionTable compact()
+	{
+		TranspositionTable t = new TranspositionTable(this.words, Math.max(16, this.size()+(this.size() >>> 1)+1));
+
+		this.forEach(t::put);
+
+		return t;
+	}
+
+	/** Scrive tutti gli slot della tabella, così come sono in memoria, nel canale
+	 * dato. Non deve essere invocato mentre altri thread inseriscono chiavi.
+	 * @param out  dove scrivere
+	 * @throws IOException in caso di errori di scrittura */
+	public void writeSlots(WritableByteChannel out) throws IOException
+	{
+		ByteBuffer b = this.buf.duplicate();
+
+		b.clear();
+		while( b.hasRemaining() )
+			out.write(b);
+	}
+
+	/** Una tabella è uguale a x se x è una tabella con le stesse entrate */
+	@Override
+	public boolean equals(Object x)
+	{
+		if( x == this )
+			return true;
+
+		if( x!=null && this.getClass() == x.getClass() )
+		{
+			TranspositionTable other = (TranspositionTable)x;
+
+			if( this.words != other.words || this.size() != other.size() )
+				return false;
+
+			boolean[] eq = { true };
+			this.forEach( (first, ext, w) -> {
+				if( eq[0] && other.get(first, ext) != w )
+					eq[0] = false;
+			});
+
+			return eq[0];
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int[] h = { 0 };
+
+		this.forEach( (first, ext, w) -> h[0] += hash(first, ext) ^ w.ordinal() );
+
+		return h[0];
+	}
+
+	/** Legge il long di controllo dello slot che inizia in base, aspettando che la
+	 * chiave sia scritta se lo slot è stato appena riservato */
+	private long control(int base)
+	{
+		long c;
+
+		while( (c = (long)LONGS.getAcquire(this.buf, base)) == BUSY )
+			Thread.onSpinWait();
+
+		return c;
+	}
+
+	/** @return true se la chiave dello slot che inizia in base è uguale a quella data */
+	private boolean keyEquals(int base, long first, long[] ext)
+	{
+		if( this.buf.getLong(base+8) != first )
+			return false;
+
+		for( int k=1 ; k<this.words ; k++ )
+			if( this.buf.getLong(base+8+8*k) != ext[k-1] )
+				return false;
+
+		return true;
+	}
+
+	/** @return l'hash di una chiave */
+	private static int hash(long first, long[] ext)
+	{
+		long h = first * 0x9E3779B97F4A7C15L;
+
+		if( ext != null )
+			for( long e : ext )
+				h = (h ^ e) * 0x9E3779B97F4A7C15L;
+
+		// Mescola i bit alti in quelli bassi, che sono quelli usati per l'indice
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+
+		return (int)h;
+	}
+}
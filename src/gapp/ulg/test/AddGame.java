@@ -19,6 +19,7 @@ import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 /**
  * GameRuler per giocare a Add Game.
@@ -67,6 +68,8 @@ public class AddGame implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
     
     /** Board di Add Game */
 	private final BoardOct<PieceModel<Species>> board;
@@ -108,6 +111,10 @@ public class AddGame implements GameRuler<PieceModel<Species>>
     	
     	// Definisco la meccanica del gioco (non è necessario inserire la funzione next)
     	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, null);
+    	
+    	// La chiave di Zobrist dei pezzi è mantenuta dalla board
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	this.board.setZobrist(this.zobrist);
     }
     
     /**
@@ -133,6 +140,7 @@ public class AddGame implements GameRuler<PieceModel<Species>>
     	
     	this.start_situation = ch.start_situation;
     	this.mechanics = ch.mechanics;
+    	this.zobrist = ch.zobrist;
     }
     
     @Override
@@ -254,7 +262,7 @@ public class AddGame implements GameRuler<PieceModel<Species>>
 			    			    	}
 		    			    	}
 		    			    	
-		    			    	this.board.put(board.get(p), new Pos(b,t));
+		    			    	this.board.put(board.get(p), Pos.of(b,t));
 		    			    	this.board.remove(p);
 		    				}
 		    			}
@@ -346,6 +354,9 @@ public class AddGame implements GameRuler<PieceModel<Species>>
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
+    @Override
+    public long zobristKey() { return this.board.zobristKey() ^ this.zobrist.turn(this); }
+    
     /**
      * Ritorna l'oggetto {@code Situation} relativo allo stato attuale del gioco
      * @return l'oggetto {@code Situation} relativo allo stato attuale del gioco
@@ -0,0 +1,335 @@
+package gapp.ulg.test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Misuratore minimale di benchmark sul modello di JMH, per i benchmark che si
+ * eseguono con un main (vedi {@link EngineBench}).
+ * <br>
+ * Ogni benchmark è eseguito prima per alcune iterazioni di riscaldamento, i cui
+ * risultati sono scartati, e poi per alcune iterazioni misurate. Il punteggio è la
+ * media delle iterazioni misurate e l'errore è la metà dell'intervallo di
+ * confidenza al 99.9%, come in JMH. Il valore ritornato da ogni operazione è
+ * scritto in un campo volatile, così che il JIT non possa eliminarne il calcolo.
+ * <br>
+ * I risultati sono scritti in un file JSON con la stessa struttura di quello
+ * prodotto da JMH con {@code -rf json}, così possono essere confrontati tra
+ * esecuzioni diverse con gli stessi strumenti.
+ */
+public class Bench
+{
+	/** Un'operazione da misurare */
+	@FunctionalInterface
+	public interface Op
+	{
+		/** Esegue l'operazione una volta
+		 * @return un risultato dell'operazione (può essere null)
+		 * @throws Exception se l'operazione fallisce */
+		Object run() throws Exception;
+	}
+
+	/** Il risultato di un benchmark */
+	public static final class Result
+	{
+		/** Nome del benchmark */
+		public final String benchmark;
+		/** Modalità, come in JMH: "thrpt" (operazioni al secondo) o "ss" (tempo di una singola esecuzione) */
+		public final String mode;
+		/** Unità di misura del punteggio */
+		public final String unit;
+		/** Parametri del benchmark */
+		public final Map<String,String> params;
+		/** Valori delle iterazioni misurate */
+		public final double[] raw;
+		/** Metriche secondarie (nome e valore): in byte se il nome termina con ".bytes",
+		 * altrimenti adimensionali */
+		public final Map<String,Double> secondary;
+		/** Numero di iterazioni di riscaldamento */
+		final int warmup;
+		/** Durata di un'iterazione, "single-shot" se ogni iterazione è un'esecuzione */
+		final String time;
+
+		private Result(String benchmark, String mode, String unit, Map<String,String> params, double[] raw, int warmup, String time)
+		{
+			this.benchmark = benchmark;
+			this.mode = mode;
+			this.unit = unit;
+			this.params = params;
+			this.raw = raw;
+			this.secondary = new LinkedHashMap<>();
+			this.warmup = warmup;
+			this.time = time;
+		}
+
+		/** @return la media dei valori misurati */
+		public double score()
+		{
+			double s = 0;
+			for( double v : this.raw )
+				s += v;
+
+			return s / this.raw.length;
+		}
+
+		/** @return la metà dell'intervallo di confidenza al 99.9% del punteggio, NaN se c'è un solo valore */
+		public double error()
+		{
+			int n = this.raw.length;
+			if( n < 2 )
+				return Double.NaN;
+
+			double mean = this.score(), var = 0;
+			for( double v : this.raw )
+				var += (v-mean)*(v-mean);
+
+			return student(n-1) * Math.sqrt(var/(n-1)) / Math.sqrt(n);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.ROOT, "%-40s %-28s %6s %14.3f ± %10.3f %s", this.benchmark, this.params.values(), this.mode, this.score(), this.error(), this.unit);
+		}
+	}
+
+	/** Quantili 0.9995 della distribuzione t di Student con 1..10 gradi di libertà */
+	private static final double[] T_9995 = { 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587 };
+
+	/** Numero di iterazioni di riscaldamento e misurate */
+	private final int warmup, iterations;
+	/** Durata di un'iterazione in millisecondi */
+	private final long iteration_ms;
+	/** Risultati dei benchmark eseguiti */
+	private final List<Result> results = new ArrayList<>();
+	/** Destinazione dei valori ritornati dalle operazioni */
+	private volatile Object sink;
+
+	/** Crea un misuratore
+	 * @param warmup numero di iterazioni di riscaldamento
+	 * @param iterations numero di iterazioni misurate (almeno 1)
+	 * @param iteration_ms durata di un'iterazione in millisecondi
+	 */
+	public Bench(int warmup, int iterations, long iteration_ms)
+	{
+		if( warmup < 0 || iterations < 1 || iteration_ms <= 0 )
+			throw new IllegalArgumentException();
+
+		this.warmup = warmup;
+		this.iterations = iterations;
+		this.iteration_ms = iteration_ms;
+	}
+
+	/** Misura il numero di operazioni al secondo (modalità "thrpt"). Durante ogni
+	 * iterazione l'operazione è eseguita a gruppi sempre più grandi, finché un gruppo
+	 * richiede almeno un millisecondo, così che la lettura del tempo non pesi sulla
+	 * misura delle operazioni brevi.
+	 * @param name nome del benchmark
+	 * @param params parametri del benchmark
+	 * @param op l'operazione
+	 * @return il risultato, che è anche aggiunto a quelli del misuratore
+	 * @throws Exception se l'operazione fallisce
+	 */
+	public Result throughput(String name, Map<String,String> params, Op op) throws Exception
+	{
+		double[] raw = new double[this.iterations];
+
+		for( int it=-this.warmup ; it<this.iterations ; it++ )
+		{
+			long ops = 0, batch = 1, start = System.nanoTime(), end = start + this.iteration_ms*1000000L, now = start;
+
+			while( now < end )
+			{
+				long b0 = now;
+				for( long i=0 ; i<batch ; i++ )
+					this.sink = op.run();
+
+				ops += batch;
+				now = System.nanoTime();
+
+				if( now-b0 < 1000000L )
+					batch <<= 1;
+			}
+
+			if( it >= 0 )
+				raw[it] = ops * 1e9 / (now-start);
+		}
+
+		return this.add(new Result(name, "thrpt", "ops/s", params, raw, this.warmup, this.iteration_ms+" ms"));
+	}
+
+	/** Misura il tempo di singole esecuzioni dell'operazione (modalità "ss"), in
+	 * millisecondi. È adatta alle operazioni lunghe, come il calcolo di una mossa:
+	 * le iterazioni sono esecuzioni dell'operazione e la durata delle iterazioni non
+	 * è usata.
+	 * @param name nome del benchmark
+	 * @param params parametri del benchmark
+	 * @param setup operazione eseguita prima di ogni esecuzione e non misurata (può essere null)
+	 * @param op l'operazione
+	 * @return il risultato, che è anche aggiunto a quelli del misuratore
+	 * @throws Exception se l'operazione fallisce
+	 */
+	public Result singleShot(String name, Map<String,String> params, Op setup, Op op) throws Exception
+	{
+		return this.singleShot(name, params, this.warmup, this.iterations, setup, op);
+	}
+
+	/** Come {@link Bench#singleShot(String, Map, Op, Op)} ma con un numero di
+	 * iterazioni dato, per le operazioni troppo lunghe per quello del misuratore.
+	 * @param name nome del benchmark
+	 * @param params parametri del benchmark
+	 * @param warmup numero di esecuzioni di riscaldamento
+	 * @param iterations numero di esecuzioni misurate (almeno 1)
+	 * @param setup operazione eseguita prima di ogni esecuzione e non misurata (può essere null)
+	 * @param op l'operazione
+	 * @return il risultato, che è anche aggiunto a quelli del misuratore
+	 * @throws Exception se l'operazione fallisce
+	 */
+	public Result singleShot(String name, Map<String,String> params, int warmup, int iterations, Op setup, Op op) throws Exception
+	{
+		if( warmup < 0 || iterations < 1 )
+			throw new IllegalArgumentException();
+
+		double[] raw = new double[iterations];
+
+		for( int it=-warmup ; it<iterations ; it++ )
+		{
+			if( setup != null )
+				this.sink = setup.run();
+
+			long start = System.nanoTime();
+			this.sink = op.run();
+			long time = System.nanoTime() - start;
+
+			if( it >= 0 )
+				raw[it] = time / 1e6;
+		}
+
+		return this.add(new Result(name, "ss", "ms/op", params, raw, warmup, "single-shot"));
+	}
+
+	/** @return i risultati dei benchmark eseguiti, nell'ordine di esecuzione */
+	public List<Result> results() { return Collections.unmodifiableList(this.results); }
+
+	/** Scrive i risultati dei benchmark eseguiti in un file JSON con la struttura di
+	 * quello di JMH.
+	 * @param file il file
+	 * @throws IOException se la scrittura fallisce
+	 */
+	public void writeJson(Path file) throws IOException
+	{
+		try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8)) )
+		{
+			out.println("[");
+
+			for( int i=0 ; i<this.results.size() ; i++ )
+			{
+				Result r = this.results.get(i);
+				double score = r.score(), err = r.error();
+
+				out.println("    {");
+				out.println("        \"benchmark\" : " + str(r.benchmark) + ",");
+				out.println("        \"mode\" : " + str(r.mode) + ",");
+				out.println("        \"threads\" : 1,");
+				out.println("        \"forks\" : 1,");
+				out.println("        \"warmupIterations\" : " + r.warmup + ",");
+				out.println("        \"warmupTime\" : " + str(r.time) + ",");
+				out.println("        \"measurementIterations\" : " + r.raw.length + ",");
+				out.println("        \"measurementTime\" : " + str(r.time) + ",");
+				out.println("        \"params\" : " + map(r.params, true) + ",");
+				out.println("        \"primaryMetric\" : {");
+				out.println("            \"score\" : " + num(score) + ",");
+				out.println("            \"scoreError\" : " + num(err) + ",");
+				out.println("            \"scoreConfidence\" : [ " + num(score-err) + ", " + num(score+err) + " ],");
+				out.println("            \"scoreUnit\" : " + str(r.unit) + ",");
+
+				StringBuilder raw = new StringBuilder();
+				for( double v : r.raw )
+					raw.append(raw.length() == 0 ? "" : ", ").append(num(v));
+
+				out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+				out.println("        },");
+
+				Map<String,String> sec = new LinkedHashMap<>();
+				for( Map.Entry<String,Double> e : r.secondary.entrySet() )
+					sec.put(e.getKey(), "{ \"score\" : " + num(e.getValue()) + ", \"scoreError\" : \"NaN\", \"scoreUnit\" : " + str(e.getKey().endsWith(".bytes") ? "B" : "#") + " }");
+
+				out.println("        \"secondaryMetrics\" : " + map(sec, false));
+				out.println(i < this.results.size()-1 ? "    }," : "    }");
+			}
+
+			out.println("]");
+		}
+	}
+
+	/** Crea una mappa ordinata di parametri da coppie nome, valore
+	 * @param kv nomi e valori alternati
+	 * @return la mappa dei parametri
+	 */
+	public static Map<String,String> params(String... kv)
+	{
+		Map<String,String> m = new LinkedHashMap<>();
+
+		for( int i=0 ; i+1<kv.length ; i+=2 )
+			m.put(kv[i], kv[i+1]);
+
+		return Collections.unmodifiableMap(m);
+	}
+
+	private Result add(Result r)
+	{
+		this.results.add(r);
+		System.out.println(r);
+		return r;
+	}
+
+	/** @return il quantile 0.9995 della distribuzione t con df gradi di libertà (oltre 10 con l'espansione di Cornish-Fisher) */
+	private static double student(int df)
+	{
+		return df <= T_9995.length ? T_9995[df-1] : 3.2905 + 9.73/df + 26.1/((double)df*df);
+	}
+
+	/** @return la stringa JSON di s */
+	private static String str(String s)
+	{
+		StringBuilder b = new StringBuilder("\"");
+
+		for( char c : s.toCharArray() )
+		{
+			if( c == '"' || c == '\\' )
+				b.append('\\').append(c);
+			else if( c < 0x20 )
+				b.append(String.format("\\u%04x", (int)c));
+			else
+				b.append(c);
+		}
+
+		return b.append('"').toString();
+	}
+
+	/** @return il numero JSON di v, o la stringa "NaN" come in JMH */
+	private static String num(double v)
+	{
+		return Double.isNaN(v) || Double.isInfinite(v) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", v);
+	}
+
+	/** @return l'oggetto JSON della mappa, con i valori come stringhe JSON se quote è true */
+	private static String map(Map<String,String> m, boolean quote)
+	{
+		StringBuilder b = new StringBuilder("{");
+
+		for( Map.Entry<String,String> e : m.entrySet() )
+			b.append(b.length() == 1 ? " " : ", ").append(str(e.getKey())).append(" : ").append(quote ? str(e.getValue()) : e.getValue());
+
+		return b.append(m.isEmpty() ? "}" : " }").toString();
+	}
+}
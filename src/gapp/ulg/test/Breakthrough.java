@@ -20,6 +20,7 @@ import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 /**
  * GameRuler per giocare a Breakthrough.
@@ -61,6 +62,8 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
     
     /** Board di Breakthrough */
 	private final BoardOct<PieceModel<Species>> board;
@@ -108,10 +111,10 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
     	// Setta la board iniziale
     	for( int x=0 ; x<width ; x++ )
     	{
-    		this.board.put(this.white_pawn, new Pos(x, 0));
-    		this.board.put(this.white_pawn, new Pos(x, 1));
-    		this.board.put(this.black_pawn, new Pos(x, height-1));
-    		this.board.put(this.black_pawn, new Pos(x, height-2));
+    		this.board.put(this.white_pawn, Pos.of(x, 0));
+    		this.board.put(this.white_pawn, Pos.of(x, 1));
+    		this.board.put(this.black_pawn, Pos.of(x, height-1));
+    		this.board.put(this.black_pawn, Pos.of(x, height-2));
     	}
     	
     	// Inizia il bianco
@@ -123,6 +126,10 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
     	
     	// Definisco la meccanica del gioco (non è necessario inserire la funzione next)
     	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, null);
+    	
+    	// La chiave di Zobrist dei pezzi è mantenuta dalla board
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	this.board.setZobrist(this.zobrist);
     }
     
     /**
@@ -150,6 +157,7 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
     	
     	this.start_situation = br.start_situation;
     	this.mechanics = br.mechanics;
+    	this.zobrist = br.zobrist;
     }
     
     @Override
@@ -273,7 +281,7 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
 			    			    	}
 		    			    	}
 		    			    	
-		    			    	this.board.put(board.get(p), new Pos(b,t));
+		    			    	this.board.put(board.get(p), Pos.of(b,t));
 		    			    	this.board.remove(p);
 		    				}
 		    			}
@@ -406,6 +414,9 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
+    @Override
+    public long zobristKey() { return this.board.zobristKey() ^ this.zobrist.turn(this); }
+    
     /**
      * Ritorna l'oggetto {@code Situation} relativo allo stato attuale del gioco
      * @return l'oggetto {@code Situation} relativo allo stato attuale del gioco
@@ -436,7 +447,7 @@ public class Breakthrough implements GameRuler<PieceModel<Species>>
     	int row = this.current_turn==1 ? this.height-1 : 0;
     	for( int x=0 ; x<this.width ; x++ )
     	{
-    		piece = this.board.get(new Pos(x, row));
+    		piece = this.board.get(Pos.of(x, row));
     		if( piece!=null && piece.equals(this.ally_piece) )
     			return this.current_turn; // Vittoria -> Il giocatore attuale ha raggiunto la base avversaria
     	}
@@ -21,6 +21,7 @@ import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 
 /**
@@ -67,6 +68,8 @@ public class Camelot implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
     
 	/** Pedone nero */
     private final PieceModel<Species> black_pawn = new PieceModel<>(Species.PAWN, "nero");
@@ -87,81 +90,81 @@ public class Camelot implements GameRuler<PieceModel<Species>>
 	
 	/** Lista posizioni escluse */
 	private final List<Pos> exc_pos = Arrays.asList(
-			new Pos(0,2), // DOWN_L
-			new Pos(0,1), 
-			new Pos(1,1), 
-			new Pos(0,0), 
-			new Pos(1,0), 
-			new Pos(2,0), 
-			new Pos(3,0), 
-			new Pos(4,0), 
+			Pos.of(0,2), // DOWN_L
+			Pos.of(0,1), 
+			Pos.of(1,1), 
+			Pos.of(0,0), 
+			Pos.of(1,0), 
+			Pos.of(2,0), 
+			Pos.of(3,0), 
+			Pos.of(4,0), 
 			
-			new Pos(0,13), // UP_L
-			new Pos(0,14), 
-			new Pos(1,14), 
-			new Pos(0,15), 
-			new Pos(1,15), 
-			new Pos(2,15), 
-			new Pos(3,15), 
-			new Pos(4,15), 
+			Pos.of(0,13), // UP_L
+			Pos.of(0,14), 
+			Pos.of(1,14), 
+			Pos.of(0,15), 
+			Pos.of(1,15), 
+			Pos.of(2,15), 
+			Pos.of(3,15), 
+			Pos.of(4,15), 
 			
-			new Pos(11,2), // DOWN_R
-			new Pos(10,1), 
-			new Pos(11,1), 
-			new Pos(7,0), 
-			new Pos(8,0), 
-			new Pos(9,0), 
-			new Pos(10,0), 
-			new Pos(11,0), 
+			Pos.of(11,2), // DOWN_R
+			Pos.of(10,1), 
+			Pos.of(11,1), 
+			Pos.of(7,0), 
+			Pos.of(8,0), 
+			Pos.of(9,0), 
+			Pos.of(10,0), 
+			Pos.of(11,0), 
 			
-			new Pos(11,13), // UP_R
-			new Pos(10,14), 
-			new Pos(11,14), 
-			new Pos(7,15), 
-			new Pos(8,15), 
-			new Pos(9,15), 
-			new Pos(10,15), 
-			new Pos(11,15)
+			Pos.of(11,13), // UP_R
+			Pos.of(10,14), 
+			Pos.of(11,14), 
+			Pos.of(7,15), 
+			Pos.of(8,15), 
+			Pos.of(9,15), 
+			Pos.of(10,15), 
+			Pos.of(11,15)
 		);
 	/** Array posizioni pedoni neri */
 	private final Pos[] black_pawn_pos = {
-			new Pos(3,10), 
-			new Pos(4,10), 
-			new Pos(5,10), 
-			new Pos(6,10), 
-			new Pos(7,10), 
-			new Pos(8,10), 
-			new Pos(4,9), 
-			new Pos(5,9), 
-			new Pos(6,9), 
-			new Pos(7,9)
+			Pos.of(3,10), 
+			Pos.of(4,10), 
+			Pos.of(5,10), 
+			Pos.of(6,10), 
+			Pos.of(7,10), 
+			Pos.of(8,10), 
+			Pos.of(4,9), 
+			Pos.of(5,9), 
+			Pos.of(6,9), 
+			Pos.of(7,9)
 		};
 	/** Array posizioni cavalieri neri */
 	private final Pos[] black_knight_pos = {
-			new Pos(2,10), 
-			new Pos(9,10), 
-			new Pos(3,9), 
-			new Pos(8,9)
+			Pos.of(2,10), 
+			Pos.of(9,10), 
+			Pos.of(3,9), 
+			Pos.of(8,9)
 		};
 	/** Array posizioni pedoni bianchi */
 	private final Pos[] white_pawn_pos = {
-			new Pos(3,5), 
-			new Pos(4,5), 
-			new Pos(5,5), 
-			new Pos(6,5), 
-			new Pos(7,5), 
-			new Pos(8,5), 
-			new Pos(4,6), 
-			new Pos(5,6), 
-			new Pos(6,6), 
-			new Pos(7,6)
+			Pos.of(3,5), 
+			Pos.of(4,5), 
+			Pos.of(5,5), 
+			Pos.of(6,5), 
+			Pos.of(7,5), 
+			Pos.of(8,5), 
+			Pos.of(4,6), 
+			Pos.of(5,6), 
+			Pos.of(6,6), 
+			Pos.of(7,6)
 		};
 	/** Array posizioni cavalieri bianchi */
 	private final Pos[] white_knight_pos = {
-			new Pos(2,5), 
-			new Pos(9,5), 
-			new Pos(3,6), 
-			new Pos(8,6)
+			Pos.of(2,5), 
+			Pos.of(9,5), 
+			Pos.of(3,6), 
+			Pos.of(8,6)
 		};
     
     /** Stato corrente del gioco */
@@ -212,6 +215,10 @@ public class Camelot implements GameRuler<PieceModel<Species>>
     	
     	// Definisco la meccanica del gioco (FUNZIONE NEXT NON NECESSARIA)
     	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, null);
+    	
+    	// La chiave di Zobrist dei pezzi è mantenuta dalla board
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	this.board.setZobrist(this.zobrist);
     }
     
     /**
@@ -237,6 +244,7 @@ public class Camelot implements GameRuler<PieceModel<Species>>
     	
     	this.start_situation = ca.start_situation;
     	this.mechanics = ca.mechanics;
+    	this.zobrist = ca.zobrist;
     }
     
     @Override
@@ -355,7 +363,7 @@ public class Camelot implements GameRuler<PieceModel<Species>>
 			    			    	}
 		    			    	}
 		    			    	
-		    			    	this.board.put(board.get(p), new Pos(b,t));
+		    			    	this.board.put(board.get(p), Pos.of(b,t));
 		    			    	this.board.remove(p);
 		    				}
 		    			}
@@ -458,6 +466,9 @@ public class Camelot implements GameRuler<PieceModel<Species>>
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
+    @Override
+    public long zobristKey() { return this.board.zobristKey() ^ this.zobrist.turn(this); }
+    
     /**
      * Ritorna l'oggetto {@code Situation} relativo allo stato attuale del gioco
      * @return l'oggetto {@code Situation} relativo allo stato attuale del gioco
@@ -489,14 +500,14 @@ public class Camelot implements GameRuler<PieceModel<Species>>
     	if( this.current_turn==1 )
     	{
     		// Se ha appena mosso il bianco, controlla il castello nero
-    		castle1 = this.board.get(new Pos(5,15));
-    		castle2 = this.board.get(new Pos(6,15));
+    		castle1 = this.board.get(Pos.of(5,15));
+    		castle2 = this.board.get(Pos.of(6,15));
     	}
     	else
     	{
     		// Se ha appena mosso il nero, controlla il castello bianco
-    		castle1 = this.board.get(new Pos(5,0));
-    		castle2 = this.board.get(new Pos(6,0));
+    		castle1 = this.board.get(Pos.of(5,0));
+    		castle2 = this.board.get(Pos.of(6,0));
     	}
     	
     	if( castle1!=null && castle2!=null && castle1.color.equals(this.ally_color) && castle1.color.equals(this.ally_color) )
@@ -0,0 +1,181 @@
+package gapp.ulg.test;
+
+import gapp.ulg.game.GameFactory;
+import gapp.ulg.game.Param;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.GameRuler.Mechanics;
+import gapp.ulg.game.board.GameRuler.Situation;
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.PieceModel;
+import gapp.ulg.game.board.PieceModel.Species;
+import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.util.Probe.EncS;
+import gapp.ulg.games.MNKgameFactory;
+import gapp.ulg.games.OthelloFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark delle operazioni del motore di gioco più usate dai giocatori e dal
+ * risolutore: {@link GameRuler#validMoves()}, {@link GameRuler#move(Move)} seguito
+ * da {@link GameRuler#unMove()}, {@link GameRuler#copy()}, la funzione
+ * {@link Mechanics#next} e la codifica e decodifica con {@link EncS}. Sono eseguiti
+ * per Othello (6x6, 8x8, 10x10, 12x12), per alcuni m,n,k-game, per Camelot e per
+ * Breakthrough, in una situazione a metà partita ottenuta con mosse casuali da un
+ * seme fisso, così che le esecuzioni siano confrontabili.
+ * <br>
+ * Uso: {@code java gapp.ulg.test.EngineBench [file.json] [filtro]}, dove il file
+ * (default "engine-bench.json") riceve i risultati in formato JSON (vedi
+ * {@link Bench}) e il filtro, se c'è, limita i benchmark ai giochi il cui nome lo
+ * contiene. Le operazioni non supportate da un gioco (la meccanica, la sua
+ * funzione next o l'unMove) sono saltate. Le proprietà di sistema bench.warmup, bench.iterations e bench.time
+ * (in millisecondi) cambiano le iterazioni di riscaldamento, quelle misurate e la
+ * loro durata, che per default sono 3, 5 e 1000.
+ */
+public class EngineBench
+{
+	/** Seme delle mosse casuali che portano alla situazione misurata */
+	private static final long SEED = 20160701L;
+
+	public static void main(String... args) throws Exception
+	{
+		Path out = Paths.get(args.length > 0 ? args[0] : "engine-bench.json");
+		String filter = args.length > 1 ? args[1] : "";
+
+		Bench bench = new Bench(Integer.getInteger("bench.warmup", 3), Integer.getInteger("bench.iterations", 5), Long.getLong("bench.time", 1000));
+
+		for( Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>> gF : games() )
+		{
+			GameRuler<PieceModel<Species>> g = midGame(gF.get());
+
+			if( g.name().contains(filter) )
+				run(bench, g);
+		}
+
+		bench.writeJson(out);
+		System.out.println("Risultati scritti in " + out.toAbsolutePath());
+	}
+
+	/** @return le fabbriche dei giochi misurati, con i parametri impostati */
+	private static List<Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>>> games()
+	{
+		List<Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>>> games = new ArrayList<>();
+
+		for( String size : new String[] {"6x6", "8x8", "10x10", "12x12"} )
+			games.add( () -> factory(new OthelloFactory(), "Board", size) );
+
+		for( int[] mnk : new int[][] { {3,3,3}, {4,4,3}, {7,7,4}, {15,15,5}, {20,20,5} } )
+			games.add( () -> factory(new MNKgameFactory(), "M", mnk[0], "N", mnk[1], "K", mnk[2]) );
+
+		games.add( () -> factory(new CamelotFactory()) );
+		games.add( () -> factory(new BreakthroughFactory()) );
+
+		return games;
+	}
+
+	/** Esegue i benchmark per il gioco dato, nella sua situazione attuale */
+	private static void run(Bench bench, GameRuler<PieceModel<Species>> g) throws Exception
+	{
+		String cls = EngineBench.class.getName();
+		Map<String,String> params = Bench.params("game", g.name());
+
+		// Le mosse valide in ordine fisso, per move/unMove
+		List<Move<PieceModel<Species>>> moves = new ArrayList<>();
+		for( Move<PieceModel<Species>> m : g.validMoves() )
+			if( m.kind == Move.Kind.ACTION )
+				moves.add(m);
+		moves.sort(Comparator.comparing(Move::toString));
+
+		int[] next = {0};
+
+		bench.throughput(cls+".validMoves", params, g::validMoves);
+		if( unMoveWorks(g, moves.get(0)) )
+			bench.throughput(cls+".moveUnMove", params, () -> {
+				Move<PieceModel<Species>> m = moves.get(next[0]++ % moves.size());
+				g.move(m);
+				return g.unMove();
+			});
+		bench.throughput(cls+".copy", params, g::copy);
+
+		Mechanics<PieceModel<Species>> gM;
+		try
+		{
+			gM = g.mechanics();
+		}
+		catch( UnsupportedOperationException e ) { return; }
+
+		Situation<PieceModel<Species>> s = situation(g);
+		EncS<PieceModel<Species>> enc = new EncS<>(gM, s);
+
+		if( gM.next != null )
+			bench.throughput(cls+".next", params, () -> gM.next.get(s));
+		bench.throughput(cls+".encode", params, () -> new EncS<>(gM, s));
+		bench.throughput(cls+".decode", params, () -> enc.decode(gM));
+	}
+
+	/** Crea un gioco dalla fabbrica data e lo porta a metà partita con mosse casuali,
+	 * un quarto delle posizioni della board ma al più 30, senza terminarlo. Le mosse
+	 * sono fatte su copie, perché non tutti i giochi implementano l'unMove. */
+	private static GameRuler<PieceModel<Species>> midGame(GameFactory<? extends GameRuler<PieceModel<Species>>> gF)
+	{
+		gF.setPlayerNames("A", "B");
+		GameRuler<PieceModel<Species>> g = gF.newGame();
+
+		SplittableRandom rnd = new SplittableRandom(SEED);
+		int plies = Math.min(30, g.getBoard().positions().size()/4);
+
+		for( int i=0 ; i<plies ; i++ )
+		{
+			GameRuler<PieceModel<Species>> next = g.copy();
+			next.randomMove(rnd);
+
+			if( next.result() != -1 )
+				break;
+
+			g = next;
+		}
+
+		return g;
+	}
+
+	/** @return true se, su una copia del gioco, l'unMove dopo la mossa m ripristina la situazione */
+	private static boolean unMoveWorks(GameRuler<PieceModel<Species>> g, Move<PieceModel<Species>> m)
+	{
+		GameRuler<PieceModel<Species>> c = g.copy();
+
+		c.move(m);
+		c.unMove();
+
+		return c.result() == -1 && c.turn() == g.turn() && situation(c).newMap().equals(situation(g).newMap());
+	}
+
+	/** @return la situazione attuale del gioco */
+	private static Situation<PieceModel<Species>> situation(GameRuler<PieceModel<Species>> g)
+	{
+		Map<Pos,PieceModel<Species>> conf = new HashMap<>();
+
+		for( Pos p : g.getBoard().get() )
+			conf.put(p, g.getBoard().get(p));
+
+		return new Situation<>(conf, g.result() == -1 ? g.turn() : -g.result());
+	}
+
+	/** @return la fabbrica data con i parametri impostati a partire da coppie nome, valore */
+	static <F extends GameFactory<?>> F factory(F gF, Object... kv)
+	{
+		for( int i=0 ; i+1<kv.length ; i+=2 )
+			for( Param<?> p : gF.params() )
+				if( p.name().equals(kv[i]) )
+					p.set(kv[i+1]);
+
+		return gF;
+	}
+}
@@ -0,0 +1,213 @@
+package gapp.ulg.test;
+
+import gapp.ulg.game.GameFactory;
+import gapp.ulg.game.Param;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.PieceModel;
+import gapp.ulg.game.board.PieceModel.Species;
+import gapp.ulg.game.board.Player;
+import gapp.ulg.games.MNKgameFactory;
+import gapp.ulg.games.OthelloFactory;
+import gapp.ulg.play.MCTSPlayerFactory;
+import gapp.ulg.play.OptimalPlayerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark dei giocatori e del risolutore, complementari a quelli del motore di
+ * gioco di {@link EngineBench}:
+ * <pre>
+ *     - getMove: tempo di {@code MCTSPlayer.getMove()} per ogni valore del parametro
+ *       "Rollouts" e per ogni esecutore: sequenziale, commonPool, ForkJoinPool
+ *       limitato e ExecutorService limitato (vedi {@link Player#threads})
+ *     - tryCompute: tempo di {@code OptimalPlayerFactory.tryCompute}, picco dello
+ *       heap e situazioni espanse ({@code OptimalPlayerFactory.nodesVisited}), per
+ *       ogni valore del parametro "Execution", per gli m,n,k-game 3,3,3, 3,4,3 e
+ *       4,4,3 e per Othello6x6
+ *     - strategyMove: mosse al secondo di un {@code OptimalPlayer}, cioè la ricerca
+ *       nella strategia calcolata
+ * </pre>
+ * Il picco dello heap è la somma dei picchi delle aree di memoria dello heap dopo
+ * averli azzerati, quindi è un limite superiore del picco effettivo. Il calcolo
+ * della strategia che supera il tempo limite è interrotto e la metrica secondaria
+ * "completed" vale 0.
+ * <br>
+ * Uso: {@code java gapp.ulg.test.PlayerBench [file.json] [filtro]}, dove il file
+ * (default "player-bench.json") riceve i risultati in formato JSON (vedi
+ * {@link Bench}) e il filtro, se c'è, limita i benchmark a quelli il cui nome lo
+ * contiene. Oltre alle proprietà di sistema di {@link EngineBench}, bench.threads
+ * è il numero di thread degli esecutori limitati (default il numero di
+ * processori) e bench.solverTimeout il tempo limite in secondi del calcolo di una
+ * strategia (default 120).
+ */
+public class PlayerBench
+{
+	public static void main(String... args) throws Exception
+	{
+		Path out = Paths.get(args.length > 0 ? args[0] : "player-bench.json");
+		String filter = args.length > 1 ? args[1] : "";
+		String cls = PlayerBench.class.getName();
+
+		Bench bench = new Bench(Integer.getInteger("bench.warmup", 2), Integer.getInteger("bench.iterations", 5), Long.getLong("bench.time", 1000));
+		int threads = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+		long timeout = Long.getLong("bench.solverTimeout", 120);
+
+		if( (cls+".getMove").contains(filter) )
+			getMove(bench, cls+".getMove", threads);
+		if( (cls+".tryCompute").contains(filter) )
+			tryCompute(bench, cls+".tryCompute", timeout);
+		if( (cls+".strategyMove").contains(filter) )
+			strategyMove(bench, cls+".strategyMove");
+
+		bench.writeJson(out);
+		System.out.println("Risultati scritti in " + out.toAbsolutePath());
+	}
+
+	/** Misura il tempo di getMove degli MCTSPlayer all'inizio di Othello8x8 e del 7,7,4-game */
+	private static void getMove(Bench bench, String name, int threads) throws Exception
+	{
+		List<Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>>> games = Arrays.asList(
+			() -> EngineBench.factory(new OthelloFactory(), "Board", "8x8"),
+			() -> EngineBench.factory(new MNKgameFactory(), "M", 7, "N", 7, "K", 4) );
+
+		MCTSPlayerFactory<PieceModel<Species>> pF = new MCTSPlayerFactory<>();
+		Param<?> rollouts = param(pF.params(), "Rollouts"), execution = param(pF.params(), "Execution");
+
+		for( Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>> gS : games )
+			for( Object r : rollouts.values() )
+				for( String exec : new String[] {"sequential", "commonPool", "forkJoinPool", "executorService"} )
+				{
+					GameFactory<? extends GameRuler<PieceModel<Species>>> gF = gS.get();
+					gF.setPlayerNames("A", "B");
+
+					rollouts.set(r);
+					execution.set(exec.equals("sequential") ? "Sequential" : "Parallel");
+					Player<PieceModel<Species>> p = pF.newPlayer(gF, "A");
+
+					ForkJoinPool fjp = exec.equals("forkJoinPool") ? new ForkJoinPool(threads) : null;
+					ExecutorService es = exec.equals("executorService") ? Executors.newFixedThreadPool(threads) : null;
+					if( fjp != null )
+						p.threads(0, fjp, null);
+					if( es != null )
+						p.threads(threads, null, es);
+
+					GameRuler<PieceModel<Species>> g = gF.newGame();
+					p.setGame(g);
+
+					try
+					{
+						bench.singleShot(name, Bench.params("game", g.name(), "rollouts", r.toString(), "executor", exec,
+							"threads", exec.equals("sequential") || exec.equals("commonPool") ? "-" : Integer.toString(threads)), null, p::getMove);
+					}
+					finally
+					{
+						if( fjp != null )
+							fjp.shutdownNow();
+						if( es != null )
+							es.shutdownNow();
+					}
+				}
+	}
+
+	/** Misura il tempo, il picco dello heap e le situazioni espanse del calcolo della strategia ottimale */
+	private static void tryCompute(Bench bench, String name, long timeout) throws Exception
+	{
+		List<Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>>> games = Arrays.asList(
+			() -> EngineBench.factory(new MNKgameFactory(), "M", 3, "N", 3, "K", 3),
+			() -> EngineBench.factory(new MNKgameFactory(), "M", 3, "N", 4, "K", 3),
+			() -> EngineBench.factory(new MNKgameFactory(), "M", 4, "N", 4, "K", 3),
+			() -> EngineBench.factory(new OthelloFactory(), "Board", "6x6") );
+
+		List<MemoryPoolMXBean> heap = new ArrayList<>();
+		for( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+			if( pool.getType() == MemoryType.HEAP )
+				heap.add(pool);
+
+		for( Supplier<GameFactory<? extends GameRuler<PieceModel<Species>>>> gS : games )
+			for( Object exec : param(new OptimalPlayerFactory<>().params(), "Execution").values() )
+			{
+				GameFactory<? extends GameRuler<PieceModel<Species>>> gF = gS.get();
+				gF.setPlayerNames("A", "B");
+				String gName = gF.newGame().name();
+
+				// Per Othello il calcolo non termina nel tempo limite, basta un tentativo
+				boolean once = gName.startsWith("Othello");
+				long[] deadline = {0}, peak = {0}, nodes = {0};
+				boolean[] completed = {true};
+				List<OptimalPlayerFactory<PieceModel<Species>>> oF = new ArrayList<>(1);
+
+				Bench.Result r = bench.singleShot(name, Bench.params("game", gName, "execution", exec.toString()), once ? 0 : 1, once ? 1 : 3,
+					() -> {
+						oF.clear();
+						oF.add(new OptimalPlayerFactory<>());
+						param(oF.get(0).params(), "Execution").set(exec);
+
+						System.gc();
+						for( MemoryPoolMXBean pool : heap )
+							pool.resetPeakUsage();
+
+						deadline[0] = System.nanoTime() + timeout*1000000000L;
+						return null;
+					},
+					() -> {
+						String res = oF.get(0).tryCompute(gF, exec.equals("Parallel"), () -> System.nanoTime() > deadline[0]);
+
+						long used = 0;
+						for( MemoryPoolMXBean pool : heap )
+							used += pool.getPeakUsage().getUsed();
+
+						peak[0] = Math.max(peak[0], used);
+						nodes[0] = oF.get(0).nodesVisited();
+						completed[0] &= res == null;
+						return res;
+					});
+
+				r.secondary.put("peakHeap.bytes", (double)peak[0]);
+				r.secondary.put("completed", completed[0] ? 1.0 : 0.0);
+				r.secondary.put("nodes", (double)nodes[0]);
+			}
+	}
+
+	/** Misura le mosse al secondo dell'OptimalPlayer all'inizio degli m,n,k-game risolti */
+	private static void strategyMove(Bench bench, String name) throws Exception
+	{
+		for( int[] mnk : new int[][] { {3,3,3}, {3,4,3}, {4,4,3} } )
+		{
+			GameFactory<? extends GameRuler<PieceModel<Species>>> gF = EngineBench.factory(new MNKgameFactory(), "M", mnk[0], "N", mnk[1], "K", mnk[2]);
+			gF.setPlayerNames("A", "B");
+
+			OptimalPlayerFactory<PieceModel<Species>> oF = new OptimalPlayerFactory<>();
+			param(oF.params(), "Execution").set("Retrograde");
+
+			if( oF.tryCompute(gF, false, null) != null )
+				continue;
+
+			GameRuler<PieceModel<Species>> g = gF.newGame();
+			Player<PieceModel<Species>> p = oF.newPlayer(gF, "A");
+			p.setGame(g);
+
+			bench.throughput(name, Bench.params("game", g.name()), p::getMove);
+		}
+	}
+
+	/** @return il parametro con il nome dato */
+	private static Param<?> param(List<Param<?>> params, String name)
+	{
+		for( Param<?> p : params )
+			if( p.name().equals(name) )
+				return p;
+
+		throw new IllegalArgumentException(name);
+	}
+}
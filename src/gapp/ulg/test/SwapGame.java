@@ -20,6 +20,7 @@ import gapp.ulg.game.board.Move.Kind;
 import gapp.ulg.game.board.PieceModel.Species;
 import gapp.ulg.game.util.BoardOct;
 import gapp.ulg.game.util.Utils;
+import gapp.ulg.game.util.Zobrist;
 
 /**
  * GameRuler per giocare a Swap Game.
@@ -68,6 +69,8 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
 	private final Situation<PieceModel<Species>> start_situation;
 	/** Meccanica del gioco */
 	private final Mechanics<PieceModel<Species>> mechanics;
+	/** Tabella di Zobrist della meccanica (condivisa tra le copie) */
+	private final Zobrist<PieceModel<Species>> zobrist;
     
     /** Board di Swap Game */
 	private final BoardOct<PieceModel<Species>> board;
@@ -103,16 +106,20 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
     	this.board_view = Utils.UnmodifiableBoard(this.board);
     	
     	// Setta la board iniziale
-    	this.board.put(this.white_pawn, new Pos(1,6));
-    	this.board.put(this.white_pawn, new Pos(3,6));
-    	this.board.put(this.black_pawn, new Pos(5,6));
-    	this.board.put(this.black_pawn, new Pos(7,6));
+    	this.board.put(this.white_pawn, Pos.of(1,6));
+    	this.board.put(this.white_pawn, Pos.of(3,6));
+    	this.board.put(this.black_pawn, Pos.of(5,6));
+    	this.board.put(this.black_pawn, Pos.of(7,6));
     	
     	// Salvo la situazione iniziale
     	this.start_situation = this.getSituation();
     	
     	// Definisco la meccanica del gioco (non è necessario inserire la funzione next)
     	this.mechanics = new Mechanics<PieceModel<Species>>(this.time, this.pieces_list, this.board.positions(), 2, start_situation, null);
+    	
+    	// La chiave di Zobrist dei pezzi è mantenuta dalla board
+    	this.zobrist = new Zobrist<>(this.mechanics);
+    	this.board.setZobrist(this.zobrist);
     }
     
     /**
@@ -138,6 +145,7 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
     	
     	this.start_situation = ch.start_situation;
     	this.mechanics = ch.mechanics;
+    	this.zobrist = ch.zobrist;
     }
     
     @Override
@@ -259,7 +267,7 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
 			    			    	}
 		    			    	}
 		    			    	
-		    			    	this.board.put(board.get(p), new Pos(b,t));
+		    			    	this.board.put(board.get(p), Pos.of(b,t));
 		    			    	this.board.remove(p);
 		    				}
 		    			}
@@ -329,25 +337,25 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
     	
     	if( this.ally_color.equals("bianco") )
     	{
-    		if( this.board.get(new Pos(1,6))!=null && this.board.get(new Pos(1,6)).equals(this.white_pawn) )
+    		if( this.board.get(Pos.of(1,6))!=null && this.board.get(Pos.of(1,6)).equals(this.white_pawn) )
         	{
         		for( PieceModel<Species> piece : this.white_swap_list )
-        			moves_set.add( new Move<>(new Action<>(Dir.UP, 1, new Pos(1,6)), new Action<>(piece, new Pos(1,7))) );
+        			moves_set.add( new Move<>(new Action<>(Dir.UP, 1, Pos.of(1,6)), new Action<>(piece, Pos.of(1,7))) );
         	}
         	
-    		if( this.board.get(new Pos(3,6))!=null && this.board.get(new Pos(3,6)).equals(this.white_pawn) )
-        		moves_set.add( new Move<>(new Action<>(Dir.UP, 1, new Pos(3,6)), new Action<>(this.white_queen, new Pos(3,7))) );
+    		if( this.board.get(Pos.of(3,6))!=null && this.board.get(Pos.of(3,6)).equals(this.white_pawn) )
+        		moves_set.add( new Move<>(new Action<>(Dir.UP, 1, Pos.of(3,6)), new Action<>(this.white_queen, Pos.of(3,7))) );
     	}
     	else if( this.ally_color.equals("nero") )
     	{
-    		if( this.board.get(new Pos(5,6))!=null && this.board.get(new Pos(5,6)).equals(this.black_pawn) )
+    		if( this.board.get(Pos.of(5,6))!=null && this.board.get(Pos.of(5,6)).equals(this.black_pawn) )
         	{
         		for( PieceModel<Species> piece : this.black_swap_list )
-        			moves_set.add( new Move<>(new Action<>(Dir.UP, 1, new Pos(5,6)), new Action<>(piece, new Pos(5,7))) );
+        			moves_set.add( new Move<>(new Action<>(Dir.UP, 1, Pos.of(5,6)), new Action<>(piece, Pos.of(5,7))) );
         	}
     		
-        	if( this.board.get(new Pos(7,6))!=null && this.board.get(new Pos(7,6)).equals(this.black_pawn) )
-        		moves_set.add( new Move<>(new Action<>(Dir.UP, 1, new Pos(7,6)), new Action<>(this.black_queen, new Pos(7,7))) );
+        	if( this.board.get(Pos.of(7,6))!=null && this.board.get(Pos.of(7,6)).equals(this.black_pawn) )
+        		moves_set.add( new Move<>(new Action<>(Dir.UP, 1, Pos.of(7,6)), new Action<>(this.black_queen, Pos.of(7,7))) );
     	}
     	
     	// Se non sono state trovate mosse, ritorna un insieme vuoto
@@ -365,6 +373,9 @@ public class SwapGame implements GameRuler<PieceModel<Species>>
     @Override
     public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
     
+    @Override
+    public long zobristKey() { return this.board.zobristKey() ^ this.zobrist.turn(this); }
+    
     /**
      * Ritorna l'oggetto {@code Situation} relativo allo stato attuale del gioco
      * @return l'oggetto {@code Situation} relativo allo stato attuale del gioco
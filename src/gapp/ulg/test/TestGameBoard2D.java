@@ -47,14 +47,14 @@ public class TestGameBoard2D extends Application
         for( int i=0 ; i<8 ; i++ )
             for( int j=0 ; j<8 ; j++ )
             {
-                Pos p = new Pos(i, j);
+                Pos p = Pos.of(i, j);
                 poss.add(p);
             }
         
-        poss.remove(new Pos(0,0));
-        poss.remove(new Pos(0,7));
-        poss.remove(new Pos(7,0));
-        poss.remove(new Pos(7,7));
+        poss.remove(Pos.of(0,0));
+        poss.remove(Pos.of(0,7));
+        poss.remove(Pos.of(7,0));
+        poss.remove(Pos.of(7,7));
          
         
         //crezione board  
@@ -3,10 +3,15 @@ package gapp.ulg.test;
 import gapp.ulg.game.board.GameRuler;
 import gapp.ulg.game.board.PieceModel;
 import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.util.Frontier;
 import gapp.ulg.game.util.Probe;
 import gapp.ulg.games.MNKgame;
 import gapp.ulg.games.Othello;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -15,10 +20,42 @@ import java.util.function.Supplier;
 
 public class TestNS
 {
-	public static void main(String[] args) {
+	/** Senza argomenti esplora il 3,3,3-game in memoria. Con "stream [profondità]
+	 * [MB]" esplora Othello6x6 mantenendo i livelli su file, con al più i MB dati
+	 * (default 256) di codifiche in memoria. */
+	public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("stream")) {
+            int depth = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+            long memory = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+            Path dir = Files.createTempDirectory("testns");
+            testStreaming(true, ()->new Othello(-1,6,"a","b"), depth, dir, memory);
+            Files.delete(dir);
+            return;
+        }
         test(false, ()->new MNKgame(-1,3,3,3,"a","b"), 10);
     }
 
+    /** Come test, ma i livelli sono mantenuti su file nella directory dir (vedi
+     * {@link Probe#nextSituations(boolean, GameRuler.Next, Frontier, Path, long)}),
+     * quindi la memoria usata non dipende dalla loro dimensione. */
+    public static void testStreaming(boolean parallel, Supplier<GameRuler<PieceModel<PieceModel.Species>>> gR, int depth, Path dir, long memory) {
+        GameRuler<PieceModel<PieceModel.Species>> game = gR.get();
+        GameRuler.Mechanics<PieceModel<PieceModel.Species>> gM = game.mechanics();
+
+        Frontier<PieceModel<PieceModel.Species>> level = Frontier.of(gM, dir.resolve("level0.dat"), Collections.singleton(gM.start));
+        for (int i = 0; i < depth && level.size() > 0; i++) {
+            long st = System.currentTimeMillis();
+            Frontier<PieceModel<PieceModel.Species>> next = Probe.nextSituations(parallel, gM.next, level, dir.resolve("level" + (i+1) + ".dat"), memory);
+            level.delete();
+            level = next;
+            long[] count = new long[3];
+            level.forEach(s -> count[s.turn < 0 ? 0 : (s.turn == 0 ? 1 : 2)]++);
+            System.out.println("Depth " + (i+1) + " : Size = " + level.size() + " | Finite con vittoria di un giocatore: " + count[0] + " | Patte: " + count[1] + " | Non finite: " + count[2] + " | Tempo: " + (System.currentTimeMillis()-st));
+        }
+        level.delete();
+        System.out.println();
+    }
+
     public static void test(boolean parallel, Supplier<GameRuler<PieceModel<PieceModel.Species>>> gR, int depth) {
         GameRuler<PieceModel<PieceModel.Species>> game = gR.get();
         Function<Probe.EncS<PieceModel<PieceModel.Species>>,GameRuler.Situation<PieceModel<PieceModel.Species>>>
@@ -52,7 +89,7 @@ public class TestNS
         Pos pp[] = new Pos[9];
         for (int y = 0; y < 3; y++) {
             for (int x = 0; x < 3; x++) {
-                pp[y*3+x] = new Pos(x,y);
+                pp[y*3+x] = Pos.of(x,y);
             }
         }
         Map<Pos, PieceModel<PieceModel.Species>> mp = s.newMap();
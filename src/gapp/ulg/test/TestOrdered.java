@@ -0,0 +1,359 @@
+package gapp.ulg.test;
+
+import gapp.ulg.game.GameFactory;
+import gapp.ulg.game.Param;
+import gapp.ulg.game.board.Board;
+import gapp.ulg.game.board.GameRuler;
+import gapp.ulg.game.board.Move;
+import gapp.ulg.game.board.PieceModel;
+import gapp.ulg.game.board.PieceModel.Species;
+import gapp.ulg.game.board.Pos;
+import gapp.ulg.game.board.Symmetry;
+import gapp.ulg.game.util.Symmetries;
+import gapp.ulg.games.MNKgame;
+import gapp.ulg.games.Othello;
+import gapp.ulg.play.OptimalPlayerFactory;
+import gapp.ulg.play.OptimalStrategy.Winner;
+import gapp.ulg.play.TranspositionTable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Confronta le strategie calcolate da {@link OptimalPlayerFactory} con i valori
+ * "Ordered" e "Retrograde" del parametro "Execution" su giochi in cui almeno una
+ * volta un giocatore deve passare, cioè in cui una mossa lascia il turno allo
+ * stesso giocatore:
+ * <pre>
+ *     - finali di Othello6x6, ottenuti con mosse casuali (con seme fisso) dalla
+ *       situazione iniziale e giocati come giochi a sé stanti, con la stessa
+ *       meccanica di Othello ma con il finale come situazione iniziale
+ *     - varianti degli m,n,k-game 3,3,3 e 3,4,3 in cui chi allinea k pezzi perde e
+ *       in cui l'avversario passa quando le posizioni vuote sono un multiplo di 4.
+ *       A differenza di Othello, qui una mossa che lascia il turno allo stesso
+ *       giocatore è spesso seguita da una sua mossa che fa vincere l'avversario.
+ * </pre>
+ * Ogni situazione che ha un valore nella tabella "Ordered" deve avere lo stesso
+ * valore nella tabella "Retrograde", che le contiene tutte.
+ * <br>
+ * Uso: {@code java gapp.ulg.test.TestOrdered [vuote] [finali]}, dove vuote è il
+ * numero di posizioni vuote dei finali di Othello (default 8) e finali il numero
+ * di finali confrontati (default 10).
+ */
+public class TestOrdered
+{
+	public static void main(String[] args) throws IOException
+	{
+		int empty = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		GameRuler.Mechanics<PieceModel<Species>> gM = new Othello(-1, 6, "A", "B").mechanics();
+		SplittableRandom rnd = new SplittableRandom(1);
+		int failed = 0;
+
+		for( int found = 0 ; found < count ; )
+		{
+			GameRuler.Situation<PieceModel<Species>> s = randomEnding(gM, empty, rnd);
+			if( s == null )
+				continue;
+
+			Set<GameRuler.Situation<PieceModel<Species>>> reachable = new HashSet<>();
+			if( reach(gM, s, reachable) == 0 )
+				continue;
+
+			found++;
+			GameRuler.Mechanics<PieceModel<Species>> eM = new GameRuler.Mechanics<>(gM.time, gM.pieces, gM.positions, gM.np, s, gM.next, gM.lazy);
+			if( !compare("Othello6x6 ending " + found, new Othello(-1, 6, "A", "B"), eM, reachable) )
+				failed++;
+		}
+
+		for( int n = 3 ; n <= 4 ; n++ )
+		{
+			GameRuler<PieceModel<Species>> game = new MNKgame(-1, 3, n, 3, "A", "B");
+			GameRuler.Mechanics<PieceModel<Species>> vM = misereWithPasses(game.mechanics());
+
+			Set<GameRuler.Situation<PieceModel<Species>>> reachable = new HashSet<>();
+			reach(vM, vM.start, reachable);
+
+			if( !compare(game.name() + " misere", game, vM, reachable) )
+				failed++;
+		}
+
+		System.out.println(failed == 0 ? "OK" : "Finali con valori diversi: " + failed);
+	}
+
+	/** Ritorna la situazione con al più empty posizioni vuote raggiunta con mosse
+	 * casuali dalla situazione iniziale, o null se la partita finisce prima */
+	private static GameRuler.Situation<PieceModel<Species>> randomEnding(GameRuler.Mechanics<PieceModel<Species>> gM, int empty, SplittableRandom rnd)
+	{
+		GameRuler.Situation<PieceModel<Species>> s = gM.start;
+
+		while( gM.positions.size() - s.newMap().size() > empty )
+		{
+			if( s.turn <= 0 )
+				return null;
+
+			// Le prossime situazioni nell'ordine del cursore, che non dipende dagli hash delle mosse
+			List<GameRuler.Situation<PieceModel<Species>>> next = new ArrayList<>();
+			GameRuler.Cursor<PieceModel<Species>> c = gM.lazy.cursor(s);
+			while( c.advance() )
+				next.add(c.situation());
+
+			s = next.get(rnd.nextInt(next.size()));
+		}
+
+		return s.turn > 0 ? s : null;
+	}
+
+	/** Ritorna la meccanica della variante di un m,n,k-game in cui chi allinea k
+	 * pezzi perde e in cui l'avversario passa quando, dopo una mossa che non
+	 * termina la partita, le posizioni vuote sono un multiplo di 4 */
+	private static GameRuler.Mechanics<PieceModel<Species>> misereWithPasses(GameRuler.Mechanics<PieceModel<Species>> gM)
+	{
+		GameRuler.Next<PieceModel<Species>> next = s -> {
+			Map<Move<PieceModel<Species>>,GameRuler.Situation<PieceModel<Species>>> res = new HashMap<>();
+
+			for( Map.Entry<Move<PieceModel<Species>>,GameRuler.Situation<PieceModel<Species>>> e : gM.next.get(s).entrySet() )
+			{
+				GameRuler.Situation<PieceModel<Species>> c = e.getValue();
+				Map<Pos,PieceModel<Species>> conf = c.newMap();
+
+				if( c.turn < 0 )
+					c = new GameRuler.Situation<>(conf, -3 - c.turn);
+				else if( c.turn > 0 && (gM.positions.size() - conf.size()) % 4 == 0 )
+					c = new GameRuler.Situation<>(conf, s.turn);
+
+				res.put(e.getKey(), c);
+			}
+
+			return res;
+		};
+
+		return new GameRuler.Mechanics<>(gM.time, gM.pieces, gM.positions, gM.np, gM.start, next);
+	}
+
+	/** Inserisce in reachable le situazioni raggiungibili da s (compresa) e ritorna
+	 * il numero di mosse che lasciano il turno allo stesso giocatore */
+	private static int reach(GameRuler.Mechanics<PieceModel<Species>> gM, GameRuler.Situation<PieceModel<Species>> s,
+	                         Set<GameRuler.Situation<PieceModel<Species>>> reachable)
+	{
+		Deque<GameRuler.Situation<PieceModel<Species>>> todo = new ArrayDeque<>();
+		int passes = 0;
+
+		reachable.add(s);
+		todo.add(s);
+
+		while( !todo.isEmpty() )
+		{
+			GameRuler.Situation<PieceModel<Species>> t = todo.poll();
+			if( t.turn <= 0 )
+				continue;
+
+			for( GameRuler.Situation<PieceModel<Species>> c : gM.next.get(t).values() )
+			{
+				if( c.turn == t.turn )
+					passes++;
+				if( reachable.add(c) )
+					todo.add(c);
+			}
+		}
+
+		return passes;
+	}
+
+	/** Calcola le strategie "Retrograde" e "Ordered" del gioco con la meccanica
+	 * data e confronta i valori delle situazioni raggiungibili
+	 * @param name nome del gioco
+	 * @param game gioco con la board e le simmetrie del gioco
+	 * @param gM meccanica del gioco
+	 * @param reachable situazioni raggiungibili dalla situazione iniziale
+	 * @return true se i valori coincidono */
+	private static boolean compare(String name, GameRuler<PieceModel<Species>> game, GameRuler.Mechanics<PieceModel<Species>> gM,
+	                               Set<GameRuler.Situation<PieceModel<Species>>> reachable) throws IOException
+	{
+		VariantFactory gF = new VariantFactory(name, game, gM);
+		Symmetries<PieceModel<Species>> sym = Symmetries.of(gF.newGame());
+		GameRuler.Situation<PieceModel<Species>> s = gM.start;
+
+		TranspositionTable retrograde = solve(gF, "Retrograde");
+		TranspositionTable ordered = solve(gF, "Ordered");
+		if( retrograde == null || ordered == null )
+			return false;
+
+		int compared = 0, different = 0;
+		long[] ext = retrograde.words > 1 ? new long[retrograde.words-1] : null;
+
+		for( GameRuler.Situation<PieceModel<Species>> t : reachable )
+		{
+			long enc = sym.encode(t, ext);
+			Winner o = ordered.get(enc, ext);
+
+			if( o == null )
+				continue;
+
+			compared++;
+			if( o != retrograde.get(enc, ext) )
+				different++;
+		}
+
+		long enc = sym.encode(s, ext);
+		boolean root = ordered.get(enc, ext) != null && ordered.get(enc, ext) == retrograde.get(enc, ext);
+
+		System.out.println(name + " : Situazioni = " + reachable.size() + " | Confrontate = " + compared + " | Diverse = " + different +
+		                   " | Valore = " + retrograde.get(enc, ext));
+
+		return root && different == 0;
+	}
+
+	/** Calcola la strategia del gioco con il valore dato del parametro "Execution"
+	 * in una directory temporanea e ne ritorna la tabella, o null se il calcolo
+	 * fallisce */
+	private static TranspositionTable solve(VariantFactory gF, String execution) throws IOException
+	{
+		OptimalPlayerFactory<PieceModel<Species>> oF = new OptimalPlayerFactory<>();
+		for( Param<?> p : oF.params() )
+			if( p.name().equals("Execution") )
+				p.set(execution);
+
+		Path dir = Files.createTempDirectory("testordered");
+		Path file = dir.resolve("strategy_" + gF.name + ".dat");
+		oF.setDir(dir);
+
+		try
+		{
+			String res = oF.tryCompute(gF, false, null);
+			if( res != null )
+			{
+				System.out.println(gF.name + " " + execution + " : " + res);
+				return null;
+			}
+
+			return load(file);
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+
+	/** Legge la tabella di un file di strategia (vedi il formato in
+	 * {@link OptimalPlayerFactory}) */
+	private static TranspositionTable load(Path file) throws IOException
+	{
+		try( FileChannel ch = FileChannel.open(file, StandardOpenOption.READ) )
+		{
+			MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			map.order(TranspositionTable.ORDER);
+			map.position((44 + map.getInt(40) + 7) & ~7);
+
+			return TranspositionTable.view(map, map.getInt(16), map.getInt(28), map.getInt(32));
+		}
+	}
+
+	/** Fabbrica di una variante di un gioco */
+	private static class VariantFactory implements GameFactory<GameRuler<PieceModel<Species>>>
+	{
+		private final String name;
+		private final GameRuler<PieceModel<Species>> game;
+		private final GameRuler.Mechanics<PieceModel<Species>> mechanics;
+
+		VariantFactory(String name, GameRuler<PieceModel<Species>> game, GameRuler.Mechanics<PieceModel<Species>> mechanics)
+		{
+			this.name = name;
+			this.game = game;
+			this.mechanics = mechanics;
+		}
+
+		@Override
+		public String name() { return this.name; }
+
+		@Override
+		public int minPlayers() { return 2; }
+
+		@Override
+		public int maxPlayers() { return 2; }
+
+		@Override
+		public List<Param<?>> params() { return Collections.emptyList(); }
+
+		@Override
+		public void setPlayerNames(String... names) {}
+
+		@Override
+		public GameRuler<PieceModel<Species>> newGame() { return new Variant(this.name, this.game.copy(), this.mechanics); }
+	}
+
+	/** Una variante di un gioco: delega tutto al gioco tranne il nome e la
+	 * meccanica. Solo la meccanica, la board e le simmetrie sono usate per
+	 * calcolare la strategia. */
+	private static class Variant implements GameRuler<PieceModel<Species>>
+	{
+		private final String name;
+		private final GameRuler<PieceModel<Species>> game;
+		private final Mechanics<PieceModel<Species>> mechanics;
+
+		Variant(String name, GameRuler<PieceModel<Species>> game, Mechanics<PieceModel<Species>> mechanics)
+		{
+			this.name = name;
+			this.game = game;
+			this.mechanics = mechanics;
+		}
+
+		@Override
+		public String name() { return this.name; }
+
+		@Override
+		public <T> T getParam(String name, Class<T> c) { return this.game.getParam(name, c); }
+
+		@Override
+		public List<String> players() { return this.game.players(); }
+
+		@Override
+		public String color(String name) { return this.game.color(name); }
+
+		@Override
+		public Board<PieceModel<Species>> getBoard() { return this.game.getBoard(); }
+
+		@Override
+		public int turn() { return this.game.turn(); }
+
+		@Override
+		public boolean move(Move<PieceModel<Species>> m) { return this.game.move(m); }
+
+		@Override
+		public boolean unMove() { return this.game.unMove(); }
+
+		@Override
+		public boolean isPlaying(int i) { return this.game.isPlaying(i); }
+
+		@Override
+		public int result() { return this.game.result(); }
+
+		@Override
+		public Set<Move<PieceModel<Species>>> validMoves() { return this.game.validMoves(); }
+
+		@Override
+		public GameRuler<PieceModel<Species>> copy() { return new Variant(this.name, this.game.copy(), this.mechanics); }
+
+		@Override
+		public Mechanics<PieceModel<Species>> mechanics() { return this.mechanics; }
+
+		@Override
+		public Set<Symmetry> symmetries() { return this.game.symmetries(); }
+	}
+}